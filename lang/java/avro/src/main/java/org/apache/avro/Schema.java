@@ -21,16 +21,24 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.BooleanNode;
 import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -46,6 +54,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.IntStream;
 import org.apache.avro.util.internal.Accessor;
 import org.apache.avro.util.internal.Accessor.FieldAccessor;
 import org.apache.avro.util.internal.JacksonUtils;
@@ -178,6 +187,13 @@ public abstract class Schema extends JsonProperties implements Serializable {
 
   int hashCode = NO_HASHCODE;
 
+  /**
+   * The parsing canonical form and its fingerprints, set by
+   * {@link SchemaNormalization} once computed. Properties are not part of the
+   * canonical form and fields can only be set once, so it never changes.
+   */
+  transient volatile SchemaNormalization.ParsingForm parsingForm;
+
   @Override
   public void addProp(String name, String value) {
     super.addProp(name, value);
@@ -1408,6 +1424,36 @@ public abstract class Schema extends JsonProperties implements Serializable {
       return parse(FACTORY.createParser(file));
     }
 
+    /**
+     * Parse schemas from many files in parallel, returning them in the order of the
+     * files. Each file is parsed independently with this parser's settings and the
+     * names known to it when this is called, so files may refer to previously known
+     * types but not to each other. Named schemas parsed are then added to the names
+     * known to this parser.
+     */
+    public List<Schema> parseAll(List<File> files) throws IOException {
+      Map<String, Schema> known = getTypes();
+      Schema[] schemas = new Schema[files.size()];
+      Parser[] parsers = new Parser[files.size()];
+      try {
+        IntStream.range(0, schemas.length).parallel().forEach(i -> {
+          parsers[i] = new Parser().setValidate(validate).setValidateDefaults(validateDefaults).addTypes(known);
+          try {
+            schemas[i] = parsers[i].parse(files.get(i));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      for (Parser parser : parsers)
+        for (Schema schema : parser.names.values())
+          if (!known.containsKey(schema.getFullName()))
+            names.add(schema);
+      return Arrays.asList(schemas);
+    }
+
     /**
      * Parse a schema from the provided stream. If named, the schema is added to the
      * names known to this parser. The input stream stays open after the parsing.
@@ -1442,7 +1488,9 @@ public abstract class Schema extends JsonProperties implements Serializable {
       try {
         validateNames.set(validate);
         VALIDATE_DEFAULTS.set(validateDefaults);
-        return Schema.parse(MAPPER.readTree(parser), names);
+        if (parser.nextToken() == null)
+          return Schema.parse(MAPPER.<JsonNode>readTree(parser), names);
+        return Schema.parse(parser, names);
       } catch (JsonParseException e) {
         throw new SchemaParseException(e);
       } finally {
@@ -1683,37 +1731,7 @@ public abstract class Schema extends JsonProperties implements Serializable {
         if (fieldsNode == null || !fieldsNode.isArray())
           throw new SchemaParseException("Record has no fields: " + schema);
         for (JsonNode field : fieldsNode) {
-          String fieldName = getRequiredText(field, "name", "No field name");
-          String fieldDoc = getOptionalText(field, "doc");
-          JsonNode fieldTypeNode = field.get("type");
-          if (fieldTypeNode == null)
-            throw new SchemaParseException("No field type: " + field);
-          if (fieldTypeNode.isTextual() && names.get(fieldTypeNode.textValue()) == null)
-            throw new SchemaParseException(fieldTypeNode + " is not a defined name." + " The type of the \"" + fieldName
-                + "\" field must be a defined name or a {\"type\": ...} expression.");
-          Schema fieldSchema = parse(fieldTypeNode, names);
-          Field.Order order = Field.Order.ASCENDING;
-          JsonNode orderNode = field.get("order");
-          if (orderNode != null)
-            order = Field.Order.valueOf(orderNode.textValue().toUpperCase(Locale.ENGLISH));
-          JsonNode defaultValue = field.get("default");
-          if (defaultValue != null
-              && (Type.FLOAT.equals(fieldSchema.getType()) || Type.DOUBLE.equals(fieldSchema.getType()))
-              && defaultValue.isTextual())
-            defaultValue = new DoubleNode(Double.valueOf(defaultValue.textValue()));
-          Field f = new Field(fieldName, fieldSchema, fieldDoc, defaultValue, true, order);
-          Iterator<String> i = field.fieldNames();
-          while (i.hasNext()) { // add field props
-            String prop = i.next();
-            if (!FIELD_RESERVED.contains(prop))
-              f.addProp(prop, field.get(prop));
-          }
-          f.aliases = parseAliases(field);
-          fields.add(f);
-          if (fieldSchema.getLogicalType() == null && getOptionalText(field, LOGICAL_TYPE_PROP) != null)
-            LOG.warn(
-                "Ignored the {}.{}.logicalType property (\"{}\"). It should probably be nested inside the \"type\" for the field.",
-                name, fieldName, getOptionalText(field, "logicalType"));
+          fields.add(parseField(field, null, names, name));
         }
         result.setFields(fields);
       } else if (isTypeEnum) { // enum
@@ -1754,27 +1772,7 @@ public abstract class Schema extends JsonProperties implements Serializable {
         }
         throw new SchemaParseException("Type not supported: " + type);
       }
-      Iterator<String> i = schema.fieldNames();
-
-      Set reserved = SCHEMA_RESERVED;
-      if (isTypeEnum) {
-        reserved = ENUM_RESERVED;
-      }
-      while (i.hasNext()) { // add properties
-        String prop = i.next();
-        if (!reserved.contains(prop)) // ignore reserved
-          result.addProp(prop, schema.get(prop));
-      }
-      // parse logical type if present
-      result.logicalType = LogicalTypes.fromSchemaIgnoreInvalid(result);
-      names.space(savedSpace); // restore space
-      if (result instanceof NamedSchema) {
-        Set<String> aliases = parseAliases(schema);
-        if (aliases != null) // add aliases
-          for (String alias : aliases)
-            result.addAlias(alias);
-      }
-      return result;
+      return finishParse(result, schema, isTypeEnum ? ENUM_RESERVED : SCHEMA_RESERVED, names, savedSpace);
     } else if (schema.isArray()) { // union
       LockableArrayList<Schema> types = new LockableArrayList<>(schema.size());
       for (JsonNode typeNode : schema)
@@ -1785,6 +1783,233 @@ public abstract class Schema extends JsonProperties implements Serializable {
     }
   }
 
+  /**
+   * Parse the schema starting at the current token of <i>parser</i>, reading
+   * through its last token. Records, arrays, maps and unions are built while
+   * reading, without first building a {@link JsonNode} tree of the whole schema.
+   * Other schemas, and records whose name or namespace follow their fields, are
+   * read as a tree and parsed by {@link #parse(JsonNode, Names)}, which gives the
+   * same result.
+   */
+  static Schema parse(JsonParser parser, Names names) throws IOException {
+    switch (parser.currentToken()) {
+    case VALUE_STRING: // name
+      String typeName = parser.getText();
+      Schema result = names.get(typeName);
+      if (result == null)
+        throw new SchemaParseException("Undefined name: " + TextNode.valueOf(typeName));
+      return result;
+    case START_ARRAY: // union
+      LockableArrayList<Schema> types = new LockableArrayList<>();
+      while (parser.nextToken() != JsonToken.END_ARRAY)
+        types.add(parse(parser, names));
+      return new UnionSchema(types);
+    case START_OBJECT:
+      return parseObject(parser, names);
+    default:
+      return parse(MAPPER.<JsonNode>readTree(parser), names);
+    }
+  }
+
+  private static Schema parseObject(JsonParser parser, Names names) throws IOException {
+    // members that are not parsed while reading are kept for parse(JsonNode)
+    ObjectNode members = JsonNodeFactory.instance.objectNode();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String key = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      String type = getOptionalText(members, "type");
+      if ("fields".equals(key) && token == JsonToken.START_ARRAY && ("record".equals(type) || "error".equals(type))) {
+        String name = getOptionalText(members, "name");
+        if (name != null && (members.has("namespace") || name.indexOf('.') >= 0))
+          return parseRecord(parser, names, members);
+      } else if (("items".equals(key) && "array".equals(type)) || ("values".equals(key) && "map".equals(type))) {
+        Schema elementType = parse(parser, names);
+        Schema result = "array".equals(type) ? new ArraySchema(elementType) : new MapSchema(elementType);
+        readMembers(parser, members);
+        return finishParse(result, members, SCHEMA_RESERVED, names, names.space());
+      }
+      members.set(key, readValue(parser));
+    }
+    return parse(members, names);
+  }
+
+  /**
+   * Parse a record whose fields start at the current token, given the members
+   * read before them. If its doc was not among those, the fields are buffered so
+   * that a doc following them is known when the record is created.
+   */
+  private static Schema parseRecord(JsonParser parser, Names names, ObjectNode members) throws IOException {
+    JsonParser fieldsParser = parser;
+    if (!members.has("doc")) {
+      TokenBuffer fieldsBuffer = copyStructure(parser);
+      readMembers(parser, members);
+      fieldsParser = fieldsBuffer.asParser();
+      fieldsParser.nextToken(); // start of the fields
+    }
+    String savedSpace = names.space();
+    String space = getOptionalText(members, "namespace");
+    if (space == null)
+      space = savedSpace;
+    Name name = new Name(intern(getOptionalText(members, "name")), intern(space));
+    names.space(name.space); // set default namespace
+    RecordSchema result = new RecordSchema(name, getOptionalText(members, "doc"),
+        "error".equals(getOptionalText(members, "type")));
+    names.add(result);
+    List<Field> fields = new ArrayList<>();
+    while (fieldsParser.nextToken() != JsonToken.END_ARRAY)
+      fields.add(parseField(fieldsParser, names, name));
+    result.setFields(fields);
+    if (fieldsParser == parser)
+      readMembers(parser, members);
+    return finishParse(result, members, SCHEMA_RESERVED, names, savedSpace);
+  }
+
+  /** Parse the field starting at the current token. */
+  private static Field parseField(JsonParser parser, Names names, Name record) throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT)
+      return parseField(MAPPER.<JsonNode>readTree(parser), null, names, record);
+    ObjectNode members = JsonNodeFactory.instance.objectNode();
+    Schema fieldSchema = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String key = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if ("type".equals(key) && (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)
+          && getOptionalText(members, "name") != null) {
+        fieldSchema = parse(parser, names);
+      } else {
+        if ("name".equals(key) && token == JsonToken.VALUE_STRING)
+          members.set(key, TextNode.valueOf(intern(parser.getText())));
+        else
+          members.set(key, readValue(parser));
+      }
+    }
+    return parseField(members, fieldSchema, names, record);
+  }
+
+  /**
+   * Read the value at the current token as a tree. Scalars are built directly, as
+   * the node deserializer would build them.
+   */
+  private static JsonNode readValue(JsonParser parser) throws IOException {
+    switch (parser.currentToken()) {
+    case VALUE_STRING:
+      return TextNode.valueOf(parser.getText());
+    case VALUE_NUMBER_INT:
+      if (parser.getNumberType() == JsonParser.NumberType.INT)
+        return IntNode.valueOf(parser.getIntValue());
+      return MAPPER.readTree(parser);
+    case VALUE_TRUE:
+      return BooleanNode.TRUE;
+    case VALUE_FALSE:
+      return BooleanNode.FALSE;
+    case VALUE_NULL:
+      return NullNode.getInstance();
+    default:
+      return MAPPER.readTree(parser);
+    }
+  }
+
+  /**
+   * Copy the value at the current token, leaving <i>parser</i> at its last token.
+   * Floats are copied as doubles, as a tree reads them, rather than as text.
+   */
+  private static TokenBuffer copyStructure(JsonParser parser) throws IOException {
+    TokenBuffer buffer = new TokenBuffer(parser);
+    int depth = 0;
+    do {
+      JsonToken token = parser.currentToken();
+      if (token == JsonToken.VALUE_NUMBER_FLOAT)
+        buffer.writeNumber(parser.getDoubleValue());
+      else
+        buffer.copyCurrentEvent(parser);
+      if (token.isStructStart())
+        depth++;
+      else if (token.isStructEnd())
+        depth--;
+    } while (depth > 0 && parser.nextToken() != null);
+    return buffer;
+  }
+
+  /** Read the remaining members of the current object. */
+  private static void readMembers(JsonParser parser, ObjectNode members) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String key = parser.getCurrentName();
+      parser.nextToken();
+      members.set(key, readValue(parser));
+    }
+  }
+
+  /**
+   * Intern names and namespaces, which large catalogs of schemas repeat many
+   * times.
+   */
+  private static String intern(String s) {
+    return s == null ? null : s.intern();
+  }
+
+  /**
+   * Add the properties, logical type and aliases of a parsed schema, and restore
+   * the default namespace.
+   */
+  private static Schema finishParse(Schema result, JsonNode schema, Set<String> reserved, Names names,
+      String savedSpace) {
+    Iterator<String> i = schema.fieldNames();
+    while (i.hasNext()) { // add properties
+      String prop = i.next();
+      if (!reserved.contains(prop)) // ignore reserved
+        result.addProp(prop, schema.get(prop));
+    }
+    // parse logical type if present
+    result.logicalType = LogicalTypes.fromSchemaIgnoreInvalid(result);
+    names.space(savedSpace); // restore space
+    if (result instanceof NamedSchema) {
+      Set<String> aliases = parseAliases(schema);
+      if (aliases != null) // add aliases
+        for (String alias : aliases)
+          result.addAlias(alias);
+    }
+    return result;
+  }
+
+  /**
+   * Parse a field of the record named <i>record</i>. If <i>fieldSchema</i> is not
+   * null, it is the already parsed value of the field's type.
+   */
+  private static Field parseField(JsonNode field, Schema fieldSchema, Names names, Name record) {
+    String fieldName = getRequiredText(field, "name", "No field name");
+    String fieldDoc = getOptionalText(field, "doc");
+    if (fieldSchema == null) {
+      JsonNode fieldTypeNode = field.get("type");
+      if (fieldTypeNode == null)
+        throw new SchemaParseException("No field type: " + field);
+      if (fieldTypeNode.isTextual() && names.get(fieldTypeNode.textValue()) == null)
+        throw new SchemaParseException(fieldTypeNode + " is not a defined name." + " The type of the \"" + fieldName
+            + "\" field must be a defined name or a {\"type\": ...} expression.");
+      fieldSchema = parse(fieldTypeNode, names);
+    }
+    Field.Order order = Field.Order.ASCENDING;
+    JsonNode orderNode = field.get("order");
+    if (orderNode != null)
+      order = Field.Order.valueOf(orderNode.textValue().toUpperCase(Locale.ENGLISH));
+    JsonNode defaultValue = field.get("default");
+    if (defaultValue != null && (Type.FLOAT.equals(fieldSchema.getType()) || Type.DOUBLE.equals(fieldSchema.getType()))
+        && defaultValue.isTextual())
+      defaultValue = new DoubleNode(Double.valueOf(defaultValue.textValue()));
+    Field f = new Field(fieldName, fieldSchema, fieldDoc, defaultValue, true, order);
+    Iterator<String> i = field.fieldNames();
+    while (i.hasNext()) { // add field props
+      String prop = i.next();
+      if (!FIELD_RESERVED.contains(prop))
+        f.addProp(prop, field.get(prop));
+    }
+    f.aliases = parseAliases(field);
+    if (fieldSchema.getLogicalType() == null && getOptionalText(field, LOGICAL_TYPE_PROP) != null)
+      LOG.warn(
+          "Ignored the {}.{}.logicalType property (\"{}\"). It should probably be nested inside the \"type\" for the field.",
+          record, fieldName, getOptionalText(field, "logicalType"));
+    return f;
+  }
+
   static Set<String> parseAliases(JsonNode node) {
     JsonNode aliasesNode = node.get("aliases");
     if (aliasesNode == null)
@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -58,9 +59,20 @@ public class SchemaCompatibility {
    * @return a result object identifying any compatibility errors.
    */
   public static SchemaPairCompatibility checkReaderWriterCompatibility(final Schema reader, final Schema writer) {
-    final SchemaCompatibilityResult compatibility = new ReaderWriterCompatibilityChecker().getCompatibility(reader,
-        writer);
+    return pairCompatibility(getCompatibility(reader, writer, null), reader, writer);
+  }
+
+  /**
+   * Determines the compatibility of a reader/writer schema pair, skipping record
+   * pairs that a cache already knows to be compatible.
+   */
+  static SchemaCompatibilityResult getCompatibility(final Schema reader, final Schema writer,
+      final SchemaCompatibilityCache cache) {
+    return new ReaderWriterCompatibilityChecker(cache).getCompatibility(reader, writer);
+  }
 
+  static SchemaPairCompatibility pairCompatibility(final SchemaCompatibilityResult compatibility, final Schema reader,
+      final Schema writer) {
     final String message;
     switch (compatibility.getCompatibility()) {
     case INCOMPATIBLE: {
@@ -193,6 +205,14 @@ public class SchemaCompatibility {
   private static final class ReaderWriterCompatibilityChecker {
     private static final String ROOT_REFERENCE_TOKEN = "";
     private final Map<ReaderWriter, SchemaCompatibilityResult> mMemoizeMap = new HashMap<>();
+    private final SchemaCompatibilityCache mCache;
+    // pairs whose result assumed that a pair still being checked is compatible
+    private final Set<ReaderWriter> mConditional = new HashSet<>();
+    private int mAssumptions;
+
+    ReaderWriterCompatibilityChecker(final SchemaCompatibilityCache cache) {
+      mCache = cache;
+    }
 
     /**
      * Reports the compatibility of a reader/writer schema pair.
@@ -235,17 +255,35 @@ public class SchemaCompatibility {
           // Break the recursion here.
           // schemas are compatible unless proven incompatible:
           result = SchemaCompatibilityResult.compatible();
+          mAssumptions++;
+        } else if (mConditional.contains(pair)) {
+          mAssumptions++;
         }
+      } else if (mCache != null && isRecordPair(reader, writer) && mCache.isCompatibleRecord(reader, writer)) {
+        result = SchemaCompatibilityResult.compatible();
+        mMemoizeMap.put(pair, result);
       } else {
         // Mark this reader/writer pair as "in progress":
         mMemoizeMap.put(pair, SchemaCompatibilityResult.recursionInProgress());
+        final int assumptions = mAssumptions;
         result = calculateCompatibility(reader, writer, location);
         mMemoizeMap.put(pair, result);
+        if (mAssumptions != assumptions) {
+          mConditional.add(pair);
+        } else if (mCache != null && isRecordPair(reader, writer)
+            && result.getCompatibility() == SchemaCompatibilityType.COMPATIBLE) {
+          // only results that hold on their own may be reused by later checks
+          mCache.addCompatibleRecord(reader, writer);
+        }
       }
       location.removeFirst();
       return result;
     }
 
+    private static boolean isRecordPair(final Schema reader, final Schema writer) {
+      return reader.getType() == Type.RECORD && writer.getType() == Type.RECORD;
+    }
+
     /**
      * Calculates the compatibility of a reader/writer schema pair.
      *
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityResult;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+import org.apache.avro.util.WeakIdentityHashMap;
+
+/**
+ * A bounded cache of schema compatibility results, to be shared by the checks
+ * and {@link SchemaValidator validators} of a service that validates many
+ * schemas against their history.
+ * <p/>
+ * Entries are keyed by SHA-256 fingerprints of the full JSON of the schemas,
+ * which unlike their parsing canonical forms include the defaults and aliases
+ * that compatibility depends on, so equal schemas parsed separately share an
+ * entry. The fingerprint of a schema instance is kept while its hash code is
+ * unchanged, as {@link org.apache.avro.io.ResolverCache ResolverCache} does, so
+ * schemas must not be modified once checked: a property added to a schema is
+ * noticed, but changes to its nested schemas are not. The cache holds:
+ * <ul>
+ * <li>the results of
+ * {@link #checkReaderWriterCompatibility(Schema, Schema)};</li>
+ * <li>the record schema pairs found to be compatible while checking, so that a
+ * check of a new version of a schema only descends into the records that
+ * changed;</li>
+ * <li>the outcomes of the strategies returned by
+ * {@link #memoize(SchemaValidationStrategy)}.</li>
+ * </ul>
+ * When the cache is full the least recently used entry is evicted. Hit, miss
+ * and eviction counts are kept for monitoring.
+ * <p/>
+ * This class is thread-safe.
+ */
+public final class SchemaCompatibilityCache {
+
+  /** The default maximum number of entries held by a cache. */
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+  private static final Object CHECK = new Object();
+  private static final Object RECORD = new Object();
+  private static final Object VALID = new Object();
+
+  private final int maxEntries;
+  private final Map<Key, Object> entries;
+  /** Fingerprints of schema instances already seen, to avoid re-serializing. */
+  private final Map<Schema, Fingerprint> fingerprints = Collections.synchronizedMap(new WeakIdentityHashMap<>());
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /** Construct a cache holding at most {@link #DEFAULT_MAX_ENTRIES} entries. */
+  public SchemaCompatibilityCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /** Construct a cache holding at most <i>maxEntries</i> entries. */
+  public SchemaCompatibilityCache(int maxEntries) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+    }
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+        if (size() > SchemaCompatibilityCache.this.maxEntries) {
+          evictions.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Validates that the provided reader schema can be used to decode avro data
+   * written with the provided writer schema, as
+   * {@link SchemaCompatibility#checkReaderWriterCompatibility(Schema, Schema)}
+   * does, reusing cached results.
+   *
+   * @param reader schema to check.
+   * @param writer schema to check.
+   * @return a result object identifying any compatibility errors.
+   */
+  public SchemaPairCompatibility checkReaderWriterCompatibility(Schema reader, Schema writer) {
+    Objects.requireNonNull(reader, "Reader schema cannot be null");
+    Objects.requireNonNull(writer, "Writer schema cannot be null");
+    Key key = new Key(CHECK, fingerprint(reader), fingerprint(writer));
+    SchemaCompatibilityResult result = (SchemaCompatibilityResult) get(key);
+    if (result == null) {
+      result = (SchemaCompatibilityResult) put(key, SchemaCompatibility.getCompatibility(reader, writer, this));
+    }
+    return SchemaCompatibility.pairCompatibility(result, reader, writer);
+  }
+
+  /**
+   * Return a strategy that validates as another does, remembering its outcome for
+   * each pair of schemas. The strategy must give the same outcome whenever it
+   * validates equal schemas.
+   */
+  public SchemaValidationStrategy memoize(SchemaValidationStrategy strategy) {
+    Objects.requireNonNull(strategy, "strategy cannot be null");
+    return (toValidate, existing) -> validate(strategy, toValidate, existing);
+  }
+
+  private void validate(SchemaValidationStrategy strategy, Schema toValidate, Schema existing)
+      throws SchemaValidationException {
+    Key key = new Key(strategy, fingerprint(toValidate), fingerprint(existing));
+    Object outcome = get(key);
+    if (outcome == null) {
+      try {
+        strategy.validate(toValidate, existing);
+        outcome = VALID;
+      } catch (SchemaValidationException e) {
+        outcome = e;
+      }
+      outcome = put(key, outcome);
+    }
+    if (outcome != VALID) {
+      throw new SchemaValidationException((SchemaValidationException) outcome);
+    }
+  }
+
+  boolean isCompatibleRecord(Schema reader, Schema writer) {
+    return get(new Key(RECORD, fingerprint(reader), fingerprint(writer))) != null;
+  }
+
+  void addCompatibleRecord(Schema reader, Schema writer) {
+    put(new Key(RECORD, fingerprint(reader), fingerprint(writer)), Boolean.TRUE);
+  }
+
+  private Object get(Key key) {
+    Object value;
+    synchronized (entries) {
+      value = entries.get(key);
+    }
+    if (value != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return value;
+  }
+
+  // computed outside the lock; concurrent misses for a key may both compute,
+  // and the first result is kept
+  private Object put(Key key, Object value) {
+    synchronized (entries) {
+      Object existing = entries.putIfAbsent(key, value);
+      return existing != null ? existing : value;
+    }
+  }
+
+  private Fingerprint fingerprint(Schema schema) {
+    // a schema's hash code is recomputed when a property is added to it
+    int hash = schema.hashCode();
+    Fingerprint fingerprint = fingerprints.get(schema);
+    if (fingerprint == null || fingerprint.schemaHash != hash) {
+      try {
+        fingerprint = new Fingerprint(hash,
+            SchemaNormalization.fingerprint("SHA-256", schema.toString().getBytes(StandardCharsets.UTF_8)));
+      } catch (Exception e) {
+        throw new AvroRuntimeException(e);
+      }
+      fingerprints.put(schema, fingerprint);
+    }
+    return fingerprint;
+  }
+
+  /** Return the maximum number of entries held. */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /** Return the number of entries currently held. */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /** Return the number of lookups answered from the cache. */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /** Return the number of lookups that were not answered from the cache. */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /** Return the number of entries evicted to keep the cache within bounds. */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /** Remove all entries. The hit, miss and eviction counts are not reset. */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+    fingerprints.clear();
+  }
+
+  private static final class Fingerprint {
+    private final int schemaHash;
+    private final byte[] digest;
+    private final int hashCode;
+
+    Fingerprint(int schemaHash, byte[] digest) {
+      this.schemaHash = schemaHash;
+      this.digest = digest;
+      this.hashCode = Arrays.hashCode(digest);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Fingerprint && Arrays.equals(digest, ((Fingerprint) o).digest);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private static final class Key {
+    private final Object kind;
+    private final Fingerprint first;
+    private final Fingerprint second;
+
+    Key(Object kind, Fingerprint first, Fingerprint second) {
+      this.kind = kind;
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return kind.equals(that.kind) && first.equals(that.first) && second.equals(that.second);
+    }
+
+    @Override
+    public int hashCode() {
+      return (kind.hashCode() * 31 + first.hashCode()) * 31 + second.hashCode();
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Returns a single shared instance for schemas that are equal, so that caches
+ * keyed by schema identity, such as those of {@link org.apache.avro.io.Resolver
+ * Resolver} and {@link org.apache.avro.generic.GenericData GenericData}, hit
+ * for schemas read again and again from file or message headers.
+ * <p>
+ * Schemas are equal when their full JSON forms are equal, which unlike
+ * {@link Schema#equals(Object)} also compares docs and aliases. Schemas are
+ * held weakly and are dropped once no longer used elsewhere. An interned schema
+ * is shared by every caller that interns an equal schema, so it must not be
+ * modified. Lookups do not serialize the schema again: a schema whose hash code
+ * changed since it was interned, for example because of
+ * {@link Schema#addProp(String, Object)}, is dropped rather than returned
+ * again, but changes to nested schemas or aliases are not detected.
+ * <p>
+ * Interning is opt-in: {@link org.apache.avro.file.DataFileStream
+ * DataFileStream} and {@link org.apache.avro.message.BinaryMessageDecoder
+ * BinaryMessageDecoder} create a new schema for each stream or decoder unless
+ * given an interner. {@link #getDefault()} returns an interner that can be
+ * shared JVM-wide; separate instances may be created to scope interning.
+ * <p>
+ * This class is thread-safe.
+ */
+public class SchemaInterner {
+
+  private static final SchemaInterner DEFAULT = new SchemaInterner();
+
+  /** Return an interner that can be shared JVM-wide. */
+  public static SchemaInterner getDefault() {
+    return DEFAULT;
+  }
+
+  // keyed by full JSON form, and by the source text of parsed schemas
+  private final ConcurrentHashMap<String, Entry> schemas = new ConcurrentHashMap<>();
+  private final ReferenceQueue<Schema> queue = new ReferenceQueue<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private static class Entry extends WeakReference<Schema> {
+    private final String key;
+    private final int hash; // the hash code the schema was interned with
+
+    Entry(String key, Schema schema, ReferenceQueue<Schema> queue) {
+      super(schema, queue);
+      this.key = key;
+      this.hash = schema.hashCode();
+    }
+
+    /** Return the schema, or null if it was dropped or modified. */
+    Schema getUnmodified() {
+      Schema schema = get();
+      return schema != null && schema.hashCode() == hash ? schema : null;
+    }
+  }
+
+  /**
+   * Return the interned schema equal to a schema, interning it if there is none.
+   */
+  public Schema intern(Schema schema) {
+    return intern(schema.toString(), schema);
+  }
+
+  /**
+   * Return the interned schema for JSON text, parsing it with a parser only if
+   * the same text was not parsed before.
+   */
+  public Schema parse(Schema.Parser parser, String json) {
+    Schema schema = get(json);
+    if (schema != null) {
+      hits.increment();
+      return schema;
+    }
+    Schema parsed = parser.parse(json);
+    String form = parsed.toString();
+    schema = intern(form, parsed);
+    if (!json.equals(form)) {
+      put(json, schema);
+    }
+    return schema;
+  }
+
+  private Schema intern(String key, Schema schema) {
+    Schema interned = get(key);
+    if (interned == null) {
+      interned = put(key, schema);
+    }
+    if (interned == schema) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return interned;
+  }
+
+  private Schema get(String key) {
+    expunge();
+    Entry entry = schemas.get(key);
+    if (entry == null) {
+      return null;
+    }
+    Schema schema = entry.getUnmodified();
+    if (schema == null) {
+      // dropped, or modified since it was interned so no longer equal to its key
+      schemas.remove(key, entry);
+    }
+    return schema;
+  }
+
+  /** Add a schema unless another live one was added for the key. */
+  private Schema put(String key, Schema schema) {
+    Entry entry = new Entry(key, schema, queue);
+    while (true) {
+      Entry existing = schemas.putIfAbsent(key, entry);
+      if (existing == null) {
+        return schema;
+      }
+      Schema interned = existing.getUnmodified();
+      if (interned != null) {
+        return interned;
+      }
+      schemas.remove(key, existing);
+    }
+  }
+
+  private void expunge() {
+    Entry entry;
+    while ((entry = (Entry) queue.poll()) != null) {
+      schemas.remove(entry.key, entry);
+    }
+  }
+
+  /** Return the number of schema forms held, including those being dropped. */
+  public int size() {
+    expunge();
+    return schemas.size();
+  }
+
+  /** Remove all schemas. Schemas already returned stay valid. */
+  public void clear() {
+    schemas.clear();
+  }
+
+  /** Return the number of calls that returned an already interned schema. */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /** Return the number of calls that interned a new schema. */
+  public long getMissCount() {
+    return misses.sum();
+  }
+}
@@ -28,6 +28,9 @@ import java.security.NoSuchAlgorithmException;
  * Collection of static methods for generating the canonical form of schemas
  * (see {@link #toParsingForm}) -- and fingerprints of canonical forms
  * ({@link #fingerprint}).
+ * <p>
+ * The canonical form of a schema and its CRC-64-AVRO, MD5 and SHA-256
+ * fingerprints are computed once per {@link Schema} instance and then reused.
  */
 public class SchemaNormalization {
 
@@ -38,13 +41,23 @@ public class SchemaNormalization {
    * Returns "Parsing Canonical Form" of a schema as defined by Avro spec.
    */
   public static String toParsingForm(Schema s) {
-    try {
-      Map<String, String> env = new HashMap<>();
-      return build(env, s, new StringBuilder()).toString();
-    } catch (IOException e) {
-      // Shouldn't happen, b/c StringBuilder can't throw IOException
-      throw new RuntimeException(e);
+    return parsingForm(s).form;
+  }
+
+  private static ParsingForm parsingForm(Schema s) {
+    ParsingForm parsingForm = s.parsingForm;
+    if (parsingForm == null) {
+      try {
+        Map<String, String> env = new HashMap<>();
+        parsingForm = new ParsingForm(build(env, s, new StringBuilder()).toString());
+      } catch (IOException e) {
+        // Shouldn't happen, b/c StringBuilder can't throw IOException
+        throw new RuntimeException(e);
+      }
+      // racing threads compute equal forms, so either may be kept
+      s.parsingForm = parsingForm;
     }
+    return parsingForm;
   }
 
   /**
@@ -63,19 +76,22 @@ public class SchemaNormalization {
    */
   public static byte[] fingerprint(String fpName, byte[] data) throws NoSuchAlgorithmException {
     if (fpName.equals("CRC-64-AVRO")) {
-      long fp = fingerprint64(data);
-      byte[] result = new byte[8];
-      for (int i = 0; i < 8; i++) {
-        result[i] = (byte) fp;
-        fp >>= 8;
-      }
-      return result;
+      return toLittleEndian(fingerprint64(data));
     }
 
     MessageDigest md = MessageDigest.getInstance(fpName);
     return md.digest(data);
   }
 
+  private static byte[] toLittleEndian(long fp) {
+    byte[] result = new byte[8];
+    for (int i = 0; i < 8; i++) {
+      result[i] = (byte) fp;
+      fp >>= 8;
+    }
+    return result;
+  }
+
   /**
    * Returns the 64-bit Rabin Fingerprint (as recommended in the Avro spec) of a
    * byte string.
@@ -92,7 +108,27 @@ public class SchemaNormalization {
    * supplied schema.
    */
   public static byte[] parsingFingerprint(String fpName, Schema s) throws NoSuchAlgorithmException {
-    return fingerprint(fpName, toParsingForm(s).getBytes(StandardCharsets.UTF_8));
+    ParsingForm parsingForm = parsingForm(s);
+    switch (fpName) {
+    case "CRC-64-AVRO":
+      return toLittleEndian(parsingForm.fingerprint64);
+    case "MD5":
+      byte[] md5 = parsingForm.md5;
+      if (md5 == null) {
+        md5 = fingerprint(fpName, parsingForm.bytes);
+        parsingForm.md5 = md5;
+      }
+      return md5.clone();
+    case "SHA-256":
+      byte[] sha256 = parsingForm.sha256;
+      if (sha256 == null) {
+        sha256 = fingerprint(fpName, parsingForm.bytes);
+        parsingForm.sha256 = sha256;
+      }
+      return sha256.clone();
+    default:
+      return fingerprint(fpName, parsingForm.bytes);
+    }
   }
 
   /**
@@ -100,7 +136,7 @@ public class SchemaNormalization {
    * supplied schema.
    */
   public static long parsingFingerprint64(Schema s) {
-    return fingerprint64(toParsingForm(s).getBytes(StandardCharsets.UTF_8));
+    return parsingForm(s).fingerprint64;
   }
 
   private static Appendable build(Map<String, String> env, Schema s, Appendable o) throws IOException {
@@ -170,6 +206,22 @@ public class SchemaNormalization {
 
   final static long EMPTY64 = 0xc15d213aa4d7a795L;
 
+  /** The parsing canonical form of a schema and its fingerprints. */
+  static final class ParsingForm {
+    private final String form;
+    private final byte[] bytes;
+    private final long fingerprint64;
+    // computed on demand; the arrays are never modified once published
+    private volatile byte[] md5;
+    private volatile byte[] sha256;
+
+    private ParsingForm(String form) {
+      this.form = form;
+      this.bytes = form.getBytes(StandardCharsets.UTF_8);
+      this.fingerprint64 = fingerprint64(bytes);
+    }
+  }
+
   /* An inner class ensures that FP_TABLE initialized only when needed. */
   private static class FP64 {
     private static final long[] FP_TABLE = new long[256];
@@ -31,6 +31,11 @@ public class SchemaValidationException extends Exception {
     super(getMessage(reader, writer), cause);
   }
 
+  /** Construct a copy of an earlier exception for the same schemas. */
+  SchemaValidationException(SchemaValidationException previous) {
+    super(previous.getMessage(), previous.getCause());
+  }
+
   private static String getMessage(Schema reader, Schema writer) {
     return "Unable to read schema: \n" + writer.toString(true) + "\nusing schema:\n" + reader.toString(true);
   }
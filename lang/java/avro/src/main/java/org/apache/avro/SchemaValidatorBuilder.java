@@ -18,13 +18,21 @@
 
 package org.apache.avro;
 
+import java.util.concurrent.Executor;
+
 /**
  * <p>
  * A Builder for creating SchemaValidators.
  * </p>
  */
 public final class SchemaValidatorBuilder {
+  private static final SchemaValidationStrategy CAN_READ = new ValidateCanRead();
+  private static final SchemaValidationStrategy CAN_BE_READ = new ValidateCanBeRead();
+  private static final SchemaValidationStrategy MUTUAL_READ = new ValidateMutualRead();
+
   private SchemaValidationStrategy strategy;
+  private SchemaCompatibilityCache cache;
+  private Executor executor;
 
   public SchemaValidatorBuilder strategy(SchemaValidationStrategy strategy) {
     this.strategy = strategy;
@@ -36,7 +44,7 @@ public final class SchemaValidatorBuilder {
    * schema(s) according to the Avro default schema resolution.
    */
   public SchemaValidatorBuilder canReadStrategy() {
-    this.strategy = new ValidateCanRead();
+    this.strategy = CAN_READ;
     return this;
   }
 
@@ -45,7 +53,7 @@ public final class SchemaValidatorBuilder {
    * according to the Avro default schema resolution.
    */
   public SchemaValidatorBuilder canBeReadStrategy() {
-    this.strategy = new ValidateCanBeRead();
+    this.strategy = CAN_BE_READ;
     return this;
   }
 
@@ -54,18 +62,40 @@ public final class SchemaValidatorBuilder {
    * vice-versa, according to the Avro default schema resolution.
    */
   public SchemaValidatorBuilder mutualReadStrategy() {
-    this.strategy = new ValidateMutualRead();
+    this.strategy = MUTUAL_READ;
+    return this;
+  }
+
+  /**
+   * Remember the outcome of the strategy for each pair of schemas in a cache,
+   * which may be shared by many validators.
+   */
+  public SchemaValidatorBuilder cache(SchemaCompatibilityCache cache) {
+    this.cache = cache;
+    return this;
+  }
+
+  /**
+   * Validate against all existing schemas in parallel on an executor. Only used
+   * by {@link #validateAll()}.
+   */
+  public SchemaValidatorBuilder executor(Executor executor) {
+    this.executor = executor;
     return this;
   }
 
   public SchemaValidator validateLatest() {
     valid();
-    return new ValidateLatest(strategy);
+    return new ValidateLatest(validationStrategy());
   }
 
   public SchemaValidator validateAll() {
     valid();
-    return new ValidateAll(strategy);
+    return new ValidateAll(validationStrategy(), executor);
+  }
+
+  private SchemaValidationStrategy validationStrategy() {
+    return cache == null ? strategy : cache.memoize(strategy);
   }
 
   private void valid() {
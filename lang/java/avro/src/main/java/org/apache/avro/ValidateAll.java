@@ -18,6 +18,12 @@
 
 package org.apache.avro;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
 /**
  * <p>
  * A {@link SchemaValidator} for validating the provided schema against all
@@ -31,18 +37,62 @@ package org.apache.avro;
  */
 public final class ValidateAll implements SchemaValidator {
   private final SchemaValidationStrategy strategy;
+  private final Executor executor;
 
   /**
    * @param strategy The strategy to use for validation of pairwise schemas.
    */
   public ValidateAll(SchemaValidationStrategy strategy) {
+    this(strategy, null);
+  }
+
+  /**
+   * @param strategy The strategy to use for validation of pairwise schemas.
+   * @param executor The executor on which to validate against all schemas in
+   *                 parallel, or null to validate in the calling thread. The
+   *                 exception thrown is the one for the first failing schema in
+   *                 Iterator order either way.
+   */
+  public ValidateAll(SchemaValidationStrategy strategy, Executor executor) {
     this.strategy = strategy;
+    this.executor = executor;
   }
 
   @Override
   public void validate(Schema toValidate, Iterable<Schema> schemasInOrder) throws SchemaValidationException {
+    if (executor == null) {
+      for (Schema existing : schemasInOrder) {
+        strategy.validate(toValidate, existing);
+      }
+      return;
+    }
+    List<CompletableFuture<Void>> results = new ArrayList<>();
     for (Schema existing : schemasInOrder) {
-      strategy.validate(toValidate, existing);
+      results.add(CompletableFuture.runAsync(() -> {
+        try {
+          strategy.validate(toValidate, existing);
+        } catch (SchemaValidationException e) {
+          throw new CompletionException(e);
+        }
+      }, executor));
+    }
+    try {
+      for (CompletableFuture<Void> result : results) {
+        result.join();
+      }
+    } catch (CompletionException e) {
+      for (CompletableFuture<Void> result : results) {
+        result.cancel(false);
+      }
+      Throwable cause = e.getCause();
+      if (cause instanceof SchemaValidationException) {
+        throw (SchemaValidationException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
     }
   }
 
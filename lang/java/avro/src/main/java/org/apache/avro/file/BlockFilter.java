@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+
+/**
+ * Decides from a block's {@link BlockStatistics} whether a block may hold
+ * records of interest. Blocks that are rejected are skipped without being
+ * decompressed or decoded.
+ *
+ * @see DataFileStream#setBlockFilter(BlockFilter)
+ */
+public interface BlockFilter {
+
+  /**
+   * Return false only if no record in the block can be of interest. Filters
+   * should return true when the statistics they need are missing.
+   */
+  boolean mightMatch(BlockStatistics statistics);
+
+  /**
+   * Return a filter accepting blocks that may hold a non-null value of the named
+   * field between <i>min</i> and <i>max</i>, inclusive. Either bound may be null
+   * to leave that end open. Bounds are compared with
+   * {@link GenericData#compare(Object, Object, Schema)}.
+   * <p>
+   * Bounds are converted to the type of the field's statistics the first time
+   * the filter is applied to them: numbers to the field's numeric type, strings
+   * to enum symbols and byte arrays to bytes or fixed values. A bound that is not
+   * exactly a value of the field, such as 1.5 for an int field, fails with an
+   * {@link org.apache.avro.AvroTypeException}.
+   */
+  static BlockFilter range(String field, Object min, Object max) {
+    return new RangeFilter(field, min, max);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import java.io.IOException;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.io.DecoderFactory;
+
+/**
+ * Statistics for the values of some top-level fields in one block of a data
+ * file, as recorded in a {@link DataFileIndex}. Minimum and maximum values are
+ * ordered as by {@link org.apache.avro.generic.GenericData#compare} and are
+ * returned in their generic representation, e.g.
+ * {@link org.apache.avro.util.Utf8} for strings.
+ *
+ * @see DataFileWriter#setBlockStatistics(String...)
+ */
+public class BlockStatistics {
+  private final DataFileIndex index;
+  private final int block;
+
+  BlockStatistics(DataFileIndex index, int block) {
+    this.index = index;
+    this.block = block;
+  }
+
+  /** Return the number of records in the block. */
+  public long getRecordCount() {
+    return index.getBlockRecordCount(block);
+  }
+
+  /**
+   * Return true if statistics for the named field were recorded for this block.
+   * Blocks written with {@link DataFileWriter#appendEncoded} or copied from
+   * another file have no statistics.
+   */
+  public boolean hasStatistics(String field) {
+    return index.stats(block) != null && index.statisticsField(field) >= 0;
+  }
+
+  /**
+   * Return the schema of the named field's non-null values, or null if no
+   * statistics are recorded for it.
+   */
+  public Schema getSchema(String field) {
+    int f = index.statisticsField(field);
+    return f < 0 ? null : index.statisticsSchema(f);
+  }
+
+  /** Return the number of null values of the named field in the block. */
+  public long getNullCount(String field) {
+    return index.stats(block).nullCounts[checkField(field)];
+  }
+
+  /**
+   * Return the minimum non-null value of the named field in the block, or null if
+   * every value was null.
+   */
+  public Object getMin(String field) {
+    int f = checkField(field);
+    return decode(f, index.stats(block).mins[f]);
+  }
+
+  /**
+   * Return the maximum non-null value of the named field in the block, or null if
+   * every value was null.
+   */
+  public Object getMax(String field) {
+    int f = checkField(field);
+    return decode(f, index.stats(block).maxs[f]);
+  }
+
+  private int checkField(String field) {
+    if (!hasStatistics(field)) {
+      throw new AvroRuntimeException("No statistics for field " + field + " in block " + block);
+    }
+    return index.statisticsField(field);
+  }
+
+  private Object decode(int field, byte[] bytes) {
+    if (bytes == null) {
+      return null;
+    }
+    try {
+      return index.statisticsReader(field).read(null, DecoderFactory.get().binaryDecoder(bytes, null));
+    } catch (IOException e) {
+      throw new AvroRuntimeException(e);
+    }
+  }
+}
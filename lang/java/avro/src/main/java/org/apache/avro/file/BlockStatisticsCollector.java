@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+
+/**
+ * Tracks null counts and minimum and maximum values of some top-level fields
+ * over the records appended to the current block of a {@link DataFileWriter}.
+ */
+class BlockStatisticsCollector {
+  private final GenericData data;
+  private final String[] fields;
+  private final int[] positions;
+  private final Schema[] schemas;
+
+  private long[] nullCounts;
+  private Object[] mins;
+  private Object[] maxs;
+  private boolean complete = true;
+
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+  private BinaryEncoder encoder;
+
+  BlockStatisticsCollector(Schema schema, String[] fields, GenericData data) {
+    if (schema.getType() != Schema.Type.RECORD) {
+      throw new AvroRuntimeException("Block statistics require a record schema: " + schema);
+    }
+    this.data = data;
+    this.fields = fields;
+    this.positions = new int[fields.length];
+    this.schemas = new Schema[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      Schema.Field field = schema.getField(fields[i]);
+      if (field == null) {
+        throw new AvroRuntimeException("No such field for block statistics: " + fields[i]);
+      }
+      positions[i] = field.pos();
+      Schema fieldSchema = field.schema();
+      if (fieldSchema.getType() == Schema.Type.UNION && fieldSchema.isNullable()) {
+        if (fieldSchema.getTypes().size() != 2) {
+          throw new AvroRuntimeException("Unsupported union for block statistics: " + fields[i]);
+        }
+        int nullIndex = fieldSchema.getIndexNamed(Schema.Type.NULL.getName());
+        fieldSchema = fieldSchema.getTypes().get(1 - nullIndex);
+      }
+      if (!isOrdered(fieldSchema)) {
+        throw new AvroRuntimeException("Unsupported type for block statistics: " + fields[i]);
+      }
+      schemas[i] = fieldSchema;
+    }
+    reset();
+  }
+
+  private static boolean isOrdered(Schema schema) {
+    switch (schema.getType()) {
+    case BOOLEAN:
+    case INT:
+    case LONG:
+    case FLOAT:
+    case DOUBLE:
+    case STRING:
+    case BYTES:
+    case FIXED:
+    case ENUM:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  String[] getFields() {
+    return fields;
+  }
+
+  Schema[] getSchemas() {
+    return schemas;
+  }
+
+  /** Include an appended datum in the statistics of the current block. */
+  void add(Object datum) {
+    for (int i = 0; i < fields.length; i++) {
+      Object value = data.getField(datum, fields[i], positions[i]);
+      if (value == null) {
+        nullCounts[i]++;
+      } else if (mins[i] == null) {
+        mins[i] = data.deepCopy(schemas[i], value);
+        maxs[i] = mins[i];
+      } else if (data.compare(value, mins[i], schemas[i]) < 0) {
+        mins[i] = data.deepCopy(schemas[i], value);
+      } else if (data.compare(value, maxs[i], schemas[i]) > 0) {
+        maxs[i] = data.deepCopy(schemas[i], value);
+      }
+    }
+  }
+
+  /**
+   * Note that a datum was appended without being seen, so the current block has
+   * no statistics.
+   */
+  void invalidate() {
+    complete = false;
+  }
+
+  /**
+   * Return the statistics of the current block, or null if they are incomplete,
+   * and start a new block.
+   */
+  DataFileIndex.Stats finishBlock() throws IOException {
+    DataFileIndex.Stats stats = null;
+    if (complete) {
+      stats = new DataFileIndex.Stats(fields.length);
+      for (int i = 0; i < fields.length; i++) {
+        stats.nullCounts[i] = nullCounts[i];
+        if (mins[i] != null) {
+          stats.mins[i] = encode(i, mins[i]);
+          stats.maxs[i] = encode(i, maxs[i]);
+        }
+      }
+    }
+    reset();
+    return stats;
+  }
+
+  private void reset() {
+    nullCounts = new long[fields.length];
+    mins = new Object[fields.length];
+    maxs = new Object[fields.length];
+    complete = true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private byte[] encode(int field, Object value) throws IOException {
+    buffer.reset();
+    encoder = EncoderFactory.get().directBinaryEncoder(buffer, encoder);
+    ((DatumWriter<Object>) data.createDatumWriter(schemas[field])).write(value, encoder);
+    encoder.flush();
+    return buffer.toByteArray();
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.avro.InvalidAvroMagicException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+
+/**
+ * An index of the blocks in a file written by {@link DataFileWriter}, holding
+ * each block's position, its number of records and the ordinal of its first
+ * record. With an index, {@link DataFileReader#seekToRecord(long)} finds the
+ * block holding a record by binary search instead of scanning the file.
+ * <p/>
+ * An index is collected while writing when
+ * {@link DataFileWriter#setBlockIndexEnabled(boolean)} is set, and is usually
+ * stored in a sidecar file with {@link #write(File)}. The index records the
+ * file's sync marker so that it is not applied to a different file.
+ * <p/>
+ * The index may also hold per-block {@linkplain BlockStatistics statistics} for
+ * some top-level fields, which a {@link BlockFilter} uses to skip blocks.
+ */
+public class DataFileIndex {
+  /**
+   * The magic bytes at the start of a serialized index. The last byte is the
+   * format version.
+   */
+  public static final byte[] MAGIC = new byte[] { (byte) 'O', (byte) 'b', (byte) 'i', (byte) 'x', 1 };
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final byte[] sync;
+  private final String[] statisticsFields;
+  private final Schema[] statisticsSchemas;
+  /** Readers of each field's statistics, created on first use. */
+  private final DatumReader<?>[] statisticsReaders;
+  private long[] offsets = new long[INITIAL_CAPACITY];
+  private long[] firstRecords = new long[INITIAL_CAPACITY];
+  private Stats[] stats = new Stats[INITIAL_CAPACITY];
+  private int blockCount;
+  private long recordCount;
+
+  DataFileIndex(byte[] sync) {
+    this(sync, new String[0], new Schema[0]);
+  }
+
+  DataFileIndex(byte[] sync, String[] statisticsFields, Schema[] statisticsSchemas) {
+    this.sync = sync.clone();
+    this.statisticsFields = statisticsFields;
+    this.statisticsSchemas = statisticsSchemas;
+    this.statisticsReaders = new DatumReader<?>[statisticsSchemas.length];
+  }
+
+  /** Record a block written at <i>offset</i> holding <i>count</i> records. */
+  void add(long offset, long count) {
+    add(offset, count, null);
+  }
+
+  /**
+   * Record a block written at <i>offset</i> holding <i>count</i> records, with
+   * statistics for this index's fields or null if none were collected.
+   */
+  void add(long offset, long count, Stats blockStats) {
+    if (blockCount > 0 && offset <= offsets[blockCount - 1]) {
+      throw new IllegalArgumentException("Block offsets must increase: " + offset);
+    }
+    if (blockCount == offsets.length) {
+      offsets = Arrays.copyOf(offsets, blockCount * 2);
+      firstRecords = Arrays.copyOf(firstRecords, blockCount * 2);
+      stats = Arrays.copyOf(stats, blockCount * 2);
+    }
+    offsets[blockCount] = offset;
+    firstRecords[blockCount] = recordCount;
+    stats[blockCount] = blockStats;
+    blockCount++;
+    recordCount += count;
+  }
+
+  /** Return the sync marker of the file this index describes. */
+  public byte[] getSync() {
+    return sync.clone();
+  }
+
+  boolean matches(byte[] fileSync) {
+    return Arrays.equals(sync, fileSync);
+  }
+
+  /** Return the number of blocks in the index. */
+  public int getBlockCount() {
+    return blockCount;
+  }
+
+  /** Return the total number of records in the indexed blocks. */
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Return the position of a block, suitable for
+   * {@link DataFileReader#seek(long)}.
+   */
+  public long getBlockOffset(int block) {
+    checkBlock(block);
+    return offsets[block];
+  }
+
+  /** Return the ordinal of the first record in a block. */
+  public long getFirstRecord(int block) {
+    checkBlock(block);
+    return firstRecords[block];
+  }
+
+  /** Return the number of records in a block. */
+  public long getBlockRecordCount(int block) {
+    checkBlock(block);
+    long end = (block + 1 < blockCount) ? firstRecords[block + 1] : recordCount;
+    return end - firstRecords[block];
+  }
+
+  /**
+   * Return the index of the block starting at <i>offset</i>, or -1 if no indexed
+   * block starts there.
+   */
+  public int findBlockAt(long offset) {
+    int i = Arrays.binarySearch(offsets, 0, blockCount, offset);
+    return i < 0 ? -1 : i;
+  }
+
+  /** Return the fields that statistics were collected for. */
+  public List<String> getStatisticsFields() {
+    return Collections.unmodifiableList(Arrays.asList(statisticsFields));
+  }
+
+  /** Return the statistics of a block. */
+  public BlockStatistics getStatistics(int block) {
+    checkBlock(block);
+    return new BlockStatistics(this, block);
+  }
+
+  int statisticsField(String name) {
+    for (int i = 0; i < statisticsFields.length; i++) {
+      if (statisticsFields[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  Schema statisticsSchema(int field) {
+    return statisticsSchemas[field];
+  }
+
+  DatumReader<?> statisticsReader(int field) {
+    DatumReader<?> reader = statisticsReaders[field];
+    if (reader == null) {
+      // racing threads create equivalent readers, so either may be kept
+      reader = new GenericDatumReader<>(statisticsSchemas[field]);
+      statisticsReaders[field] = reader;
+    }
+    return reader;
+  }
+
+  Stats stats(int block) {
+    return stats[block];
+  }
+
+  /**
+   * Return the index of the block holding the record with the given ordinal, or
+   * -1 if the record is not in the indexed blocks.
+   */
+  public int findBlock(long record) {
+    if (record < 0 || record >= recordCount) {
+      return -1;
+    }
+    int i = Arrays.binarySearch(firstRecords, 0, blockCount, record);
+    if (i < 0) {
+      return -i - 2;
+    }
+    // skip over empty blocks that share the same first record
+    while (i + 1 < blockCount && firstRecords[i + 1] == record) {
+      i++;
+    }
+    return i;
+  }
+
+  private void checkBlock(int block) {
+    if (block < 0 || block >= blockCount) {
+      throw new IndexOutOfBoundsException("Block " + block + " of " + blockCount);
+    }
+  }
+
+  /** Write this index to a stream. The stream is flushed but not closed. */
+  public void write(OutputStream out) throws IOException {
+    BinaryEncoder e = EncoderFactory.get().directBinaryEncoder(out, null);
+    e.writeFixed(MAGIC);
+    e.writeFixed(sync);
+    e.writeArrayStart();
+    e.setItemCount(statisticsFields.length);
+    for (int f = 0; f < statisticsFields.length; f++) {
+      e.startItem();
+      e.writeString(statisticsFields[f]);
+      e.writeString(statisticsSchemas[f].toString());
+    }
+    e.writeArrayEnd();
+    e.writeArrayStart();
+    e.setItemCount(blockCount);
+    for (int i = 0; i < blockCount; i++) {
+      e.startItem();
+      e.writeLong(offsets[i]);
+      e.writeLong(getBlockRecordCount(i));
+      Stats s = stats[i];
+      e.writeBoolean(s != null);
+      if (s != null) {
+        for (int f = 0; f < statisticsFields.length; f++) {
+          e.writeLong(s.nullCounts[f]);
+          e.writeBoolean(s.mins[f] != null);
+          if (s.mins[f] != null) {
+            e.writeBytes(s.mins[f]);
+            e.writeBytes(s.maxs[f]);
+          }
+        }
+      }
+    }
+    e.writeArrayEnd();
+    e.flush();
+  }
+
+  /** Write this index to a file. */
+  public void write(File file) throws IOException {
+    try (OutputStream out = new FileOutputStream(file)) {
+      write(out);
+    }
+  }
+
+  /** Read an index written by {@link #write(OutputStream)}. */
+  public static DataFileIndex read(InputStream in) throws IOException {
+    BinaryDecoder d = DecoderFactory.get().directBinaryDecoder(in, null);
+    byte[] magic = new byte[MAGIC.length];
+    d.readFixed(magic);
+    if (!Arrays.equals(MAGIC, magic)) {
+      int last = MAGIC.length - 1;
+      if (Arrays.equals(Arrays.copyOf(MAGIC, last), Arrays.copyOf(magic, last))) {
+        throw new InvalidAvroMagicException("Unsupported Avro data file index version: " + magic[last]);
+      }
+      throw new InvalidAvroMagicException("Not an Avro data file index.");
+    }
+    byte[] sync = new byte[DataFileConstants.SYNC_SIZE];
+    d.readFixed(sync);
+    List<String> fields = new ArrayList<>();
+    List<Schema> schemas = new ArrayList<>();
+    for (long n = d.readArrayStart(); n > 0; n = d.arrayNext()) {
+      for (long i = 0; i < n; i++) {
+        fields.add(d.readString());
+        schemas.add(new Schema.Parser().parse(d.readString()));
+      }
+    }
+    int fieldCount = fields.size();
+    DataFileIndex index = new DataFileIndex(sync, fields.toArray(new String[fieldCount]),
+        schemas.toArray(new Schema[fieldCount]));
+    for (long n = d.readArrayStart(); n > 0; n = d.arrayNext()) {
+      for (long i = 0; i < n; i++) {
+        long offset = d.readLong();
+        long count = d.readLong();
+        Stats s = null;
+        if (d.readBoolean()) {
+          s = new Stats(fieldCount);
+          for (int f = 0; f < fieldCount; f++) {
+            s.nullCounts[f] = d.readLong();
+            if (d.readBoolean()) {
+              s.mins[f] = readBytes(d);
+              s.maxs[f] = readBytes(d);
+            }
+          }
+        }
+        index.add(offset, count, s);
+      }
+    }
+    return index;
+  }
+
+  private static byte[] readBytes(BinaryDecoder d) throws IOException {
+    ByteBuffer buffer = d.readBytes(null);
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /** Read an index from a file written by {@link #write(File)}. */
+  public static DataFileIndex read(File file) throws IOException {
+    try (InputStream in = new FileInputStream(file)) {
+      return read(in);
+    }
+  }
+
+  /**
+   * The statistics of one block: per field, the number of null values and the
+   * binary-encoded minimum and maximum non-null values, which are null if every
+   * value was null.
+   */
+  static final class Stats {
+    final long[] nullCounts;
+    final byte[][] mins;
+    final byte[][] maxs;
+
+    Stats(int fieldCount) {
+      this.nullCounts = new long[fieldCount];
+      this.mins = new byte[fieldCount][];
+      this.maxs = new byte[fieldCount][];
+    }
+  }
+}
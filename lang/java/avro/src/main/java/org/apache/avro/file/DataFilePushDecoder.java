@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.PushDatumDecoder;
+
+/**
+ * Decodes a file written by {@link DataFileWriter} that arrives in chunks, for
+ * example from a non-blocking socket, without blocking a thread while waiting
+ * for the rest of the file. This is the push-style counterpart of
+ * {@link DataFileStream}.
+ * <p/>
+ * Chunks are passed to {@link #feed(ByteBuffer)} as they arrive, and the datums
+ * they complete are then taken with {@link #pollDatum()}, which returns null
+ * when more input is needed. The datums of a block become available once the
+ * whole block and its sync marker have arrived, since a block is compressed as
+ * a unit. The memory used grows with the size of the largest block.
+ * <p/>
+ * This class is not thread-safe.
+ *
+ * @see PushDatumDecoder
+ */
+public class DataFilePushDecoder<D> {
+  private final DatumReader<D> reader;
+  private DataFileStream.Header header;
+  private Codec codec;
+
+  private byte[] buf = new byte[8192];
+  private int start; // start of the unread input
+  private int limit; // end of the bytes fed
+  private BinaryDecoder vin;
+
+  private byte[] block = new byte[0];
+  private BinaryDecoder datumIn;
+  private long blockRemaining;
+
+  /** Construct a decoder whose datums are read by a reader. */
+  public DataFilePushDecoder(DatumReader<D> reader) {
+    this.reader = reader;
+  }
+
+  /** Append the remaining bytes of a buffer to the input, consuming them. */
+  public void feed(ByteBuffer bytes) {
+    int length = bytes.remaining();
+    if (limit + length > buf.length) {
+      System.arraycopy(buf, start, buf, 0, limit - start);
+      limit -= start;
+      start = 0;
+      if (limit + length > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(limit + length, buf.length * 2));
+      }
+    }
+    bytes.get(buf, limit, length);
+    limit += length;
+  }
+
+  /** Append bytes to the input. */
+  public void feed(byte[] bytes, int offset, int length) {
+    feed(ByteBuffer.wrap(bytes, offset, length));
+  }
+
+  /** Return the header of the file, or null if it has not been fed yet. */
+  public DataFileStream.Header getHeader() {
+    return header;
+  }
+
+  /** Return the schema of the file, or null if it has not been fed yet. */
+  public Schema getSchema() {
+    return header == null ? null : header.schema;
+  }
+
+  /**
+   * Return the next datum whose block is complete, or null if the input fed so
+   * far does not complete it.
+   */
+  public D pollDatum() throws IOException {
+    return pollDatum(null);
+  }
+
+  /**
+   * Return the next datum whose block is complete, reusing an instance if
+   * possible, or null if the input fed so far does not complete it.
+   */
+  public D pollDatum(D reuse) throws IOException {
+    if (header == null && !readHeader()) {
+      return null;
+    }
+    while (blockRemaining == 0) {
+      if (!readBlock()) {
+        return null;
+      }
+    }
+    D result = reader.read(reuse, datumIn);
+    if (--blockRemaining == 0 && !datumIn.isEnd()) {
+      throw new IOException("Block read partially, the data may be corrupt");
+    }
+    return result;
+  }
+
+  /**
+   * Return the number of bytes fed that are not part of a complete block. When
+   * the input ends, a non-zero count means it ended within a block.
+   */
+  public int getBufferedBytes() {
+    return limit - start;
+  }
+
+  private boolean readHeader() throws IOException {
+    if (limit - start < DataFileConstants.MAGIC.length) {
+      return false;
+    }
+    vin = DecoderFactory.get().binaryDecoder(buf, start, limit - start, vin);
+    DataFileStream.Header header;
+    try {
+      header = DataFileStream.readHeader(vin, null);
+    } catch (EOFException e) {
+      return false;
+    }
+    start = limit - vin.inputStream().available();
+    this.header = header;
+    this.codec = DataFileStream.resolveCodec(header);
+    reader.setSchema(header.schema);
+    return true;
+  }
+
+  /** Decompress the next block if it has all been fed. */
+  private boolean readBlock() throws IOException {
+    if (start == limit) {
+      return false;
+    }
+    vin = DecoderFactory.get().binaryDecoder(buf, start, limit - start, vin);
+    long count;
+    long size;
+    try {
+      count = vin.readLong();
+      size = vin.readLong();
+    } catch (EOFException e) {
+      return false;
+    }
+    if (size > Integer.MAX_VALUE || size < 0) {
+      throw new IOException("Block size invalid or too large for this implementation: " + size);
+    }
+    int offset = limit - vin.inputStream().available();
+    if (limit - offset < size + DataFileConstants.SYNC_SIZE) {
+      return false;
+    }
+    int end = offset + (int) size;
+    if (!Arrays.equals(Arrays.copyOfRange(buf, end, end + DataFileConstants.SYNC_SIZE), header.sync)) {
+      throw new IOException("Invalid sync!");
+    }
+    // copy the block, since later input may overwrite it before it is read
+    if (block.length < size) {
+      block = new byte[(int) size];
+    }
+    System.arraycopy(buf, offset, block, 0, (int) size);
+    start = end + DataFileConstants.SYNC_SIZE;
+    ByteBuffer data = codec.decompress(ByteBuffer.wrap(block, 0, (int) size));
+    datumIn = DecoderFactory.get().binaryDecoder(data.array(), data.arrayOffset() + data.position(), data.remaining(),
+        datumIn);
+    blockRemaining = count;
+    return true;
+  }
+}
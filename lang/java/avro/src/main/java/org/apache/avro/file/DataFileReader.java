@@ -24,6 +24,7 @@ import java.io.File;
 import java.util.Arrays;
 
 import org.apache.avro.InvalidAvroMagicException;
+import org.apache.avro.SchemaInterner;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.commons.compress.utils.IOUtils;
 import org.apache.avro.io.DatumReader;
@@ -131,9 +132,23 @@ public class DataFileReader<D> extends DataFileStream<D> implements FileReader<D
     this(sin, reader, false);
   }
 
+  /**
+   * Construct a reader for a file whose schema is shared through an interner with
+   * other readers of an equal schema, or is a new schema if the interner is null.
+   * Please close resource files yourself.
+   */
+  public DataFileReader(SeekableInput sin, DatumReader<D> reader, SchemaInterner interner) throws IOException {
+    this(sin, reader, false, interner);
+  }
+
   /** Construct a reader for a file. Please close resource files yourself. */
   protected DataFileReader(SeekableInput sin, DatumReader<D> reader, boolean closeOnError) throws IOException {
-    super(reader);
+    this(sin, reader, closeOnError, null);
+  }
+
+  private DataFileReader(SeekableInput sin, DatumReader<D> reader, boolean closeOnError, SchemaInterner interner)
+      throws IOException {
+    super(reader, interner);
     try {
       this.sin = new SeekableInputStream(sin);
       initialize(this.sin);
@@ -167,6 +182,38 @@ public class DataFileReader<D> extends DataFileStream<D> implements FileReader<D
     datumIn = null;
     blockRemaining = 0;
     blockStart = position;
+    locateBlock(position);
+  }
+
+  /**
+   * Move to the record with the given ordinal, so that the next call to
+   * {@link #next()} returns it. The block holding the record is found with the
+   * {@linkplain #setBlockIndex(DataFileIndex) block index}; the records before it
+   * in that block are read and discarded. The block holding the record is read
+   * even if the {@linkplain #setBlockFilter(BlockFilter) block filter} rejects
+   * it.
+   */
+  public void seekToRecord(long record) throws IOException {
+    if (blockIndex == null) {
+      throw new IllegalStateException("No block index set");
+    }
+    int block = blockIndex.findBlock(record);
+    if (block < 0) {
+      throw new IllegalArgumentException("Record " + record + " is not in the block index");
+    }
+    seek(blockIndex.getBlockOffset(block));
+    // load the block now, so that the filter cannot skip past it
+    BlockFilter filter = blockFilter;
+    blockFilter = null;
+    try {
+      hasNext();
+    } finally {
+      blockFilter = filter;
+    }
+    D reuse = null;
+    for (long i = blockIndex.getFirstRecord(block); i < record; i++) {
+      reuse = next(reuse);
+    }
   }
 
   /**
@@ -204,6 +251,7 @@ public class DataFileReader<D> extends DataFileStream<D> implements FileReader<D
       }
       if (j == SYNC_SIZE) {
         this.blockStart = position + i + 1L;
+        locateBlock(blockStart);
         return;
       }
     }
@@ -308,10 +356,10 @@ public class DataFileReader<D> extends DataFileStream<D> implements FileReader<D
       long length = in.length();
       long remaining = length - position;
       if (remaining > skip) {
-        in.seek(skip);
+        in.seek(position + skip);
         return in.tell() - position;
       } else {
-        in.seek(remaining);
+        in.seek(length);
         return in.tell() - position;
       }
     }
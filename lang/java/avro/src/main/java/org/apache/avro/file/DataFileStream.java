@@ -35,10 +35,13 @@ import java.util.NoSuchElementException;
 import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.InvalidAvroMagicException;
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaInterner;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.ColumnBatch;
+import org.apache.avro.io.ColumnarReader;
 
 /**
  * Streaming access to files written by {@link DataFileWriter}. Use
@@ -63,7 +66,8 @@ public class DataFileStream<D> implements Iterator<D>, Iterable<D>, Closeable {
   }
 
   private DatumReader<D> reader;
-  private long blockSize;
+  private final SchemaInterner interner;
+  long blockSize;
   private boolean availableBlock = false;
   private Header header;
 
@@ -80,13 +84,28 @@ public class DataFileStream<D> implements Iterator<D>, Iterable<D>, Closeable {
   byte[] syncBuffer = new byte[DataFileConstants.SYNC_SIZE];
   private Codec codec;
 
+  DataFileIndex blockIndex;
+  BlockFilter blockFilter;
+  private int blockOrdinal; // index of the next block, or -1 if unknown
+
   /**
    * Construct a reader for an input stream. For file-based input, use
    * {@link DataFileReader}. This will buffer, wrapping with a
    * {@link java.io.BufferedInputStream} is not necessary.
    */
   public DataFileStream(InputStream in, DatumReader<D> reader) throws IOException {
+    this(in, reader, null);
+  }
+
+  /**
+   * Construct a reader for an input stream whose schema is shared through an
+   * interner with other streams that read an equal schema, or is a new schema if
+   * the interner is null. Changes made to a shared schema are seen by all streams
+   * that read it.
+   */
+  public DataFileStream(InputStream in, DatumReader<D> reader, SchemaInterner interner) throws IOException {
     this.reader = reader;
+    this.interner = interner;
     initialize(in);
   }
 
@@ -94,13 +113,33 @@ public class DataFileStream<D> implements Iterator<D>, Iterable<D>, Closeable {
    * create an uninitialized DataFileStream
    */
   protected DataFileStream(DatumReader<D> reader) throws IOException {
+    this(reader, (SchemaInterner) null);
+  }
+
+  /**
+   * create an uninitialized DataFileStream whose schema is shared through an
+   * interner, or is a new schema if the interner is null
+   */
+  protected DataFileStream(DatumReader<D> reader, SchemaInterner interner) throws IOException {
     this.reader = reader;
+    this.interner = interner;
   }
 
   /** Initialize the stream by reading from its head. */
   void initialize(InputStream in) throws IOException {
-    this.header = new Header();
     this.vin = DecoderFactory.get().binaryDecoder(in, vin);
+    this.header = readHeader(vin, interner);
+    blockOrdinal = 0;
+    this.codec = resolveCodec();
+    reader.setSchema(header.schema);
+  }
+
+  /**
+   * Read the head of a file, up to and including its sync marker, interning its
+   * schema if an interner is given.
+   */
+  static Header readHeader(BinaryDecoder vin, SchemaInterner interner) throws IOException {
+    Header header = new Header();
     byte[] magic = new byte[DataFileConstants.MAGIC.length];
     try {
       vin.readFixed(magic); // read magic
@@ -127,23 +166,29 @@ public class DataFileStream<D> implements Iterator<D>, Iterable<D>, Closeable {
 
     // finalize the header
     header.metaKeyList = Collections.unmodifiableList(header.metaKeyList);
-    header.schema = new Schema.Parser().setValidate(false).setValidateDefaults(false)
-        .parse(getMetaString(DataFileConstants.SCHEMA));
-    this.codec = resolveCodec();
-    reader.setSchema(header.schema);
+    byte[] schema = header.meta.get(DataFileConstants.SCHEMA);
+    Schema.Parser parser = new Schema.Parser().setValidate(false).setValidateDefaults(false);
+    String json = schema == null ? null : new String(schema, StandardCharsets.UTF_8);
+    header.schema = interner == null ? parser.parse(json) : interner.parse(parser, json);
+    return header;
   }
 
   /** Initialize the stream without reading from it. */
   void initialize(InputStream in, Header header) throws IOException {
     this.header = header;
+    blockOrdinal = -1; // not positioned until a seek or sync
     this.codec = resolveCodec();
     reader.setSchema(header.schema);
   }
 
   Codec resolveCodec() {
-    String codecStr = getMetaString(DataFileConstants.CODEC);
-    if (codecStr != null) {
-      return CodecFactory.fromString(codecStr).createInstance();
+    return resolveCodec(header);
+  }
+
+  static Codec resolveCodec(Header header) {
+    byte[] codec = header.meta.get(DataFileConstants.CODEC);
+    if (codec != null) {
+      return CodecFactory.fromString(new String(codec, StandardCharsets.UTF_8)).createInstance();
     } else {
       return CodecFactory.nullCodec().createInstance();
     }
@@ -185,6 +230,40 @@ public class DataFileStream<D> implements Iterator<D>, Iterable<D>, Closeable {
     return Long.parseLong(getMetaString(key));
   }
 
+  /**
+   * Use an index of this file's blocks. The index must have been written for this
+   * file, and is used by {@link #setBlockFilter(BlockFilter)} and
+   * {@link DataFileReader#seekToRecord(long)}.
+   *
+   * @see DataFileWriter#setBlockIndexEnabled(boolean)
+   */
+  public void setBlockIndex(DataFileIndex blockIndex) {
+    if (blockIndex != null && !blockIndex.matches(header.sync)) {
+      throw new IllegalArgumentException("Block index does not match this file's sync marker");
+    }
+    this.blockIndex = blockIndex;
+  }
+
+  /** Return the block index set on this stream, or null. */
+  public DataFileIndex getBlockIndex() {
+    return blockIndex;
+  }
+
+  /**
+   * Skip blocks whose {@linkplain BlockStatistics statistics} in the
+   * {@linkplain #setBlockIndex(DataFileIndex) block index} show that the filter
+   * rejects them. Skipped blocks are neither decompressed nor decoded. Blocks
+   * that are not in the index are never skipped. Pass null to read every block.
+   */
+  public void setBlockFilter(BlockFilter blockFilter) {
+    this.blockFilter = blockFilter;
+  }
+
+  /** Record that the next block starts at <i>position</i> in the file. */
+  void locateBlock(long position) {
+    blockOrdinal = (blockIndex == null) ? -1 : blockIndex.findBlockAt(position);
+  }
+
   /**
    * Returns an iterator over entries in this file. Note that this iterator is
    * shared with other users of the file: it does not contain a separate pointer
@@ -209,9 +288,9 @@ public class DataFileStream<D> implements Iterator<D>, Iterable<D>, Closeable {
             throw new IOException("Block read partially, the data may be corrupt");
           }
         }
-        if (hasNextBlock()) {
-          block = nextRawBlock(block);
-          block.decompressUsing(codec);
+        DataBlock nextBlock = nextDecompressedBlock(block);
+        if (nextBlock != null) {
+          block = nextBlock;
           blockBuffer = block.getAsByteBuffer();
           datumIn = DecoderFactory.get().binaryDecoder(blockBuffer.array(),
               blockBuffer.arrayOffset() + blockBuffer.position(), blockBuffer.remaining(), datumIn);
@@ -255,6 +334,27 @@ public class DataFileStream<D> implements Iterator<D>, Iterable<D>, Closeable {
     return result;
   }
 
+  /**
+   * Decode up to <i>maxRecords</i> of the next records into a batch, appending to
+   * the rows it already holds. Records are taken from the current block only, so
+   * fewer may be decoded. The batch's reader must have been created for this
+   * file's schema.
+   *
+   * @return the number of records decoded, zero at the end of the file
+   */
+  public int nextBatch(ColumnarReader columns, ColumnBatch batch, int maxRecords) throws IOException {
+    if (maxRecords <= 0 || !hasNext()) {
+      return 0;
+    }
+    int count = (int) Math.min(blockRemaining, maxRecords);
+    columns.read(datumIn, count, batch);
+    blockRemaining -= count;
+    if (blockRemaining == 0) {
+      blockFinished();
+    }
+    return count;
+  }
+
   /** Expert: Return the next block in the file, as binary-encoded data. */
   public ByteBuffer nextBlock() throws IOException {
     if (!hasNext())
@@ -301,6 +401,28 @@ public class DataFileStream<D> implements Iterator<D>, Iterable<D>, Closeable {
     }
   }
 
+  /**
+   * Like {@link #hasNextBlock()}, but first skips any blocks rejected by the
+   * {@linkplain #setBlockFilter(BlockFilter) block filter}.
+   */
+  boolean hasNextMatchingBlock() throws IOException {
+    while (hasNextBlock()) {
+      if (blockFilter == null || blockIndex == null || blockOrdinal < 0 || blockOrdinal >= blockIndex.getBlockCount()
+          || blockFilter.mightMatch(blockIndex.getStatistics(blockOrdinal))) {
+        return true;
+      }
+      vin.skipFixed((int) blockSize);
+      vin.readFixed(syncBuffer);
+      availableBlock = false;
+      blockRemaining = 0;
+      blockOrdinal++;
+      if (!Arrays.equals(syncBuffer, header.sync))
+        throw new IOException("Invalid sync!");
+      blockFinished();
+    }
+    return false;
+  }
+
   DataBlock nextRawBlock(DataBlock reuse) throws IOException {
     if (!hasNextBlock()) {
       throw new NoSuchElementException();
@@ -315,11 +437,28 @@ public class DataFileStream<D> implements Iterator<D>, Iterable<D>, Closeable {
     vin.readFixed(reuse.data, 0, reuse.blockSize);
     vin.readFixed(syncBuffer);
     availableBlock = false;
+    if (blockOrdinal >= 0) {
+      blockOrdinal++;
+    }
     if (!Arrays.equals(syncBuffer, header.sync))
       throw new IOException("Invalid sync!");
     return reuse;
   }
 
+  /**
+   * Read and decompress the next block, or return null if no blocks remain. On
+   * return {@link #blockRemaining} and {@link #blockCount} describe the returned
+   * block.
+   */
+  DataBlock nextDecompressedBlock(DataBlock reuse) throws IOException {
+    if (!hasNextMatchingBlock()) {
+      return null;
+    }
+    reuse = nextRawBlock(reuse);
+    reuse.decompressUsing(codec);
+    return reuse;
+  }
+
   /** Not supported. */
   @Override
   public void remove() {
@@ -25,19 +25,29 @@ import java.io.File;
 import java.io.FilterOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileStream.DataBlock;
+import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.EncoderFactory;
@@ -75,9 +85,26 @@ public class DataFileWriter<D> implements Closeable, Flushable {
 
   private boolean isOpen;
   private Codec codec;
+  private CodecFactory codecFactory;
+
+  private Executor compressionExecutor;
+  private int maxPendingBlocks;
+  private final ArrayDeque<PendingBlock> pendingBlocks = new ArrayDeque<>();
+  /**
+   * Codec instances are not thread-safe, so each compression task borrows one.
+   */
+  private final Queue<Codec> codecPool = new ConcurrentLinkedQueue<>();
+  /** Why a block could not be compressed; nothing is written after it. */
+  private Throwable compressionFailure;
 
   private boolean flushOnEveryBlock = true;
 
+  private boolean blockIndexEnabled;
+  private DataFileIndex blockIndex;
+  private long blockIndexBase; // length of the file before this writer opened it
+  private String[] statisticsFields;
+  private BlockStatisticsCollector statistics;
+
   /** Construct a writer, not yet open. */
   public DataFileWriter(DatumWriter<D> dout) {
     this.dout = dout;
@@ -88,6 +115,11 @@ public class DataFileWriter<D> implements Closeable, Flushable {
       throw new AvroRuntimeException("not open");
   }
 
+  private void assertNoCompressionFailure() throws IOException {
+    if (compressionFailure != null)
+      throw new IOException("A block failed to compress, so nothing more can be written", compressionFailure);
+  }
+
   private void assertNotOpen() {
     if (isOpen)
       throw new AvroRuntimeException("already open");
@@ -99,11 +131,81 @@ public class DataFileWriter<D> implements Closeable, Flushable {
    */
   public DataFileWriter<D> setCodec(CodecFactory c) {
     assertNotOpen();
+    this.codecFactory = c;
     this.codec = c.createInstance();
     setMetaInternal(DataFileConstants.CODEC, codec.getName());
     return this;
   }
 
+  /**
+   * Configures this writer to compress blocks on the given executor rather than
+   * on the thread calling {@link #append(Object)}. Blocks are still written in
+   * order, each followed by the sync marker. At most <i>maxPendingBlocks</i>
+   * blocks may be waiting to be compressed or written; once that many are
+   * pending, appending waits for the oldest one to be written.
+   * {@linkplain #sync()}, {@linkplain #flush()} and {@linkplain #fSync()} wait
+   * for all pending blocks to be written before returning. If a block fails to
+   * compress, neither it nor any later block is written, and every later append,
+   * sync, flush and close throws an IOException.
+   *
+   * The executor is not shut down when this writer is closed. May not be reset
+   * after writes have begun.
+   *
+   * @param executor         the executor to compress blocks on, or null to
+   *                         compress on the appending thread
+   * @param maxPendingBlocks the maximum number of blocks handed to the executor
+   *                         and not yet written
+   * @return this DataFileWriter
+   */
+  public DataFileWriter<D> setCompressionExecutor(Executor executor, int maxPendingBlocks) {
+    assertNotOpen();
+    if (maxPendingBlocks < 1) {
+      throw new IllegalArgumentException("Invalid maxPendingBlocks value: " + maxPendingBlocks);
+    }
+    this.compressionExecutor = executor;
+    this.maxPendingBlocks = maxPendingBlocks;
+    return this;
+  }
+
+  /**
+   * Configures this writer to record the position and record count of each block
+   * it writes. The index is available from {@link #getBlockIndex()} and can be
+   * stored alongside the file for use by
+   * {@link DataFileReader#seekToRecord(long)}. When appending to an existing
+   * file, its blocks are scanned to seed the index. May not be reset after writes
+   * have begun.
+   */
+  public DataFileWriter<D> setBlockIndexEnabled(boolean blockIndexEnabled) {
+    assertNotOpen();
+    this.blockIndexEnabled = blockIndexEnabled;
+    return this;
+  }
+
+  /**
+   * Configures this writer to record, for each block, the number of null values
+   * and the minimum and maximum values of the named top-level fields. The
+   * statistics are kept in the {@linkplain #getBlockIndex() block index}, which
+   * this enables, and let readers skip blocks with a {@link BlockFilter}. Fields
+   * must be of a primitive, enum or fixed type, or a union of null and one of
+   * these. May not be reset after writes have begun.
+   */
+  public DataFileWriter<D> setBlockStatistics(String... fields) {
+    assertNotOpen();
+    this.statisticsFields = fields.clone();
+    this.blockIndexEnabled = true;
+    return this;
+  }
+
+  /**
+   * Return the index of the blocks written so far, or null if
+   * {@link #setBlockIndexEnabled(boolean)} was not set. Records still buffered
+   * are not included until {@link #sync()}, {@link #flush()} or {@link #close()}
+   * is called.
+   */
+  public DataFileIndex getBlockIndex() {
+    return blockIndex;
+  }
+
   /**
    * Set the synchronization interval for this file, in bytes. Valid values range
    * from 32 to 2^30 Suggested values are between 2K and 2M
@@ -160,6 +262,9 @@ public class DataFileWriter<D> implements Closeable, Flushable {
     }
 
     init(outs);
+    if (blockIndexEnabled) {
+      this.blockIndex = newBlockIndex();
+    }
 
     vout.writeFixed(DataFileConstants.MAGIC); // write magic
 
@@ -224,9 +329,21 @@ public class DataFileWriter<D> implements Closeable, Flushable {
     byte[] codecBytes = this.meta.get(DataFileConstants.CODEC);
     if (codecBytes != null) {
       String strCodec = new String(codecBytes, StandardCharsets.UTF_8);
-      this.codec = CodecFactory.fromString(strCodec).createInstance();
+      this.codecFactory = CodecFactory.fromString(strCodec);
     } else {
-      this.codec = CodecFactory.nullCodec().createInstance();
+      this.codecFactory = CodecFactory.nullCodec();
+    }
+    this.codec = codecFactory.createInstance();
+    if (blockIndexEnabled) {
+      this.blockIndex = newBlockIndex();
+      this.blockIndexBase = in.length();
+      DataBlock block = null;
+      while (reader.hasNextBlock()) {
+        long offset = reader.previousSync();
+        block = reader.nextRawBlock(block);
+        blockIndex.add(offset, block.getNumEntries());
+        reader.blockFinished();
+      }
     }
 
     init(out);
@@ -240,14 +357,29 @@ public class DataFileWriter<D> implements Closeable, Flushable {
     EncoderFactory efactory = new EncoderFactory();
     this.vout = efactory.directBinaryEncoder(out, null);
     dout.setSchema(schema);
-    buffer = new NonCopyingByteArrayOutputStream(Math.min((int) (syncInterval * 1.25), Integer.MAX_VALUE / 2 - 1));
+    buffer = new NonCopyingByteArrayOutputStream(initialBufferSize());
     this.bufOut = efactory.directBinaryEncoder(buffer, null);
     if (this.codec == null) {
-      this.codec = CodecFactory.nullCodec().createInstance();
+      this.codecFactory = CodecFactory.nullCodec();
+      this.codec = codecFactory.createInstance();
     }
     this.isOpen = true;
   }
 
+  private DataFileIndex newBlockIndex() {
+    if (statisticsFields == null) {
+      return new DataFileIndex(sync);
+    }
+    GenericData data = (dout instanceof GenericDatumWriter) ? ((GenericDatumWriter<D>) dout).getData()
+        : GenericData.get();
+    statistics = new BlockStatisticsCollector(schema, statisticsFields, data);
+    return new DataFileIndex(sync, statistics.getFields(), statistics.getSchemas());
+  }
+
+  private int initialBufferSize() {
+    return Math.min((int) (syncInterval * 1.25), Integer.MAX_VALUE / 2 - 1);
+  }
+
   private static byte[] generateSync() {
     try {
       MessageDigest digester = MessageDigest.getInstance("MD5");
@@ -309,6 +441,7 @@ public class DataFileWriter<D> implements Closeable, Flushable {
    */
   public void append(D datum) throws IOException {
     assertOpen();
+    assertNoCompressionFailure();
     int usedBuffer = bufferInUse();
     try {
       dout.write(datum, bufOut);
@@ -317,6 +450,9 @@ public class DataFileWriter<D> implements Closeable, Flushable {
       throw new AppendWriteException(e);
     }
     blockCount++;
+    if (statistics != null) {
+      statistics.add(datum);
+    }
     writeIfBlockFull();
   }
 
@@ -337,8 +473,12 @@ public class DataFileWriter<D> implements Closeable, Flushable {
    */
   public void appendEncoded(ByteBuffer datum) throws IOException {
     assertOpen();
+    assertNoCompressionFailure();
     bufOut.writeFixed(datum);
     blockCount++;
+    if (statistics != null) {
+      statistics.invalidate();
+    }
     writeIfBlockFull();
   }
 
@@ -372,6 +512,7 @@ public class DataFileWriter<D> implements Closeable, Flushable {
    */
   public void appendAllFrom(DataFileStream<D> otherFile, boolean recompress) throws IOException {
     assertOpen();
+    assertNoCompressionFailure();
     // make sure other file has same schema
     Schema otherSchema = otherFile.getSchema();
     if (!this.schema.equals(otherSchema)) {
@@ -379,33 +520,37 @@ public class DataFileWriter<D> implements Closeable, Flushable {
     }
     // flush anything written so far
     writeBlock();
+    writePendingBlocks(0);
     Codec otherCodec = otherFile.resolveCodec();
     DataBlock nextBlockRaw = null;
     if (codec.equals(otherCodec) && !recompress) {
       // copy raw bytes
       while (otherFile.hasNextBlock()) {
         nextBlockRaw = otherFile.nextRawBlock(nextBlockRaw);
-        nextBlockRaw.writeBlockTo(vout, sync);
+        writeBlockTo(nextBlockRaw, null);
       }
     } else {
       while (otherFile.hasNextBlock()) {
         nextBlockRaw = otherFile.nextRawBlock(nextBlockRaw);
         nextBlockRaw.decompressUsing(otherCodec);
         nextBlockRaw.compressUsing(codec);
-        nextBlockRaw.writeBlockTo(vout, sync);
+        writeBlockTo(nextBlockRaw, null);
       }
     }
   }
 
   private void writeBlock() throws IOException {
-    if (blockCount > 0) {
+    if (blockCount > 0 && compressionExecutor != null) {
+      submitBlock();
+    } else if (blockCount > 0) {
       try {
+        DataFileIndex.Stats blockStatistics = finishBlockStatistics();
         bufOut.flush();
         ByteBuffer uncompressed = buffer.asByteBuffer();
         DataBlock block = new DataBlock(uncompressed, blockCount);
         block.setFlushOnWrite(flushOnEveryBlock);
         block.compressUsing(codec);
-        block.writeBlockTo(vout, sync);
+        writeBlockTo(block, blockStatistics);
       } finally {
         buffer.reset();
         blockCount = 0;
@@ -413,6 +558,86 @@ public class DataFileWriter<D> implements Closeable, Flushable {
     }
   }
 
+  // hand the current block to the compression executor and start a new buffer,
+  // since the task keeps the old one until the block is written.
+  private void submitBlock() throws IOException {
+    DataFileIndex.Stats blockStatistics = finishBlockStatistics();
+    bufOut.flush();
+    DataBlock block = new DataBlock(buffer.asByteBuffer(), blockCount);
+    block.setFlushOnWrite(flushOnEveryBlock);
+    FutureTask<DataBlock> task = new FutureTask<>(() -> compress(block));
+    try {
+      compressionExecutor.execute(task);
+    } catch (RejectedExecutionException e) {
+      // a shut down or saturated executor must not lose the block
+      task.run();
+    }
+    pendingBlocks.add(new PendingBlock(task, blockStatistics));
+    buffer = new NonCopyingByteArrayOutputStream(initialBufferSize());
+    bufOut = EncoderFactory.get().directBinaryEncoder(buffer, bufOut);
+    blockCount = 0;
+    writePendingBlocks(maxPendingBlocks);
+  }
+
+  private DataBlock compress(DataBlock block) throws IOException {
+    Codec c = codecPool.poll();
+    if (c == null) {
+      c = codecFactory.createInstance();
+    }
+    try {
+      block.compressUsing(c);
+      return block;
+    } finally {
+      codecPool.offer(c);
+    }
+  }
+
+  // write completed blocks in order, waiting until at most maxPending remain.
+  private void writePendingBlocks(int maxPending) throws IOException {
+    while (!pendingBlocks.isEmpty() && (pendingBlocks.size() > maxPending || pendingBlocks.peek().task.isDone())) {
+      PendingBlock pending = pendingBlocks.poll();
+      DataBlock block;
+      try {
+        block = pending.task.get();
+      } catch (InterruptedException e) {
+        pendingBlocks.addFirst(pending);
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for block compression");
+      } catch (ExecutionException e) {
+        // the block is lost, so writing any later one would silently drop records
+        Throwable cause = e.getCause();
+        compressionFailure = cause;
+        pendingBlocks.clear();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new AvroRuntimeException(cause);
+      }
+      writeBlockTo(block, pending.statistics);
+    }
+  }
+
+  private DataFileIndex.Stats finishBlockStatistics() throws IOException {
+    return statistics == null ? null : statistics.finishBlock();
+  }
+
+  private void writeBlockTo(DataBlock block, DataFileIndex.Stats blockStatistics) throws IOException {
+    if (blockIndex != null) {
+      blockIndex.add(blockIndexBase + out.tell(), block.getNumEntries(), blockStatistics);
+    }
+    block.writeBlockTo(vout, sync);
+  }
+
+  private static final class PendingBlock {
+    private final FutureTask<DataBlock> task;
+    private final DataFileIndex.Stats statistics;
+
+    private PendingBlock(FutureTask<DataBlock> task, DataFileIndex.Stats statistics) {
+      this.task = task;
+      this.statistics = statistics;
+    }
+  }
+
   /**
    * Return the current position as a value that may be passed to
    * {@link DataFileReader#seek(long)}. Forces the end of the current block,
@@ -425,7 +650,9 @@ public class DataFileWriter<D> implements Closeable, Flushable {
    */
   public long sync() throws IOException {
     assertOpen();
+    assertNoCompressionFailure();
     writeBlock();
+    writePendingBlocks(0);
     return out.tell();
   }
 
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.io.DatumReader;
+
+/**
+ * Streaming access to files written by {@link DataFileWriter} that reads blocks
+ * ahead of the caller and decompresses them on an {@link Executor}. Datums are
+ * still decoded on the calling thread and are returned in file order.
+ * <p/>
+ * At most {@code maxBlocksInFlight} blocks are read ahead of the block being
+ * decoded, which bounds memory use to roughly that many uncompressed blocks.
+ * The executor is not owned by this stream and is not shut down by
+ * {@link #close()}.
+ *
+ * @see DataFileStream
+ */
+public class ParallelDataFileStream<D> extends DataFileStream<D> {
+
+  /** The default number of blocks read ahead of the caller. */
+  public static final int DEFAULT_MAX_BLOCKS_IN_FLIGHT = 4;
+
+  private final Executor executor;
+  private final int maxBlocksInFlight;
+  private final ArrayDeque<PendingBlock> pending;
+  /** Codec instances are not thread-safe, so each task borrows its own. */
+  private final Queue<Codec> codecs = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Construct a reader for an input stream that decompresses up to
+   * {@link #DEFAULT_MAX_BLOCKS_IN_FLIGHT} blocks ahead on the given executor.
+   */
+  public ParallelDataFileStream(InputStream in, DatumReader<D> reader, Executor executor) throws IOException {
+    this(in, reader, executor, DEFAULT_MAX_BLOCKS_IN_FLIGHT);
+  }
+
+  /**
+   * Construct a reader for an input stream that decompresses up to
+   * {@code maxBlocksInFlight} blocks ahead on the given executor.
+   */
+  public ParallelDataFileStream(InputStream in, DatumReader<D> reader, Executor executor, int maxBlocksInFlight)
+      throws IOException {
+    super(reader);
+    if (executor == null) {
+      throw new NullPointerException("executor is null");
+    }
+    if (maxBlocksInFlight < 1) {
+      throw new IllegalArgumentException("maxBlocksInFlight must be positive: " + maxBlocksInFlight);
+    }
+    this.executor = executor;
+    this.maxBlocksInFlight = maxBlocksInFlight;
+    this.pending = new ArrayDeque<>(maxBlocksInFlight);
+    initialize(in);
+  }
+
+  /** Return the maximum number of blocks read ahead of the caller. */
+  public int getMaxBlocksInFlight() {
+    return maxBlocksInFlight;
+  }
+
+  @Override
+  DataBlock nextDecompressedBlock(DataBlock reuse) throws IOException {
+    // Raw blocks are handed to other threads, so a fresh buffer is read for each
+    // one and the reuse hint is ignored.
+    while (pending.size() < maxBlocksInFlight && hasNextMatchingBlock()) {
+      final DataBlock raw = nextRawBlock(null);
+      PendingBlock next = new PendingBlock(raw);
+      pending.add(next);
+      executor.execute(next.task);
+    }
+    PendingBlock head = pending.poll();
+    if (head == null) {
+      return null;
+    }
+    DataBlock block = await(head.task);
+    blockRemaining = block.getNumEntries();
+    blockCount = blockRemaining;
+    blockSize = head.compressedSize;
+    return block;
+  }
+
+  private DataBlock decompress(DataBlock raw) throws IOException {
+    Codec c = codecs.poll();
+    if (c == null) {
+      c = resolveCodec();
+    }
+    try {
+      raw.decompressUsing(c);
+      return raw;
+    } finally {
+      codecs.offer(c);
+    }
+  }
+
+  private static DataBlock await(FutureTask<DataBlock> task) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for block");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new AvroRuntimeException(cause);
+    }
+  }
+
+  /** Cancels any blocks still being decompressed and closes the input. */
+  @Override
+  public void close() throws IOException {
+    for (PendingBlock p : pending) {
+      p.task.cancel(false);
+    }
+    pending.clear();
+    super.close();
+  }
+
+  private final class PendingBlock {
+    private final FutureTask<DataBlock> task;
+    private final long compressedSize;
+
+    PendingBlock(DataBlock raw) {
+      this.compressedSize = raw.getBlockSize();
+      this.task = new FutureTask<>(() -> decompress(raw));
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import java.nio.ByteBuffer;
+
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+
+/**
+ * The filter returned by {@link BlockFilter#range(String, Object, Object)}.
+ * Bounds are converted to the representation of the field's schema once per
+ * schema, the first time statistics with that schema are seen.
+ */
+final class RangeFilter implements BlockFilter {
+  private final String field;
+  private final Object min;
+  private final Object max;
+  private volatile Bounds bounds;
+
+  /** Bounds converted for the statistics of one schema. */
+  private static final class Bounds {
+    private final Schema schema;
+    private final Object min;
+    private final Object max;
+
+    Bounds(Schema schema, Object min, Object max) {
+      this.schema = schema;
+      this.min = min;
+      this.max = max;
+    }
+  }
+
+  RangeFilter(String field, Object min, Object max) {
+    this.field = field;
+    this.min = min;
+    this.max = max;
+  }
+
+  @Override
+  public boolean mightMatch(BlockStatistics statistics) {
+    if (!statistics.hasStatistics(field)) {
+      return true;
+    }
+    Object blockMin = statistics.getMin(field);
+    if (blockMin == null) {
+      return false; // only nulls in this block
+    }
+    Bounds b = bounds(statistics.getSchema(field));
+    GenericData data = GenericData.get();
+    return (b.max == null || data.compare(blockMin, b.max, b.schema) <= 0)
+        && (b.min == null || data.compare(statistics.getMax(field), b.min, b.schema) >= 0);
+  }
+
+  private Bounds bounds(Schema schema) {
+    Bounds b = bounds;
+    if (b == null || b.schema != schema) {
+      // racing threads convert to equal bounds, so either may be kept
+      b = new Bounds(schema, convert(schema, min), convert(schema, max));
+      bounds = b;
+    }
+    return b;
+  }
+
+  /** Convert a bound to a value of a schema, or throw if it is not one. */
+  private Object convert(Schema schema, Object bound) {
+    if (bound == null) {
+      return null;
+    }
+    Object value = bound;
+    if (bound instanceof Number) {
+      value = convertNumber(schema.getType(), (Number) bound);
+    } else if (bound instanceof CharSequence && schema.getType() == Schema.Type.ENUM
+        && schema.hasEnumSymbol(bound.toString())) {
+      value = new GenericData.EnumSymbol(schema, bound.toString());
+    } else if (bound instanceof byte[]) {
+      if (schema.getType() == Schema.Type.BYTES) {
+        value = ByteBuffer.wrap((byte[]) bound);
+      } else if (schema.getType() == Schema.Type.FIXED && ((byte[]) bound).length == schema.getFixedSize()) {
+        value = new GenericData.Fixed(schema, (byte[]) bound);
+      }
+    }
+    if (value == null || !GenericData.get().validate(schema, value)) {
+      throw new AvroTypeException("Bound " + bound + " of " + bound.getClass().getName()
+          + " is not a value of field " + field + ": " + schema);
+    }
+    return value;
+  }
+
+  /** Return the number as the given type, or null if it cannot be exactly. */
+  private static Object convertNumber(Schema.Type type, Number n) {
+    boolean integral = n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+    boolean floating = n instanceof Double || n instanceof Float;
+    if (!integral && !floating) {
+      return n; // left to validation
+    }
+    long l = n.longValue();
+    double d = n.doubleValue();
+    switch (type) {
+    case INT:
+      if (integral ? l == (int) l : d == Math.rint(d) && d >= Integer.MIN_VALUE && d <= Integer.MAX_VALUE) {
+        return (int) l;
+      }
+      return null;
+    case LONG:
+      if (integral || (d == Math.rint(d) && d >= -0x1p63 && d < 0x1p63)) {
+        return l;
+      }
+      return null;
+    case FLOAT:
+      float f = n.floatValue();
+      if (integral ? f < 0x1p63 && (long) f == l : f == d || Double.isNaN(d)) {
+        return f;
+      }
+      return null;
+    case DOUBLE:
+      if (!integral || (d < 0x1p63 && (long) d == l)) {
+        return d;
+      }
+      return null;
+    default:
+      return n; // left to validation
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link SeekableInput} over a memory-mapped file. Reads are served from the
+ * mapped region, avoiding a read() system call per buffer fill. Bytes are still
+ * copied into the caller's buffer as with any other input. Files larger than
+ * 2GB are mapped as a sequence of segments.
+ * <p/>
+ * The file is mapped read-only and must not be truncated while mapped. The
+ * mapping is released by the garbage collector once this input has been closed
+ * and is no longer referenced.
+ */
+public class SeekableMappedFileInput implements SeekableInput {
+
+  /** The default size of each mapped segment, 1GB. */
+  public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+  private final long length;
+  private final int segmentSize;
+  private MappedByteBuffer[] segments;
+  private long position;
+
+  public SeekableMappedFileInput(File file) throws IOException {
+    this(file, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Map a file using segments of at most <i>segmentSize</i> bytes.
+   */
+  public SeekableMappedFileInput(File file, int segmentSize) throws IOException {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("Invalid segmentSize: " + segmentSize);
+    }
+    this.segmentSize = segmentSize;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      this.length = channel.size();
+      int count = (int) ((length + segmentSize - 1) / segmentSize);
+      this.segments = new MappedByteBuffer[count];
+      for (int i = 0; i < count; i++) {
+        long start = (long) i * segmentSize;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, length - start));
+      }
+    }
+  }
+
+  @Override
+  public void seek(long p) throws IOException {
+    ensureOpen();
+    if (p < 0 || p > length) {
+      throw new IOException("Illegal seek: " + p);
+    }
+    position = p;
+  }
+
+  @Override
+  public long tell() throws IOException {
+    return position;
+  }
+
+  @Override
+  public long length() throws IOException {
+    return length;
+  }
+
+  /**
+   * Read up to <i>len</i> bytes from the current position. A single call never
+   * reads across a segment boundary, so fewer bytes than requested may be
+   * returned before the end of the file.
+   */
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    if (len == 0) {
+      return 0;
+    }
+    if (position >= length) {
+      return -1;
+    }
+    ByteBuffer segment = segment(position);
+    int n = Math.min(len, segment.remaining());
+    segment.get(b, off, n);
+    position += n;
+    return n;
+  }
+
+  private ByteBuffer segment(long p) {
+    // duplicate so concurrent views do not share a position
+    ByteBuffer segment = segments[(int) (p / segmentSize)].duplicate();
+    ((Buffer) segment).position((int) (p % segmentSize));
+    return segment;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (segments == null) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    segments = null;
+  }
+}
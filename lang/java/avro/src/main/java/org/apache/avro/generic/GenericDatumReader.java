@@ -35,10 +35,12 @@ import org.apache.avro.Schema.Field;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.ResolverCache;
 import org.apache.avro.io.ResolvingDecoder;
+import org.apache.avro.util.ObjectPool;
+import org.apache.avro.util.PoolingStrategy;
 import org.apache.avro.util.Utf8;
 import org.apache.avro.util.WeakIdentityHashMap;
-import org.apache.avro.util.internal.ThreadLocalWithInitial;
 
 /** {@link DatumReader} for generic Java objects. */
 public class GenericDatumReader<D> implements DatumReader<D> {
@@ -106,25 +108,48 @@ public class GenericDatumReader<D> implements DatumReader<D> {
     creatorResolver = null;
   }
 
-  private static final ThreadLocal<Map<Schema, Map<Schema, ResolvingDecoder>>> RESOLVER_CACHE = ThreadLocalWithInitial
-      .of(WeakIdentityHashMap::new);
+  private static final ObjectPool<Map<Schema, Map<Schema, ResolvingDecoder>>> RESOLVER_CACHE = PoolingStrategy.get()
+      .newPool(WeakIdentityHashMap::new);
 
   /**
    * Gets a resolving decoder for use by this GenericDatumReader. Unstable API.
-   * Currently uses a thread local cache to prevent constructing the resolvers too
-   * often, because that is very expensive.
+   * Each thread reuses one decoder per schema pair, unless the
+   * {@link PoolingStrategy} shares pooled caches between threads; then threads
+   * other than the one that created this reader get a new decoder on each call,
+   * since the caller keeps using it after the pooled cache is returned. Either
+   * way the expensive resolving grammar is shared between threads through
+   * {@link ResolverCache}.
    */
   protected final ResolvingDecoder getResolver(Schema actual, Schema expected) throws IOException {
+    Map<Schema, Map<Schema, ResolvingDecoder>> resolvers = RESOLVER_CACHE.acquire();
+    try {
+      ResolvingDecoder resolver = getResolver(actual, expected, resolvers);
+      if (!RESOLVER_CACHE.isThreadConfined()) {
+        // the caller keeps using the resolver, so whoever acquires the cache next
+        // must not find it
+        Map<Schema, ResolvingDecoder> cache = resolvers.get(actual);
+        if (cache != null && cache.get(expected) == resolver) {
+          cache.remove(expected);
+        }
+      }
+      return resolver;
+    } finally {
+      RESOLVER_CACHE.release(resolvers);
+    }
+  }
+
+  private ResolvingDecoder getResolver(Schema actual, Schema expected,
+      Map<Schema, Map<Schema, ResolvingDecoder>> resolvers) throws IOException {
     Thread currThread = Thread.currentThread();
     ResolvingDecoder resolver;
     if (currThread == creator && creatorResolver != null) {
       return creatorResolver;
     }
 
-    Map<Schema, ResolvingDecoder> cache = RESOLVER_CACHE.get().get(actual);
+    Map<Schema, ResolvingDecoder> cache = resolvers.get(actual);
     if (cache == null) {
       cache = new WeakIdentityHashMap<>();
-      RESOLVER_CACHE.get().put(actual, cache);
+      resolvers.put(actual, cache);
     }
     resolver = cache.get(expected);
     if (resolver == null) {
@@ -133,6 +158,8 @@ public class GenericDatumReader<D> implements DatumReader<D> {
     }
 
     if (currThread == creator) {
+      // pooled caches may move between threads, so the creator keeps its own
+      cache.remove(expected);
       creatorResolver = resolver;
     }
 
@@ -149,7 +176,19 @@ public class GenericDatumReader<D> implements DatumReader<D> {
       return fastDatumReader.read(reuse, in);
     }
 
-    ResolvingDecoder resolver = getResolver(actual, expected);
+    if (Thread.currentThread() == creator && creatorResolver != null) {
+      return readResolved(reuse, creatorResolver, in);
+    }
+    Map<Schema, Map<Schema, ResolvingDecoder>> resolvers = RESOLVER_CACHE.acquire();
+    try {
+      return readResolved(reuse, getResolver(actual, expected, resolvers), in);
+    } finally {
+      RESOLVER_CACHE.release(resolvers);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private D readResolved(D reuse, ResolvingDecoder resolver, Decoder in) throws IOException {
     resolver.configure(in);
     D result = (D) read(reuse, expected, resolver);
     resolver.drain();
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.generic;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.util.ObjectPool;
+import org.apache.avro.util.PoolingStrategy;
+import org.apache.avro.util.WeakIdentityHashMap;
+
+/**
+ * A record that keeps its binary encoding and decodes each field only when it
+ * is first accessed. Reading a few fields of a wide record skips over the
+ * others instead of materializing them, which makes routing and projection much
+ * cheaper than decoding a {@link GenericData.Record}.
+ * <p/>
+ * The offsets of leading fixed-size fields are computed once per schema; the
+ * offsets of the remaining fields are found by skipping forward to the first
+ * field accessed and are remembered by the record. Decoded values are cached,
+ * and {@link #put(int, Object)} replaces a value without re-encoding.
+ * <p/>
+ * The bytes must have been written with the record's schema, and are not
+ * copied, so must not be modified while the record is in use. Like
+ * {@link GenericData.Record}, instances are not thread-safe.
+ */
+public class LazyRecord implements GenericRecord, Comparable<LazyRecord> {
+  private static final Object UNREAD = new Object();
+
+  private static final Map<GenericData, Map<Schema, Layout>> LAYOUTS = Collections
+      .synchronizedMap(new WeakIdentityHashMap<>());
+
+  // readers are not thread-safe, so each caller borrows its own
+  private static final ObjectPool<Map<Layout, DatumReader<?>[]>> READERS = PoolingStrategy.get()
+      .newPool(WeakIdentityHashMap::new);
+
+  private final Schema schema;
+  private final GenericData data;
+  private final Layout layout;
+  private final byte[] bytes;
+  private final int end;
+  private final Object[] values;
+  // offsets[i] is the start of field i in bytes, known up to offsets[known]
+  private final int[] offsets;
+  private int known;
+  private BinaryDecoder decoder;
+
+  /** Create a record over the binary encoding of a datum of <i>schema</i>. */
+  public LazyRecord(Schema schema, byte[] bytes) {
+    this(schema, bytes, 0, bytes.length, GenericData.get());
+  }
+
+  public LazyRecord(Schema schema, byte[] bytes, int offset, int length) {
+    this(schema, bytes, offset, length, GenericData.get());
+  }
+
+  /**
+   * Create a record over <i>length</i> bytes of an array starting at
+   * <i>offset</i>, holding the binary encoding of a datum of <i>schema</i>.
+   * Fields are decoded with readers created by <i>data</i>.
+   */
+  public LazyRecord(Schema schema, byte[] bytes, int offset, int length, GenericData data) {
+    if (schema == null || !Schema.Type.RECORD.equals(schema.getType()))
+      throw new AvroRuntimeException("Not a record schema: " + schema);
+    if (offset < 0 || length < 0 || offset + length > bytes.length)
+      throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array " + bytes.length);
+    this.schema = schema;
+    this.data = data;
+    this.layout = LAYOUTS.computeIfAbsent(data, d -> Collections.synchronizedMap(new WeakIdentityHashMap<>()))
+        .computeIfAbsent(schema, s -> new Layout(s, data));
+    this.bytes = bytes;
+    this.end = offset + length;
+    int fieldCount = layout.fields.size();
+    this.values = new Object[fieldCount];
+    Arrays.fill(values, UNREAD);
+    this.offsets = new int[fieldCount + 1];
+    int[] fixedOffsets = layout.fixedOffsets;
+    for (int i = 0; i < fixedOffsets.length; i++) {
+      offsets[i] = offset + fixedOffsets[i];
+    }
+    this.known = fixedOffsets.length - 1;
+  }
+
+  @Override
+  public Schema getSchema() {
+    return schema;
+  }
+
+  @Override
+  public void put(String key, Object value) {
+    Field field = schema.getField(key);
+    if (field == null) {
+      throw new AvroRuntimeException("Not a valid schema field: " + key);
+    }
+    values[field.pos()] = value;
+  }
+
+  @Override
+  public void put(int i, Object v) {
+    values[i] = v;
+  }
+
+  @Override
+  public Object get(String key) {
+    Field field = schema.getField(key);
+    if (field == null) {
+      throw new AvroRuntimeException("Not a valid schema field: " + key);
+    }
+    return get(field.pos());
+  }
+
+  @Override
+  public Object get(int i) {
+    Object value = values[i];
+    if (value == UNREAD) {
+      value = decode(i);
+      values[i] = value;
+    }
+    return value;
+  }
+
+  /** Return true if field <i>i</i> has been decoded or set. */
+  public boolean isDecoded(int i) {
+    return values[i] != UNREAD;
+  }
+
+  private Object decode(int i) {
+    Map<Layout, DatumReader<?>[]> readers = READERS.acquire();
+    try {
+      BinaryDecoder in = seek(i);
+      Object value = layout.reader(readers, i).read(null, in);
+      if (known == i) {
+        offsets[++known] = position(in);
+      }
+      return value;
+    } catch (IOException e) {
+      throw new AvroRuntimeException("Malformed data for field " + layout.fields.get(i).name(), e);
+    } finally {
+      READERS.release(readers);
+    }
+  }
+
+  /** Return a decoder positioned at the start of field <i>i</i>. */
+  private BinaryDecoder seek(int i) throws IOException {
+    if (known >= i) {
+      return decoder = DecoderFactory.get().binaryDecoder(bytes, offsets[i], end - offsets[i], decoder);
+    }
+    BinaryDecoder in = DecoderFactory.get().binaryDecoder(bytes, offsets[known], end - offsets[known], decoder);
+    List<Field> fields = layout.fields;
+    while (known < i) {
+      GenericDatumReader.skip(fields.get(known).schema(), in);
+      offsets[++known] = position(in);
+    }
+    return decoder = in;
+  }
+
+  private int position(BinaryDecoder in) throws IOException {
+    return end - in.inputStream().available();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this)
+      return true; // identical object
+    if (!(o instanceof LazyRecord))
+      return false; // not a record
+    LazyRecord that = (LazyRecord) o;
+    if (!this.schema.equals(that.schema))
+      return false; // not the same schema
+    return data.compare(this, that, schema, true) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return data.hashCode(this, schema);
+  }
+
+  @Override
+  public int compareTo(LazyRecord that) {
+    return data.compare(this, that, schema);
+  }
+
+  @Override
+  public String toString() {
+    return data.toString(this);
+  }
+
+  /** What is shared by the records of a schema. Instances are immutable. */
+  private static class Layout {
+    private final List<Field> fields;
+    private final GenericData data;
+    // offsets of the leading fields whose encoding has a fixed size
+    private final int[] fixedOffsets;
+
+    Layout(Schema schema, GenericData data) {
+      this.fields = schema.getFields();
+      this.data = data;
+      int count = 0;
+      while (count < fields.size() && fixedSize(fields.get(count).schema()) >= 0) {
+        count++;
+      }
+      this.fixedOffsets = new int[count + 1];
+      for (int i = 0; i < count; i++) {
+        fixedOffsets[i + 1] = fixedOffsets[i] + fixedSize(fields.get(i).schema());
+      }
+    }
+
+    /** Return the reader of field <i>i</i> from a pooled set of readers. */
+    DatumReader<?> reader(Map<Layout, DatumReader<?>[]> pooled, int i) {
+      DatumReader<?>[] readers = pooled.get(this);
+      if (readers == null) {
+        readers = new DatumReader<?>[fields.size()];
+        pooled.put(this, readers);
+      }
+      DatumReader<?> reader = readers[i];
+      if (reader == null) {
+        reader = data.createDatumReader(fields.get(i).schema());
+        readers[i] = reader;
+      }
+      return reader;
+    }
+
+    /** Return the size of the encoding of a schema, or -1 if it varies. */
+    private static int fixedSize(Schema schema) {
+      switch (schema.getType()) {
+      case NULL:
+        return 0;
+      case BOOLEAN:
+        return 1;
+      case FLOAT:
+        return 4;
+      case DOUBLE:
+        return 8;
+      case FIXED:
+        return schema.getFixedSize();
+      default:
+        return -1;
+      }
+    }
+  }
+}
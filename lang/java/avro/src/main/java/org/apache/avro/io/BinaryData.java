@@ -23,7 +23,8 @@ import org.apache.avro.Schema;
 import org.apache.avro.Schema.Field;
 import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.util.internal.ThreadLocalWithInitial;
+import org.apache.avro.util.ObjectPool;
+import org.apache.avro.util.PoolingStrategy;
 
 /** Utilities for binary-encoded data. */
 public class BinaryData {
@@ -50,7 +51,7 @@ public class BinaryData {
     }
   } // no public ctor
 
-  private static final ThreadLocal<Decoders> DECODERS = ThreadLocalWithInitial.of(Decoders::new);
+  private static final ObjectPool<Decoders> DECODERS = PoolingStrategy.get().newPool(Decoders::new);
 
   /**
    * Compare binary encoded data. If equal, return zero. If greater-than, return
@@ -67,7 +68,7 @@ public class BinaryData {
    * {@link org.apache.avro.generic.GenericData#compare(Object, Object, Schema)}.
    */
   public static int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2, Schema schema) {
-    Decoders decoders = DECODERS.get();
+    Decoders decoders = DECODERS.acquire();
     decoders.set(b1, s1, l1, b2, s2, l2);
     try {
       return compare(decoders, schema);
@@ -75,6 +76,7 @@ public class BinaryData {
       throw new AvroRuntimeException(e);
     } finally {
       decoders.clear();
+      DECODERS.release(decoders);
     }
   }
 
@@ -205,19 +207,21 @@ public class BinaryData {
     }
   }
 
-  private static final ThreadLocal<HashData> HASH_DATA = ThreadLocalWithInitial.of(HashData::new);
+  private static final ObjectPool<HashData> HASH_DATA = PoolingStrategy.get().newPool(HashData::new);
 
   /**
    * Hash binary encoded data. Consistent with
    * {@link org.apache.avro.generic.GenericData#hashCode(Object, Schema)}.
    */
   public static int hashCode(byte[] bytes, int start, int length, Schema schema) {
-    HashData data = HASH_DATA.get();
+    HashData data = HASH_DATA.acquire();
     data.set(bytes, start, length);
     try {
       return hashCode(data, schema);
     } catch (IOException e) {
       throw new AvroRuntimeException(e);
+    } finally {
+      HASH_DATA.release(data);
     }
   }
 
@@ -27,6 +27,7 @@ import java.util.Arrays;
 import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.InvalidNumberEncodingException;
 import org.apache.avro.util.Utf8;
+import org.apache.avro.util.Utf8View;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -132,6 +133,14 @@ public class BinaryDecoder extends Decoder {
     return this;
   }
 
+  BinaryDecoder configure(ByteBuffer data, int bufferSize) {
+    if (data.hasArray() && !data.isReadOnly()) {
+      return configure(data.array(), data.arrayOffset() + data.position(), data.remaining());
+    }
+    configureSource(bufferSize, new ByteBufferByteSource(data.duplicate()));
+    return this;
+  }
+
   /**
    * Initializes this decoder with a new ByteSource. Detaches the old source (if
    * it exists) from this Decoder. The old source's state no longer depends on
@@ -317,6 +326,39 @@ public class BinaryDecoder extends Decoder {
 
   private final Utf8 scratchUtf8 = new Utf8();
 
+  /**
+   * Reads a string like {@link #readString(Utf8)}, but returns a view of the
+   * decoder's buffer instead of a copy when the whole string is buffered, which
+   * is always the case when reading from an array such as a data file block.
+   * Otherwise the view holds a copy in a scratch buffer of this decoder.
+   * <p/>
+   * Either way the view is only valid until the next read from this decoder, or
+   * until the source array is modified. Use {@link Utf8View#toUtf8()} to keep the
+   * value.
+   *
+   * @param old the view to reuse, or null to create one
+   */
+  public Utf8View readStringView(Utf8View old) throws IOException {
+    long length = readLong();
+    if (length > MAX_ARRAY_SIZE) {
+      throw new UnsupportedOperationException("Cannot read strings longer than " + MAX_ARRAY_SIZE + " bytes");
+    }
+    if (length < 0L) {
+      throw new AvroRuntimeException("Malformed data. Length is negative: " + length);
+    }
+    Utf8View result = (old != null ? old : new Utf8View());
+    int len = (int) length;
+    if (buf != null && len <= limit - pos) {
+      result.set(buf, pos, len);
+      pos += len;
+    } else {
+      scratchUtf8.setByteLength(len);
+      doReadBytes(scratchUtf8.getBytes(), 0, len);
+      result.set(scratchUtf8.getBytes(), 0, len);
+    }
+    return result;
+  }
+
   @Override
   public String readString() throws IOException {
     return readString(scratchUtf8).toString();
@@ -351,6 +393,33 @@ public class BinaryDecoder extends Decoder {
     return result;
   }
 
+  /**
+   * Reads a bytes value like {@link #readBytes(ByteBuffer)}, but returns a
+   * read-only view of the source data instead of a copy when the decoder reads
+   * from a byte array or a {@link ByteBuffer}. The view is only valid while the
+   * source data is not modified. Other sources return a new buffer holding a
+   * copy.
+   */
+  public ByteBuffer readBytesSlice() throws IOException {
+    int length = readInt();
+    if (length > MAX_ARRAY_SIZE) {
+      throw new UnsupportedOperationException("Cannot read arrays longer than " + MAX_ARRAY_SIZE + " bytes");
+    }
+    if (length > maxBytesLength) {
+      throw new AvroRuntimeException("Bytes length " + length + " exceeds maximum allowed");
+    }
+    if (length < 0L) {
+      throw new AvroRuntimeException("Malformed data. Length is negative: " + length);
+    }
+    ByteBuffer slice = source.trySlice(length);
+    if (slice != null) {
+      return slice;
+    }
+    ByteBuffer result = ByteBuffer.allocate(length);
+    doReadBytes(result.array(), 0, length);
+    return result;
+  }
+
   @Override
   public void skipBytes() throws IOException {
     doSkipBytes(readLong());
@@ -732,6 +801,15 @@ public class BinaryDecoder extends Decoder {
      **/
     protected abstract int tryReadRaw(byte[] data, int off, int len) throws IOException;
 
+    /**
+     * Attempts to return a read-only view of the next <i>length</i> bytes,
+     * including any bytes buffered in the decoder, and advances past them. Returns
+     * null without consuming anything if this source cannot provide a view.
+     */
+    protected ByteBuffer trySlice(int length) throws IOException {
+      return null;
+    }
+
     /**
      * If this source buffers, compacts the buffer by placing the <i>remaining</i>
      * bytes starting at <i>pos</i> at <i>minPos</i>. This may be done in the
@@ -1019,6 +1097,17 @@ public class BinaryDecoder extends Decoder {
       }
     }
 
+    @Override
+    protected ByteBuffer trySlice(int length) throws IOException {
+      int pos = ba.getPos();
+      if (compacted || length > ba.getLim() - pos) {
+        return null;
+      }
+      ByteBuffer slice = ByteBuffer.wrap(ba.getBuf(), pos, length).slice().asReadOnlyBuffer();
+      ba.setPos(pos + length);
+      return slice;
+    }
+
     @Override
     public int read() throws IOException {
       max = ba.getLim();
@@ -1043,4 +1132,84 @@ public class BinaryDecoder extends Decoder {
       return (remaining == 0);
     }
   }
+
+  /**
+   * A byte source over a {@link ByteBuffer} that has no accessible array, such as
+   * a direct or memory-mapped buffer. Bytes are bulk-copied into the decoder's
+   * buffer; large reads copy straight into the destination and skips only move
+   * the buffer's position.
+   */
+  private static class ByteBufferByteSource extends ByteSource {
+    private final ByteBuffer data;
+
+    private ByteBufferByteSource(ByteBuffer data) {
+      super();
+      this.data = data;
+    }
+
+    @Override
+    protected void skipSourceBytes(long length) throws IOException {
+      if (trySkipBytes(length) < length) {
+        throw new EOFException();
+      }
+    }
+
+    @Override
+    protected long trySkipBytes(long length) throws IOException {
+      int n = (int) Math.min(length, data.remaining());
+      ((Buffer) data).position(data.position() + n);
+      return n;
+    }
+
+    @Override
+    protected void readRaw(byte[] bytes, int off, int len) throws IOException {
+      if (tryReadRaw(bytes, off, len) < len) {
+        throw new EOFException();
+      }
+    }
+
+    @Override
+    protected int tryReadRaw(byte[] bytes, int off, int len) throws IOException {
+      int n = Math.min(len, data.remaining());
+      data.get(bytes, off, n);
+      return n;
+    }
+
+    @Override
+    protected ByteBuffer trySlice(int length) throws IOException {
+      // the bytes buffered in the decoder are the ones just before data.position()
+      int buffered = ba.getLim() - ba.getPos();
+      int start = data.position() - buffered;
+      if (length > data.limit() - start) {
+        return null;
+      }
+      ByteBuffer slice = data.duplicate();
+      ((Buffer) slice).position(start);
+      ((Buffer) slice).limit(start + length);
+      if (length <= buffered) {
+        ba.setPos(ba.getPos() + length);
+      } else {
+        ba.setPos(ba.getLim());
+        ((Buffer) data).position(start + length);
+      }
+      return slice.slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (ba.getLim() - ba.getPos() == 0) {
+        return data.hasRemaining() ? data.get() & 0xff : -1;
+      } else {
+        int position = ba.getPos();
+        int result = ba.getBuf()[position] & 0xff;
+        ba.setPos(position + 1);
+        return result;
+      }
+    }
+
+    @Override
+    public boolean isEof() {
+      return !data.hasRemaining();
+    }
+  }
 }
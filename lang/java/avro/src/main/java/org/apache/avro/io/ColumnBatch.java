@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import org.apache.avro.Schema;
+
+/**
+ * A batch of records decoded by a {@link ColumnarReader}, held as one
+ * {@link ColumnVector} per field of the reader's schema. A batch is reused by
+ * calling {@link #reset()}, after which decoding allocates no further memory
+ * unless the batch grows.
+ */
+public class ColumnBatch {
+  private final Schema schema;
+  final ColumnVector[] columns;
+  private int size;
+
+  ColumnBatch(Schema schema, ColumnVector[] columns) {
+    this.schema = schema;
+    this.columns = columns;
+  }
+
+  /** Return the reader's schema of the records in this batch. */
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /** Return the number of rows in this batch. */
+  public int size() {
+    return size;
+  }
+
+  /** Return the column of the field at a position in the reader's schema. */
+  public ColumnVector getColumn(int pos) {
+    return columns[pos];
+  }
+
+  /** Return the column of a field, or null if the schema has no such field. */
+  public ColumnVector getColumn(String name) {
+    Schema.Field field = schema.getField(name);
+    return field == null ? null : columns[field.pos()];
+  }
+
+  /** Remove all rows, keeping the allocated arrays. */
+  public void reset() {
+    size = 0;
+    for (ColumnVector column : columns) {
+      column.reset();
+    }
+  }
+
+  void ensureCapacity(int rows) {
+    for (ColumnVector column : columns) {
+      column.ensureCapacity(rows);
+    }
+  }
+
+  void setSize(int size) {
+    this.size = size;
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.avro.Schema;
+
+/**
+ * The values of one field for the rows of a {@link ColumnBatch}, held in a
+ * primitive array with a bitmap of null rows. The subclass depends on the
+ * field's type, ignoring a union with null:
+ * <ul>
+ * <li>{@link Booleans} for booleans;</li>
+ * <li>{@link Ints} for ints, and for enums as the ordinal of the reader's
+ * symbol;</li>
+ * <li>{@link Longs}, {@link Floats} and {@link Doubles} for those types;</li>
+ * <li>{@link Bytes} for strings, bytes and fixed, as offsets into a shared byte
+ * array.</li>
+ * </ul>
+ * Logical type conversions are not applied. The backing arrays are exposed for
+ * fast access and are valid up to {@link ColumnBatch#size()}; they are reused
+ * after {@link ColumnBatch#reset()}.
+ */
+public abstract class ColumnVector {
+  private final Schema schema;
+  private long[] nulls = new long[0];
+  private boolean hasNulls;
+  int capacity;
+
+  ColumnVector(Schema schema) {
+    this.schema = schema;
+  }
+
+  /** Return the schema of the values, without any union with null. */
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /** Return true if the value in a row is null. */
+  public boolean isNull(int row) {
+    return hasNulls && (nulls[row >>> 6] & (1L << row)) != 0;
+  }
+
+  /** Return true if any row is null. */
+  public boolean hasNulls() {
+    return hasNulls;
+  }
+
+  void setNull(int row) {
+    nulls[row >>> 6] |= 1L << row;
+    hasNulls = true;
+  }
+
+  void ensureCapacity(int rows) {
+    if (rows > capacity) {
+      int newCapacity = Math.max(rows, capacity * 2);
+      nulls = Arrays.copyOf(nulls, (newCapacity + 63) >>> 6);
+      grow(newCapacity);
+      capacity = newCapacity;
+    }
+  }
+
+  abstract void grow(int newCapacity);
+
+  void reset() {
+    if (hasNulls) {
+      Arrays.fill(nulls, 0L);
+      hasNulls = false;
+    }
+  }
+
+  /** Boolean values. */
+  public static final class Booleans extends ColumnVector {
+    boolean[] values = new boolean[0];
+
+    Booleans(Schema schema) {
+      super(schema);
+    }
+
+    public boolean get(int row) {
+      return values[row];
+    }
+
+    /** Return the backing array. */
+    public boolean[] values() {
+      return values;
+    }
+
+    @Override
+    void grow(int newCapacity) {
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  /** Int values, or enum ordinals. */
+  public static final class Ints extends ColumnVector {
+    int[] values = new int[0];
+
+    Ints(Schema schema) {
+      super(schema);
+    }
+
+    public int get(int row) {
+      return values[row];
+    }
+
+    /** Return the backing array. */
+    public int[] values() {
+      return values;
+    }
+
+    @Override
+    void grow(int newCapacity) {
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  /** Long values. */
+  public static final class Longs extends ColumnVector {
+    long[] values = new long[0];
+
+    Longs(Schema schema) {
+      super(schema);
+    }
+
+    public long get(int row) {
+      return values[row];
+    }
+
+    /** Return the backing array. */
+    public long[] values() {
+      return values;
+    }
+
+    @Override
+    void grow(int newCapacity) {
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  /** Float values. */
+  public static final class Floats extends ColumnVector {
+    float[] values = new float[0];
+
+    Floats(Schema schema) {
+      super(schema);
+    }
+
+    public float get(int row) {
+      return values[row];
+    }
+
+    /** Return the backing array. */
+    public float[] values() {
+      return values;
+    }
+
+    @Override
+    void grow(int newCapacity) {
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  /** Double values. */
+  public static final class Doubles extends ColumnVector {
+    double[] values = new double[0];
+
+    Doubles(Schema schema) {
+      super(schema);
+    }
+
+    public double get(int row) {
+      return values[row];
+    }
+
+    /** Return the backing array. */
+    public double[] values() {
+      return values;
+    }
+
+    @Override
+    void grow(int newCapacity) {
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  /**
+   * String, bytes or fixed values. The value of row <i>i</i> is held in
+   * {@link #data()} from {@code offsets()[i]} to {@code offsets()[i + 1]}; null
+   * rows are empty. Rows must be written in order.
+   */
+  public static final class Bytes extends ColumnVector {
+    int[] offsets = new int[1];
+    byte[] data = new byte[0];
+
+    Bytes(Schema schema) {
+      super(schema);
+    }
+
+    /** Return the offsets of the values, one more than the number of rows. */
+    public int[] offsets() {
+      return offsets;
+    }
+
+    /** Return the bytes of all values. */
+    public byte[] data() {
+      return data;
+    }
+
+    public int getOffset(int row) {
+      return offsets[row];
+    }
+
+    public int getLength(int row) {
+      return offsets[row + 1] - offsets[row];
+    }
+
+    /** Return a copy of the value in a row. */
+    public byte[] getBytes(int row) {
+      return Arrays.copyOfRange(data, offsets[row], offsets[row + 1]);
+    }
+
+    /** Return the value in a row decoded as UTF-8. */
+    public String getString(int row) {
+      return new String(data, offsets[row], getLength(row), StandardCharsets.UTF_8);
+    }
+
+    void set(int row, byte[] bytes, int start, int length) {
+      int offset = reserve(row, length);
+      System.arraycopy(bytes, start, data, offset, length);
+    }
+
+    void setFixed(int row, Decoder in, int length) throws IOException {
+      int offset = reserve(row, length);
+      in.readFixed(data, offset, length);
+    }
+
+    private int reserve(int row, int length) {
+      int offset = offsets[row];
+      int end = offset + length;
+      if (end > data.length) {
+        data = Arrays.copyOf(data, Math.max(end, data.length * 2));
+      }
+      offsets[row + 1] = end;
+      return offset;
+    }
+
+    @Override
+    void setNull(int row) {
+      super.setNull(row);
+      offsets[row + 1] = offsets[row];
+    }
+
+    @Override
+    void grow(int newCapacity) {
+      offsets = Arrays.copyOf(offsets, newCapacity + 1);
+    }
+  }
+}
@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Resolver;
+import org.apache.avro.Resolver.Action;
+import org.apache.avro.Resolver.EnumAdjust;
+import org.apache.avro.Resolver.ReaderUnion;
+import org.apache.avro.Resolver.RecordAdjust;
+import org.apache.avro.Resolver.WriterUnion;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.util.Utf8;
+import org.apache.avro.util.Utf8View;
+
+/**
+ * Decodes records into a {@link ColumnBatch} of primitive arrays instead of one
+ * object per record. The reader's schema must be a record whose fields are
+ * primitives, enums or fixed, optionally in a union with null; the writer's
+ * schema is resolved against it with {@link Resolver}, so skipped fields,
+ * promotions, defaults and enum and union resolution work as for
+ * {@link GenericDatumReader}.
+ * <p/>
+ * Instances keep scratch buffers and are not thread-safe.
+ *
+ * @see org.apache.avro.file.DataFileStream#nextBatch(ColumnarReader,
+ *      ColumnBatch, int)
+ */
+public class ColumnarReader {
+  private final Schema writer;
+  private final Schema reader;
+  private final Step[] steps;
+  private final Utf8 scratchString = new Utf8();
+  private final Utf8View scratchView = new Utf8View();
+  private ByteBuffer scratchBytes;
+
+  public ColumnarReader(Schema writer, Schema reader) {
+    this(writer, reader, GenericData.get());
+  }
+
+  /**
+   * Construct a reader for data written with <i>writer</i>, producing columns for
+   * the fields of <i>reader</i>. The data model supplies default values.
+   */
+  public ColumnarReader(Schema writer, Schema reader, GenericData data) {
+    if (reader.getType() != Schema.Type.RECORD) {
+      throw new IllegalArgumentException("Reader schema is not a record: " + reader);
+    }
+    for (Field field : reader.getFields()) {
+      columnType(field);
+    }
+    this.writer = writer;
+    this.reader = reader;
+    Action action = Resolver.resolve(Schema.applyAliases(writer, reader), reader, data);
+    if (!(action instanceof RecordAdjust)) {
+      throw new AvroTypeException(action.toString());
+    }
+    RecordAdjust record = (RecordAdjust) action;
+
+    List<Step> steps = new ArrayList<>();
+    int readerField = 0;
+    for (Action fieldAction : record.fieldActions) {
+      if (fieldAction.type == Action.Type.SKIP) {
+        Schema skipped = fieldAction.writer;
+        steps.add((in, columns, row) -> GenericDatumReader.skip(skipped, in));
+      } else {
+        int pos = record.readerOrder[readerField++].pos();
+        ValueReader value = valueReader(fieldAction);
+        steps.add((in, columns, row) -> value.read(in, columns[pos], row));
+      }
+    }
+    for (int i = record.firstDefault; i < record.readerOrder.length; i++) {
+      Field field = record.readerOrder[i];
+      int pos = field.pos();
+      ValueReader value = defaultValue(field, record.defaults[i - record.firstDefault]);
+      steps.add((in, columns, row) -> value.read(in, columns[pos], row));
+    }
+    this.steps = steps.toArray(new Step[0]);
+  }
+
+  /** Return the writer's schema. */
+  public Schema getWriterSchema() {
+    return writer;
+  }
+
+  /** Return the reader's schema, which is the schema of the batches. */
+  public Schema getSchema() {
+    return reader;
+  }
+
+  /** Create an empty batch for this reader's schema. */
+  public ColumnBatch newBatch() {
+    List<Field> fields = reader.getFields();
+    ColumnVector[] columns = new ColumnVector[fields.size()];
+    for (Field field : fields) {
+      Schema schema = columnType(field);
+      switch (schema.getType()) {
+      case BOOLEAN:
+        columns[field.pos()] = new ColumnVector.Booleans(schema);
+        break;
+      case INT:
+      case ENUM:
+        columns[field.pos()] = new ColumnVector.Ints(schema);
+        break;
+      case LONG:
+        columns[field.pos()] = new ColumnVector.Longs(schema);
+        break;
+      case FLOAT:
+        columns[field.pos()] = new ColumnVector.Floats(schema);
+        break;
+      case DOUBLE:
+        columns[field.pos()] = new ColumnVector.Doubles(schema);
+        break;
+      default:
+        columns[field.pos()] = new ColumnVector.Bytes(schema);
+        break;
+      }
+    }
+    return new ColumnBatch(reader, columns);
+  }
+
+  /**
+   * Decode <i>count</i> records and append them to a batch created by
+   * {@link #newBatch()}.
+   */
+  public void read(Decoder in, int count, ColumnBatch batch) throws IOException {
+    if (batch.getSchema() != reader) {
+      throw new IllegalArgumentException("Batch was not created by this reader");
+    }
+    int start = batch.size();
+    int end = start + count;
+    batch.ensureCapacity(end);
+    ColumnVector[] columns = batch.columns;
+    for (int row = start; row < end; row++) {
+      for (Step step : steps) {
+        step.read(in, columns, row);
+      }
+    }
+    batch.setSize(end);
+  }
+
+  /**
+   * Return the schema of a field's column: the field's schema, or the non-null
+   * branch of a union with null.
+   */
+  private static Schema columnType(Field field) {
+    Schema schema = field.schema();
+    if (schema.getType() == Schema.Type.UNION) {
+      Schema value = null;
+      for (Schema branch : schema.getTypes()) {
+        if (branch.getType() != Schema.Type.NULL) {
+          if (value != null) {
+            value = null;
+            break;
+          }
+          value = branch;
+        }
+      }
+      if (value == null) {
+        throw new IllegalArgumentException("Field " + field.name() + " is not a union of null and one type");
+      }
+      schema = value;
+    }
+    switch (schema.getType()) {
+    case BOOLEAN:
+    case INT:
+    case LONG:
+    case FLOAT:
+    case DOUBLE:
+    case ENUM:
+    case STRING:
+    case BYTES:
+    case FIXED:
+      return schema;
+    default:
+      throw new IllegalArgumentException("Field " + field.name() + " of type " + schema.getType() + " has no column");
+    }
+  }
+
+  private ValueReader valueReader(Action action) {
+    switch (action.type) {
+    case DO_NOTHING:
+    case PROMOTE:
+      return primitiveReader(action.writer, action.reader);
+    case ENUM:
+      int[] adjustments = ((EnumAdjust) action).adjustments;
+      List<String> symbols = action.writer.getEnumSymbols();
+      return (in, column, row) -> {
+        int index = in.readEnum();
+        int ordinal = adjustments[index];
+        if (ordinal < 0) {
+          throw new AvroTypeException("No match for " + symbols.get(index));
+        }
+        ((ColumnVector.Ints) column).values[row] = ordinal;
+      };
+    case READER_UNION:
+      return valueReader(((ReaderUnion) action).actualAction);
+    case WRITER_UNION:
+      Action[] actions = ((WriterUnion) action).actions;
+      ValueReader[] branches = new ValueReader[actions.length];
+      for (int i = 0; i < branches.length; i++) {
+        branches[i] = valueReader(actions[i]);
+      }
+      return (in, column, row) -> branches[in.readIndex()].read(in, column, row);
+    case ERROR:
+      // an unresolvable union branch only fails if it is present in the data
+      String message = action.toString();
+      return (in, column, row) -> {
+        throw new AvroTypeException(message);
+      };
+    default:
+      throw new IllegalArgumentException("Cannot read " + action.writer + " into a column");
+    }
+  }
+
+  private ValueReader primitiveReader(Schema writerSchema, Schema readerSchema) {
+    Schema.Type target = readerSchema.getType();
+    switch (writerSchema.getType()) {
+    case NULL:
+      return (in, column, row) -> {
+        in.readNull();
+        column.setNull(row);
+      };
+    case BOOLEAN:
+      return (in, column, row) -> ((ColumnVector.Booleans) column).values[row] = in.readBoolean();
+    case INT:
+      switch (target) {
+      case LONG:
+        return (in, column, row) -> ((ColumnVector.Longs) column).values[row] = in.readInt();
+      case FLOAT:
+        return (in, column, row) -> ((ColumnVector.Floats) column).values[row] = in.readInt();
+      case DOUBLE:
+        return (in, column, row) -> ((ColumnVector.Doubles) column).values[row] = in.readInt();
+      default:
+        return (in, column, row) -> ((ColumnVector.Ints) column).values[row] = in.readInt();
+      }
+    case LONG:
+      switch (target) {
+      case FLOAT:
+        return (in, column, row) -> ((ColumnVector.Floats) column).values[row] = in.readLong();
+      case DOUBLE:
+        return (in, column, row) -> ((ColumnVector.Doubles) column).values[row] = in.readLong();
+      default:
+        return (in, column, row) -> ((ColumnVector.Longs) column).values[row] = in.readLong();
+      }
+    case FLOAT:
+      if (target == Schema.Type.DOUBLE) {
+        return (in, column, row) -> ((ColumnVector.Doubles) column).values[row] = in.readFloat();
+      }
+      return (in, column, row) -> ((ColumnVector.Floats) column).values[row] = in.readFloat();
+    case DOUBLE:
+      return (in, column, row) -> ((ColumnVector.Doubles) column).values[row] = in.readDouble();
+    case ENUM:
+      return (in, column, row) -> ((ColumnVector.Ints) column).values[row] = in.readEnum();
+    case STRING:
+      return (in, column, row) -> {
+        if (in instanceof BinaryDecoder) {
+          // copy straight from the decoder's buffer into the column
+          Utf8View value = ((BinaryDecoder) in).readStringView(scratchView);
+          ((ColumnVector.Bytes) column).set(row, value.getBytes(), value.getOffset(), value.getByteLength());
+        } else {
+          Utf8 value = in.readString(scratchString);
+          ((ColumnVector.Bytes) column).set(row, value.getBytes(), 0, value.getByteLength());
+        }
+      };
+    case BYTES:
+      return (in, column, row) -> {
+        ByteBuffer value = in.readBytes(scratchBytes);
+        scratchBytes = value;
+        ((ColumnVector.Bytes) column).set(row, value.array(), value.arrayOffset() + value.position(),
+            value.remaining());
+      };
+    case FIXED:
+      int size = writerSchema.getFixedSize();
+      return (in, column, row) -> ((ColumnVector.Bytes) column).setFixed(row, in, size);
+    default:
+      throw new IllegalArgumentException("Cannot read " + writerSchema + " into a column");
+    }
+  }
+
+  /** Return a reader that stores a field's default value without reading. */
+  private static ValueReader defaultValue(Field field, Object value) {
+    if (value == null) {
+      return (in, column, row) -> column.setNull(row);
+    }
+    Schema schema = columnType(field);
+    switch (schema.getType()) {
+    case BOOLEAN:
+      boolean b = (Boolean) value;
+      return (in, column, row) -> ((ColumnVector.Booleans) column).values[row] = b;
+    case INT:
+      int i = ((Number) value).intValue();
+      return (in, column, row) -> ((ColumnVector.Ints) column).values[row] = i;
+    case ENUM:
+      int ordinal = schema.getEnumOrdinal(value.toString());
+      return (in, column, row) -> ((ColumnVector.Ints) column).values[row] = ordinal;
+    case LONG:
+      long l = ((Number) value).longValue();
+      return (in, column, row) -> ((ColumnVector.Longs) column).values[row] = l;
+    case FLOAT:
+      float f = ((Number) value).floatValue();
+      return (in, column, row) -> ((ColumnVector.Floats) column).values[row] = f;
+    case DOUBLE:
+      double d = ((Number) value).doubleValue();
+      return (in, column, row) -> ((ColumnVector.Doubles) column).values[row] = d;
+    default:
+      byte[] bytes;
+      if (value instanceof GenericFixed) {
+        bytes = ((GenericFixed) value).bytes();
+      } else if (value instanceof ByteBuffer) {
+        ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+        bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+      } else {
+        bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+      }
+      return (in, column, row) -> ((ColumnVector.Bytes) column).set(row, bytes, 0, bytes.length);
+    }
+  }
+
+  private interface Step {
+    void read(Decoder in, ColumnVector[] columns, int row) throws IOException;
+  }
+
+  private interface ValueReader {
+    void read(Decoder in, ColumnVector column, int row) throws IOException;
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.avro.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import org.apache.avro.Schema;
 
@@ -238,6 +239,32 @@ public class DecoderFactory {
     return binaryDecoder(bytes, 0, bytes.length, reuse);
   }
 
+  /**
+   * Creates or reinitializes a {@link BinaryDecoder} that reads the bytes between
+   * the position and the limit of <i>buffer</i>. The position of <i>buffer</i> is
+   * not modified.
+   * <p/>
+   * A heap buffer's backing array is used as the decoder's buffer, as with
+   * {@link #binaryDecoder(byte[], int, int, BinaryDecoder)}. Direct and read-only
+   * buffers are read with bulk copies of up to {@link #getConfiguredBufferSize()}
+   * bytes, without an intermediate byte array copy of the whole input.
+   * {@link BinaryDecoder#readBytesSlice()} returns views of <i>buffer</i> rather
+   * than copies.
+   *
+   * @param buffer The buffer to read from
+   * @param reuse  The BinaryDecoder to attempt to reinitialize. if null a new
+   *               BinaryDecoder is created.
+   * @return A BinaryDecoder that uses <i>buffer</i> as its source of data.
+   *         Clients must not assume that <i>reuse</i> is reinitialized and
+   *         returned.
+   */
+  public BinaryDecoder binaryDecoder(ByteBuffer buffer, BinaryDecoder reuse) {
+    if (null == reuse || !reuse.getClass().equals(BinaryDecoder.class)) {
+      reuse = new BinaryDecoder();
+    }
+    return reuse.configure(buffer, binaryDecoderBufferSize);
+  }
+
   /**
    * Creates a {@link JsonDecoder} using the InputStream provided for reading data
    * that conforms to the Schema provided.
@@ -283,7 +310,9 @@ public class DecoderFactory {
   /**
    * Creates a {@link ResolvingDecoder} wrapping the Decoder provided. This
    * ResolvingDecoder will resolve input conforming to the <i>writer</i> schema
-   * from the wrapped Decoder, and present it as the <i>reader</i> schema.
+   * from the wrapped Decoder, and present it as the <i>reader</i> schema. The
+   * resolving grammar for the pair of schemas is shared with other decoders
+   * through {@link ResolverCache#get()}.
    *
    * @param writer  The Schema that the source data is in. Cannot be null.
    * @param reader  The Schema that the reader wishes to read the data as. Cannot
@@ -294,7 +323,7 @@ public class DecoderFactory {
    * @throws IOException
    */
   public ResolvingDecoder resolvingDecoder(Schema writer, Schema reader, Decoder wrapped) throws IOException {
-    return new ResolvingDecoder(writer, reader, wrapped);
+    return new ResolvingDecoder(ResolverCache.get().resolve(writer, reader), wrapped);
   }
 
   private static class DefaultDecoderFactory extends DecoderFactory {
@@ -160,6 +160,12 @@ class DirectBinaryDecoder extends BinaryDecoder {
     return byteReader.read(old, length);
   }
 
+  @Override
+  public ByteBuffer readBytesSlice() throws IOException {
+    // a direct decoder has no buffer to slice
+    return readBytes(null);
+  }
+
   @Override
   protected void doSkipBytes(long length) throws IOException {
     while (length > 0) {
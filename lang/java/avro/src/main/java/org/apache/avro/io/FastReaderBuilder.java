@@ -18,8 +18,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -147,33 +149,201 @@ public class FastReaderBuilder {
     Object testInstance = action.instanceSupplier.newInstance(null, action.reader);
     IntFunction<Conversion<?>> conversionSupplier = getConversionSupplier(testInstance);
 
-    ExecutionStep[] readSteps = new ExecutionStep[action.fieldActions.length + action.readerOrder.length
-        - action.firstDefault];
+    List<ExecutionStep> readSteps = new ArrayList<>();
 
-    int i = 0;
     int fieldCounter = 0;
     // compute what to do with writer's fields
-    for (; i < action.fieldActions.length; i++) {
+    for (int i = 0; i < action.fieldActions.length; i++) {
       Action fieldAction = action.fieldActions[i];
       if (fieldAction instanceof Skip) {
-        readSteps[i] = (r, decoder) -> GenericDatumReader.skip(fieldAction.writer, decoder);
+        // skip a whole run of unread writer fields in one step
+        List<Schema> skipped = new ArrayList<>();
+        for (; i < action.fieldActions.length && action.fieldActions[i] instanceof Skip; i++) {
+          skipped.add(action.fieldActions[i].writer);
+        }
+        i--;
+        readSteps.add(createSkippingStep(skipped));
       } else {
         Field readerField = action.readerOrder[fieldCounter++];
         Conversion<?> conversion = conversionSupplier.apply(readerField.pos());
         FieldReader reader = getReaderFor(fieldAction, conversion);
-        readSteps[i] = createFieldSetter(readerField, reader);
+        readSteps.add(createFieldSetter(readerField, reader));
       }
     }
 
     // add defaulting if required
-    for (; i < readSteps.length; i++) {
-      readSteps[i] = getDefaultingStep(action.readerOrder[fieldCounter++]);
+    while (fieldCounter < action.readerOrder.length) {
+      readSteps.add(getDefaultingStep(action.readerOrder[fieldCounter++]));
     }
 
-    recordReader.finishInitialization(readSteps, action.reader, action.instanceSupplier);
+    recordReader.finishInitialization(readSteps.toArray(new ExecutionStep[0]), action.reader, action.instanceSupplier);
     return recordReader;
   }
 
+  /**
+   * Creates a step that skips values of the given writer schemas. Binary input is
+   * skipped with a precompiled {@link Skipper} that merges adjacent fixed-size
+   * values into a single skip; other decoders skip value by value.
+   */
+  private ExecutionStep createSkippingStep(List<Schema> schemas) {
+    Skipper skipper = createSkipper(schemas, new IdentityHashMap<>());
+    Schema[] writerSchemas = schemas.toArray(new Schema[0]);
+    return (r, decoder) -> {
+      if (decoder instanceof BinaryDecoder) {
+        skipper.skip(decoder);
+      } else {
+        for (Schema schema : writerSchemas) {
+          GenericDatumReader.skip(schema, decoder);
+        }
+      }
+    };
+  }
+
+  private Skipper createSkipper(List<Schema> schemas, Map<Schema, Skipper[]> records) {
+    List<Skipper> skippers = new ArrayList<>();
+    long fixedRun = 0;
+    for (Schema schema : schemas) {
+      long size = fixedSize(schema);
+      if (size >= 0) {
+        fixedRun += size;
+        continue;
+      }
+      if (fixedRun > 0) {
+        skippers.add(fixedSkipper(fixedRun));
+        fixedRun = 0;
+      }
+      skippers.add(createSkipper(schema, records));
+    }
+    if (fixedRun > 0) {
+      skippers.add(fixedSkipper(fixedRun));
+    }
+    if (skippers.size() == 1) {
+      return skippers.get(0);
+    }
+    Skipper[] steps = skippers.toArray(new Skipper[0]);
+    return decoder -> {
+      for (Skipper step : steps) {
+        step.skip(decoder);
+      }
+    };
+  }
+
+  private Skipper createSkipper(Schema schema, Map<Schema, Skipper[]> records) {
+    long size = fixedSize(schema);
+    if (size >= 0) {
+      return fixedSkipper(size);
+    }
+    switch (schema.getType()) {
+    case RECORD:
+      Skipper[] known = records.get(schema);
+      if (known != null) {
+        // recursive reference, resolved once the record's skipper is built
+        return decoder -> known[0].skip(decoder);
+      }
+      Skipper[] holder = new Skipper[1];
+      records.put(schema, holder);
+      List<Schema> fieldSchemas = new ArrayList<>();
+      for (Field field : schema.getFields()) {
+        fieldSchemas.add(field.schema());
+      }
+      holder[0] = createSkipper(fieldSchemas, records);
+      return holder[0];
+    case ARRAY:
+      long elementSize = fixedSize(schema.getElementType());
+      if (elementSize >= 0) {
+        return decoder -> {
+          for (long l = decoder.skipArray(); l > 0; l = decoder.skipArray()) {
+            skipFixed(decoder, l * elementSize);
+          }
+        };
+      }
+      Skipper element = createSkipper(schema.getElementType(), records);
+      return decoder -> {
+        for (long l = decoder.skipArray(); l > 0; l = decoder.skipArray()) {
+          for (long i = 0; i < l; i++) {
+            element.skip(decoder);
+          }
+        }
+      };
+    case MAP:
+      Skipper value = createSkipper(schema.getValueType(), records);
+      return decoder -> {
+        for (long l = decoder.skipMap(); l > 0; l = decoder.skipMap()) {
+          for (long i = 0; i < l; i++) {
+            decoder.skipString();
+            value.skip(decoder);
+          }
+        }
+      };
+    case UNION:
+      List<Schema> types = schema.getTypes();
+      Skipper[] branches = new Skipper[types.size()];
+      for (int i = 0; i < branches.length; i++) {
+        branches[i] = createSkipper(types.get(i), records);
+      }
+      return decoder -> branches[decoder.readIndex()].skip(decoder);
+    case STRING:
+      return Decoder::skipString;
+    case BYTES:
+      return Decoder::skipBytes;
+    case INT:
+      return Decoder::readInt;
+    case LONG:
+      return Decoder::readLong;
+    case ENUM:
+      return Decoder::readEnum;
+    default:
+      throw new IllegalStateException("Cannot skip type " + schema.getType());
+    }
+  }
+
+  /**
+   * Returns the size of the binary encoding of every value of the schema, or -1
+   * if values vary in size.
+   */
+  private static long fixedSize(Schema schema) {
+    switch (schema.getType()) {
+    case NULL:
+      return 0;
+    case BOOLEAN:
+      return 1;
+    case FLOAT:
+      return 4;
+    case DOUBLE:
+      return 8;
+    case FIXED:
+      return schema.getFixedSize();
+    case RECORD:
+      long size = 0;
+      for (Field field : schema.getFields()) {
+        long fieldSize = fixedSize(field.schema());
+        if (fieldSize < 0) {
+          return -1;
+        }
+        size += fieldSize;
+      }
+      return size;
+    default:
+      return -1;
+    }
+  }
+
+  private static Skipper fixedSkipper(long size) {
+    if (size == 0) {
+      return decoder -> {
+      };
+    }
+    return decoder -> skipFixed(decoder, size);
+  }
+
+  private static void skipFixed(Decoder decoder, long length) throws IOException {
+    while (length > 0) {
+      int n = (int) Math.min(length, Integer.MAX_VALUE);
+      decoder.skipFixed(n);
+      length -= n;
+    }
+  }
+
   private ExecutionStep createFieldSetter(Field field, FieldReader reader) {
     int pos = field.pos();
     if (reader.canReuse()) {
@@ -611,4 +781,9 @@ public class FastReaderBuilder {
     public void execute(Object record, Decoder decoder) throws IOException;
   }
 
+  /** Skips one value, or a fixed sequence of values, in binary-encoded input. */
+  interface Skipper {
+    void skip(Decoder decoder) throws IOException;
+  }
+
 }
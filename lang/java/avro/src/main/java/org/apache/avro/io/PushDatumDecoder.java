@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.InvalidNumberEncodingException;
+import org.apache.avro.Schema;
+
+/**
+ * Decodes a stream of binary-encoded datums that arrives in chunks, for example
+ * from a non-blocking socket, without blocking a thread while waiting for the
+ * rest of a datum.
+ * <p/>
+ * Chunks are passed to {@link #feed(ByteBuffer)} as they arrive, and the datums
+ * they complete are then taken with {@link #pollDatum()}, which returns null
+ * when the rest of the next datum has not arrived yet. The decoder scans the
+ * bytes fed against the writer's schema, keeping its place within a partial
+ * datum between chunks, so each byte is scanned once however the stream is
+ * split. Each complete datum is then read by the {@link DatumReader}, with any
+ * schema resolution it does.
+ * <p/>
+ * The bytes of a partial datum are kept until it is complete, so the memory
+ * used grows with the size of the largest datum, not with the stream.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public class PushDatumDecoder<D> {
+  private static final Schema STRING = Schema.create(Schema.Type.STRING);
+
+  private final Schema writer;
+  private final DatumReader<D> reader;
+  private BinaryDecoder decoder;
+
+  private byte[] buf = new byte[8192];
+  private int start; // start of the next datum
+  private int pos; // end of the bytes scanned
+  private int limit; // end of the bytes fed
+
+  // what remains to scan of the current datum: schemas and array or map blocks
+  private Object[] stack = new Object[16];
+  private int depth;
+  private long value; // the last long read
+
+  /**
+   * Construct a decoder for datums written with a schema, read by a reader.
+   * {@link DatumReader#setSchema(Schema)} is called with the writer's schema.
+   */
+  public PushDatumDecoder(Schema writer, DatumReader<D> reader) {
+    this.writer = writer;
+    this.reader = reader;
+    reader.setSchema(writer);
+  }
+
+  /** Return the writer's schema of the datums. */
+  public Schema getSchema() {
+    return writer;
+  }
+
+  /** Append the remaining bytes of a buffer to the input, consuming them. */
+  public void feed(ByteBuffer bytes) {
+    int length = bytes.remaining();
+    if (limit + length > buf.length) {
+      // drop the datums already returned before growing
+      System.arraycopy(buf, start, buf, 0, limit - start);
+      pos -= start;
+      limit -= start;
+      start = 0;
+      if (limit + length > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(limit + length, buf.length * 2));
+      }
+    }
+    bytes.get(buf, limit, length);
+    limit += length;
+  }
+
+  /** Append bytes to the input. */
+  public void feed(byte[] bytes, int offset, int length) {
+    feed(ByteBuffer.wrap(bytes, offset, length));
+  }
+
+  /**
+   * Return the next complete datum, or null if the input fed so far does not
+   * complete it.
+   */
+  public D pollDatum() throws IOException {
+    return pollDatum(null);
+  }
+
+  /**
+   * Return the next complete datum, reusing an instance if possible, or null if
+   * the input fed so far does not complete it.
+   */
+  public D pollDatum(D reuse) throws IOException {
+    if (depth == 0) {
+      if (pos == limit) {
+        return null;
+      }
+      push(writer);
+    }
+    if (!scan()) {
+      return null;
+    }
+    decoder = DecoderFactory.get().binaryDecoder(buf, start, pos - start, decoder);
+    start = pos;
+    return reader.read(reuse, decoder);
+  }
+
+  /**
+   * Return the number of bytes fed that are not part of a returned datum. When
+   * the input ends, a non-zero count means it ended within a datum.
+   */
+  public int getBufferedBytes() {
+    return limit - start;
+  }
+
+  /** Scan as far as the input allows, returning true at the end of a datum. */
+  private boolean scan() throws IOException {
+    while (depth > 0) {
+      Object top = stack[depth - 1];
+      if (top instanceof Block) {
+        if (!scanBlock((Block) top)) {
+          return false;
+        }
+        continue;
+      }
+      Schema schema = (Schema) top;
+      switch (schema.getType()) {
+      case RECORD:
+        depth--;
+        List<Schema.Field> fields = schema.getFields();
+        for (int i = fields.size() - 1; i >= 0; i--) {
+          push(fields.get(i).schema());
+        }
+        continue;
+      case UNION:
+        if (!readLong()) {
+          return false;
+        }
+        List<Schema> branches = schema.getTypes();
+        long index = value;
+        if (index < 0 || index >= branches.size()) {
+          throw new AvroTypeException("Union index out of range: " + index);
+        }
+        stack[depth - 1] = branches.get((int) index);
+        continue;
+      case ARRAY:
+        stack[depth - 1] = new Block(schema.getElementType(), false);
+        continue;
+      case MAP:
+        stack[depth - 1] = new Block(schema.getValueType(), true);
+        continue;
+      default:
+        if (!skipValue(schema)) {
+          return false;
+        }
+        depth--;
+      }
+    }
+    return true;
+  }
+
+  /** Move to the next item of an array or map, reading block headers. */
+  private boolean scanBlock(Block block) throws IOException {
+    if (block.remaining == 0) {
+      int mark = pos;
+      if (!readLong()) {
+        return false;
+      }
+      long count = value;
+      if (count < 0) {
+        if (!readLong()) { // the size of the block in bytes
+          pos = mark;
+          return false;
+        }
+        count = -count;
+      }
+      if (count == 0) {
+        depth--;
+        return true;
+      }
+      block.remaining = count;
+    }
+    block.remaining--;
+    push(block.element);
+    if (block.map) {
+      push(STRING);
+    }
+    return true;
+  }
+
+  /** Skip a value that has no nested values, returning false if incomplete. */
+  private boolean skipValue(Schema schema) throws IOException {
+    int mark = pos;
+    switch (schema.getType()) {
+    case NULL:
+      return true;
+    case BOOLEAN:
+      return skip(1);
+    case INT:
+    case LONG:
+    case ENUM:
+      return readLong();
+    case FLOAT:
+      return skip(4);
+    case DOUBLE:
+      return skip(8);
+    case FIXED:
+      return skip(schema.getFixedSize());
+    case STRING:
+    case BYTES:
+      if (!readLong()) {
+        return false;
+      }
+      long length = value;
+      if (length < 0L) {
+        throw new AvroRuntimeException("Malformed data. Length is negative: " + length);
+      }
+      if (!skip(length)) {
+        pos = mark;
+        return false;
+      }
+      return true;
+    default:
+      throw new AvroRuntimeException("Unknown type: " + schema);
+    }
+  }
+
+  private boolean skip(long length) {
+    if (length > limit - pos) {
+      return false;
+    }
+    pos += (int) length;
+    return true;
+  }
+
+  /**
+   * Read a zig-zag encoded long into {@link #value}, or return false without
+   * consuming input if it is incomplete.
+   */
+  private boolean readLong() throws IOException {
+    long n = 0;
+    for (int i = 0, shift = 0; pos + i < limit; i++, shift += 7) {
+      int b = buf[pos + i] & 0xff;
+      n |= (b & 0x7fL) << shift;
+      if ((b & 0x80) == 0) {
+        pos += i + 1;
+        value = (n >>> 1) ^ -(n & 1);
+        return true;
+      }
+      if (i == 9) {
+        throw new InvalidNumberEncodingException("Invalid long encoding");
+      }
+    }
+    return false;
+  }
+
+  private void push(Object item) {
+    if (depth == stack.length) {
+      stack = Arrays.copyOf(stack, depth * 2);
+    }
+    stack[depth++] = item;
+  }
+
+  /** The items of an array or map remaining in the current block. */
+  private static class Block {
+    private final Schema element;
+    private final boolean map;
+    private long remaining;
+
+    Block(Schema element, boolean map) {
+      this.element = element;
+      this.map = map;
+    }
+  }
+}
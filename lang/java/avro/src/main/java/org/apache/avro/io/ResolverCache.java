@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.util.WeakIdentityHashMap;
+
+/**
+ * A bounded cache of the resolving grammars used by {@link ResolvingDecoder},
+ * shared by all threads. Generating a grammar is expensive while the grammar
+ * itself is immutable, so each {@link ResolvingDecoder} only needs its own
+ * parser state on top of a cached grammar.
+ * <p/>
+ * Entries are found by 64-bit fingerprints of the full JSON of the writer's and
+ * reader's schemas, so equal schemas parsed separately share an entry. Since
+ * such fingerprints can collide, an entry is only used if its schemas equal
+ * those looked up. When the cache is full the least recently used entry is
+ * evicted. Hit, miss and eviction counts are kept for monitoring.
+ */
+public final class ResolverCache {
+
+  /** The default maximum number of schema pairs held by a cache. */
+  public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+  private static final ResolverCache DEFAULT = new ResolverCache(DEFAULT_MAX_ENTRIES);
+
+  private final int maxEntries;
+  private final Map<Key, Entry> grammars;
+  /** Fingerprints of schema instances already seen, to avoid re-serializing. */
+  private final Map<Schema, Fingerprint> fingerprints = Collections.synchronizedMap(new WeakIdentityHashMap<>());
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /** Return the cache shared by {@link DecoderFactory}. */
+  public static ResolverCache get() {
+    return DEFAULT;
+  }
+
+  /** Construct a cache holding at most <i>maxEntries</i> schema pairs. */
+  public ResolverCache(int maxEntries) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+    }
+    this.maxEntries = maxEntries;
+    this.grammars = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        if (size() > ResolverCache.this.maxEntries) {
+          evictions.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Return the opaque resolver for a pair of schemas, as produced by
+   * {@link ResolvingDecoder#resolve(Schema, Schema)}, generating and caching it
+   * if needed.
+   *
+   * @throws NullPointerException if {@code writer} or {@code reader} is
+   *                              {@code null}
+   */
+  public Object resolve(Schema writer, Schema reader) throws IOException {
+    Objects.requireNonNull(writer, "Writer schema cannot be null");
+    Objects.requireNonNull(reader, "Reader schema cannot be null");
+    Key key = new Key(fingerprint(writer), fingerprint(reader));
+    Entry entry;
+    synchronized (grammars) {
+      entry = grammars.get(key);
+    }
+    if (entry != null && entry.matches(writer, reader)) {
+      hits.increment();
+      return entry.grammar;
+    }
+    misses.increment();
+    // generate outside the lock; concurrent misses for a pair may both generate,
+    // and either result may be kept
+    Entry generated = new Entry(writer, reader, ResolvingDecoder.resolve(writer, reader));
+    synchronized (grammars) {
+      Entry existing = grammars.get(key);
+      if (existing != null && existing.matches(writer, reader)) {
+        return existing.grammar;
+      }
+      grammars.put(key, generated); // replaces a pair whose fingerprints collide
+      return generated.grammar;
+    }
+  }
+
+  private long fingerprint(Schema schema) {
+    // a schema's hash code is recomputed when a property is added to it
+    int hashCode = schema.hashCode();
+    Fingerprint fingerprint = fingerprints.get(schema);
+    if (fingerprint == null || fingerprint.hashCode != hashCode) {
+      long value = SchemaNormalization.fingerprint64(schema.toString().getBytes(StandardCharsets.UTF_8));
+      fingerprint = new Fingerprint(hashCode, value);
+      fingerprints.put(schema, fingerprint);
+    }
+    return fingerprint.value;
+  }
+
+  /** Return the maximum number of schema pairs held. */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /** Return the number of schema pairs currently held. */
+  public int size() {
+    synchronized (grammars) {
+      return grammars.size();
+    }
+  }
+
+  /** Return the number of lookups answered from the cache. */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /** Return the number of lookups that generated a grammar. */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /** Return the number of entries evicted to keep the cache within bounds. */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /** Remove all entries. The hit, miss and eviction counts are not reset. */
+  public void clear() {
+    synchronized (grammars) {
+      grammars.clear();
+    }
+    fingerprints.clear();
+  }
+
+  private static final class Fingerprint {
+    private final int hashCode;
+    private final long value;
+
+    Fingerprint(int hashCode, long value) {
+      this.hashCode = hashCode;
+      this.value = value;
+    }
+  }
+
+  private static final class Entry {
+    private final Schema writer;
+    private final Schema reader;
+    private final Object grammar;
+
+    Entry(Schema writer, Schema reader, Object grammar) {
+      this.writer = writer;
+      this.reader = reader;
+      this.grammar = grammar;
+    }
+
+    boolean matches(Schema writer, Schema reader) {
+      return this.writer.equals(writer) && this.reader.equals(reader);
+    }
+  }
+
+  private static final class Key {
+    private final long writer;
+    private final long reader;
+
+    Key(long writer, long reader) {
+      this.writer = writer;
+      this.reader = reader;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return writer == that.writer && reader == that.reader;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(writer * 31 + reader);
+    }
+  }
+}
@@ -60,7 +60,7 @@ public class ResolvingDecoder extends ValidatingDecoder {
    * @param in       The underlying decoder.
    * @throws IOException
    */
-  private ResolvingDecoder(Object resolver, Decoder in) throws IOException {
+  ResolvingDecoder(Object resolver, Decoder in) throws IOException {
     super((Symbol) resolver, in);
   }
 
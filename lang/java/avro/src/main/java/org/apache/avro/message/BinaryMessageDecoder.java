@@ -19,15 +19,18 @@
 package org.apache.avro.message;
 
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaInterner;
 import org.apache.avro.SchemaNormalization;
 import org.apache.avro.generic.GenericData;
-import org.apache.avro.util.internal.ThreadLocalWithInitial;
+import org.apache.avro.util.ObjectPool;
+import org.apache.avro.util.PoolingStrategy;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -39,7 +42,8 @@ import java.util.concurrent.ConcurrentHashMap;
  * are schemas added using {@link #addSchema(Schema)}, schemas resolved by the
  * {@link SchemaStore} passed to the constructor, or the expected schema passed
  * to the constructor. Messages encoded using an unknown schema will cause
- * instances to throw a {@link MissingSchemaException}.
+ * instances to throw a {@link MissingSchemaException}. Decoders for schemas
+ * found by a {@link LoadingSchemaStore} are dropped when the store evicts them.
  * <p>
  * It is safe to continue using instances of this class after {@link #decode}
  * throws {@link BadHeaderException} or {@link MissingSchemaException}.
@@ -48,18 +52,23 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class BinaryMessageDecoder<D> extends MessageDecoder.BaseDecoder<D> {
 
-  private static final ThreadLocal<byte[]> HEADER_BUFFER = ThreadLocalWithInitial.of(() -> new byte[10]);
-
-  private static final ThreadLocal<ByteBuffer> FP_BUFFER = ThreadLocalWithInitial.of(() -> {
-    byte[] header = HEADER_BUFFER.get();
-    return ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
-  });
+  private static final ObjectPool<ByteBuffer> HEADER_BUFFER = PoolingStrategy.get()
+      .newPool(() -> ByteBuffer.wrap(new byte[10]).order(ByteOrder.LITTLE_ENDIAN));
 
   private final GenericData model;
   private final Schema readSchema;
   private final SchemaStore resolver;
+  private volatile SchemaInterner interner;
 
   private final Map<Long, RawMessageDecoder<D>> codecByFingerprint = new ConcurrentHashMap<>();
+  // fingerprints of the decoders built for schemas found by the resolver
+  private final Set<Long> resolvedFingerprints = ConcurrentHashMap.newKeySet();
+  // held here because LoadingSchemaStore holds its listeners weakly
+  private final LoadingSchemaStore.RemovalListener removalListener = (fp, schema) -> {
+    if (resolvedFingerprints.remove(fp)) {
+      codecByFingerprint.remove(fp);
+    }
+  };
 
   /**
    * Creates a new {@link BinaryMessageEncoder} that uses the given
@@ -112,6 +121,21 @@ public class BinaryMessageDecoder<D> extends MessageDecoder.BaseDecoder<D> {
     if (readSchema != null) {
       addSchema(readSchema);
     }
+    if (resolver instanceof LoadingSchemaStore) {
+      ((LoadingSchemaStore) resolver).addRemovalListener(removalListener);
+    }
+  }
+
+  /**
+   * Sets the {@link SchemaInterner} through which schemas found by the
+   * {@link SchemaStore} are shared with other decoders that find an equal schema.
+   * Changes made to a shared schema are seen by all of them. By default, or if
+   * {@code interner} is {@code null}, schemas are not interned.
+   *
+   * @param interner a {@link SchemaInterner}, or {@code null}
+   */
+  public void setSchemaInterner(SchemaInterner interner) {
+    this.interner = interner;
   }
 
   /**
@@ -125,6 +149,20 @@ public class BinaryMessageDecoder<D> extends MessageDecoder.BaseDecoder<D> {
     codecByFingerprint.put(fp, new RawMessageDecoder<D>(model, writeSchema, actualReadSchema));
   }
 
+  /**
+   * Removes the decoder for the schema with an AVRO-CRC-64 fingerprint. Buffers
+   * encoded with that schema can only be decoded afterwards if the
+   * {@link SchemaStore} still finds it. Decoders built for schemas found by a
+   * {@link LoadingSchemaStore} are removed automatically when the store evicts
+   * their schemas.
+   *
+   * @param fingerprint an AVRO-CRC-64 fingerprint long
+   */
+  public void removeSchema(long fingerprint) {
+    resolvedFingerprints.remove(fingerprint);
+    codecByFingerprint.remove(fingerprint);
+  }
+
   private RawMessageDecoder<D> getDecoder(long fp) {
     RawMessageDecoder<D> decoder = codecByFingerprint.get(fp);
     if (decoder != null) {
@@ -132,11 +170,24 @@ public class BinaryMessageDecoder<D> extends MessageDecoder.BaseDecoder<D> {
     }
 
     if (resolver != null) {
+      // marked before the lookup so that an eviction racing with it clears the
+      // mark, and the decoder built below is not kept after its schema is gone
+      resolvedFingerprints.add(fp);
       Schema writeSchema = resolver.findByFingerprint(fp);
       if (writeSchema != null) {
-        addSchema(writeSchema);
-        return codecByFingerprint.get(fp);
+        SchemaInterner interner = this.interner;
+        if (interner != null) {
+          writeSchema = interner.intern(writeSchema);
+        }
+        final Schema actualReadSchema = this.readSchema != null ? this.readSchema : writeSchema;
+        decoder = new RawMessageDecoder<D>(model, writeSchema, actualReadSchema);
+        codecByFingerprint.put(fp, decoder);
+        if (!resolvedFingerprints.contains(fp)) {
+          codecByFingerprint.remove(fp, decoder);
+        }
+        return decoder;
       }
+      resolvedFingerprints.remove(fp);
     }
 
     throw new MissingSchemaException("Cannot resolve schema for fingerprint: " + fp);
@@ -144,20 +195,27 @@ public class BinaryMessageDecoder<D> extends MessageDecoder.BaseDecoder<D> {
 
   @Override
   public D decode(InputStream stream, D reuse) throws IOException {
-    byte[] header = HEADER_BUFFER.get();
+    ByteBuffer headerBuffer = HEADER_BUFFER.acquire();
+    long fp;
     try {
-      if (!readFully(stream, header)) {
-        throw new BadHeaderException("Not enough header bytes");
+      byte[] header = headerBuffer.array();
+      try {
+        if (!readFully(stream, header)) {
+          throw new BadHeaderException("Not enough header bytes");
+        }
+      } catch (IOException e) {
+        throw new IOException("Failed to read header and fingerprint bytes", e);
       }
-    } catch (IOException e) {
-      throw new IOException("Failed to read header and fingerprint bytes", e);
-    }
 
-    if (BinaryMessageEncoder.V1_HEADER[0] != header[0] || BinaryMessageEncoder.V1_HEADER[1] != header[1]) {
-      throw new BadHeaderException(String.format("Unrecognized header bytes: 0x%02X 0x%02X", header[0], header[1]));
+      if (BinaryMessageEncoder.V1_HEADER[0] != header[0] || BinaryMessageEncoder.V1_HEADER[1] != header[1]) {
+        throw new BadHeaderException(String.format("Unrecognized header bytes: 0x%02X 0x%02X", header[0], header[1]));
+      }
+      fp = headerBuffer.getLong(2);
+    } finally {
+      HEADER_BUFFER.release(headerBuffer);
     }
 
-    RawMessageDecoder<D> decoder = getDecoder(FP_BUFFER.get().getLong(2));
+    RawMessageDecoder<D> decoder = getDecoder(fp);
 
     return decoder.decode(stream, reuse);
   }
@@ -88,6 +88,11 @@ public class BinaryMessageEncoder<D> implements MessageEncoder<D> {
     writeCodec.encode(datum, stream);
   }
 
+  @Override
+  public MessageBatch encodeAll(Iterable<? extends D> datums, MessageBatch batch) throws IOException {
+    return writeCodec.encodeAll(datums, batch);
+  }
+
   /**
    * This is a RawDatumEncoder that adds the V1 header to the outgoing buffer.
    * BinaryDatumEncoder wraps this class to avoid confusion over what it does. It
@@ -108,6 +113,12 @@ public class BinaryMessageEncoder<D> implements MessageEncoder<D> {
       super.encode(datum, stream);
     }
 
+    @Override
+    void writeHeader(OutputStream stream) throws IOException {
+      // computed once per schema, in the constructor
+      stream.write(headerBytes);
+    }
+
     private static byte[] getWriteHeader(Schema schema) {
       try {
         byte[] fp = SchemaNormalization.parsingFingerprint("CRC-64-AVRO", schema);
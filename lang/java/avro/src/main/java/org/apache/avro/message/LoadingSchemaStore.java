@@ -0,0 +1,428 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.message;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.util.WeakIdentityHashMap;
+
+/**
+ * A {@link SchemaStore} that loads schemas it does not hold from a
+ * {@link Loader}, such as a schema registry, and keeps them in a bounded cache.
+ * <p>
+ * The cache holds at most {@link Builder#maximumSize(int) maximumSize} schemas,
+ * evicting the least recently used, and may also expire schemas a fixed time
+ * after they were loaded. Fingerprints the loader does not know are remembered
+ * for a shorter time so that repeated lookups of unknown fingerprints do not
+ * reach the loader. Concurrent lookups of the same fingerprint share a single
+ * load. Hit, miss, load and eviction counts and the total load time are kept
+ * for monitoring.
+ * <p>
+ * {@link RemovalListener Removal listeners} are told when schemas are evicted,
+ * which lets a {@link BinaryMessageDecoder} drop the decoders it built for
+ * them.
+ * <p>
+ * This class is thread-safe.
+ */
+public class LoadingSchemaStore implements SchemaStore {
+
+  /** The default maximum number of schemas held. */
+  public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+  /** The default time unknown fingerprints are remembered, in seconds. */
+  public static final long DEFAULT_NEGATIVE_TTL_SECONDS = 30;
+
+  /** Finds the schema with a fingerprint, for example in a schema registry. */
+  @FunctionalInterface
+  public interface Loader {
+    /**
+     * Return the schema whose AVRO-CRC-64 fingerprint is <i>fingerprint</i>, or
+     * null if there is none.
+     *
+     * @throws IOException if the schema could not be looked up
+     */
+    Schema load(long fingerprint) throws IOException;
+
+    /**
+     * Return a loader that reads schemas from the files of a directory, named by
+     * the fingerprint as 16 lower-case hex digits with the extension {@code .avsc}.
+     * This stands in for a schema registry in development and tests.
+     */
+    static Loader fromDirectory(File directory) {
+      return fingerprint -> {
+        File file = new File(directory, String.format("%016x.avsc", fingerprint));
+        return file.isFile() ? new Schema.Parser().parse(file) : null;
+      };
+    }
+  }
+
+  /** Told about the schemas removed from a {@link LoadingSchemaStore}. */
+  @FunctionalInterface
+  public interface RemovalListener {
+    /**
+     * Called when the schema with a fingerprint has been evicted, has expired or
+     * has been invalidated. This is called while the store is locked, so must be
+     * quick and must not call the store.
+     */
+    void onRemoval(long fingerprint, Schema schema);
+  }
+
+  /** Return a builder for a store that loads schemas with <i>loader</i>. */
+  public static Builder builder(Loader loader) {
+    return new Builder(loader);
+  }
+
+  /** Configures a {@link LoadingSchemaStore}. */
+  public static class Builder {
+    private final Loader loader;
+    private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private long expireAfterWriteNanos = 0;
+    private long negativeTtlNanos = TimeUnit.SECONDS.toNanos(DEFAULT_NEGATIVE_TTL_SECONDS);
+    private Executor executor = ForkJoinPool.commonPool();
+
+    private Builder(Loader loader) {
+      this.loader = Objects.requireNonNull(loader, "Loader cannot be null");
+    }
+
+    /** Set the maximum number of schemas held, unknown fingerprints included. */
+    public Builder maximumSize(int maximumSize) {
+      if (maximumSize < 1) {
+        throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+      }
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * Expire schemas this long after they were loaded or added. By default schemas
+     * do not expire.
+     */
+    public Builder expireAfterWrite(long duration, TimeUnit unit) {
+      this.expireAfterWriteNanos = nanos(duration, unit);
+      return this;
+    }
+
+    /**
+     * Remember fingerprints the loader does not know for this long. Zero disables
+     * negative caching.
+     */
+    public Builder negativeCacheTtl(long duration, TimeUnit unit) {
+      this.negativeTtlNanos = nanos(duration, unit);
+      return this;
+    }
+
+    /** Set the executor used by {@link #findByFingerprintAsync(long)}. */
+    public Builder executor(Executor executor) {
+      this.executor = Objects.requireNonNull(executor, "Executor cannot be null");
+      return this;
+    }
+
+    public LoadingSchemaStore build() {
+      return new LoadingSchemaStore(this);
+    }
+
+    private static long nanos(long duration, TimeUnit unit) {
+      if (duration < 0) {
+        throw new IllegalArgumentException("Duration cannot be negative: " + duration);
+      }
+      return unit.toNanos(duration);
+    }
+  }
+
+  private static final long NEVER = Long.MAX_VALUE;
+
+  private final Loader loader;
+  private final int maximumSize;
+  private final long expireAfterWriteNanos;
+  private final long negativeTtlNanos;
+  private final Executor executor;
+  private final Map<Long, Entry> entries;
+  private final Map<Long, CompletableFuture<Schema>> loading = new ConcurrentHashMap<>();
+  // guarded by itself
+  private final Map<RemovalListener, Boolean> listeners = new WeakIdentityHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder negativeHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder loadSuccesses = new LongAdder();
+  private final LongAdder loadFailures = new LongAdder();
+  private final LongAdder loadTimeNanos = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  private LoadingSchemaStore(Builder builder) {
+    this.loader = builder.loader;
+    this.maximumSize = builder.maximumSize;
+    this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+    this.negativeTtlNanos = builder.negativeTtlNanos;
+    this.executor = builder.executor;
+    this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+        if (size() > maximumSize) {
+          evictions.increment();
+          notifyRemoval(eldest.getKey(), eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Adds a schema that can be retrieved using its AVRO-CRC-64 fingerprint, as
+   * {@link SchemaStore.Cache#addSchema(Schema)} does. It is subject to the same
+   * eviction as loaded schemas.
+   */
+  public void addSchema(Schema schema) {
+    long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+    put(fingerprint, new Entry(schema, expiry(expireAfterWriteNanos)));
+  }
+
+  /**
+   * Return the schema with a fingerprint, loading it in the calling thread if it
+   * is not held. If another thread is loading it, wait for that load.
+   *
+   * @throws AvroRuntimeException if the loader failed
+   */
+  @Override
+  public Schema findByFingerprint(long fingerprint) {
+    Entry entry = lookup(fingerprint);
+    if (entry != null) {
+      return entry.schema;
+    }
+    CompletableFuture<Schema> load = new CompletableFuture<>();
+    CompletableFuture<Schema> existing = loading.putIfAbsent(fingerprint, load);
+    if (existing == null) {
+      load(fingerprint, load);
+      existing = load;
+    }
+    try {
+      return existing.join();
+    } catch (CompletionException e) {
+      throw new AvroRuntimeException("Failed to load schema for fingerprint: " + fingerprint, e.getCause());
+    }
+  }
+
+  /**
+   * Return the schema with a fingerprint, completing with null if there is none.
+   * Schemas that are not held are loaded with the builder's executor; the
+   * returned future fails if the loader failed.
+   */
+  public CompletableFuture<Schema> findByFingerprintAsync(long fingerprint) {
+    Entry entry = lookup(fingerprint);
+    if (entry != null) {
+      return CompletableFuture.completedFuture(entry.schema);
+    }
+    CompletableFuture<Schema> load = new CompletableFuture<>();
+    CompletableFuture<Schema> existing = loading.putIfAbsent(fingerprint, load);
+    if (existing != null) {
+      return existing;
+    }
+    try {
+      executor.execute(() -> load(fingerprint, load));
+    } catch (RuntimeException e) {
+      loading.remove(fingerprint, load);
+      load.completeExceptionally(e);
+    }
+    return load;
+  }
+
+  /** Return the unexpired entry for a fingerprint, counting hits and misses. */
+  private Entry lookup(long fingerprint) {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(fingerprint);
+      // compare differences, as nanoTime may overflow
+      if (entry != null && entry.expiresAt != NEVER && entry.expiresAt - System.nanoTime() <= 0) {
+        entries.remove(fingerprint);
+        evictions.increment();
+        notifyRemoval(fingerprint, entry);
+        entry = null;
+      }
+    }
+    if (entry == null) {
+      misses.increment();
+    } else if (entry.schema == null) {
+      negativeHits.increment();
+    } else {
+      hits.increment();
+    }
+    return entry;
+  }
+
+  private void load(long fingerprint, CompletableFuture<Schema> result) {
+    long start = System.nanoTime();
+    try {
+      Schema schema = loader.load(fingerprint);
+      loadTimeNanos.add(System.nanoTime() - start);
+      loadSuccesses.increment();
+      if (schema != null) {
+        put(fingerprint, new Entry(schema, expiry(expireAfterWriteNanos)));
+      } else if (negativeTtlNanos > 0) {
+        put(fingerprint, new Entry(null, expiry(negativeTtlNanos)));
+      }
+      loading.remove(fingerprint, result);
+      result.complete(schema);
+    } catch (Throwable e) {
+      loadTimeNanos.add(System.nanoTime() - start);
+      loadFailures.increment();
+      loading.remove(fingerprint, result);
+      result.completeExceptionally(e);
+    }
+  }
+
+  private void put(long fingerprint, Entry entry) {
+    synchronized (entries) {
+      Entry old = entries.put(fingerprint, entry);
+      if (old != null && old.schema != null && old.schema != entry.schema) {
+        notifyRemoval(fingerprint, old);
+      }
+    }
+  }
+
+  private static long expiry(long ttlNanos) {
+    return ttlNanos == 0 ? NEVER : System.nanoTime() + ttlNanos;
+  }
+
+  /** Remove the schema with a fingerprint, if it is held. */
+  public void invalidate(long fingerprint) {
+    synchronized (entries) {
+      Entry old = entries.remove(fingerprint);
+      if (old != null) {
+        notifyRemoval(fingerprint, old);
+      }
+    }
+  }
+
+  /** Remove all schemas. The counts are not reset. */
+  public void invalidateAll() {
+    synchronized (entries) {
+      for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+        notifyRemoval(e.getKey(), e.getValue());
+      }
+      entries.clear();
+    }
+  }
+
+  /**
+   * Register a listener told about removed schemas. Listeners are held weakly, so
+   * the caller must keep a reference to it for as long as it should be called.
+   */
+  public void addRemovalListener(RemovalListener listener) {
+    Objects.requireNonNull(listener, "Listener cannot be null");
+    synchronized (listeners) {
+      listeners.put(listener, Boolean.TRUE);
+    }
+  }
+
+  public void removeRemovalListener(RemovalListener listener) {
+    synchronized (listeners) {
+      listeners.remove(listener);
+    }
+  }
+
+  private void notifyRemoval(long fingerprint, Entry entry) {
+    if (entry.schema == null) {
+      return; // unknown fingerprints were never handed out
+    }
+    // copy the current listeners, so that none is held after it is removed
+    List<RemovalListener> current;
+    synchronized (listeners) {
+      current = new ArrayList<>(listeners.keySet());
+    }
+    for (RemovalListener listener : current) {
+      if (listener != null) { // collected while copying
+        listener.onRemoval(fingerprint, entry.schema);
+      }
+    }
+  }
+
+  /** Return the maximum number of schemas held. */
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  /** Return the number of schemas and unknown fingerprints currently held. */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /** Return the number of lookups answered with a held schema. */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Return the number of lookups answered with a remembered unknown fingerprint.
+   */
+  public long getNegativeHitCount() {
+    return negativeHits.sum();
+  }
+
+  /** Return the number of lookups that needed a load. */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /** Return the number of completed calls to the loader, found or not. */
+  public long getLoadSuccessCount() {
+    return loadSuccesses.sum();
+  }
+
+  /** Return the number of calls to the loader that threw. */
+  public long getLoadFailureCount() {
+    return loadFailures.sum();
+  }
+
+  /** Return the total time spent in the loader, in nanoseconds. */
+  public long getTotalLoadTimeNanos() {
+    return loadTimeNanos.sum();
+  }
+
+  /** Return the number of entries evicted for size or expired. */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  private static final class Entry {
+    private final Schema schema; // null for an unknown fingerprint
+    private final long expiresAt;
+
+    Entry(Schema schema, long expiresAt) {
+      this.schema = schema;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A sequence of encoded messages held in one growable buffer, as written by
+ * {@link MessageEncoder#encodeAll(Iterable, MessageBatch)}. Each message can be
+ * read as a slice of the buffer or by its offset and length in
+ * {@link #array()}.
+ * <p>
+ * A batch can be reused after {@link #clear()}, which keeps its buffer, so
+ * encoding a batch of a similar size allocates nothing. Slices share the buffer
+ * and are only valid until the batch is cleared.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class MessageBatch {
+  private final BatchOutputStream buffer;
+  private int[] ends = new int[16];
+  private int size;
+
+  /** Create an empty batch. */
+  public MessageBatch() {
+    this(4096);
+  }
+
+  /** Create an empty batch with an initial buffer of <i>capacity</i> bytes. */
+  public MessageBatch(int capacity) {
+    this.buffer = new BatchOutputStream(capacity);
+  }
+
+  /** Return the number of messages. */
+  public int size() {
+    return size;
+  }
+
+  /** Return the number of bytes of all messages. */
+  public int byteSize() {
+    return buffer.size();
+  }
+
+  /**
+   * Return the buffer holding the messages. Only valid through
+   * {@link #byteSize()}.
+   */
+  public byte[] array() {
+    return buffer.array();
+  }
+
+  /** Return the offset of message <i>i</i> in {@link #array()}. */
+  public int getOffset(int i) {
+    checkIndex(i);
+    return i == 0 ? 0 : ends[i - 1];
+  }
+
+  /** Return the length of message <i>i</i> in bytes. */
+  public int getLength(int i) {
+    return ends[i] - getOffset(i);
+  }
+
+  /** Return a buffer sharing the bytes of message <i>i</i>. */
+  public ByteBuffer get(int i) {
+    int offset = getOffset(i);
+    return ByteBuffer.wrap(buffer.array(), offset, ends[i] - offset).slice();
+  }
+
+  /** Write the bytes of all messages, back to back. */
+  public void writeTo(OutputStream out) throws IOException {
+    buffer.writeTo(out);
+  }
+
+  /** Remove all messages, keeping the buffer. */
+  public void clear() {
+    buffer.reset();
+    size = 0;
+  }
+
+  private void checkIndex(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+  }
+
+  /** Return the stream that messages are written to. */
+  OutputStream stream() {
+    return buffer;
+  }
+
+  /** Mark the end of a message written to {@link #stream()}. */
+  void endMessage() {
+    if (size == ends.length) {
+      ends = Arrays.copyOf(ends, size * 2);
+    }
+    ends[size++] = buffer.size();
+  }
+
+  /** Discard the bytes written since the last complete message. */
+  void discardPartial() {
+    buffer.truncate(size == 0 ? 0 : ends[size - 1]);
+  }
+
+  private static class BatchOutputStream extends ByteArrayOutputStream {
+    BatchOutputStream(int capacity) {
+      super(capacity);
+    }
+
+    byte[] array() {
+      return buf;
+    }
+
+    void truncate(int length) {
+      count = length;
+    }
+  }
+}
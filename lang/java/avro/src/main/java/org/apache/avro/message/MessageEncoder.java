@@ -48,4 +48,30 @@ public interface MessageEncoder<D> {
    */
   void encode(D datum, OutputStream stream) throws IOException;
 
+  /**
+   * Serialize each datum as a separate message appended to a batch. Setup costs
+   * are paid once for the batch, and the messages share the batch's buffer.
+   * <p>
+   * If serializing a datum fails, the messages before it remain in the batch.
+   *
+   * @param datums the datums to serialize
+   * @param batch  a batch to append to, or null to create one
+   * @return the batch holding the serialized datums
+   * @throws IOException
+   */
+  default MessageBatch encodeAll(Iterable<? extends D> datums, MessageBatch batch) throws IOException {
+    MessageBatch result = batch != null ? batch : new MessageBatch();
+    OutputStream stream = result.stream();
+    try {
+      for (D datum : datums) {
+        encode(datum, stream);
+        result.endMessage();
+      }
+    } catch (IOException | RuntimeException e) {
+      result.discardPartial();
+      throw e;
+    }
+    return result;
+  }
+
 }
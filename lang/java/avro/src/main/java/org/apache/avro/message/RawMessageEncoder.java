@@ -24,7 +24,8 @@ import org.apache.avro.generic.GenericData;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.EncoderFactory;
-import org.apache.avro.util.internal.ThreadLocalWithInitial;
+import org.apache.avro.util.ObjectPool;
+import org.apache.avro.util.PoolingStrategy;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -39,9 +40,10 @@ import java.nio.ByteBuffer;
  */
 public class RawMessageEncoder<D> implements MessageEncoder<D> {
 
-  private static final ThreadLocal<BufferOutputStream> TEMP = ThreadLocalWithInitial.of(BufferOutputStream::new);
+  private static final ObjectPool<BufferOutputStream> TEMP = PoolingStrategy.get().newPool(BufferOutputStream::new);
 
-  private static final ThreadLocal<BinaryEncoder> ENCODER = new ThreadLocal<>();
+  private static final ObjectPool<BinaryEncoder> ENCODER = PoolingStrategy.get()
+      .newPool(() -> EncoderFactory.get().directBinaryEncoder(new ByteArrayOutputStream(0), null));
 
   private final boolean copyOutputBytes;
   private final DatumWriter<D> writer;
@@ -88,24 +90,55 @@ public class RawMessageEncoder<D> implements MessageEncoder<D> {
 
   @Override
   public ByteBuffer encode(D datum) throws IOException {
-    BufferOutputStream temp = TEMP.get();
+    BufferOutputStream temp = TEMP.acquire();
     temp.reset();
 
     encode(datum, temp);
 
     if (copyOutputBytes) {
-      return temp.toBufferWithCopy();
+      ByteBuffer result = temp.toBufferWithCopy();
+      TEMP.release(temp);
+      return result;
     } else {
+      // the result wraps the buffer, so it is only reused by this thread
       return temp.toBufferWithoutCopy();
     }
   }
 
   @Override
   public void encode(D datum, OutputStream stream) throws IOException {
-    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(stream, ENCODER.get());
-    ENCODER.set(encoder);
-    writer.write(datum, encoder);
-    encoder.flush();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(stream, ENCODER.acquire());
+    try {
+      writer.write(datum, encoder);
+      encoder.flush();
+    } finally {
+      ENCODER.release(encoder);
+    }
+  }
+
+  @Override
+  public MessageBatch encodeAll(Iterable<? extends D> datums, MessageBatch batch) throws IOException {
+    MessageBatch result = batch != null ? batch : new MessageBatch();
+    OutputStream stream = result.stream();
+    // one encoder for the whole batch; a direct encoder does not buffer
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(stream, ENCODER.acquire());
+    try {
+      for (D datum : datums) {
+        writeHeader(stream);
+        writer.write(datum, encoder);
+        result.endMessage();
+      }
+    } catch (IOException | RuntimeException e) {
+      result.discardPartial();
+      throw e;
+    } finally {
+      ENCODER.release(encoder);
+    }
+    return result;
+  }
+
+  /** Write what precedes each datum's bytes in a message. */
+  void writeHeader(OutputStream stream) throws IOException {
   }
 
   private static class BufferOutputStream extends ByteArrayOutputStream {
@@ -38,7 +38,9 @@ public interface SchemaStore {
   Schema findByFingerprint(long fingerprint);
 
   /**
-   * A map-based cache of schemas by AVRO-CRC-64 fingerprint.
+   * A map-based cache of schemas by AVRO-CRC-64 fingerprint. The cache is not
+   * bounded; see {@link LoadingSchemaStore} for a bounded cache that loads
+   * schemas on demand.
    * <p>
    * This class is thread-safe.
    */
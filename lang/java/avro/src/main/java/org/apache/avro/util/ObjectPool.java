@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.util;
+
+/**
+ * A source of reusable instances, such as decoders and scratch buffers, that
+ * are worth keeping between calls. Pools are created by a
+ * {@link PoolingStrategy}.
+ */
+public interface ObjectPool<T> {
+
+  /**
+   * Return an instance for the caller's exclusive use until it is passed to
+   * {@link #release(Object)}.
+   */
+  T acquire();
+
+  /**
+   * Return an instance obtained from {@link #acquire()} to the pool. The caller
+   * must not use it afterwards. Instances that are never released are simply not
+   * reused.
+   */
+  void release(T instance);
+
+  /**
+   * Return true if every instance is only ever handed to the thread that created
+   * it, so that a thread may keep using an instance after releasing it.
+   */
+  default boolean isThreadConfined() {
+    return false;
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import org.apache.avro.util.internal.ThreadLocalWithInitial;
+
+/**
+ * Creates the {@link ObjectPool}s that Avro uses to reuse decoders, encoders
+ * and scratch buffers between calls.
+ * <p/>
+ * The default strategy keeps one instance per thread, which suits a fixed set
+ * of long-lived threads. With many short-lived threads, such as virtual threads
+ * created per request, each thread would allocate its own instances; the
+ * {@linkplain #striped() striped} strategy instead shares a fixed number of
+ * instances between all threads without locking.
+ * <p/>
+ * The strategy is chosen with the {@value #POOLING_PROP} system property,
+ * either {@code threadlocal} (the default) or {@code striped}, or with
+ * {@link #set(PoolingStrategy)}. Avro classes create their pools when they are
+ * initialized, so the strategy must be chosen before Avro is used.
+ */
+public abstract class PoolingStrategy {
+
+  /** The system property that selects the default strategy. */
+  public static final String POOLING_PROP = "org.apache.avro.pooling";
+
+  private static final PoolingStrategy THREAD_LOCAL = new PoolingStrategy() {
+    @Override
+    public <T> ObjectPool<T> newPool(Supplier<? extends T> supplier) {
+      ThreadLocal<T> instances = ThreadLocalWithInitial.of(supplier);
+      return new ObjectPool<T>() {
+        @Override
+        public T acquire() {
+          return instances.get();
+        }
+
+        @Override
+        public void release(T instance) {
+          // the instance stays with its thread
+        }
+
+        @Override
+        public boolean isThreadConfined() {
+          return true;
+        }
+      };
+    }
+  };
+
+  private static volatile PoolingStrategy current = fromProperty(System.getProperty(POOLING_PROP));
+
+  /** Return the strategy used for new pools. */
+  public static PoolingStrategy get() {
+    return current;
+  }
+
+  /** Set the strategy used for pools created after this call. */
+  public static void set(PoolingStrategy strategy) {
+    if (strategy == null) {
+      throw new NullPointerException("strategy is null");
+    }
+    current = strategy;
+  }
+
+  /** Return the strategy that keeps one instance per thread. */
+  public static PoolingStrategy threadLocal() {
+    return THREAD_LOCAL;
+  }
+
+  /**
+   * Return a strategy whose pools share up to four instances per available
+   * processor between all threads.
+   */
+  public static PoolingStrategy striped() {
+    return striped(4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Return a strategy whose pools share up to <i>stripes</i> instances, rounded
+   * up to a power of two, between all threads.
+   */
+  public static PoolingStrategy striped(int stripes) {
+    if (stripes < 1) {
+      throw new IllegalArgumentException("stripes must be positive: " + stripes);
+    }
+    int size = Integer.highestOneBit(stripes);
+    int slots = size < stripes ? size << 1 : size;
+    return new PoolingStrategy() {
+      @Override
+      public <T> ObjectPool<T> newPool(Supplier<? extends T> supplier) {
+        return new StripedPool<>(supplier, slots);
+      }
+    };
+  }
+
+  static PoolingStrategy fromProperty(String value) {
+    if (value == null || value.isEmpty() || "threadlocal".equalsIgnoreCase(value)) {
+      return THREAD_LOCAL;
+    }
+    if ("striped".equalsIgnoreCase(value)) {
+      return striped();
+    }
+    throw new IllegalArgumentException("Unknown " + POOLING_PROP + ": " + value);
+  }
+
+  /** Create a pool of instances made by <i>supplier</i>. */
+  public abstract <T> ObjectPool<T> newPool(Supplier<? extends T> supplier);
+
+  /**
+   * A pool holding instances in a fixed array of slots. A thread starts probing
+   * at a slot chosen from its id, so threads mostly touch different slots. When
+   * no instance is found a new one is created, and when no slot is free a
+   * released instance is dropped.
+   */
+  private static final class StripedPool<T> implements ObjectPool<T> {
+    private static final int PROBES = 4;
+
+    private final Supplier<? extends T> supplier;
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+
+    StripedPool(Supplier<? extends T> supplier, int size) {
+      this.supplier = supplier;
+      this.slots = new AtomicReferenceArray<>(size);
+      this.mask = size - 1;
+    }
+
+    @Override
+    public T acquire() {
+      int start = probe();
+      for (int i = 0; i < PROBES; i++) {
+        int index = (start + i) & mask;
+        T instance = slots.get(index);
+        if (instance != null && slots.compareAndSet(index, instance, null)) {
+          return instance;
+        }
+      }
+      return supplier.get();
+    }
+
+    @Override
+    public void release(T instance) {
+      if (instance == null) {
+        return;
+      }
+      int start = probe();
+      for (int i = 0; i < PROBES; i++) {
+        int index = (start + i) & mask;
+        if (slots.get(index) == null && slots.compareAndSet(index, null, instance)) {
+          return;
+        }
+      }
+    }
+
+    private static int probe() {
+      long id = Thread.currentThread().getId();
+      int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+}
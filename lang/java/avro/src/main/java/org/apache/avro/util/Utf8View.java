@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.avro.io.BinaryData;
+
+/**
+ * A view of UTF-8 encoded bytes held in an array it does not own, typically the
+ * buffer of a {@link org.apache.avro.io.BinaryDecoder} as returned by
+ * {@link org.apache.avro.io.BinaryDecoder#readStringView(Utf8View)}. Views let
+ * callers compare, hash or route strings without copying them.
+ * <p/>
+ * A view is only valid until its array is modified, which for a decoder is the
+ * next read. Values that must be kept afterwards are copied with
+ * {@link #toUtf8()}, or converted with {@link #toString()} before the view is
+ * invalidated. The String form and the hash code are computed lazily and cached
+ * until the view is pointed elsewhere.
+ */
+public class Utf8View implements Comparable<Utf8View>, CharSequence {
+  private static final byte[] EMPTY = new byte[0];
+
+  private byte[] bytes = EMPTY;
+  private int offset;
+  private int length;
+  private int hash;
+  private String string;
+
+  public Utf8View() {
+  }
+
+  /**
+   * Create a view of <i>length</i> bytes of an array starting at <i>offset</i>.
+   */
+  public Utf8View(byte[] bytes, int offset, int length) {
+    set(bytes, offset, length);
+  }
+
+  /**
+   * Point this view at <i>length</i> bytes of an array starting at <i>offset</i>,
+   * clearing the cached String and hash code.
+   */
+  public Utf8View set(byte[] bytes, int offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array " + bytes.length);
+    }
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+    this.hash = 0;
+    this.string = null;
+    return this;
+  }
+
+  /** Return the array viewed. Only valid from {@link #getOffset()}. */
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  /** Return the position of the first byte in {@link #getBytes()}. */
+  public int getOffset() {
+    return offset;
+  }
+
+  /** Return length in bytes. */
+  public int getByteLength() {
+    return length;
+  }
+
+  /** Return a {@link Utf8} holding a copy of the bytes viewed. */
+  public Utf8 toUtf8() {
+    return new Utf8(Arrays.copyOfRange(bytes, offset, offset + length));
+  }
+
+  /** Return true if this view holds the same bytes as a {@link Utf8}. */
+  public boolean contentEquals(Utf8 utf8) {
+    return utf8.getByteLength() == length
+        && BinaryData.compareBytes(bytes, offset, length, utf8.getBytes(), 0, length) == 0;
+  }
+
+  @Override
+  public String toString() {
+    if (length == 0)
+      return "";
+    if (string == null) {
+      string = new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+    return string;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this)
+      return true;
+    if (!(o instanceof Utf8View))
+      return false;
+    Utf8View that = (Utf8View) o;
+    return this.length == that.length
+        && BinaryData.compareBytes(bytes, offset, length, that.bytes, that.offset, length) == 0;
+  }
+
+  /**
+   * Return the hash code of the bytes viewed, which equals that of a {@link Utf8}
+   * holding the same bytes.
+   */
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      byte[] bytes = this.bytes;
+      int end = offset + length;
+      for (int i = offset; i < end; i++) {
+        h = h * 31 + bytes[i];
+      }
+      hash = h;
+    }
+    return h;
+  }
+
+  @Override
+  public int compareTo(Utf8View that) {
+    return BinaryData.compareBytes(this.bytes, this.offset, this.length, that.bytes, that.offset, that.length);
+  }
+
+  // CharSequence implementation
+  @Override
+  public char charAt(int index) {
+    return toString().charAt(index);
+  }
+
+  @Override
+  public int length() {
+    return toString().length();
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().subSequence(start, end);
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.apache.avro.SchemaCompatibility.SchemaPairCompatibility;
+import org.junit.Test;
+
+public class TestSchemaCompatibilityCache {
+
+  private static Schema parse(String json) {
+    return new Schema.Parser().parse(json);
+  }
+
+  private static final String NODE = "{\"type\":\"record\",\"name\":\"Node\",\"fields\":["
+      + "{\"name\":\"value\",\"type\":\"int\"},{\"name\":\"next\",\"type\":[\"null\",\"Node\"]}%s]}";
+
+  /** Outer holds Inner, which refers back to Outer. */
+  private static Schema outer(String badType) {
+    return parse("{\"type\":\"record\",\"name\":\"Outer\",\"fields\":["
+        + "{\"name\":\"inner\",\"type\":{\"type\":\"record\",\"name\":\"Inner\",\"fields\":["
+        + "{\"name\":\"x\",\"type\":\"int\"},{\"name\":\"back\",\"type\":[\"null\",\"Outer\"]}]}},"
+        + "{\"name\":\"bad\",\"type\":\"" + badType + "\"}]}");
+  }
+
+  private static Schema parent(String childType, String siblingType) {
+    return parse("{\"type\":\"record\",\"name\":\"Wrapper\",\"fields\":["
+        + "{\"name\":\"p\",\"type\":{\"type\":\"record\",\"name\":\"Parent\",\"fields\":["
+        + "{\"name\":\"c\",\"type\":{\"type\":\"record\",\"name\":\"Child\",\"fields\":["
+        + "{\"name\":\"a\",\"type\":\"" + childType + "\"}]}}]}},"
+        + "{\"name\":\"q\",\"type\":{\"type\":\"record\",\"name\":\"Sibling\",\"fields\":["
+        + "{\"name\":\"b\",\"type\":\"" + siblingType + "\"}]}}]}");
+  }
+
+  private static void assertSameResult(SchemaPairCompatibility expected, SchemaPairCompatibility actual) {
+    assertEquals(expected.getType(), actual.getType());
+    assertEquals(expected.getResult(), actual.getResult());
+    assertEquals(expected.getDescription(), actual.getDescription());
+  }
+
+  @Test
+  public void pairProvenUnderAssumptionIsNotCached() {
+    Schema reader = outer("int");
+    Schema writer = outer("string"); // Outer is incompatible, so Inner is too
+    SchemaCompatibilityCache cache = new SchemaCompatibilityCache();
+    SchemaPairCompatibility result = cache.checkReaderWriterCompatibility(reader, writer);
+    assertEquals(SchemaCompatibilityType.INCOMPATIBLE, result.getType());
+
+    Schema innerReader = reader.getField("inner").schema();
+    Schema innerWriter = writer.getField("inner").schema();
+    // Inner was only compatible assuming Outer, still being checked, was
+    assertFalse(cache.isCompatibleRecord(innerReader, innerWriter));
+    assertFalse(cache.isCompatibleRecord(reader, writer));
+    assertSameResult(SchemaCompatibility.checkReaderWriterCompatibility(innerReader, innerWriter),
+        cache.checkReaderWriterCompatibility(innerReader, innerWriter));
+    assertEquals(SchemaCompatibilityType.INCOMPATIBLE,
+        cache.checkReaderWriterCompatibility(innerReader, innerWriter).getType());
+  }
+
+  @Test
+  public void recursiveRecordCheckedTwice() {
+    Schema reader = parse(String.format(NODE, ",{\"name\":\"extra\",\"type\":\"long\",\"default\":0}"));
+    Schema badReader = parse(String.format(NODE, ",{\"name\":\"extra\",\"type\":\"long\"}"));
+    Schema writer = parse(String.format(NODE, ""));
+    SchemaCompatibilityCache cache = new SchemaCompatibilityCache();
+    for (Schema r : Arrays.asList(reader, badReader)) {
+      SchemaPairCompatibility expected = SchemaCompatibility.checkReaderWriterCompatibility(r, writer);
+      for (int i = 0; i < 2; i++) {
+        assertSameResult(expected, cache.checkReaderWriterCompatibility(r, writer));
+        // equal schemas parsed again share the cached results
+        assertSameResult(expected, cache.checkReaderWriterCompatibility(parse(r.toString()), parse(writer.toString())));
+      }
+    }
+    assertEquals(SchemaCompatibilityType.COMPATIBLE, cache.checkReaderWriterCompatibility(reader, writer).getType());
+    assertEquals(SchemaCompatibilityType.INCOMPATIBLE,
+        cache.checkReaderWriterCompatibility(badReader, writer).getType());
+  }
+
+  @Test
+  public void incompatibleNestedRecordReportedAfterParentCached() {
+    SchemaCompatibilityCache cache = new SchemaCompatibilityCache();
+    Schema reader = parent("long", "int");
+    assertEquals(SchemaCompatibilityType.COMPATIBLE,
+        cache.checkReaderWriterCompatibility(reader, parent("int", "int")).getType());
+    Schema parentReader = reader.getField("p").schema();
+    assertTrue(cache.isCompatibleRecord(parentReader, parent("int", "int").getField("p").schema()));
+
+    // the cached Parent pair is skipped, and the changed sibling still checked
+    Schema writer = parent("int", "string");
+    SchemaPairCompatibility result = cache.checkReaderWriterCompatibility(reader, writer);
+    assertEquals(SchemaCompatibilityType.INCOMPATIBLE, result.getType());
+    assertSameResult(SchemaCompatibility.checkReaderWriterCompatibility(reader, writer), result);
+
+    // a changed Child makes a different Parent pair, which is checked again
+    writer = parent("string", "int");
+    result = cache.checkReaderWriterCompatibility(reader, writer);
+    assertEquals(SchemaCompatibilityType.INCOMPATIBLE, result.getType());
+    assertSameResult(SchemaCompatibility.checkReaderWriterCompatibility(reader, writer), result);
+    assertEquals("/fields/0/type/fields/0/type/fields/0/type",
+        result.getResult().getIncompatibilities().get(0).getLocation());
+  }
+
+  @Test
+  public void addedPropertyIsNoticed() {
+    SchemaCompatibilityCache cache = new SchemaCompatibilityCache();
+    Schema reader = parse(String.format(NODE, ""));
+    Schema writer = parse(String.format(NODE, ""));
+    cache.checkReaderWriterCompatibility(reader, writer);
+    int size = cache.size();
+    reader.addProp("note", "changed");
+    cache.checkReaderWriterCompatibility(reader, writer);
+    assertTrue(cache.size() > size); // keyed by a new fingerprint
+  }
+
+  /** Return the message of the validation failure, or null if valid. */
+  private static String validate(SchemaValidator validator, Schema schema, List<Schema> history) {
+    try {
+      validator.validate(schema, history);
+      return null;
+    } catch (SchemaValidationException e) {
+      return e.getMessage();
+    }
+  }
+
+  @Test
+  public void cachedValidatorsMatchUncached() {
+    List<Schema> versions = new ArrayList<>();
+    String record = "{\"type\":\"record\",\"name\":\"V\",\"fields\":[{\"name\":\"a\",\"type\":\"int\"}%s]}";
+    versions.add(parse(String.format(record, "")));
+    versions.add(parse(String.format(record, ",{\"name\":\"b\",\"type\":\"long\",\"default\":1}")));
+    versions.add(parse(String.format(record, ",{\"name\":\"b\",\"type\":\"long\"}")));
+    versions.add(parse(String.format(record, ",{\"name\":\"b\",\"type\":\"string\",\"default\":\"x\"}")));
+    versions.add(parse(String.format(NODE, "")));
+
+    SchemaCompatibilityCache cache = new SchemaCompatibilityCache();
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      List<SchemaValidatorBuilder> strategies = Arrays.asList(new SchemaValidatorBuilder().canReadStrategy(),
+          new SchemaValidatorBuilder().canBeReadStrategy(), new SchemaValidatorBuilder().mutualReadStrategy());
+      for (SchemaValidatorBuilder builder : strategies) {
+        SchemaValidator uncachedAll = builder.validateAll();
+        SchemaValidator uncachedLatest = builder.validateLatest();
+        builder.cache(cache);
+        SchemaValidator cachedLatest = builder.validateLatest();
+        SchemaValidator cachedAll = builder.validateAll();
+        SchemaValidator parallelAll = builder.executor(executor).validateAll();
+        SchemaValidator uncachedParallelAll = builder.cache(null).validateAll();
+        for (int round = 0; round < 2; round++) {
+          for (Schema schema : versions) {
+            for (int n = 0; n <= versions.size(); n++) {
+              List<Schema> history = versions.subList(0, n);
+              String expected = validate(uncachedAll, schema, history);
+              assertEquals(expected, validate(cachedAll, schema, history));
+              assertEquals(expected, validate(parallelAll, schema, history));
+              assertEquals(expected, validate(uncachedParallelAll, schema, history));
+              assertEquals(validate(uncachedLatest, schema, history), validate(cachedLatest, schema, history));
+            }
+          }
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(cache.getHitCount() > 0);
+    assertNull(validate(new SchemaValidatorBuilder().canReadStrategy().cache(cache).validateAll(), versions.get(1),
+        Collections.singletonList(versions.get(0))));
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.message.BinaryMessageDecoder;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.apache.avro.message.SchemaStore;
+import org.junit.Test;
+
+public class TestSchemaInterner {
+
+  private static final String JSON = "{\"type\":\"record\",\"name\":\"a.R\",\"doc\":\"d\","
+      + "\"fields\":[{\"name\":\"x\",\"type\":\"int\"}]}";
+
+  private static Schema parse(String json) {
+    return new Schema.Parser().parse(json);
+  }
+
+  @Test
+  public void equalSchemasAreShared() {
+    SchemaInterner interner = new SchemaInterner();
+    Schema first = parse(JSON);
+    Schema second = parse(JSON);
+    assertNotSame(first, second);
+
+    assertSame(first, interner.intern(first));
+    assertSame(first, interner.intern(second));
+    assertEquals(1, interner.getMissCount());
+    assertEquals(1, interner.getHitCount());
+    assertEquals(1, interner.size());
+  }
+
+  @Test
+  public void schemasDifferingInDocAreNotShared() {
+    SchemaInterner interner = new SchemaInterner();
+    Schema first = parse(JSON);
+    Schema second = parse(JSON.replace("\"d\"", "\"other\""));
+    assertEquals(first, second); // Schema.equals ignores docs
+
+    assertSame(first, interner.intern(first));
+    assertSame(second, interner.intern(second));
+    assertEquals(2, interner.size());
+  }
+
+  @Test
+  public void parseReusesSourceText() {
+    SchemaInterner interner = new SchemaInterner();
+    String spaced = JSON.replace(",", ", ");
+    Schema schema = interner.parse(new Schema.Parser(), spaced);
+
+    // the same text is not parsed again, so a parser that already knows the name
+    // does not fail
+    Schema.Parser parser = new Schema.Parser();
+    parser.parse(JSON);
+    assertSame(schema, interner.parse(parser, spaced));
+    // other text with the same form is parsed, then shared
+    assertSame(schema, interner.parse(new Schema.Parser(), JSON));
+    assertSame(schema, interner.intern(parse(JSON)));
+  }
+
+  @Test
+  public void modifiedSchemaIsNotReturned() {
+    SchemaInterner interner = new SchemaInterner();
+    Schema first = interner.intern(parse(JSON));
+    first.addProp("extra", "value");
+
+    Schema second = parse(JSON);
+    assertSame(second, interner.intern(second));
+    assertSame(second, interner.intern(parse(JSON)));
+  }
+
+  @Test
+  public void modifiedSchemaIsParsedAgain() {
+    SchemaInterner interner = new SchemaInterner();
+    Schema first = interner.parse(new Schema.Parser(), JSON);
+    assertSame(first, interner.parse(new Schema.Parser(), JSON));
+    first.addProp("extra", "value");
+
+    Schema second = interner.parse(new Schema.Parser(), JSON);
+    assertNotSame(first, second);
+    assertEquals(parse(JSON), second);
+    assertSame(second, interner.parse(new Schema.Parser(), JSON));
+  }
+
+  @Test
+  public void clearForgetsSchemas() {
+    SchemaInterner interner = new SchemaInterner();
+    Schema first = interner.intern(parse(JSON));
+    interner.clear();
+    assertEquals(0, interner.size());
+
+    Schema second = parse(JSON);
+    assertSame(second, interner.intern(second));
+    assertNotSame(first, second);
+  }
+
+  @Test
+  public void unusedSchemasAreDropped() throws InterruptedException {
+    SchemaInterner interner = new SchemaInterner();
+    interner.intern(parse(JSON));
+    for (int i = 0; i < 100 && interner.size() > 0; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertEquals(0, interner.size());
+  }
+
+  private static byte[] dataFile(Schema schema) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+      writer.create(schema, out);
+      GenericRecord record = new GenericData.Record(schema);
+      record.put("x", 1);
+      writer.append(record);
+    }
+    return out.toByteArray();
+  }
+
+  private static Schema readSchema(byte[] file, SchemaInterner interner) throws IOException {
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(new ByteArrayInputStream(file),
+        new GenericDatumReader<>(), interner)) {
+      assertEquals(1, in.next().get("x"));
+      return in.getSchema();
+    }
+  }
+
+  @Test
+  public void dataFileStreamsShareInternedSchemas() throws IOException {
+    byte[] file = dataFile(parse(JSON));
+    SchemaInterner interner = new SchemaInterner();
+
+    Schema first = readSchema(file, interner);
+    assertSame(first, readSchema(file, interner));
+    assertNotSame(readSchema(file, null), readSchema(file, null));
+  }
+
+  @Test
+  public void messageDecodersShareInternedSchemas() throws IOException {
+    Schema schema = parse(JSON);
+    GenericRecord record = new GenericData.Record(schema);
+    record.put("x", 1);
+    ByteBuffer message = new BinaryMessageEncoder<GenericRecord>(GenericData.get(), schema).encode(record);
+
+    SchemaInterner interner = new SchemaInterner();
+    Schema[] decoded = new Schema[2];
+    for (int i = 0; i < decoded.length; i++) {
+      SchemaStore.Cache store = new SchemaStore.Cache();
+      store.addSchema(parse(JSON));
+      BinaryMessageDecoder<GenericRecord> decoder = new BinaryMessageDecoder<>(GenericData.get(), null, store);
+      decoder.setSchemaInterner(interner);
+      decoded[i] = decoder.decode(message.duplicate()).getSchema();
+    }
+    assertSame(decoded[0], decoded[1]);
+    assertTrue(interner.getHitCount() > 0);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+
+import org.junit.Test;
+
+public class TestSchemaNormalization {
+
+  private static final String JSON = "{\"type\":\"record\",\"name\":\"Point\",\"namespace\":\"geo\",\"doc\":\"A point\","
+      + "\"aliases\":[\"P\"],\"fields\":[{\"name\":\"x\",\"type\":\"double\",\"default\":0.0},"
+      + "{\"name\":\"y\",\"type\":\"double\",\"doc\":\"ordinate\"},"
+      + "{\"name\":\"kind\",\"type\":{\"type\":\"enum\",\"name\":\"Kind\",\"symbols\":[\"A\",\"B\"]}},"
+      + "{\"name\":\"next\",\"type\":[\"null\",\"Point\"]}]}";
+
+  private static final String FORM = "{\"name\":\"geo.Point\",\"type\":\"record\",\"fields\":["
+      + "{\"name\":\"x\",\"type\":\"double\"},{\"name\":\"y\",\"type\":\"double\"},"
+      + "{\"name\":\"kind\",\"type\":{\"name\":\"geo.Kind\",\"type\":\"enum\",\"symbols\":[\"A\",\"B\"]}},"
+      + "{\"name\":\"next\",\"type\":[\"null\",\"geo.Point\"]}]}";
+
+  private static final String[] ALGORITHMS = { "CRC-64-AVRO", "MD5", "SHA-256", "SHA-1" };
+
+  @Test
+  public void cachedFingerprintsMatchUncached() throws NoSuchAlgorithmException {
+    Schema schema = new Schema.Parser().parse(JSON);
+    byte[] bytes = FORM.getBytes(StandardCharsets.UTF_8);
+    // twice, so that the second round is answered from the cache
+    for (int round = 0; round < 2; round++) {
+      assertEquals(FORM, SchemaNormalization.toParsingForm(schema));
+      assertEquals(SchemaNormalization.fingerprint64(bytes), SchemaNormalization.parsingFingerprint64(schema));
+      for (String algorithm : ALGORITHMS) {
+        assertArrayEquals(algorithm, SchemaNormalization.fingerprint(algorithm, bytes),
+            SchemaNormalization.parsingFingerprint(algorithm, schema));
+      }
+    }
+  }
+
+  @Test
+  public void crc64IsLittleEndian() throws NoSuchAlgorithmException {
+    Schema schema = new Schema.Parser().parse(JSON);
+    long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+    byte[] bytes = SchemaNormalization.parsingFingerprint("CRC-64-AVRO", schema);
+    assertEquals(8, bytes.length);
+    for (int i = 0; i < 8; i++) {
+      assertEquals((byte) (fingerprint >>> (8 * i)), bytes[i]);
+    }
+  }
+
+  @Test
+  public void formIsComputedOncePerSchema() throws NoSuchAlgorithmException {
+    Schema schema = new Schema.Parser().parse(JSON);
+    assertNull(schema.parsingForm);
+    String form = SchemaNormalization.toParsingForm(schema);
+    SchemaNormalization.ParsingForm parsingForm = schema.parsingForm;
+    assertNotNull(parsingForm);
+
+    SchemaNormalization.parsingFingerprint64(schema);
+    for (String algorithm : ALGORITHMS) {
+      SchemaNormalization.parsingFingerprint(algorithm, schema);
+    }
+    assertSame(parsingForm, schema.parsingForm);
+    assertSame(form, SchemaNormalization.toParsingForm(schema));
+  }
+
+  @Test
+  public void cachedDigestsAreCopied() throws NoSuchAlgorithmException {
+    Schema schema = new Schema.Parser().parse(JSON);
+    for (String algorithm : ALGORITHMS) {
+      byte[] first = SchemaNormalization.parsingFingerprint(algorithm, schema);
+      byte[] expected = first.clone();
+      first[0]++;
+      byte[] second = SchemaNormalization.parsingFingerprint(algorithm, schema);
+      assertNotSame(first, second);
+      assertArrayEquals(algorithm, expected, second);
+    }
+  }
+
+  @Test
+  public void equalSchemasHaveEqualFingerprints() throws NoSuchAlgorithmException {
+    Schema schema = new Schema.Parser().parse(JSON);
+    Schema other = new Schema.Parser().parse(FORM);
+    assertEquals(SchemaNormalization.parsingFingerprint64(schema), SchemaNormalization.parsingFingerprint64(other));
+    for (String algorithm : ALGORITHMS) {
+      assertArrayEquals(algorithm, SchemaNormalization.parsingFingerprint(algorithm, schema),
+          SchemaNormalization.parsingFingerprint(algorithm, other));
+    }
+  }
+
+  @Test
+  public void unknownAlgorithmIsRejected() {
+    Schema schema = new Schema.Parser().parse(JSON);
+    assertThrows(NoSuchAlgorithmException.class, () -> SchemaNormalization.parsingFingerprint("CRC-0", schema));
+  }
+}
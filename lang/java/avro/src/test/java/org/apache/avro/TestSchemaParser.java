@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that {@link Schema.Parser}, which reads most schemas from the token
+ * stream, gives the same schemas as parsing a JSON tree.
+ */
+public class TestSchemaParser {
+
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final String[] SCHEMAS = { "\"null\"", "\"boolean\"", "\"int\"", "\"long\"", "\"float\"",
+      "\"double\"", "\"bytes\"", "\"string\"", "{\"type\":\"string\"}", "{\"type\":\"int\",\"logicalType\":\"date\"}",
+      "{\"type\":\"long\",\"logicalType\":\"timestamp-millis\",\"custom\":[1,2]}",
+      "{\"type\":\"bytes\",\"logicalType\":\"decimal\",\"precision\":9,\"scale\":2}",
+      "{\"type\":\"array\",\"items\":\"long\"}", "{\"type\":\"array\",\"items\":{\"type\":\"map\",\"values\":\"string\"}}",
+      "{\"items\":\"int\",\"type\":\"array\"}", "{\"type\":\"map\",\"values\":[\"null\",\"int\"],\"prop\":\"x\"}",
+      "[\"null\",\"string\",{\"type\":\"array\",\"items\":\"int\"}]",
+      "{\"type\":\"enum\",\"name\":\"Suit\",\"namespace\":\"cards\",\"doc\":\"d\",\"symbols\":[\"SPADES\",\"HEARTS\"],\"default\":\"SPADES\"}",
+      "{\"type\":\"fixed\",\"name\":\"MD5\",\"size\":16,\"aliases\":[\"Hash\"]}",
+      "{\"type\":\"fixed\",\"name\":\"org.Dec\",\"size\":8,\"logicalType\":\"decimal\",\"precision\":4}",
+      // records streamed with the doc before the fields
+      "{\"type\":\"record\",\"name\":\"a.R\",\"doc\":\"before\",\"fields\":[{\"name\":\"f\",\"type\":\"int\"}]}",
+      // records streamed with the doc after the fields
+      "{\"type\":\"record\",\"name\":\"a.R\",\"fields\":[{\"name\":\"f\",\"type\":\"int\"}],\"doc\":\"after\"}",
+      "{\"type\":\"record\",\"name\":\"R\",\"namespace\":\"a\",\"fields\":[],\"doc\":\"after\",\"aliases\":[\"S\"],\"p\":{\"q\":1}}",
+      // records without a doc
+      "{\"type\":\"error\",\"name\":\"a.E\",\"fields\":[{\"name\":\"message\",\"type\":\"string\",\"doc\":\"m\"}]}",
+      "{\"type\":\"record\",\"name\":\"Plain\",\"fields\":[{\"name\":\"f\",\"type\":\"long\",\"default\":1}]}",
+      // name, namespace or type after the fields
+      "{\"type\":\"record\",\"fields\":[{\"name\":\"f\",\"type\":\"int\"}],\"name\":\"a.Late\"}",
+      "{\"type\":\"record\",\"name\":\"Late\",\"fields\":[],\"namespace\":\"a\"}",
+      "{\"fields\":[{\"name\":\"f\",\"type\":\"int\"}],\"type\":\"record\",\"name\":\"a.Late\"}",
+      // nested and recursive records
+      "{\"type\":\"record\",\"name\":\"a.Node\",\"fields\":[{\"name\":\"value\",\"type\":\"int\"},"
+          + "{\"name\":\"children\",\"type\":{\"type\":\"array\",\"items\":\"Node\"}}],\"doc\":\"tree\"}",
+      "{\"type\":\"record\",\"name\":\"a.Outer\",\"fields\":[{\"name\":\"inner\",\"type\":{\"type\":\"record\",\"name\":\"Inner\","
+          + "\"fields\":[{\"name\":\"x\",\"type\":[\"null\",\"Inner\"],\"default\":null}],\"doc\":\"in\"}},"
+          + "{\"name\":\"again\",\"type\":\"a.Inner\"},"
+          + "{\"type\":{\"type\":\"enum\",\"name\":\"b.E\",\"symbols\":[\"X\"]},\"name\":\"e\",\"order\":\"descending\"}],"
+          + "\"namespace\":\"ignored\"}",
+      "{\"type\":\"record\",\"name\":\"a.Defaults\",\"fields\":["
+          + "{\"name\":\"l\",\"type\":\"long\",\"default\":12345678901},"
+          + "{\"name\":\"d\",\"type\":\"double\",\"default\":1.5},"
+          + "{\"name\":\"b\",\"type\":\"boolean\",\"default\":true},"
+          + "{\"name\":\"s\",\"type\":{\"type\":\"array\",\"items\":\"string\"},\"default\":[\"x\"]},"
+          + "{\"name\":\"m\",\"type\":{\"type\":\"map\",\"values\":\"int\"},\"default\":{\"k\":1},\"aliases\":[\"mm\"],"
+          + "\"fieldProp\":\"v\"},"
+          + "{\"name\":\"a\",\"type\":{\"type\":\"array\",\"items\":\"float\"},\"default\":[0.25,-1e3],"
+          + "\"p\":{\"q\":[2.5]}}]}" };
+
+  private static final String[] INVALID = { "\"Undefined\"", "{\"type\":\"record\",\"name\":\"a.R\"}",
+      "{\"type\":\"record\",\"name\":\"a.R\",\"fields\":[{\"name\":\"f\"}]}",
+      "{\"type\":\"record\",\"name\":\"a.R\",\"fields\":[{\"name\":\"f\",\"type\":\"Missing\"}],\"doc\":\"d\"}",
+      "{\"type\":\"record\",\"name\":\"a.R\",\"fields\":[{\"type\":\"int\"}]}",
+      "{\"type\":\"record\",\"name\":\"int\",\"fields\":[]}", "{\"type\":\"array\"}", "{\"type\":\"enum\",\"name\":\"E\"}",
+      "{\"type\":\"record\",\"name\":\"a.R\",\"fields\":[{\"name\":\"f\",\"type\":\"int\"},{\"name\":\"f\",\"type\":\"int\"}]}" };
+
+  private static Schema parseTree(String json) throws IOException {
+    return Schema.parse(MAPPER.readTree(json), new Schema.Names());
+  }
+
+  @Test
+  public void streamedMatchesTree() throws IOException {
+    for (String json : SCHEMAS) {
+      Schema streamed = new Schema.Parser().parse(json);
+      Schema tree = parseTree(json);
+      assertEquals(json, tree, streamed);
+      assertEquals(json, tree.toString(true), streamed.toString(true));
+      assertEquals(json, tree.getLogicalType(), streamed.getLogicalType());
+    }
+  }
+
+  @Test
+  public void docFollowingFieldsIsKept() {
+    Schema schema = new Schema.Parser()
+        .parse("{\"type\":\"record\",\"name\":\"a.R\",\"fields\":[{\"name\":\"f\",\"type\":{\"type\":\"record\","
+            + "\"name\":\"I\",\"fields\":[],\"doc\":\"inner\"}}],\"doc\":\"outer\"}");
+    assertEquals("outer", schema.getDoc());
+    assertEquals("inner", schema.getField("f").schema().getDoc());
+  }
+
+  @Test
+  public void recursiveRecordRefersToItself() {
+    Schema schema = new Schema.Parser()
+        .parse("{\"type\":\"record\",\"name\":\"a.List\",\"fields\":[{\"name\":\"next\",\"type\":[\"null\",\"List\"]}],"
+            + "\"doc\":\"linked\"}");
+    assertSame(schema, schema.getField("next").schema().getTypes().get(1));
+  }
+
+  @Test
+  public void invalidSchemasFailAlike() throws IOException {
+    for (String json : INVALID) {
+      String expected = null;
+      try {
+        parseTree(json);
+        fail("Tree parse should have failed: " + json);
+      } catch (AvroRuntimeException e) {
+        expected = e.getClass() + ": " + e.getMessage();
+      }
+      try {
+        new Schema.Parser().parse(json);
+        fail("Streamed parse should have failed: " + json);
+      } catch (AvroRuntimeException e) {
+        assertEquals(json, expected, e.getClass() + ": " + e.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void parseAllMatchesSequentialParse() throws IOException {
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < SCHEMAS.length; i++) {
+      File file = dir.newFile(i + ".avsc");
+      try (Writer out = new FileWriter(file)) {
+        out.write(SCHEMAS[i]);
+      }
+      files.add(file);
+    }
+    List<Schema> parallel = new ArrayList<>();
+    List<Schema> sequential = new ArrayList<>();
+    for (File file : files) { // the corpus redefines names, so parse each alone
+      parallel.addAll(new Schema.Parser().parseAll(Collections.singletonList(file)));
+      sequential.add(new Schema.Parser().parse(file));
+    }
+    assertEquals(sequential, parallel);
+
+    Schema.Parser parser = new Schema.Parser();
+    List<Schema> all = parser.parseAll(files.subList(files.size() - 3, files.size()));
+    assertEquals(3, all.size());
+    assertNotNull(parser.getTypes().get("a.Node"));
+    assertNotNull(parser.getTypes().get("a.Inner"));
+    assertNotNull(parser.getTypes().get("b.E"));
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.InvalidAvroMagicException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestBlockFilter {
+
+  private static final Schema SCHEMA = new Schema.Parser()
+      .parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"id\",\"type\":\"long\"},"
+          + "{\"name\":\"tag\",\"type\":[\"null\",\"string\"]}]}");
+  private static final Schema TYPED = new Schema.Parser()
+      .parse("{\"type\":\"record\",\"name\":\"T\",\"fields\":[{\"name\":\"n\",\"type\":\"int\"},"
+          + "{\"name\":\"kind\",\"type\":{\"type\":\"enum\",\"name\":\"Kind\",\"symbols\":[\"A\",\"B\",\"C\"]}}]}");
+  private static final int COUNT = 1000;
+
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  private File file;
+
+  private DataFileIndex writeFile() throws IOException {
+    file = new File(dir.getRoot(), "stats.avro");
+    DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(SCHEMA));
+    writer.setBlockStatistics("id", "tag");
+    writer.setSyncInterval(256);
+    try (DataFileWriter<GenericRecord> w = writer.create(SCHEMA, file)) {
+      for (long i = 0; i < COUNT; i++) {
+        GenericRecord record = new GenericData.Record(SCHEMA);
+        record.put("id", i);
+        record.put("tag", i < COUNT / 2 ? null : "t" + i);
+        w.append(record);
+      }
+    }
+    return writer.getBlockIndex();
+  }
+
+  private DataFileIndex writeTypedFile() throws IOException {
+    file = new File(dir.getRoot(), "typed.avro");
+    DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(TYPED));
+    writer.setBlockStatistics("n", "kind");
+    writer.setSyncInterval(256);
+    Schema kind = TYPED.getField("kind").schema();
+    try (DataFileWriter<GenericRecord> w = writer.create(TYPED, file)) {
+      for (int i = 0; i < COUNT; i++) {
+        GenericRecord record = new GenericData.Record(TYPED);
+        record.put("n", i);
+        record.put("kind", new GenericData.EnumSymbol(kind, kind.getEnumSymbols().get(i * 3 / COUNT)));
+        w.append(record);
+      }
+    }
+    return writer.getBlockIndex();
+  }
+
+  private List<Integer> readNs(DataFileIndex index, BlockFilter filter) throws IOException {
+    List<Integer> ns = new ArrayList<>();
+    try (DataFileReader<GenericRecord> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+      reader.setBlockIndex(index);
+      reader.setBlockFilter(filter);
+      for (GenericRecord record : reader) {
+        ns.add((Integer) record.get("n"));
+      }
+    }
+    return ns;
+  }
+
+  private List<Long> readIds(DataFileIndex index, BlockFilter filter) throws IOException {
+    List<Long> ids = new ArrayList<>();
+    try (DataFileReader<GenericRecord> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+      reader.setBlockIndex(index);
+      reader.setBlockFilter(filter);
+      for (GenericRecord record : reader) {
+        ids.add((Long) record.get("id"));
+      }
+    }
+    return ids;
+  }
+
+  @Test
+  public void testStatistics() throws IOException {
+    DataFileIndex index = writeFile();
+    assertTrue(index.getBlockCount() > 2);
+    long first = 0;
+    for (int block = 0; block < index.getBlockCount(); block++) {
+      BlockStatistics stats = index.getStatistics(block);
+      long count = stats.getRecordCount();
+      assertEquals(first, stats.getMin("id"));
+      assertEquals(first + count - 1, stats.getMax("id"));
+      assertEquals(0, stats.getNullCount("id"));
+      long nulls = Math.max(0, Math.min(count, COUNT / 2 - first));
+      assertEquals(nulls, stats.getNullCount("tag"));
+      if (nulls == count) {
+        assertNull(stats.getMin("tag"));
+      }
+      assertFalse(stats.hasStatistics("missing"));
+      first += count;
+    }
+  }
+
+  @Test
+  public void testFilterSkipsBlocks() throws IOException {
+    DataFileIndex index = writeFile();
+    List<Long> ids = readIds(index, BlockFilter.range("id", 500L, 510L));
+    assertTrue(ids.containsAll(Arrays.asList(500L, 505L, 510L)));
+    assertTrue(ids.size() < COUNT);
+    for (int i = 1; i < ids.size(); i++) {
+      assertTrue(ids.get(i) > ids.get(i - 1));
+    }
+    // every block of the file is read without a filter
+    assertEquals(COUNT, readIds(index, null).size());
+    // blocks holding only nulls are skipped by a range on a nullable field
+    List<Long> tagged = readIds(index, BlockFilter.range("tag", null, null));
+    assertTrue(tagged.size() < COUNT);
+    assertEquals(COUNT - 1, tagged.get(tagged.size() - 1).longValue());
+    assertTrue(tagged.get(0) <= COUNT / 2);
+  }
+
+  @Test
+  public void testBoundsConvertedToFieldType() throws IOException {
+    DataFileIndex index = writeTypedFile();
+    for (BlockFilter filter : new BlockFilter[] { BlockFilter.range("n", 500L, 510L),
+        BlockFilter.range("n", 500.0, 510.0f), BlockFilter.range("n", (short) 500, (short) 510) }) {
+      List<Integer> ns = readNs(index, filter);
+      assertTrue(ns.containsAll(Arrays.asList(500, 505, 510)));
+      assertTrue(ns.size() < COUNT);
+    }
+    List<Integer> bs = readNs(index, BlockFilter.range("kind", "B", "B"));
+    assertTrue(bs.containsAll(Arrays.asList(COUNT / 3 + 1, COUNT / 2, 2 * COUNT / 3)));
+    assertTrue(bs.size() < COUNT);
+  }
+
+  @Test
+  public void testInvalidBoundsRejected() throws IOException {
+    DataFileIndex index = writeTypedFile();
+    BlockStatistics statistics = index.getStatistics(0);
+    for (BlockFilter filter : new BlockFilter[] { BlockFilter.range("n", 1.5, null),
+        BlockFilter.range("n", null, 1L << 40), BlockFilter.range("n", "1", null), BlockFilter.range("kind", "Q", null),
+        BlockFilter.range("kind", 1, null) }) {
+      assertThrows(AvroTypeException.class, () -> filter.mightMatch(statistics));
+    }
+  }
+
+  @Test
+  public void testStatisticsReaderReused() throws IOException {
+    DataFileIndex index = writeTypedFile();
+    index.getStatistics(0).getMin("n");
+    DatumReader<?> reader = index.statisticsReader(0);
+    for (int block = 0; block < index.getBlockCount(); block++) {
+      index.getStatistics(block).getMin("n");
+      index.getStatistics(block).getMax("n");
+    }
+    assertSame(reader, index.statisticsReader(0));
+  }
+
+  @Test
+  public void testFilterIgnoredWithoutStatistics() throws IOException {
+    DataFileIndex index = writeFile();
+    assertEquals(COUNT, readIds(index, BlockFilter.range("missing", 0L, 1L)).size());
+  }
+
+  @Test
+  public void testSeekToRecordInRejectedBlock() throws IOException {
+    DataFileIndex index = writeFile();
+    try (DataFileReader<GenericRecord> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+      reader.setBlockIndex(index);
+      reader.setBlockFilter(statistics -> false);
+      for (long record : new long[] { 0, 1, index.getFirstRecord(1), COUNT - 1 }) {
+        reader.seekToRecord(record);
+        assertEquals(record, reader.next().get("id"));
+      }
+    }
+  }
+
+  @Test
+  public void testStatisticsRoundTrip() throws IOException {
+    DataFileIndex index = writeFile();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.write(out);
+    DataFileIndex read = DataFileIndex.read(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(index.getStatisticsFields(), read.getStatisticsFields());
+    for (int block = 0; block < index.getBlockCount(); block++) {
+      assertEquals(index.getStatistics(block).getMin("id"), read.getStatistics(block).getMin("id"));
+      assertEquals(index.getStatistics(block).getMax("id"), read.getStatistics(block).getMax("id"));
+      assertEquals(index.getStatistics(block).getNullCount("tag"), read.getStatistics(block).getNullCount("tag"));
+    }
+  }
+
+  @Test
+  public void testUnknownIndexVersionRejected() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeFile().write(out);
+    byte[] bytes = out.toByteArray();
+    assertEquals(1, bytes[DataFileIndex.MAGIC.length - 1]);
+    bytes[DataFileIndex.MAGIC.length - 1] = 2;
+    InvalidAvroMagicException e = assertThrows(InvalidAvroMagicException.class,
+        () -> DataFileIndex.read(new ByteArrayInputStream(bytes)));
+    assertTrue(e.getMessage().contains("version"));
+  }
+}
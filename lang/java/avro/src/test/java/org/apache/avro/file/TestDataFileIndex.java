@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.avro.InvalidAvroMagicException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestDataFileIndex {
+
+  private static final Schema SCHEMA = Schema.create(Schema.Type.LONG);
+  private static final int COUNT = 1000;
+
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  private DataFileIndex writeFile(File file, int count) throws IOException {
+    DataFileWriter<Long> writer = new DataFileWriter<>(new GenericDatumWriter<Long>(SCHEMA));
+    writer.setBlockIndexEnabled(true);
+    writer.setSyncInterval(64);
+    try (DataFileWriter<Long> w = writer.create(SCHEMA, file)) {
+      for (long i = 0; i < count; i++) {
+        w.append(i);
+      }
+    }
+    return writer.getBlockIndex();
+  }
+
+  private static DataFileIndex roundTrip(DataFileIndex index) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.write(out);
+    return DataFileIndex.read(new ByteArrayInputStream(out.toByteArray()));
+  }
+
+  @Test
+  public void testIndexDescribesBlocks() throws IOException {
+    File file = new File(dir.getRoot(), "indexed.avro");
+    DataFileIndex index = writeFile(file, COUNT);
+    assertEquals(COUNT, index.getRecordCount());
+    try (DataFileReader<Long> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+      assertArrayEquals(reader.getHeader().sync, index.getSync());
+      long first = 0;
+      for (int block = 0; block < index.getBlockCount(); block++) {
+        reader.seek(index.getBlockOffset(block));
+        assertEquals(first, reader.next().longValue());
+        assertEquals(first, index.getFirstRecord(block));
+        assertEquals(block, index.findBlockAt(index.getBlockOffset(block)));
+        first += index.getBlockRecordCount(block);
+      }
+      assertEquals(COUNT, first);
+    }
+  }
+
+  @Test
+  public void testWriteReadRoundTrip() throws IOException {
+    DataFileIndex index = writeFile(new File(dir.getRoot(), "indexed.avro"), COUNT);
+    File sidecar = new File(dir.getRoot(), "indexed.avro.idx");
+    index.write(sidecar);
+    DataFileIndex read = DataFileIndex.read(sidecar);
+    assertArrayEquals(index.getSync(), read.getSync());
+    assertEquals(index.getBlockCount(), read.getBlockCount());
+    assertEquals(index.getRecordCount(), read.getRecordCount());
+    for (int block = 0; block < index.getBlockCount(); block++) {
+      assertEquals(index.getBlockOffset(block), read.getBlockOffset(block));
+      assertEquals(index.getFirstRecord(block), read.getFirstRecord(block));
+      assertEquals(index.getBlockRecordCount(block), read.getBlockRecordCount(block));
+    }
+  }
+
+  @Test
+  public void testReadRejectsOtherData() {
+    byte[] notAnIndex = new byte[32];
+    assertThrows(InvalidAvroMagicException.class, () -> DataFileIndex.read(new ByteArrayInputStream(notAnIndex)));
+  }
+
+  @Test
+  public void testSyncMismatchRejected() throws IOException {
+    File file = new File(dir.getRoot(), "first.avro");
+    writeFile(file, COUNT);
+    DataFileIndex other = writeFile(new File(dir.getRoot(), "second.avro"), COUNT);
+    try (DataFileReader<Long> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+      assertThrows(IllegalArgumentException.class, () -> reader.setBlockIndex(other));
+    }
+  }
+
+  @Test
+  public void testSeekToRecord() throws IOException {
+    File file = new File(dir.getRoot(), "indexed.avro");
+    DataFileIndex index = roundTrip(writeFile(file, COUNT));
+    int last = index.getBlockCount() - 1;
+    try (DataFileReader<Long> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+      reader.setBlockIndex(index);
+      long[] records = { 0, index.getBlockRecordCount(0) - 1, index.getFirstRecord(1), index.getFirstRecord(last),
+          COUNT - 1, 0 };
+      for (long record : records) {
+        reader.seekToRecord(record);
+        assertEquals(record, reader.next().longValue());
+      }
+      reader.seekToRecord(COUNT - 1);
+      reader.next();
+      assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  public void testSeekToRecordOutOfRange() throws IOException {
+    File file = new File(dir.getRoot(), "indexed.avro");
+    DataFileIndex index = writeFile(file, COUNT);
+    try (DataFileReader<Long> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+      assertThrows(IllegalStateException.class, () -> reader.seekToRecord(0));
+      reader.setBlockIndex(index);
+      assertThrows(IllegalArgumentException.class, () -> reader.seekToRecord(-1));
+      assertThrows(IllegalArgumentException.class, () -> reader.seekToRecord(COUNT));
+    }
+  }
+
+  @Test
+  public void testSeekToRecordInEmptyFile() throws IOException {
+    File file = new File(dir.getRoot(), "empty.avro");
+    DataFileIndex index = writeFile(file, 0);
+    assertEquals(0, index.getBlockCount());
+    try (DataFileReader<Long> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+      reader.setBlockIndex(index);
+      assertThrows(IllegalArgumentException.class, () -> reader.seekToRecord(0));
+    }
+  }
+
+  @Test
+  public void testFindBlock() {
+    DataFileIndex index = new DataFileIndex(new byte[DataFileConstants.SYNC_SIZE]);
+    index.add(100, 10);
+    index.add(200, 0); // an empty block
+    index.add(300, 5);
+    index.add(400, 0); // a trailing empty block
+    assertEquals(15, index.getRecordCount());
+    assertEquals(-1, index.findBlock(-1));
+    assertEquals(0, index.findBlock(0));
+    assertEquals(0, index.findBlock(9));
+    // record 10 starts both the empty block and the next one
+    assertEquals(2, index.findBlock(10));
+    assertEquals(2, index.findBlock(14));
+    assertEquals(-1, index.findBlock(15));
+    assertEquals(0, index.getBlockRecordCount(1));
+    assertEquals(-1, index.findBlockAt(250));
+    assertEquals(3, index.findBlockAt(400));
+    assertThrows(IndexOutOfBoundsException.class, () -> index.getBlockOffset(4));
+    assertThrows(IllegalArgumentException.class, () -> index.add(400, 1));
+  }
+
+  @Test
+  public void testFindBlockInEmptyIndex() {
+    DataFileIndex index = new DataFileIndex(new byte[DataFileConstants.SYNC_SIZE]);
+    assertEquals(-1, index.findBlock(0));
+    assertEquals(-1, index.findBlockAt(0));
+  }
+}
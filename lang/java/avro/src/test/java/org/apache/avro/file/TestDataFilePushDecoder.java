@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+
+public class TestDataFilePushDecoder {
+
+  private static final Schema SCHEMA = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"a.R\",\"fields\":["
+      + "{\"name\":\"id\",\"type\":\"long\"},{\"name\":\"name\",\"type\":[\"null\",\"string\"]}]}");
+  private static final int COUNT = 40;
+
+  private static byte[] dataFile(CodecFactory codec) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(SCHEMA))) {
+      writer.setCodec(codec);
+      writer.setSyncInterval(64); // several blocks
+      writer.create(SCHEMA, out);
+      for (int i = 0; i < COUNT; i++) {
+        GenericRecord record = new GenericData.Record(SCHEMA);
+        record.put("id", (long) i);
+        record.put("name", i % 3 == 0 ? null : "name " + i);
+        writer.append(record);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static void drain(DataFilePushDecoder<GenericRecord> decoder, List<GenericRecord> into) throws IOException {
+    GenericRecord record;
+    while ((record = decoder.pollDatum()) != null) {
+      into.add(record);
+    }
+  }
+
+  private static void check(List<GenericRecord> records) {
+    assertEquals(COUNT, records.size());
+    for (int i = 0; i < COUNT; i++) {
+      assertEquals((long) i, records.get(i).get("id"));
+      assertEquals(i % 3 == 0 ? null : "name " + i, Objects.toString(records.get(i).get("name"), null));
+    }
+  }
+
+  private static void decodeAtEverySplitPoint(byte[] file) throws IOException {
+    for (int split = 0; split <= file.length; split++) {
+      DataFilePushDecoder<GenericRecord> decoder = new DataFilePushDecoder<>(new GenericDatumReader<>());
+      List<GenericRecord> records = new ArrayList<>();
+      decoder.feed(file, 0, split);
+      drain(decoder, records);
+      decoder.feed(file, split, file.length - split);
+      drain(decoder, records);
+      check(records);
+      assertEquals(0, decoder.getBufferedBytes());
+    }
+  }
+
+  @Test
+  public void decodesAtEverySplitPoint() throws IOException {
+    decodeAtEverySplitPoint(dataFile(CodecFactory.nullCodec()));
+  }
+
+  @Test
+  public void decodesCompressedAtEverySplitPoint() throws IOException {
+    decodeAtEverySplitPoint(dataFile(CodecFactory.deflateCodec(6)));
+  }
+
+  @Test
+  public void decodesOneByteAtATime() throws IOException {
+    byte[] file = dataFile(CodecFactory.nullCodec());
+    DataFilePushDecoder<GenericRecord> decoder = new DataFilePushDecoder<>(new GenericDatumReader<>());
+    List<GenericRecord> records = new ArrayList<>();
+    for (int i = 0; i < file.length; i++) {
+      decoder.feed(file, i, 1);
+      drain(decoder, records);
+    }
+    check(records);
+  }
+
+  @Test
+  public void headerIsAvailableOnceFed() throws IOException {
+    byte[] file = dataFile(CodecFactory.nullCodec());
+    DataFilePushDecoder<GenericRecord> decoder = new DataFilePushDecoder<>(new GenericDatumReader<>());
+    decoder.feed(file, 0, 10);
+    assertNull(decoder.pollDatum());
+    assertNull(decoder.getSchema());
+    decoder.feed(file, 10, file.length - 10);
+    decoder.pollDatum();
+    assertEquals(SCHEMA, decoder.getSchema());
+  }
+
+  @Test
+  public void truncatedFileLeavesBytesBuffered() throws IOException {
+    byte[] file = dataFile(CodecFactory.nullCodec());
+    DataFilePushDecoder<GenericRecord> decoder = new DataFilePushDecoder<>(new GenericDatumReader<>());
+    List<GenericRecord> records = new ArrayList<>();
+    decoder.feed(file, 0, file.length - 1);
+    drain(decoder, records);
+    assertTrue(records.size() < COUNT);
+    assertTrue(decoder.getBufferedBytes() > 0);
+  }
+
+  @Test
+  public void invalidSyncIsRejected() throws IOException {
+    byte[] file = dataFile(CodecFactory.nullCodec());
+    file[file.length - 1] ^= 1; // the last sync marker
+    DataFilePushDecoder<GenericRecord> decoder = new DataFilePushDecoder<>(new GenericDatumReader<>());
+    decoder.feed(file, 0, file.length);
+    IOException e = assertThrows(IOException.class, () -> drain(decoder, new ArrayList<>()));
+    assertEquals("Invalid sync!", e.getMessage());
+  }
+}
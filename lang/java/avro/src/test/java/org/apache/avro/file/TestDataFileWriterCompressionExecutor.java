@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestDataFileWriterCompressionExecutor {
+
+  private static final Schema SCHEMA = Schema.create(Schema.Type.LONG);
+  private static final int COUNT = 5000;
+
+  private ExecutorService executor;
+
+  @Before
+  public void createExecutor() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void shutdownExecutor() {
+    executor.shutdownNow();
+  }
+
+  private static DataFileWriter<Long> newWriter(CodecFactory codec, ExecutorService executor, int maxPendingBlocks) {
+    DataFileWriter<Long> writer = new DataFileWriter<>(new GenericDatumWriter<Long>(SCHEMA));
+    writer.setCodec(codec);
+    writer.setSyncInterval(64);
+    writer.setCompressionExecutor(executor, maxPendingBlocks);
+    return writer;
+  }
+
+  private static void assertInOrder(byte[] file, long count) throws IOException {
+    try (DataFileStream<Long> in = new DataFileStream<>(new ByteArrayInputStream(file), new GenericDatumReader<>())) {
+      long expected = 0;
+      for (Long datum : in) {
+        assertEquals(expected++, datum.longValue());
+      }
+      assertEquals(count, expected);
+    }
+  }
+
+  @Test
+  public void testBlocksWrittenInOrder() throws IOException {
+    for (int maxPending : new int[] { 1, 4, 64 }) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (DataFileWriter<Long> writer = newWriter(CodecFactory.deflateCodec(1), executor, maxPending)) {
+        writer.create(SCHEMA, out);
+        for (long i = 0; i < COUNT; i++) {
+          writer.append(i);
+        }
+      }
+      assertInOrder(out.toByteArray(), COUNT);
+    }
+  }
+
+  @Test
+  public void testSyncWaitsForPendingBlocks() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<Long> writer = newWriter(CodecFactory.deflateCodec(1), executor, 16)) {
+      writer.setBlockIndexEnabled(true);
+      writer.create(SCHEMA, out);
+      for (long i = 0; i < COUNT; i++) {
+        writer.append(i);
+      }
+      long position = writer.sync();
+      assertEquals(out.size(), position);
+      assertEquals(COUNT, writer.getBlockIndex().getRecordCount());
+      assertInOrder(out.toByteArray(), COUNT);
+    }
+  }
+
+  @Test
+  public void testCompressionErrorPropagated() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DataFileWriter<Long> writer = newWriter(new FailingCodecFactory(), executor, 4);
+    writer.create(SCHEMA, out);
+    try {
+      for (long i = 0; i < COUNT; i++) {
+        writer.append(i);
+      }
+      writer.sync();
+      fail("Expected the compression failure to reach the caller");
+    } catch (IOException e) {
+      assertEquals(FailingCodec.MESSAGE, e.getMessage());
+    }
+  }
+
+  @Test
+  public void testNothingWrittenAfterCompressionError() throws IOException {
+    ExecutorService single = Executors.newSingleThreadExecutor(); // compresses blocks in order
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      DataFileWriter<Long> writer = newWriter(new FailingCodecFactory(2), single, 4);
+      writer.create(SCHEMA, out);
+      long appended = 0;
+      try {
+        for (; appended < COUNT; appended++) {
+          writer.append(appended);
+        }
+        writer.sync();
+        fail("Expected the compression failure to reach the caller");
+      } catch (IOException e) {
+        assertEquals(FailingCodec.MESSAGE, e.getMessage());
+      }
+      int size = out.size();
+
+      assertThrows(IOException.class, () -> writer.append(COUNT + 1L));
+      assertThrows(IOException.class, () -> writer.appendEncoded(ByteBuffer.wrap(new byte[] { 0 })));
+      assertThrows(IOException.class, writer::sync);
+      assertThrows(IOException.class, writer::flush);
+      assertThrows(IOException.class, writer::close);
+      assertEquals(size, out.size());
+
+      // only the block before the failed one was written
+      try (DataFileStream<Long> in = new DataFileStream<>(new ByteArrayInputStream(out.toByteArray()),
+          new GenericDatumReader<>())) {
+        assertTrue(in.hasNext());
+        long expected = 0;
+        for (Long datum : in) {
+          assertEquals(expected++, datum.longValue());
+        }
+        assertTrue(expected > 0 && expected < appended);
+      }
+    } finally {
+      single.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRejectedBlocksCompressedInline() throws IOException {
+    ExecutorService shutDown = Executors.newSingleThreadExecutor();
+    shutDown.shutdown();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<Long> writer = newWriter(CodecFactory.deflateCodec(1), shutDown, 4)) {
+      writer.create(SCHEMA, out);
+      for (long i = 0; i < COUNT; i++) {
+        writer.append(i);
+      }
+    }
+    assertInOrder(out.toByteArray(), COUNT);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxPendingBlocks() {
+    new DataFileWriter<>(new GenericDatumWriter<Long>(SCHEMA)).setCompressionExecutor(executor, 0);
+  }
+
+  /** Fails every compression, or only the <i>failOn</i>th one. */
+  static class FailingCodec extends Codec {
+    static final String MESSAGE = "compression failed";
+
+    private final AtomicInteger compressions;
+    private final int failOn;
+
+    FailingCodec(AtomicInteger compressions, int failOn) {
+      this.compressions = compressions;
+      this.failOn = failOn;
+    }
+
+    @Override
+    public String getName() {
+      return DataFileConstants.NULL_CODEC;
+    }
+
+    @Override
+    public ByteBuffer compress(ByteBuffer uncompressedData) throws IOException {
+      int compression = compressions.incrementAndGet();
+      if (failOn == 0 || compression == failOn) {
+        throw new IOException(MESSAGE);
+      }
+      return uncompressedData;
+    }
+
+    @Override
+    public ByteBuffer decompress(ByteBuffer compressedData) {
+      return compressedData;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof FailingCodec;
+    }
+
+    @Override
+    public int hashCode() {
+      return MESSAGE.hashCode();
+    }
+  }
+
+  static class FailingCodecFactory extends CodecFactory {
+    private final AtomicInteger compressions = new AtomicInteger();
+    private final int failOn;
+
+    FailingCodecFactory() {
+      this(0);
+    }
+
+    FailingCodecFactory(int failOn) {
+      this.failOn = failOn;
+    }
+
+    @Override
+    protected Codec createInstance() {
+      return new FailingCodec(compressions, failOn);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestParallelDataFileStream {
+
+  private static final Schema SCHEMA = Schema.create(Schema.Type.LONG);
+  private static final int COUNT = 5000;
+
+  private ExecutorService executor;
+
+  @Before
+  public void createExecutor() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void shutdownExecutor() {
+    executor.shutdownNow();
+  }
+
+  private static byte[] writeFile(CodecFactory codec) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<Long> writer = new DataFileWriter<>(new GenericDatumWriter<Long>(SCHEMA))) {
+      writer.setCodec(codec);
+      writer.setSyncInterval(64);
+      writer.create(SCHEMA, out);
+      for (long i = 0; i < COUNT; i++) {
+        writer.append(i);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private void assertInOrder(byte[] file, int maxBlocksInFlight) throws IOException {
+    try (ParallelDataFileStream<Long> in = new ParallelDataFileStream<>(new ByteArrayInputStream(file),
+        new GenericDatumReader<>(), executor, maxBlocksInFlight)) {
+      long expected = 0;
+      for (Long datum : in) {
+        assertEquals(expected++, datum.longValue());
+      }
+      assertEquals(COUNT, expected);
+    }
+  }
+
+  @Test
+  public void testRecordsInFileOrder() throws IOException {
+    byte[] file = writeFile(CodecFactory.deflateCodec(1));
+    assertInOrder(file, 1);
+    assertInOrder(file, ParallelDataFileStream.DEFAULT_MAX_BLOCKS_IN_FLIGHT);
+    assertInOrder(file, 64);
+  }
+
+  @Test
+  public void testUncompressed() throws IOException {
+    assertInOrder(writeFile(CodecFactory.nullCodec()), 2);
+  }
+
+  @Test
+  public void testDecompressionErrorPropagated() throws IOException {
+    CodecFactory.addCodec(FailingCodec.NAME, new FailingCodecFactory());
+    byte[] file = writeFile(new FailingCodecFactory());
+    try (ParallelDataFileStream<Long> in = new ParallelDataFileStream<>(new ByteArrayInputStream(file),
+        new GenericDatumReader<>(), executor)) {
+      in.hasNext();
+      fail("Expected the decompression failure to reach the caller");
+    } catch (AvroRuntimeException e) {
+      assertTrue(e.getCause() instanceof IOException);
+      assertEquals(FailingCodec.MESSAGE, e.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<Long> writer = new DataFileWriter<>(new GenericDatumWriter<Long>(SCHEMA))) {
+      writer.create(SCHEMA, out);
+    }
+    try (ParallelDataFileStream<Long> in = new ParallelDataFileStream<>(new ByteArrayInputStream(out.toByteArray()),
+        new GenericDatumReader<>(), executor)) {
+      assertFalse(in.hasNext());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxBlocksInFlight() throws IOException {
+    new ParallelDataFileStream<>(new ByteArrayInputStream(writeFile(CodecFactory.nullCodec())),
+        new GenericDatumReader<>(), executor, 0);
+  }
+
+  /** Stores blocks uncompressed and fails every decompression. */
+  static class FailingCodec extends Codec {
+    static final String NAME = "test-failing";
+    static final String MESSAGE = "decompression failed";
+
+    @Override
+    public String getName() {
+      return NAME;
+    }
+
+    @Override
+    public ByteBuffer compress(ByteBuffer uncompressedData) {
+      return uncompressedData;
+    }
+
+    @Override
+    public ByteBuffer decompress(ByteBuffer compressedData) throws IOException {
+      throw new IOException(MESSAGE);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof FailingCodec;
+    }
+
+    @Override
+    public int hashCode() {
+      return NAME.hashCode();
+    }
+  }
+
+  static class FailingCodecFactory extends CodecFactory {
+    @Override
+    protected Codec createInstance() {
+      return new FailingCodec();
+    }
+  }
+}
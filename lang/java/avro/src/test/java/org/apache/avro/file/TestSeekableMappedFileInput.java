@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestSeekableMappedFileInput {
+
+  private static final Schema SCHEMA = Schema.create(Schema.Type.LONG);
+  private static final int COUNT = 2000;
+
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  private File writeFile() throws IOException {
+    File file = new File(dir.getRoot(), "mapped.avro");
+    try (DataFileWriter<Long> writer = new DataFileWriter<>(new GenericDatumWriter<Long>(SCHEMA))) {
+      writer.setSyncInterval(64);
+      writer.create(SCHEMA, file);
+      for (long i = 0; i < COUNT; i++) {
+        writer.append(i);
+      }
+    }
+    return file;
+  }
+
+  @Test
+  public void testReadAcrossSegments() throws IOException {
+    File file = writeFile();
+    // a segment much smaller than a block forces reads to cross boundaries
+    try (DataFileReader<Long> reader = new DataFileReader<>(new SeekableMappedFileInput(file, 7),
+        new GenericDatumReader<>())) {
+      long expected = 0;
+      for (Long datum : reader) {
+        assertEquals(expected++, datum.longValue());
+      }
+      assertEquals(COUNT, expected);
+    }
+  }
+
+  @Test
+  public void testSeekMatchesFileInput() throws IOException {
+    File file = writeFile();
+    try (SeekableMappedFileInput mapped = new SeekableMappedFileInput(file, 100);
+        SeekableFileInput plain = new SeekableFileInput(file)) {
+      assertEquals(plain.length(), mapped.length());
+      byte[] expected = new byte[50];
+      byte[] actual = new byte[50];
+      for (long p : new long[] { 0, 99, 100, 150, mapped.length() - 50 }) {
+        plain.seek(p);
+        mapped.seek(p);
+        int n = 0;
+        while (n < actual.length) {
+          n += mapped.read(actual, n, actual.length - n);
+        }
+        int m = 0;
+        while (m < expected.length) {
+          m += plain.read(expected, m, expected.length - m);
+        }
+        assertEquals(p + 50, mapped.tell());
+        assertTrue(Arrays.equals(expected, actual));
+      }
+      mapped.seek(mapped.length());
+      assertEquals(-1, mapped.read(actual, 0, 1));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadAfterClose() throws IOException {
+    SeekableMappedFileInput in = new SeekableMappedFileInput(writeFile());
+    in.close();
+    in.read(new byte[1], 0, 1);
+  }
+}
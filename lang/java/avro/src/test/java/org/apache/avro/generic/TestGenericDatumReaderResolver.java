@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.generic;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.ResolvingDecoder;
+import org.apache.avro.util.PoolingStrategy;
+import org.junit.Test;
+
+public class TestGenericDatumReaderResolver {
+
+  private static final Schema SCHEMA = Schema.create(Schema.Type.STRING);
+
+  /** Exposes the resolver, as subclasses reading datums by hand do. */
+  private static class ResolverReader extends GenericDatumReader<Object> {
+    ResolverReader() {
+      super(SCHEMA, SCHEMA);
+    }
+
+    ResolvingDecoder resolver() throws IOException {
+      return getResolver(SCHEMA, SCHEMA);
+    }
+  }
+
+  @Test
+  public void testCreatorReusesResolver() throws IOException {
+    ResolverReader reader = new ResolverReader();
+    assertSame(reader.resolver(), reader.resolver());
+  }
+
+  @Test
+  public void testOtherThreadReusesThreadConfinedResolver() throws Exception {
+    // only thread-confined pools may keep handing out the same resolver
+    assumeTrue(PoolingStrategy.get().newPool(Object::new).isThreadConfined());
+    ResolverReader reader = new ResolverReader();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<ResolvingDecoder> first = executor.submit(reader::resolver);
+      Future<ResolvingDecoder> second = executor.submit(reader::resolver);
+      assertSame(first.get(), second.get());
+      assertNotSame(first.get(), reader.resolver());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
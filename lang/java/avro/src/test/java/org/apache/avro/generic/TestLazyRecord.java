@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.generic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Test;
+
+public class TestLazyRecord {
+
+  private static final Schema SCHEMA = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":["
+      + "{\"name\":\"flag\",\"type\":\"boolean\"},{\"name\":\"ratio\",\"type\":\"double\"},"
+      + "{\"name\":\"id\",\"type\":\"long\"},{\"name\":\"name\",\"type\":\"string\"},"
+      + "{\"name\":\"tags\",\"type\":{\"type\":\"array\",\"items\":\"string\"}},"
+      + "{\"name\":\"score\",\"type\":[\"null\",\"int\"]}]}");
+
+  private static GenericRecord record(long id) {
+    GenericRecord record = new GenericData.Record(SCHEMA);
+    record.put("flag", id % 2 == 0);
+    record.put("ratio", id / 2.0);
+    record.put("id", id);
+    record.put("name", "name" + id);
+    record.put("tags", Arrays.asList("a" + id, "b" + id));
+    record.put("score", id % 3 == 0 ? null : (int) id);
+    return record;
+  }
+
+  private static byte[] encode(GenericRecord record) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    new GenericDatumWriter<GenericRecord>(SCHEMA).write(record, encoder);
+    encoder.flush();
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testDecodesOnlyAccessedFields() throws IOException {
+    LazyRecord lazy = new LazyRecord(SCHEMA, encode(record(7)));
+    assertEquals(7L, lazy.get("id"));
+    assertTrue(lazy.isDecoded(2));
+    assertFalse(lazy.isDecoded(0));
+    assertFalse(lazy.isDecoded(3));
+    assertEquals(7, lazy.get("score"));
+    assertEquals("name7", lazy.get("name").toString());
+    assertEquals(3.5, (Double) lazy.get("ratio"), 0.0);
+  }
+
+  @Test
+  public void testMatchesGenericRecord() throws IOException {
+    for (long id = 0; id < 6; id++) {
+      GenericRecord expected = record(id);
+      LazyRecord lazy = new LazyRecord(SCHEMA, encode(expected));
+      assertEquals(expected.toString(), lazy.toString());
+    }
+  }
+
+  @Test
+  public void testPutReplacesValue() throws IOException {
+    LazyRecord lazy = new LazyRecord(SCHEMA, encode(record(1)));
+    lazy.put("name", "other");
+    assertEquals("other", lazy.get("name"));
+    assertFalse(lazy.isDecoded(4));
+    assertEquals("b1", ((List<?>) lazy.get("tags")).get(1).toString());
+  }
+
+  @Test
+  public void testConcurrentAccessToDifferentRecords() throws Exception {
+    int records = 2000;
+    List<byte[]> encoded = new ArrayList<>();
+    for (long id = 0; id < records; id++) {
+      encoded.add(encode(record(id)));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        int start = t;
+        results.add(executor.submit(() -> {
+          for (int i = 0; i < records; i++) {
+            int id = (start * 251 + i) % records;
+            LazyRecord lazy = new LazyRecord(SCHEMA, encoded.get(id));
+            if (!("name" + id).equals(lazy.get("name").toString()) || (Long) lazy.get("id") != id
+                || !("a" + id).equals(((List<?>) lazy.get("tags")).get(0).toString())) {
+              return false;
+            }
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
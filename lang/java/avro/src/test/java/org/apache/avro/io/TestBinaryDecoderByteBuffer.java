@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.avro.AvroRuntimeException;
+import org.junit.Test;
+
+public class TestBinaryDecoderByteBuffer {
+
+  private static byte[] encode(int length, byte[] payload) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+    encoder.writeInt(length);
+    encoder.writeFixed(payload);
+    encoder.flush();
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testByteBufferSourceMatchesArraySource() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+    encoder.writeLong(42L);
+    encoder.writeString("avro");
+    encoder.writeBytes(new byte[] { 1, 2, 3 });
+    encoder.writeDouble(1.5);
+    encoder.flush();
+    byte[] bytes = out.toByteArray();
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes).flip();
+    for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.wrap(bytes), direct }) {
+      BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(buffer, null);
+      assertEquals(42L, decoder.readLong());
+      assertEquals("avro", decoder.readString());
+      assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), decoder.readBytes(null));
+      assertEquals(1.5, decoder.readDouble(), 0.0);
+      assertTrue(decoder.isEnd());
+    }
+  }
+
+  @Test
+  public void testReadBytesSliceIsView() throws IOException {
+    byte[] payload = new byte[32];
+    for (int i = 0; i < payload.length; i++) {
+      payload[i] = (byte) i;
+    }
+    byte[] bytes = encode(payload.length, payload);
+    ByteBuffer slice = DecoderFactory.get().binaryDecoder(bytes, null).readBytesSlice();
+    assertEquals(ByteBuffer.wrap(payload), slice);
+    assertTrue(slice.isReadOnly());
+    bytes[bytes.length - 1] = -1;
+    assertEquals(-1, slice.get(payload.length - 1));
+  }
+
+  @Test
+  public void testReadBytesSliceRejectsNegativeLength() throws IOException {
+    byte[] bytes = encode(-1, new byte[0]);
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(bytes, null);
+    assertThrows(AvroRuntimeException.class, decoder::readBytesSlice);
+  }
+
+  @Test
+  public void testReadBytesSliceRejectsOversizedLength() throws IOException {
+    byte[] bytes = encode(Integer.MAX_VALUE, new byte[0]);
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(bytes, null);
+    assertThrows(UnsupportedOperationException.class, decoder::readBytesSlice);
+  }
+}
@@ -0,0 +1,373 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+
+public class TestColumnarReader {
+
+  private static final Schema WRITER = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":["
+      + "{\"name\":\"i\",\"type\":\"int\"},"
+      + "{\"name\":\"il\",\"type\":\"int\"},"
+      + "{\"name\":\"if\",\"type\":\"int\"},"
+      + "{\"name\":\"id\",\"type\":\"int\"},"
+      + "{\"name\":\"lf\",\"type\":\"long\"},"
+      + "{\"name\":\"fd\",\"type\":\"float\"},"
+      + "{\"name\":\"skipMap\",\"type\":{\"type\":\"map\",\"values\":\"string\"}},"
+      + "{\"name\":\"s\",\"type\":\"string\"},"
+      + "{\"name\":\"sb\",\"type\":\"string\"},"
+      + "{\"name\":\"skipArray\",\"type\":{\"type\":\"array\",\"items\":\"long\"}},"
+      + "{\"name\":\"b\",\"type\":\"bytes\"},"
+      + "{\"name\":\"fx\",\"type\":{\"type\":\"fixed\",\"name\":\"F\",\"size\":3}},"
+      + "{\"name\":\"skipRecord\",\"type\":{\"type\":\"record\",\"name\":\"N\",\"fields\":["
+      + "{\"name\":\"n\",\"type\":[\"null\",\"string\"]}]}},"
+      + "{\"name\":\"e\",\"type\":{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"A\",\"B\",\"C\",\"X\"]}},"
+      + "{\"name\":\"u\",\"type\":[\"null\",\"int\",\"boolean\"]},"
+      + "{\"name\":\"ns\",\"type\":[\"null\",\"string\"]},"
+      + "{\"name\":\"bool\",\"type\":\"boolean\"}]}");
+
+  private static final Schema READER = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":["
+      + "{\"name\":\"bool\",\"type\":\"boolean\"},"
+      + "{\"name\":\"i\",\"type\":\"int\"},"
+      + "{\"name\":\"il\",\"type\":\"long\"},"
+      + "{\"name\":\"if\",\"type\":\"float\"},"
+      + "{\"name\":\"id\",\"type\":\"double\"},"
+      + "{\"name\":\"lf\",\"type\":\"float\"},"
+      + "{\"name\":\"fd\",\"type\":\"double\"},"
+      + "{\"name\":\"s\",\"type\":\"string\"},"
+      + "{\"name\":\"sb\",\"type\":\"bytes\"},"
+      + "{\"name\":\"b\",\"type\":\"bytes\"},"
+      + "{\"name\":\"fx\",\"type\":{\"type\":\"fixed\",\"name\":\"F\",\"size\":3}},"
+      + "{\"name\":\"e\",\"type\":{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"C\",\"B\",\"A\"],\"default\":\"A\"}},"
+      + "{\"name\":\"u\",\"type\":[\"null\",\"long\"]},"
+      + "{\"name\":\"ns\",\"type\":[\"null\",\"string\"]},"
+      + "{\"name\":\"dInt\",\"type\":\"int\",\"default\":7},"
+      + "{\"name\":\"dLong\",\"type\":\"long\",\"default\":-8},"
+      + "{\"name\":\"dDouble\",\"type\":\"double\",\"default\":1.5},"
+      + "{\"name\":\"dBool\",\"type\":\"boolean\",\"default\":true},"
+      + "{\"name\":\"dNull\",\"type\":[\"null\",\"string\"],\"default\":null},"
+      + "{\"name\":\"dString\",\"type\":\"string\",\"default\":\"d\\u00e9faut\"},"
+      + "{\"name\":\"dBytes\",\"type\":\"bytes\",\"default\":\"\\u0001\\u00ff\"},"
+      + "{\"name\":\"dFixed\",\"type\":{\"type\":\"fixed\",\"name\":\"G\",\"size\":2},\"default\":\"ab\"},"
+      + "{\"name\":\"dEnum\",\"type\":\"E\",\"default\":\"B\"}]}");
+
+  private static final String[] SYMBOLS = { "A", "B", "C", "X" };
+
+  /** Return a record whose values vary with <i>i</i>. */
+  private static GenericRecord record(int i) {
+    GenericRecord record = new GenericData.Record(WRITER);
+    record.put("i", i - 500);
+    record.put("il", i * 1000003);
+    record.put("if", -i);
+    record.put("id", i * 7);
+    record.put("lf", (long) i << 33);
+    record.put("fd", i / 3f);
+    record.put("skipMap", Collections.singletonMap("k" + i, "v"));
+    StringBuilder text = new StringBuilder();
+    for (int c = 0; c < i % 37; c++) {
+      text.append((char) ('a' + c % 26)).append(c % 5 == 0 ? "\u00e9" : "");
+    }
+    record.put("s", text.toString());
+    record.put("sb", "sb" + i);
+    List<Long> longs = new ArrayList<>();
+    for (int c = 0; c < i % 4; c++) {
+      longs.add((long) c);
+    }
+    record.put("skipArray", longs);
+    byte[] bytes = new byte[i % 11];
+    for (int c = 0; c < bytes.length; c++) {
+      bytes[c] = (byte) (i + c);
+    }
+    record.put("b", ByteBuffer.wrap(bytes));
+    record.put("fx", new GenericData.Fixed(WRITER.getField("fx").schema(), new byte[] { (byte) i, 1, (byte) -i }));
+    GenericRecord nested = new GenericData.Record(WRITER.getField("skipRecord").schema());
+    nested.put("n", i % 2 == 0 ? null : "n" + i);
+    record.put("skipRecord", nested);
+    record.put("e", new GenericData.EnumSymbol(WRITER.getField("e").schema(), SYMBOLS[i % 4]));
+    record.put("u", i % 3 == 0 ? null : i); // never the unresolvable boolean branch
+    record.put("ns", i % 5 == 0 ? null : "ns" + i);
+    record.put("bool", i % 2 == 0);
+    return record;
+  }
+
+  private static byte[] write(Schema schema, List<GenericRecord> records, int syncInterval) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<>(schema))) {
+      writer.setSyncInterval(syncInterval);
+      writer.create(schema, out);
+      for (GenericRecord record : records) {
+        writer.append(record);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static List<GenericRecord> records(int count) {
+    List<GenericRecord> records = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      records.add(record(i));
+    }
+    return records;
+  }
+
+  private static List<GenericRecord> readRecords(byte[] file, Schema reader) throws IOException {
+    List<GenericRecord> records = new ArrayList<>();
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(new ByteArrayInputStream(file),
+        new GenericDatumReader<>(null, reader))) {
+      for (GenericRecord record : in) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Decode a file into batches of up to <i>batchSize</i> rows, filling each batch
+   * with several calls to nextBatch taking at most <i>step</i> records, and
+   * compare every value with GenericDatumReader.
+   */
+  private static void assertSameAsGeneric(byte[] file, Schema reader, int batchSize, int step) throws IOException {
+    List<GenericRecord> expected = readRecords(file, reader);
+    int row = 0;
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(new ByteArrayInputStream(file),
+        new GenericDatumReader<>())) {
+      ColumnarReader columns = new ColumnarReader(in.getSchema(), reader);
+      ColumnBatch batch = columns.newBatch();
+      while (true) {
+        batch.reset();
+        while (batch.size() < batchSize) {
+          if (in.nextBatch(columns, batch, Math.min(step, batchSize - batch.size())) == 0) {
+            break;
+          }
+        }
+        if (batch.size() == 0) {
+          break;
+        }
+        for (int r = 0; r < batch.size(); r++) {
+          assertRow(expected.get(row++), batch, r);
+        }
+      }
+    }
+    assertEquals(expected.size(), row);
+  }
+
+  private static void assertRow(GenericRecord expected, ColumnBatch batch, int row) {
+    for (Schema.Field field : batch.getSchema().getFields()) {
+      String where = field.name() + " in row " + row;
+      Object value = expected.get(field.pos());
+      ColumnVector column = batch.getColumn(field.name());
+      assertEquals(where, value == null, column.isNull(row));
+      if (value == null) {
+        continue;
+      }
+      switch (column.getSchema().getType()) {
+      case BOOLEAN:
+        assertEquals(where, value, ((ColumnVector.Booleans) column).get(row));
+        break;
+      case INT:
+        assertEquals(where, value, ((ColumnVector.Ints) column).get(row));
+        break;
+      case ENUM:
+        assertEquals(where, column.getSchema().getEnumOrdinal(value.toString()), ((ColumnVector.Ints) column).get(row));
+        break;
+      case LONG:
+        assertEquals(where, value, ((ColumnVector.Longs) column).get(row));
+        break;
+      case FLOAT:
+        assertEquals(where, value, ((ColumnVector.Floats) column).get(row));
+        break;
+      case DOUBLE:
+        assertEquals(where, value, ((ColumnVector.Doubles) column).get(row));
+        break;
+      case STRING:
+        assertEquals(where, value.toString(), ((ColumnVector.Bytes) column).getString(row));
+        break;
+      case BYTES:
+        ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertArrayEquals(where, bytes, ((ColumnVector.Bytes) column).getBytes(row));
+        break;
+      case FIXED:
+        assertArrayEquals(where, ((GenericFixed) value).bytes(), ((ColumnVector.Bytes) column).getBytes(row));
+        break;
+      default:
+        throw new AssertionError(where);
+      }
+    }
+  }
+
+  @Test
+  public void matchesGenericDatumReader() throws IOException {
+    byte[] file = write(WRITER, records(500), 1 << 16);
+    assertSameAsGeneric(file, READER, 500, 500);
+    assertSameAsGeneric(file, READER, 64, 64);
+  }
+
+  @Test
+  public void batchesSpanBlocks() throws IOException {
+    byte[] file = write(WRITER, records(500), 300); // many small blocks
+    assertSameAsGeneric(file, READER, 100, 100);
+    assertSameAsGeneric(file, READER, 37, 5);
+  }
+
+  @Test
+  public void bytesOffsetsSurviveGrowth() throws IOException {
+    // one batch grown a few rows at a time while already holding data
+    byte[] file = write(WRITER, records(300), 1 << 16);
+    assertSameAsGeneric(file, READER, 300, 3);
+
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(new ByteArrayInputStream(file),
+        new GenericDatumReader<>())) {
+      ColumnarReader columns = new ColumnarReader(in.getSchema(), READER);
+      ColumnBatch batch = columns.newBatch();
+      while (in.nextBatch(columns, batch, 1) > 0) {
+      }
+      ColumnVector.Bytes strings = (ColumnVector.Bytes) batch.getColumn("s");
+      int[] offsets = strings.offsets();
+      assertEquals(0, offsets[0]);
+      for (int row = 0; row < batch.size(); row++) {
+        assertEquals(offsets[row] + strings.getLength(row), offsets[row + 1]);
+      }
+    }
+  }
+
+  @Test
+  public void defaultsAreFilledIn() throws IOException {
+    byte[] file = write(WRITER, records(10), 1 << 16);
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(new ByteArrayInputStream(file),
+        new GenericDatumReader<>())) {
+      ColumnarReader columns = new ColumnarReader(in.getSchema(), READER);
+      ColumnBatch batch = columns.newBatch();
+      assertEquals(10, in.nextBatch(columns, batch, 100));
+      for (int row = 0; row < 10; row++) {
+        assertEquals(7, ((ColumnVector.Ints) batch.getColumn("dInt")).get(row));
+        assertEquals(-8, ((ColumnVector.Longs) batch.getColumn("dLong")).get(row));
+        assertEquals(1.5, ((ColumnVector.Doubles) batch.getColumn("dDouble")).get(row), 0);
+        assertTrue(((ColumnVector.Booleans) batch.getColumn("dBool")).get(row));
+        assertTrue(batch.getColumn("dNull").isNull(row));
+        assertEquals("d\u00e9faut", ((ColumnVector.Bytes) batch.getColumn("dString")).getString(row));
+        assertArrayEquals(new byte[] { 1, (byte) 0xff }, ((ColumnVector.Bytes) batch.getColumn("dBytes")).getBytes(row));
+        assertArrayEquals(new byte[] { 'a', 'b' }, ((ColumnVector.Bytes) batch.getColumn("dFixed")).getBytes(row));
+        assertEquals(1, ((ColumnVector.Ints) batch.getColumn("dEnum")).get(row)); // B
+      }
+    }
+    assertSameAsGeneric(file, READER, 10, 10);
+  }
+
+  @Test
+  public void enumSymbolsAreAdjusted() throws IOException {
+    byte[] file = write(WRITER, records(8), 1 << 16);
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(new ByteArrayInputStream(file),
+        new GenericDatumReader<>())) {
+      ColumnarReader columns = new ColumnarReader(in.getSchema(), READER);
+      ColumnBatch batch = columns.newBatch();
+      in.nextBatch(columns, batch, 8);
+      ColumnVector.Ints e = (ColumnVector.Ints) batch.getColumn("e");
+      // writer A, B, C, X read as reader C, B, A with X falling back to A
+      int[] expected = { 2, 1, 0, 2, 2, 1, 0, 2 };
+      for (int row = 0; row < expected.length; row++) {
+        assertEquals(expected[row], e.get(row));
+      }
+    }
+  }
+
+  @Test
+  public void unresolvableUnionBranchFailsOnlyWhenPresent() throws IOException {
+    List<GenericRecord> records = records(20);
+    assertSameAsGeneric(write(WRITER, records, 1 << 16), READER, 20, 20);
+
+    records.get(10).put("u", true);
+    byte[] file = write(WRITER, records, 1 << 16);
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(new ByteArrayInputStream(file),
+        new GenericDatumReader<>())) {
+      ColumnarReader columns = new ColumnarReader(in.getSchema(), READER);
+      assertThrows(AvroTypeException.class, () -> in.nextBatch(columns, columns.newBatch(), 20));
+    }
+  }
+
+  @Test
+  public void resetClearsNulls() throws IOException {
+    Schema schema = new Schema.Parser()
+        .parse("{\"type\":\"record\",\"name\":\"O\",\"fields\":[{\"name\":\"x\",\"type\":[\"null\",\"long\"]},"
+            + "{\"name\":\"t\",\"type\":[\"null\",\"string\"]}]}");
+    List<GenericRecord> records = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      GenericRecord record = new GenericData.Record(schema);
+      // the first 100 are all null, the next 100 have values
+      record.put("x", i < 100 ? null : (long) i);
+      record.put("t", i < 100 ? null : "t" + i);
+      records.add(record);
+    }
+    byte[] file = write(schema, records, 1 << 16);
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(new ByteArrayInputStream(file),
+        new GenericDatumReader<>())) {
+      ColumnarReader columns = new ColumnarReader(schema, schema);
+      ColumnBatch batch = columns.newBatch();
+      assertEquals(100, in.nextBatch(columns, batch, 100));
+      assertTrue(batch.getColumn("x").hasNulls());
+      assertTrue(batch.getColumn("t").isNull(99));
+
+      batch.reset();
+      assertEquals(0, batch.size());
+      assertEquals(100, in.nextBatch(columns, batch, 100));
+      for (String name : new String[] { "x", "t" }) {
+        assertFalse(batch.getColumn(name).hasNulls());
+        for (int row = 0; row < 100; row++) {
+          assertFalse(batch.getColumn(name).isNull(row));
+        }
+      }
+      assertEquals(150L, ((ColumnVector.Longs) batch.getColumn("x")).get(50));
+      assertEquals("t150", ((ColumnVector.Bytes) batch.getColumn("t")).getString(50));
+    }
+    assertSameAsGeneric(file, schema, 100, 100);
+  }
+
+  @Test
+  public void rejectsUnsupportedSchemas() {
+    assertThrows(IllegalArgumentException.class, () -> new ColumnarReader(WRITER, Schema.create(Schema.Type.INT)));
+    assertThrows(IllegalArgumentException.class, () -> new ColumnarReader(WRITER, WRITER)); // has a map field
+    ColumnBatch batch = new ColumnarReader(WRITER, READER).newBatch();
+    ColumnarReader other = new ColumnarReader(WRITER, new Schema.Parser().parse(READER.toString()));
+    assertThrows(IllegalArgumentException.class,
+        () -> other.read(DecoderFactory.get().binaryDecoder(new byte[0], null), 0, batch));
+  }
+}
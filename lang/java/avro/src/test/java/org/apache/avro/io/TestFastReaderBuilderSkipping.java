@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+
+/** Tests the skippers FastReaderBuilder compiles for fields a reader drops. */
+public class TestFastReaderBuilderSkipping {
+
+  private static final Schema WRITER = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":["
+      + "{\"name\":\"keep1\",\"type\":\"int\"},"
+      + "{\"name\":\"u\",\"type\":[\"null\",\"string\",\"long\",{\"type\":\"record\",\"name\":\"Small\",\"fields\":["
+      + "{\"name\":\"f\",\"type\":\"float\"},{\"name\":\"d\",\"type\":\"double\"}]}]},"
+      + "{\"name\":\"m\",\"type\":{\"type\":\"map\",\"values\":{\"type\":\"array\",\"items\":\"string\"}}},"
+      + "{\"name\":\"fixedArray\",\"type\":{\"type\":\"array\",\"items\":{\"type\":\"fixed\",\"name\":\"F3\",\"size\":3}}},"
+      + "{\"name\":\"doubleArray\",\"type\":{\"type\":\"array\",\"items\":\"double\"}},"
+      + "{\"name\":\"smallArray\",\"type\":{\"type\":\"array\",\"items\":\"Small\"}},"
+      // adjacent fixed-size fields, merged into one run
+      + "{\"name\":\"b\",\"type\":\"boolean\"},{\"name\":\"f\",\"type\":\"float\"},"
+      + "{\"name\":\"fx\",\"type\":{\"type\":\"fixed\",\"name\":\"F5\",\"size\":5}},"
+      + "{\"name\":\"small\",\"type\":\"Small\"},{\"name\":\"n\",\"type\":\"null\"},{\"name\":\"d\",\"type\":\"double\"},"
+      + "{\"name\":\"keep2\",\"type\":\"string\"},"
+      + "{\"name\":\"tree\",\"type\":{\"type\":\"record\",\"name\":\"Tree\",\"fields\":["
+      + "{\"name\":\"value\",\"type\":\"long\"},"
+      + "{\"name\":\"children\",\"type\":{\"type\":\"array\",\"items\":\"Tree\"}},"
+      + "{\"name\":\"parent\",\"type\":[\"null\",\"Tree\"]},"
+      + "{\"name\":\"label\",\"type\":\"string\"}]}},"
+      + "{\"name\":\"e\",\"type\":{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"X\",\"Y\",\"Z\"]}},"
+      + "{\"name\":\"bytes\",\"type\":\"bytes\"},{\"name\":\"l\",\"type\":\"long\"},"
+      + "{\"name\":\"keep3\",\"type\":\"double\"}]}");
+
+  /** Keeps three top-level fields, skipping all others. */
+  private static final Schema FLAT = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":["
+      + "{\"name\":\"keep1\",\"type\":\"int\"},{\"name\":\"keep2\",\"type\":\"string\"},"
+      + "{\"name\":\"keep3\",\"type\":\"double\"}]}");
+
+  /** Also reads the tree, skipping fields inside it. */
+  private static final Schema NESTED = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":["
+      + "{\"name\":\"small\",\"type\":{\"type\":\"record\",\"name\":\"Small\",\"fields\":["
+      + "{\"name\":\"d\",\"type\":\"double\"}]}},"
+      + "{\"name\":\"tree\",\"type\":{\"type\":\"record\",\"name\":\"Tree\",\"fields\":["
+      + "{\"name\":\"value\",\"type\":\"long\"},{\"name\":\"label\",\"type\":\"string\"}]}},"
+      + "{\"name\":\"keep3\",\"type\":\"double\"}]}");
+
+  private final Random random = new Random(1234);
+
+  private String string() {
+    char[] chars = new char[random.nextInt(12)];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = (char) ('a' + random.nextInt(26));
+    }
+    return new String(chars);
+  }
+
+  private GenericRecord small() {
+    GenericRecord small = new GenericData.Record(WRITER.getField("small").schema());
+    small.put("f", random.nextFloat());
+    small.put("d", random.nextDouble());
+    return small;
+  }
+
+  private GenericData.Fixed fixed(String field, int size) {
+    byte[] bytes = new byte[size];
+    random.nextBytes(bytes);
+    Schema schema = WRITER.getField(field).schema();
+    if (schema.getType() == Schema.Type.ARRAY) {
+      schema = schema.getElementType();
+    }
+    return new GenericData.Fixed(schema, bytes);
+  }
+
+  private GenericRecord tree(int depth) {
+    GenericRecord tree = new GenericData.Record(WRITER.getField("tree").schema());
+    tree.put("value", random.nextLong());
+    List<GenericRecord> children = new ArrayList<>();
+    for (int i = depth > 0 ? random.nextInt(3) : 0; i > 0; i--) {
+      children.add(tree(depth - 1));
+    }
+    tree.put("children", children);
+    tree.put("parent", depth > 0 && random.nextBoolean() ? tree(0) : null);
+    tree.put("label", string());
+    return tree;
+  }
+
+  private GenericRecord record() {
+    GenericRecord record = new GenericData.Record(WRITER);
+    record.put("keep1", random.nextInt());
+    switch (random.nextInt(4)) {
+    case 0:
+      record.put("u", null);
+      break;
+    case 1:
+      record.put("u", string());
+      break;
+    case 2:
+      record.put("u", random.nextLong());
+      break;
+    default:
+      record.put("u", small());
+    }
+    Map<String, List<String>> map = new HashMap<>();
+    for (int i = random.nextInt(4); i > 0; i--) {
+      List<String> strings = new ArrayList<>();
+      for (int j = random.nextInt(4); j > 0; j--) {
+        strings.add(string());
+      }
+      map.put(string(), strings);
+    }
+    record.put("m", map);
+    List<GenericData.Fixed> fixedArray = new ArrayList<>();
+    List<Double> doubleArray = new ArrayList<>();
+    List<GenericRecord> smallArray = new ArrayList<>();
+    for (int i = random.nextInt(40); i > 0; i--) {
+      fixedArray.add(fixed("fixedArray", 3));
+      doubleArray.add(random.nextDouble());
+      smallArray.add(small());
+    }
+    record.put("fixedArray", fixedArray);
+    record.put("doubleArray", doubleArray);
+    record.put("smallArray", smallArray);
+    record.put("b", random.nextBoolean());
+    record.put("f", random.nextFloat());
+    record.put("fx", fixed("fx", 5));
+    record.put("small", small());
+    record.put("n", null);
+    record.put("d", random.nextDouble());
+    record.put("keep2", string());
+    record.put("tree", tree(3));
+    Schema e = WRITER.getField("e").schema();
+    record.put("e", new GenericData.EnumSymbol(e, e.getEnumSymbols().get(random.nextInt(3))));
+    byte[] bytes = new byte[random.nextInt(10)];
+    random.nextBytes(bytes);
+    record.put("bytes", ByteBuffer.wrap(bytes));
+    record.put("l", random.nextLong());
+    record.put("keep3", random.nextDouble());
+    return record;
+  }
+
+  private List<GenericRecord> records(int count) {
+    List<GenericRecord> records = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      records.add(record());
+    }
+    return records;
+  }
+
+  private static byte[] encode(List<GenericRecord> records, Encoder encoder, ByteArrayOutputStream out)
+      throws IOException {
+    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(WRITER);
+    for (GenericRecord record : records) {
+      writer.write(record, encoder);
+    }
+    encoder.flush();
+    return out.toByteArray();
+  }
+
+  /** Read every record with both readers, from decoders made by a supplier. */
+  private interface Decoders {
+    Decoder create() throws IOException;
+  }
+
+  private static void assertSameAsGeneric(Schema reader, int count, Decoders decoders) throws IOException {
+    DatumReader<GenericRecord> generic = new GenericDatumReader<>(WRITER, reader, new GenericData());
+    DatumReader<GenericRecord> fast = new FastReaderBuilder(new GenericData()).createDatumReader(WRITER, reader);
+    Decoder expectedIn = decoders.create();
+    Decoder actualIn = decoders.create();
+    for (int i = 0; i < count; i++) {
+      GenericRecord expected = generic.read(null, expectedIn);
+      GenericRecord actual = fast.read(null, actualIn);
+      assertEquals("record " + i, expected, actual);
+    }
+  }
+
+  private void assertSkips(Schema reader) throws IOException {
+    List<GenericRecord> records = records(200);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] plain = encode(records, EncoderFactory.get().binaryEncoder(out, null), out);
+    assertSameAsGeneric(reader, records.size(), () -> DecoderFactory.get().binaryDecoder(plain, null));
+
+    // arrays and maps in blocks with negative counts followed by their sizes
+    out = new ByteArrayOutputStream();
+    byte[] blocked = encode(records, new EncoderFactory().configureBlockSize(64).blockingBinaryEncoder(out, null),
+        out);
+    assertTrue(blocked.length > plain.length);
+    assertSameAsGeneric(reader, records.size(), () -> DecoderFactory.get().binaryDecoder(blocked, null));
+
+    // skipped value by value by the fallback
+    out = new ByteArrayOutputStream();
+    String json = new String(encode(records, EncoderFactory.get().jsonEncoder(WRITER, out), out),
+        StandardCharsets.UTF_8);
+    assertSameAsGeneric(reader, records.size(), () -> DecoderFactory.get().jsonDecoder(WRITER, json));
+  }
+
+  @Test
+  public void skipsTopLevelFields() throws IOException {
+    assertSkips(FLAT);
+  }
+
+  @Test
+  public void skipsNestedAndRecursiveFields() throws IOException {
+    assertSkips(NESTED);
+  }
+
+  @Test
+  public void readsValuesAfterSkippedRuns() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    List<GenericRecord> records = records(50);
+    byte[] plain = encode(records, EncoderFactory.get().binaryEncoder(out, null), out);
+    DatumReader<GenericRecord> fast = new FastReaderBuilder(new GenericData()).createDatumReader(WRITER, FLAT);
+    BinaryDecoder in = DecoderFactory.get().binaryDecoder(plain, null);
+    for (GenericRecord record : records) {
+      GenericRecord read = fast.read(null, in);
+      assertEquals(record.get("keep1"), read.get("keep1"));
+      assertEquals(record.get("keep2"), read.get("keep2").toString());
+      assertEquals(record.get("keep3"), read.get("keep3"));
+    }
+    assertTrue(in.isEnd());
+  }
+}
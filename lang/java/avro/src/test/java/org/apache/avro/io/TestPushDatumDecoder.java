@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+
+public class TestPushDatumDecoder {
+
+  private static final Schema SCHEMA = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"a.R\",\"fields\":["
+      + "{\"name\":\"n\",\"type\":\"null\"},{\"name\":\"b\",\"type\":\"boolean\"},"
+      + "{\"name\":\"i\",\"type\":\"int\"},{\"name\":\"l\",\"type\":\"long\"},"
+      + "{\"name\":\"f\",\"type\":\"float\"},{\"name\":\"d\",\"type\":\"double\"},"
+      + "{\"name\":\"s\",\"type\":\"string\"},{\"name\":\"by\",\"type\":\"bytes\"},"
+      + "{\"name\":\"fx\",\"type\":{\"type\":\"fixed\",\"name\":\"F\",\"size\":3}},"
+      + "{\"name\":\"e\",\"type\":{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"A\",\"B\",\"C\"]}},"
+      + "{\"name\":\"u\",\"type\":[\"null\",\"string\",\"long\"]},"
+      + "{\"name\":\"a\",\"type\":{\"type\":\"array\",\"items\":{\"type\":\"array\",\"items\":\"int\"}}},"
+      + "{\"name\":\"m\",\"type\":{\"type\":\"map\",\"values\":[\"null\",\"R\"]}}]}");
+
+  private static GenericRecord record(int seed, GenericRecord child) {
+    GenericData.Record r = new GenericData.Record(SCHEMA);
+    r.put("b", seed % 2 == 0);
+    r.put("i", seed * 1000 - 7);
+    r.put("l", seed * 12345678901L);
+    r.put("f", seed / 3f);
+    r.put("d", -seed / 7d);
+    r.put("s", "text " + seed);
+    r.put("by", ByteBuffer.wrap(new byte[seed % 5]));
+    r.put("fx", new GenericData.Fixed(SCHEMA.getField("fx").schema(), new byte[] { 1, 2, (byte) seed }));
+    r.put("e", new GenericData.EnumSymbol(SCHEMA.getField("e").schema(), "ABC".substring(seed % 3, seed % 3 + 1)));
+    r.put("u", seed % 3 == 0 ? null : seed % 3 == 1 ? "u" + seed : (Object) (long) -seed);
+    List<List<Integer>> a = new ArrayList<>();
+    for (int i = 0; i < seed % 4; i++) {
+      a.add(Arrays.asList(i, -i, seed));
+    }
+    r.put("a", a);
+    r.put("m", child == null ? Collections.emptyMap() : Collections.singletonMap("child", child));
+    return r;
+  }
+
+  private static List<GenericRecord> records() {
+    List<GenericRecord> records = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      records.add(record(i, i % 2 == 0 ? null : record(i + 10, null)));
+    }
+    return records;
+  }
+
+  private static byte[] encode(List<GenericRecord> records) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(SCHEMA);
+    for (GenericRecord record : records) {
+      writer.write(record, encoder);
+    }
+    encoder.flush();
+    return out.toByteArray();
+  }
+
+  private static List<Object> drain(PushDatumDecoder<Object> decoder, List<Object> into) throws IOException {
+    Object datum;
+    while ((datum = decoder.pollDatum()) != null) {
+      into.add(datum);
+    }
+    return into;
+  }
+
+  private static PushDatumDecoder<Object> newDecoder(Schema schema) {
+    return new PushDatumDecoder<>(schema, new GenericDatumReader<>());
+  }
+
+  @Test
+  public void decodesAtEverySplitPoint() throws IOException {
+    List<GenericRecord> expected = records();
+    byte[] bytes = encode(expected);
+    for (int split = 0; split <= bytes.length; split++) {
+      PushDatumDecoder<Object> decoder = newDecoder(SCHEMA);
+      List<Object> decoded = new ArrayList<>();
+      decoder.feed(bytes, 0, split);
+      drain(decoder, decoded);
+      decoder.feed(bytes, split, bytes.length - split);
+      drain(decoder, decoded);
+      assertEquals("split at " + split, expected.toString(), decoded.toString());
+      assertEquals(0, decoder.getBufferedBytes());
+    }
+  }
+
+  @Test
+  public void decodesOneByteAtATime() throws IOException {
+    List<GenericRecord> expected = records();
+    byte[] bytes = encode(expected);
+    PushDatumDecoder<Object> decoder = newDecoder(SCHEMA);
+    List<Object> decoded = new ArrayList<>();
+    for (int i = 0; i < bytes.length; i++) {
+      decoder.feed(bytes, i, 1);
+      drain(decoder, decoded);
+    }
+    assertEquals(expected.toString(), decoded.toString());
+  }
+
+  @Test
+  public void decodesDatumsLargerThanTheBuffer() throws IOException {
+    Schema schema = Schema.create(Schema.Type.STRING);
+    char[] chars = new char[20000];
+    Arrays.fill(chars, 'x');
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    encoder.writeString(new String(chars));
+    encoder.writeString("short");
+    encoder.flush();
+    byte[] bytes = out.toByteArray();
+
+    PushDatumDecoder<Object> decoder = newDecoder(schema);
+    List<Object> decoded = new ArrayList<>();
+    for (int i = 0; i < bytes.length; i += 1000) {
+      decoder.feed(bytes, i, Math.min(1000, bytes.length - i));
+      drain(decoder, decoded);
+    }
+    assertEquals(2, decoded.size());
+    assertEquals(new String(chars), decoded.get(0).toString());
+    assertEquals("short", decoded.get(1).toString());
+  }
+
+  @Test
+  public void decodesBlocksWithByteSizes() throws IOException {
+    Schema schema = new Schema.Parser().parse("{\"type\":\"array\",\"items\":\"string\"}");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    // a block of two items with its size in bytes, then a block of one
+    encoder.writeLong(-2);
+    encoder.writeLong(4);
+    encoder.writeString("ab");
+    encoder.writeString("c");
+    encoder.writeLong(1);
+    encoder.writeString("d");
+    encoder.writeLong(0);
+    encoder.flush();
+    byte[] bytes = out.toByteArray();
+
+    for (int split = 0; split <= bytes.length; split++) {
+      PushDatumDecoder<Object> decoder = newDecoder(schema);
+      List<Object> decoded = new ArrayList<>();
+      decoder.feed(bytes, 0, split);
+      drain(decoder, decoded);
+      decoder.feed(bytes, split, bytes.length - split);
+      drain(decoder, decoded);
+      assertEquals("split at " + split, 1, decoded.size());
+      assertEquals("[ab, c, d]", decoded.get(0).toString());
+    }
+  }
+
+  @Test
+  public void incompleteInputIsBuffered() throws IOException {
+    List<GenericRecord> records = records();
+    byte[] bytes = encode(records);
+    int last = bytes.length - encode(records.subList(0, records.size() - 1)).length;
+    PushDatumDecoder<Object> decoder = newDecoder(SCHEMA);
+    decoder.feed(bytes, 0, bytes.length - 1);
+    assertEquals(records.size() - 1, drain(decoder, new ArrayList<>()).size());
+    assertNull(decoder.pollDatum());
+    assertEquals(last - 1, decoder.getBufferedBytes());
+  }
+
+  @Test
+  public void invalidUnionIndexIsRejected() {
+    Schema schema = new Schema.Parser().parse("[\"null\",\"int\"]");
+    PushDatumDecoder<Object> decoder = newDecoder(schema);
+    decoder.feed(new byte[] { 4 }, 0, 1); // index 2
+    assertThrows(AvroTypeException.class, decoder::pollDatum);
+  }
+}
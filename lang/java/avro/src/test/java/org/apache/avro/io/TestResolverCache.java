@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.avro.Schema;
+import org.junit.Test;
+
+public class TestResolverCache {
+
+  private static final String WRITER = "{\"type\":\"record\",\"name\":\"R\",\"fields\":["
+      + "{\"name\":\"a\",\"type\":\"%s\"},{\"name\":\"s\",\"type\":\"string\"},{\"name\":\"gone\",\"type\":\"long\"}]}";
+  private static final String READER = "{\"type\":\"record\",\"name\":\"R\",\"fields\":["
+      + "{\"name\":\"s\",\"type\":\"string\"},{\"name\":\"a\",\"type\":\"double\"},"
+      + "{\"name\":\"added\",\"type\":\"double\",\"default\":2.5}]}";
+
+  private static Schema parse(String json) {
+    return new Schema.Parser().parse(json);
+  }
+
+  private static Schema writer(String type) {
+    return parse(String.format(WRITER, type));
+  }
+
+  /** Encode a record of {@link #WRITER} whose field a is an int or a long. */
+  private static byte[] encode(boolean longA, long a, String s) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+    if (longA) {
+      encoder.writeLong(a);
+    } else {
+      encoder.writeInt((int) a);
+    }
+    encoder.writeString(s);
+    encoder.writeLong(-1);
+    encoder.flush();
+    return out.toByteArray();
+  }
+
+  /** Decode a record of {@link #READER}, returning "s a added". */
+  private static String decode(ResolvingDecoder in) throws IOException {
+    String s = null;
+    double a = 0;
+    double added = 0;
+    for (Schema.Field field : in.readFieldOrder()) {
+      switch (field.name()) {
+      case "s":
+        s = in.readString();
+        break;
+      case "a":
+        a = in.readDouble();
+        break;
+      default:
+        added = in.readDouble();
+      }
+    }
+    in.drain();
+    return s + " " + a + " " + added;
+  }
+
+  private static String decode(Object grammar, byte[] bytes) throws IOException {
+    return decode(new ResolvingDecoder(grammar, DecoderFactory.get().binaryDecoder(bytes, null)));
+  }
+
+  @Test
+  public void threadsShareOneGrammar() throws Exception {
+    ResolverCache cache = new ResolverCache(16);
+    int threads = 4;
+    CyclicBarrier start = new CyclicBarrier(threads);
+    byte[] bytes = encode(false, 42, "x");
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Object>> grammars = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        Callable<Object> task = () -> {
+          // equal schemas parsed separately by each thread
+          Schema writer = writer("int");
+          Schema reader = parse(READER);
+          start.await();
+          cache.resolve(writer, reader);
+          Object grammar = cache.resolve(writer, reader);
+          for (int i = 0; i < 1000; i++) {
+            assertEquals("x 42.0 2.5", decode(grammar, bytes));
+          }
+          return grammar;
+        };
+        grammars.add(executor.submit(task));
+      }
+      Object shared = cache.resolve(writer("int"), parse(READER));
+      for (Future<Object> grammar : grammars) {
+        assertSame(shared, grammar.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, cache.size());
+    assertEquals(2 * threads + 1, cache.getHitCount() + cache.getMissCount());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() throws IOException {
+    ResolverCache cache = new ResolverCache(2);
+    Schema reader = parse(READER);
+    Schema intWriter = writer("int");
+    Schema longWriter = writer("long");
+    Schema floatWriter = writer("float");
+
+    Object intGrammar = cache.resolve(intWriter, reader);
+    cache.resolve(longWriter, reader);
+    assertSame(intGrammar, cache.resolve(intWriter, reader)); // now most recently used
+    cache.resolve(floatWriter, reader); // evicts the long pair
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(3, cache.getMissCount());
+
+    assertSame(intGrammar, cache.resolve(intWriter, reader));
+    cache.resolve(longWriter, reader);
+    assertEquals(2, cache.getHitCount());
+    assertEquals(4, cache.getMissCount());
+    assertEquals(2, cache.getEvictionCount());
+    assertEquals(2, cache.getMaxEntries());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertNotSame(intGrammar, cache.resolve(intWriter, reader));
+  }
+
+  @Test
+  public void collidingFingerprintsDoNotShareGrammars() throws Exception {
+    ResolverCache cache = new ResolverCache(16);
+    Schema reader = parse(READER);
+    Schema intWriter = writer("int");
+    Schema longWriter = writer("long");
+    Object intGrammar = cache.resolve(intWriter, reader);
+
+    // make the long writer's fingerprint collide with the int writer's
+    Field fingerprintsField = ResolverCache.class.getDeclaredField("fingerprints");
+    fingerprintsField.setAccessible(true);
+    @SuppressWarnings("unchecked")
+    Map<Schema, Object> fingerprints = (Map<Schema, Object>) fingerprintsField.get(cache);
+    Object intFingerprint = fingerprints.get(intWriter);
+    Field value = intFingerprint.getClass().getDeclaredField("value");
+    value.setAccessible(true);
+    Constructor<?> constructor = intFingerprint.getClass().getDeclaredConstructor(int.class, long.class);
+    constructor.setAccessible(true);
+    fingerprints.put(longWriter, constructor.newInstance(longWriter.hashCode(), value.getLong(intFingerprint)));
+
+    Object longGrammar = cache.resolve(longWriter, reader);
+    assertNotSame(intGrammar, longGrammar);
+    assertEquals("y 8.0E12 2.5", decode(longGrammar, encode(true, 8_000_000_000_000L, "y")));
+    assertEquals(2, cache.getMissCount());
+
+    // the colliding pair replaced the other, which is generated again
+    Object again = cache.resolve(intWriter, reader);
+    assertNotSame(intGrammar, again);
+    assertEquals("x 7.0 2.5", decode(again, encode(false, 7, "x")));
+  }
+
+  @Test
+  public void modifiedSchemaGetsItsOwnGrammar() throws IOException {
+    ResolverCache cache = new ResolverCache(16);
+    Schema reader = parse(READER);
+    Schema writer = writer("int");
+    Object grammar = cache.resolve(writer, reader);
+    writer.addProp("version", "2");
+    Object modified = cache.resolve(writer, reader);
+    assertNotSame(grammar, modified);
+    assertEquals(2, cache.size());
+    assertSame(modified, cache.resolve(writer, reader));
+  }
+
+  @Test
+  public void decoderFactoryResolves() throws IOException {
+    Schema reader = parse(READER);
+    for (boolean longA : new boolean[] { false, true }) {
+      Schema writer = writer(longA ? "long" : "int");
+      for (int i = 0; i < 3; i++) {
+        byte[] bytes = encode(longA, -5 - i, "r" + i);
+        ResolvingDecoder in = DecoderFactory.get().resolvingDecoder(writer, reader,
+            DecoderFactory.get().binaryDecoder(bytes, null));
+        assertEquals("r" + i + " " + (-5.0 - i) + " 2.5", decode(in));
+      }
+    }
+    assertSame(ResolverCache.get().resolve(writer("int"), reader), ResolverCache.get().resolve(writer("int"), reader));
+  }
+
+  @Test
+  public void rejectsInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new ResolverCache(0));
+    ResolverCache cache = new ResolverCache(1);
+    assertThrows(NullPointerException.class, () -> cache.resolve(null, parse(READER)));
+    assertThrows(NullPointerException.class, () -> cache.resolve(parse(READER), null));
+  }
+}
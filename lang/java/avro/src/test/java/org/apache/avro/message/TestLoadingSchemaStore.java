@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaNormalization;
+import org.junit.Test;
+
+public class TestLoadingSchemaStore {
+
+  private final Map<Long, Schema> registry = new HashMap<>();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private final LoadingSchemaStore.Loader loader = fingerprint -> {
+    loads.incrementAndGet();
+    return registry.get(fingerprint);
+  };
+
+  private long register(String name) {
+    Schema schema = SchemaBuilder.record(name).fields().requiredLong("id").endRecord();
+    long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+    registry.put(fingerprint, schema);
+    return fingerprint;
+  }
+
+  @Test
+  public void loadsOnceAndCountsHits() {
+    long fingerprint = register("A");
+    LoadingSchemaStore store = LoadingSchemaStore.builder(loader).build();
+
+    Schema schema = store.findByFingerprint(fingerprint);
+    assertSame(registry.get(fingerprint), schema);
+    assertSame(schema, store.findByFingerprint(fingerprint));
+    assertEquals(1, loads.get());
+    assertEquals(1, store.getMissCount());
+    assertEquals(1, store.getHitCount());
+    assertEquals(1, store.getLoadSuccessCount());
+  }
+
+  @Test
+  public void remembersUnknownFingerprints() {
+    LoadingSchemaStore store = LoadingSchemaStore.builder(loader).build();
+
+    assertNull(store.findByFingerprint(42L));
+    assertNull(store.findByFingerprint(42L));
+    assertEquals(1, loads.get());
+    assertEquals(1, store.getNegativeHitCount());
+  }
+
+  @Test
+  public void negativeCachingCanBeDisabled() {
+    LoadingSchemaStore store = LoadingSchemaStore.builder(loader).negativeCacheTtl(0, TimeUnit.SECONDS).build();
+
+    assertNull(store.findByFingerprint(42L));
+    assertNull(store.findByFingerprint(42L));
+    assertEquals(2, loads.get());
+    assertEquals(0, store.size());
+  }
+
+  @Test
+  public void loaderFailureIsReportedAndNotCached() {
+    LoadingSchemaStore store = LoadingSchemaStore.builder(fingerprint -> {
+      throw new IOException("registry down");
+    }).build();
+
+    AvroRuntimeException e = assertThrows(AvroRuntimeException.class, () -> store.findByFingerprint(1L));
+    assertEquals("registry down", e.getCause().getMessage());
+    assertThrows(AvroRuntimeException.class, () -> store.findByFingerprint(1L));
+    assertEquals(2, store.getLoadFailureCount());
+    assertEquals(0, store.size());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() {
+    long a = register("A");
+    long b = register("B");
+    long c = register("C");
+    LoadingSchemaStore store = LoadingSchemaStore.builder(loader).maximumSize(2).build();
+
+    store.findByFingerprint(a);
+    store.findByFingerprint(b);
+    store.findByFingerprint(a); // b is now the eldest
+    store.findByFingerprint(c);
+    assertEquals(2, store.size());
+    assertEquals(1, store.getEvictionCount());
+
+    loads.set(0);
+    store.findByFingerprint(a);
+    store.findByFingerprint(c);
+    assertEquals(0, loads.get());
+    store.findByFingerprint(b);
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void expiresAfterWrite() throws InterruptedException {
+    long a = register("A");
+    LoadingSchemaStore store = LoadingSchemaStore.builder(loader).expireAfterWrite(1, TimeUnit.MILLISECONDS).build();
+
+    store.findByFingerprint(a);
+    Thread.sleep(10);
+    store.findByFingerprint(a);
+    assertEquals(2, loads.get());
+    assertEquals(1, store.getEvictionCount());
+  }
+
+  @Test
+  public void addedSchemasAreFoundWithoutLoading() {
+    Schema schema = SchemaBuilder.record("Added").fields().requiredString("name").endRecord();
+    LoadingSchemaStore store = LoadingSchemaStore.builder(loader).build();
+
+    store.addSchema(schema);
+    assertSame(schema, store.findByFingerprint(SchemaNormalization.parsingFingerprint64(schema)));
+    assertEquals(0, loads.get());
+  }
+
+  @Test
+  public void invalidateNotifiesAndReloads() {
+    long a = register("A");
+    LoadingSchemaStore store = LoadingSchemaStore.builder(loader).build();
+    List<Long> removed = new ArrayList<>();
+    LoadingSchemaStore.RemovalListener listener = (fingerprint, schema) -> removed.add(fingerprint);
+    store.addRemovalListener(listener);
+
+    store.findByFingerprint(a);
+    store.invalidate(a);
+    assertEquals(Arrays.asList(a), removed);
+    store.findByFingerprint(a);
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void listenerAddedAfterFirstEvictionIsNotified() {
+    long a = register("A");
+    long b = register("B");
+    long c = register("C");
+    LoadingSchemaStore store = LoadingSchemaStore.builder(loader).maximumSize(1).build();
+    List<Long> first = new ArrayList<>();
+    List<Long> second = new ArrayList<>();
+    LoadingSchemaStore.RemovalListener firstListener = (fingerprint, schema) -> first.add(fingerprint);
+    LoadingSchemaStore.RemovalListener secondListener = (fingerprint, schema) -> second.add(fingerprint);
+
+    store.addRemovalListener(firstListener);
+    store.findByFingerprint(a);
+    store.findByFingerprint(b); // evicts a
+    assertEquals(Arrays.asList(a), first);
+
+    store.addRemovalListener(secondListener);
+    store.findByFingerprint(c); // evicts b
+    assertEquals(Arrays.asList(a, b), first);
+    assertEquals(Arrays.asList(b), second);
+  }
+
+  @Test
+  public void removedListenerIsNotNotified() {
+    long a = register("A");
+    long b = register("B");
+    long c = register("C");
+    LoadingSchemaStore store = LoadingSchemaStore.builder(loader).maximumSize(1).build();
+    List<Long> removed = new ArrayList<>();
+    LoadingSchemaStore.RemovalListener listener = (fingerprint, schema) -> removed.add(fingerprint);
+
+    store.addRemovalListener(listener);
+    store.findByFingerprint(a);
+    store.findByFingerprint(b);
+    store.removeRemovalListener(listener);
+    store.findByFingerprint(c);
+    assertEquals(Arrays.asList(a), removed);
+  }
+
+  @Test
+  public void unknownFingerprintsAreNotReported() {
+    long a = register("A");
+    LoadingSchemaStore store = LoadingSchemaStore.builder(loader).maximumSize(1).build();
+    List<Long> removed = new ArrayList<>();
+    LoadingSchemaStore.RemovalListener listener = (fingerprint, schema) -> removed.add(fingerprint);
+    store.addRemovalListener(listener);
+
+    store.findByFingerprint(42L);
+    store.findByFingerprint(a); // evicts the unknown fingerprint
+    assertEquals(Collections.emptyList(), removed);
+  }
+
+  @Test
+  public void asyncLoadCompletes() throws Exception {
+    long a = register("A");
+    LoadingSchemaStore store = LoadingSchemaStore.builder(loader).executor(Runnable::run).build();
+
+    assertSame(registry.get(a), store.findByFingerprintAsync(a).get());
+    assertSame(registry.get(a), store.findByFingerprintAsync(a).get());
+    assertEquals(1, loads.get());
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.message;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.junit.Test;
+
+public class TestMessageBatch {
+
+  private static final Schema SCHEMA = SchemaBuilder.record("Event").fields().requiredLong("id").requiredString("name")
+      .optionalDouble("score").endRecord();
+
+  private static List<GenericRecord> records(int count) {
+    List<GenericRecord> records = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      GenericRecordBuilder builder = new GenericRecordBuilder(SCHEMA).set("id", (long) i * 1000003).set("name",
+          "event-" + i);
+      if (i % 3 != 0) {
+        builder.set("score", i / 7.0);
+      }
+      records.add(builder.build());
+    }
+    return records;
+  }
+
+  private static byte[] toArray(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /** Return the bytes of every datum encoded on its own, back to back. */
+  private static byte[] encodeEach(MessageEncoder<GenericRecord> encoder, List<GenericRecord> records)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (GenericRecord record : records) {
+      out.write(toArray(encoder.encode(record)));
+    }
+    return out.toByteArray();
+  }
+
+  private static void assertSameAsEncode(MessageEncoder<GenericRecord> encoder, List<GenericRecord> records,
+      MessageBatch batch) throws IOException {
+    assertEquals(records.size(), batch.size());
+    assertArrayEquals(encodeEach(encoder, records), Arrays.copyOf(batch.array(), batch.byteSize()));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    batch.writeTo(out);
+    assertArrayEquals(encodeEach(encoder, records), out.toByteArray());
+    for (int i = 0; i < records.size(); i++) {
+      byte[] message = toArray(encoder.encode(records.get(i)));
+      assertArrayEquals("message " + i, message, toArray(batch.get(i)));
+      assertEquals(message.length, batch.getLength(i));
+      assertArrayEquals(message,
+          Arrays.copyOfRange(batch.array(), batch.getOffset(i), batch.getOffset(i) + batch.getLength(i)));
+    }
+  }
+
+  @Test
+  public void binaryMessagesRoundTrip() throws Exception {
+    List<GenericRecord> records = records(100);
+    BinaryMessageEncoder<GenericRecord> encoder = new BinaryMessageEncoder<>(GenericData.get(), SCHEMA);
+    MessageBatch batch = encoder.encodeAll(records, null);
+    assertSameAsEncode(encoder, records, batch);
+
+    byte[] fingerprint = SchemaNormalization.parsingFingerprint("CRC-64-AVRO", SCHEMA);
+    BinaryMessageDecoder<GenericRecord> decoder = new BinaryMessageDecoder<>(GenericData.get(), SCHEMA);
+    for (int i = 0; i < records.size(); i++) {
+      byte[] message = toArray(batch.get(i));
+      assertArrayEquals(BinaryMessageEncoder.V1_HEADER, Arrays.copyOf(message, 2));
+      assertArrayEquals(fingerprint, Arrays.copyOfRange(message, 2, 10));
+      assertEquals(records.get(i), decoder.decode(batch.get(i)));
+    }
+  }
+
+  @Test
+  public void rawMessagesRoundTrip() throws IOException {
+    List<GenericRecord> records = records(100);
+    RawMessageEncoder<GenericRecord> encoder = new RawMessageEncoder<>(GenericData.get(), SCHEMA);
+    MessageBatch batch = encoder.encodeAll(records, null);
+    assertSameAsEncode(encoder, records, batch);
+
+    RawMessageDecoder<GenericRecord> decoder = new RawMessageDecoder<>(GenericData.get(), SCHEMA);
+    for (int i = 0; i < records.size(); i++) {
+      assertEquals(records.get(i), decoder.decode(batch.get(i)));
+    }
+  }
+
+  @Test
+  public void defaultEncodeAllUsesEncode() throws IOException {
+    BinaryMessageEncoder<GenericRecord> binary = new BinaryMessageEncoder<>(GenericData.get(), SCHEMA);
+    MessageEncoder<GenericRecord> encoder = new MessageEncoder<GenericRecord>() {
+      @Override
+      public ByteBuffer encode(GenericRecord datum) throws IOException {
+        return binary.encode(datum);
+      }
+
+      @Override
+      public void encode(GenericRecord datum, OutputStream stream) throws IOException {
+        binary.encode(datum, stream);
+      }
+    };
+    List<GenericRecord> records = records(20);
+    assertSameAsEncode(encoder, records, encoder.encodeAll(records, null));
+  }
+
+  @Test
+  public void clearedBatchKeepsItsBuffer() throws IOException {
+    BinaryMessageEncoder<GenericRecord> encoder = new BinaryMessageEncoder<>(GenericData.get(), SCHEMA);
+    MessageBatch batch = new MessageBatch(16);
+    encoder.encodeAll(records(50), batch);
+    byte[] array = batch.array();
+
+    batch.clear();
+    assertEquals(0, batch.size());
+    assertEquals(0, batch.byteSize());
+    List<GenericRecord> records = records(40);
+    assertSame(batch, encoder.encodeAll(records, batch));
+    assertSame(array, batch.array());
+    assertSameAsEncode(encoder, records, batch);
+  }
+
+  @Test
+  public void failedDatumIsDiscarded() throws IOException {
+    BinaryMessageEncoder<GenericRecord> encoder = new BinaryMessageEncoder<>(GenericData.get(), SCHEMA);
+    List<GenericRecord> records = records(10);
+    MessageBatch batch = encoder.encodeAll(records, null);
+
+    GenericRecord bad = new GenericData.Record(SCHEMA);
+    bad.put("id", 1L); // no name
+    assertThrows(RuntimeException.class, () -> encoder.encodeAll(Arrays.asList(records.get(0), bad), batch));
+    records.add(records.get(0));
+    assertSameAsEncode(encoder, records, batch);
+  }
+
+  @Test
+  public void rejectsInvalidIndexes() throws IOException {
+    MessageBatch batch = new RawMessageEncoder<GenericRecord>(GenericData.get(), SCHEMA).encodeAll(records(3), null);
+    assertThrows(IndexOutOfBoundsException.class, () -> batch.get(3));
+    assertThrows(IndexOutOfBoundsException.class, () -> batch.getOffset(-1));
+    assertThrows(IndexOutOfBoundsException.class, () -> batch.getLength(3));
+  }
+}
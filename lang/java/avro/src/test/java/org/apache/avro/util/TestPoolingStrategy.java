@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestPoolingStrategy {
+
+  @Test
+  public void testThreadLocalPool() throws InterruptedException {
+    ObjectPool<Object> pool = PoolingStrategy.threadLocal().newPool(Object::new);
+    assertTrue(pool.isThreadConfined());
+    Object mine = pool.acquire();
+    pool.release(mine);
+    assertSame(mine, pool.acquire());
+    Object[] other = new Object[1];
+    Thread thread = new Thread(() -> other[0] = pool.acquire());
+    thread.start();
+    thread.join();
+    assertNotSame(mine, other[0]);
+  }
+
+  @Test
+  public void testStripedPoolReusesReleasedInstances() {
+    AtomicInteger created = new AtomicInteger();
+    ObjectPool<Object> pool = PoolingStrategy.striped(2).newPool(() -> {
+      created.incrementAndGet();
+      return new Object();
+    });
+    assertFalse(pool.isThreadConfined());
+    Object first = pool.acquire();
+    Object second = pool.acquire();
+    assertNotSame(first, second);
+    pool.release(first);
+    assertSame(first, pool.acquire());
+    assertEquals(2, created.get());
+    pool.release(null);
+  }
+
+  @Test
+  public void testFromProperty() {
+    assertSame(PoolingStrategy.threadLocal(), PoolingStrategy.fromProperty(null));
+    assertSame(PoolingStrategy.threadLocal(), PoolingStrategy.fromProperty("ThreadLocal"));
+    assertFalse(PoolingStrategy.fromProperty("striped").newPool(Object::new).isThreadConfined());
+    assertThrows(IllegalArgumentException.class, () -> PoolingStrategy.fromProperty("other"));
+    assertThrows(IllegalArgumentException.class, () -> PoolingStrategy.striped(0));
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Test;
+
+public class TestUtf8View {
+
+  private static byte[] encode(String... strings) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+    for (String string : strings) {
+      encoder.writeString(string);
+    }
+    encoder.flush();
+    return out.toByteArray();
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.append((char) (c + i % 20));
+    }
+    return builder.toString();
+  }
+
+  /** Return a view of <i>text</i> placed at <i>offset</i> in a larger array. */
+  private static Utf8View view(String text, int offset) {
+    byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+    byte[] bytes = new byte[offset + utf8.length + 3];
+    System.arraycopy(utf8, 0, bytes, offset, utf8.length);
+    return new Utf8View(bytes, offset, utf8.length);
+  }
+
+  @Test
+  public void viewAliasesArrayInput() throws IOException {
+    byte[] input = encode("first", "second \u00e9");
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(input, null);
+    Utf8View view = decoder.readStringView(null);
+    assertSame(input, view.getBytes());
+    assertEquals(1, view.getOffset());
+    assertEquals("first", view.toString());
+
+    Utf8View reused = decoder.readStringView(view);
+    assertSame(view, reused);
+    assertSame(input, view.getBytes());
+    assertEquals(7, view.getOffset());
+    assertEquals("second \u00e9", view.toString());
+    assertTrue(decoder.isEnd());
+  }
+
+  @Test
+  public void stringStraddlingRefillIsCopied() throws IOException {
+    String longer = repeat('a', 100); // longer than the decoder's buffer
+    String straddling = repeat('A', 30); // starts at 12, past the 32-byte buffer
+    byte[] input = encode("0123456789", straddling, longer, "end");
+    DecoderFactory factory = new DecoderFactory().configureDecoderBufferSize(32);
+    BinaryDecoder decoder = factory.binaryDecoder(new ByteArrayInputStream(input), null);
+
+    Utf8View view = new Utf8View();
+    assertEquals("0123456789", decoder.readStringView(view).toString());
+    assertEquals(straddling, decoder.readStringView(view).toString());
+    assertEquals(0, view.getOffset()); // copied to the decoder's scratch string
+    assertEquals(longer, decoder.readStringView(view).toString());
+    assertEquals(0, view.getOffset());
+    assertEquals(100, view.getByteLength());
+    assertEquals("end", decoder.readStringView(view).toString());
+  }
+
+  @Test
+  public void matchesUtf8() throws IOException {
+    String[] strings = { "", "a", "avro", "\u00e9t\u00e9", repeat('0', 50) };
+    byte[] input = encode(strings);
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(input, null);
+    Utf8View view = new Utf8View();
+    for (String string : strings) {
+      decoder.readStringView(view);
+      Utf8 utf8 = new Utf8(string);
+      assertEquals(utf8.hashCode(), view.hashCode());
+      assertTrue(view.contentEquals(utf8));
+      assertEquals(utf8, view.toUtf8());
+      assertEquals(string.length(), view.length());
+    }
+  }
+
+  @Test
+  public void comparesBytesAtOffsets() {
+    Utf8View a = view("apple", 5);
+    Utf8View sameAsA = view("apple", 1);
+    Utf8View b = view("apricot", 0);
+    Utf8View prefix = view("app", 9);
+
+    assertEquals(a, sameAsA);
+    assertEquals(a.hashCode(), sameAsA.hashCode());
+    assertEquals(0, a.compareTo(sameAsA));
+    assertNotEquals(a, b);
+    assertNotEquals(a, prefix);
+    for (Utf8View[] pair : new Utf8View[][] { { a, b }, { a, prefix }, { prefix, b } }) {
+      Utf8 x = pair[0].toUtf8();
+      Utf8 y = pair[1].toUtf8();
+      assertEquals(Integer.signum(x.compareTo(y)), Integer.signum(pair[0].compareTo(pair[1])));
+      assertEquals(-Integer.signum(x.compareTo(y)), Integer.signum(pair[1].compareTo(pair[0])));
+    }
+    assertNotEquals(a, "apple");
+  }
+
+  @Test
+  public void setClearsCachedStringAndHash() {
+    byte[] bytes = "one two".getBytes(StandardCharsets.UTF_8);
+    Utf8View view = new Utf8View(bytes, 0, 3);
+    assertEquals("one", view.toString());
+    assertEquals(new Utf8("one").hashCode(), view.hashCode());
+
+    view.set(bytes, 4, 3);
+    assertEquals("two", view.toString());
+    assertEquals(new Utf8("two").hashCode(), view.hashCode());
+    assertEquals('w', view.charAt(1));
+    assertEquals("wo", view.subSequence(1, 3).toString());
+
+    assertThrows(IndexOutOfBoundsException.class, () -> view.set(bytes, 5, 3));
+    assertThrows(IndexOutOfBoundsException.class, () -> view.set(bytes, -1, 1));
+  }
+
+  @Test
+  public void rejectsInvalidLengths() throws IOException {
+    for (long length : new long[] { -1, Integer.MAX_VALUE - 7L }) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+      encoder.writeLong(length);
+      encoder.flush();
+      BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(out.toByteArray(), null);
+      if (length < 0) {
+        assertThrows(AvroRuntimeException.class, () -> decoder.readStringView(null));
+      } else {
+        assertThrows(UnsupportedOperationException.class, () -> decoder.readStringView(null));
+      }
+    }
+  }
+}
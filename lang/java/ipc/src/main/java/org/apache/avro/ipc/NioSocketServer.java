@@ -0,0 +1,435 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.avro.Protocol;
+
+/**
+ * A socket-based server that speaks the same wire protocol as
+ * {@link SocketServer}, but serves every connection from a single selector
+ * thread instead of a thread per connection. Requests are read without
+ * blocking and handled by a fixed pool of worker threads, so idle clients cost
+ * no threads at all.
+ * <p/>
+ * Requests from a client that does not multiplex are handled one at a time and
+ * in order, as by {@link SocketServer}. Up to a configured number of requests
+ * from a multiplexing {@link SocketTransceiver} are handled at once. A
+ * connection is not read while it has that many requests being handled, or
+ * while too many of its response bytes are waiting to be written, so a client
+ * that sends faster than it is served is slowed down by TCP flow control rather
+ * than buffered in memory.
+ */
+public class NioSocketServer extends Thread implements Server {
+  private static final Logger LOG = LoggerFactory.getLogger(NioSocketServer.class);
+
+  /** The default maximum number of requests handled at once per connection. */
+  public static final int DEFAULT_MAX_PENDING = 16;
+
+  /** Response bytes waiting for a connection above which it is not read. */
+  private static final long MAX_QUEUED_BYTES = 1 << 20;
+  private static final int READ_BUFFER_SIZE = 8192;
+  private static final int WRITE_BATCH = 64;
+
+  private final Responder responder;
+  private final ServerSocketChannel channel;
+  private final Selector selector;
+  private final ExecutorService workers;
+  private final int maxPending;
+  /** Work handed to the selector thread by the workers. */
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private volatile boolean closed;
+
+  /**
+   * Construct a server with two workers per processor, handling at most
+   * {@link #DEFAULT_MAX_PENDING} requests at once per connection.
+   */
+  public NioSocketServer(Responder responder, SocketAddress addr) throws IOException {
+    this(responder, addr, 2 * Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_PENDING);
+  }
+
+  /**
+   * Construct a server whose requests are handled by <i>workerThreads</i>
+   * threads, handling at most <i>maxPending</i> requests at once per connection.
+   */
+  public NioSocketServer(Responder responder, SocketAddress addr, int workerThreads, int maxPending)
+      throws IOException {
+    if (workerThreads < 1) {
+      throw new IllegalArgumentException("workerThreads must be positive: " + workerThreads);
+    }
+    if (maxPending < 1) {
+      throw new IllegalArgumentException("maxPending must be positive: " + maxPending);
+    }
+    String name = "NioSocketServer on " + addr;
+
+    this.responder = responder;
+    this.maxPending = maxPending;
+    this.channel = ServerSocketChannel.open();
+    channel.socket().bind(addr);
+    channel.configureBlocking(false);
+    this.selector = Selector.open();
+    channel.register(selector, SelectionKey.OP_ACCEPT);
+
+    AtomicInteger count = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(workerThreads, r -> {
+      Thread thread = new Thread(r, "Worker " + count.incrementAndGet() + " for " + name);
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    setName(name);
+    setDaemon(true);
+  }
+
+  @Override
+  public int getPort() {
+    return channel.socket().getLocalPort();
+  }
+
+  @Override
+  public void run() {
+    LOG.info("starting " + channel.socket().getInetAddress());
+    try {
+      while (!closed) {
+        selector.select();
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+          task.run();
+        }
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept();
+            continue;
+          }
+          Connection connection = (Connection) key.attachment();
+          try {
+            if (key.isWritable()) {
+              connection.write();
+            }
+            if (key.isValid() && key.isReadable()) {
+              connection.read();
+            }
+          } catch (IOException e) {
+            LOG.debug("closing " + connection.getRemoteName(), e);
+            connection.close();
+          }
+        }
+      }
+    } catch (ClosedSelectorException e) {
+    } catch (IOException e) {
+      LOG.warn("unexpected error", e);
+      throw new RuntimeException(e);
+    } finally {
+      LOG.info("stopping " + channel.socket().getInetAddress());
+      workers.shutdownNow();
+      try {
+        if (selector.isOpen()) {
+          for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+          }
+          selector.close();
+        }
+        channel.close();
+      } catch (IOException e) {
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel socket = channel.accept();
+    if (socket == null) {
+      return;
+    }
+    try {
+      socket.configureBlocking(false);
+      socket.socket().setTcpNoDelay(true);
+      new Connection(socket);
+    } catch (IOException e) {
+      LOG.warn("failed to accept " + socket, e);
+      socket.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    selector.wakeup();
+  }
+
+  /** Run on the selector thread. */
+  private void execute(Runnable task) {
+    tasks.add(task);
+    selector.wakeup();
+  }
+
+  private static ByteBuffer intBuffer(int value) {
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    buffer.putInt(value);
+    ((Buffer) buffer).flip();
+    return buffer;
+  }
+
+  /**
+   * The state of a connection. Except for the handshake state accessed by
+   * {@link Responder}, it is only used by the selector thread.
+   */
+  private class Connection extends Transceiver {
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final String remoteName;
+    private volatile Protocol remote;
+
+    private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final ByteBuffer header = ByteBuffer.allocate(4);
+    private ByteBuffer body; // non-null while a buffer's bytes are read
+    private List<ByteBuffer> frame = new ArrayList<>();
+    private boolean first = true;
+    private boolean multiplexed;
+    private boolean expectSerial;
+    private int serial;
+    private int pending;
+
+    private final Deque<ByteBuffer> out = new ArrayDeque<>();
+    private long queuedBytes;
+
+    Connection(SocketChannel channel) throws IOException {
+      this.channel = channel;
+      this.remoteName = String.valueOf(channel.socket().getRemoteSocketAddress());
+      this.key = channel.register(selector, SelectionKey.OP_READ, this);
+      LOG.info("open to " + remoteName);
+    }
+
+    /** Whether another request may be read. */
+    private boolean canRead() {
+      return pending < (multiplexed ? maxPending : 1) && queuedBytes < MAX_QUEUED_BYTES;
+    }
+
+    void read() throws IOException {
+      if (channel.read(in) < 0) {
+        close();
+        return;
+      }
+      parse();
+    }
+
+    /** Consume buffered input until it runs out or no more requests may start. */
+    private void parse() throws IOException {
+      ((Buffer) in).flip();
+      try {
+        while (in.hasRemaining() && canRead()) {
+          ByteBuffer target = body != null ? body : header;
+          int n = Math.min(in.remaining(), target.remaining());
+          int limit = in.limit();
+          ((Buffer) in).limit(in.position() + n);
+          target.put(in);
+          ((Buffer) in).limit(limit);
+          if (target.hasRemaining()) {
+            break;
+          }
+          if (body != null) {
+            ((Buffer) body).flip();
+            frame.add(body);
+            body = null;
+          } else {
+            ((Buffer) header).flip();
+            int value = header.getInt();
+            ((Buffer) header).clear();
+            frameInt(value);
+          }
+        }
+      } finally {
+        in.compact();
+      }
+      updateInterest();
+    }
+
+    private void frameInt(int value) throws IOException {
+      if (first) { // learn whether the client multiplexes
+        first = false;
+        if (value == SocketTransceiver.MULTIPLEX_PREAMBLE) {
+          multiplexed = true;
+          expectSerial = true;
+          return;
+        }
+      }
+      if (expectSerial) {
+        serial = value;
+        expectSerial = false;
+      } else if (value == 0) { // end of buffers
+        dispatch(frame, serial);
+        frame = new ArrayList<>();
+        expectSerial = multiplexed;
+      } else if (value < 0) {
+        throw new IOException("Invalid buffer length " + value + " from " + remoteName);
+      } else {
+        body = ByteBuffer.allocate(value);
+      }
+    }
+
+    private void dispatch(List<ByteBuffer> request, int serial) {
+      pending++;
+      try {
+        workers.execute(() -> {
+          try {
+            List<ByteBuffer> response = responder.respond(request, this);
+            execute(() -> complete(response, serial));
+          } catch (IOException e) {
+            LOG.warn("unexpected error", e);
+            execute(this::close);
+          }
+        });
+      } catch (RejectedExecutionException e) { // closing
+      }
+    }
+
+    /** Queue a response and resume reading if possible. */
+    private void complete(List<ByteBuffer> response, int serial) {
+      if (!key.isValid()) {
+        return;
+      }
+      pending--;
+      try {
+        if (response != null) {
+          if (multiplexed) {
+            enqueue(intBuffer(serial));
+          }
+          for (ByteBuffer buffer : response) {
+            if (buffer.remaining() == 0)
+              continue;
+            enqueue(intBuffer(buffer.remaining())); // length-prefix
+            enqueue(buffer);
+          }
+          enqueue(intBuffer(0)); // null-terminate
+          write();
+        }
+        if (in.position() > 0 && canRead()) {
+          parse(); // requests read before reading paused
+        } else {
+          updateInterest();
+        }
+      } catch (IOException e) {
+        LOG.debug("closing " + remoteName, e);
+        close();
+      }
+    }
+
+    private void enqueue(ByteBuffer buffer) {
+      out.add(buffer);
+      queuedBytes += buffer.remaining();
+    }
+
+    void write() throws IOException {
+      ByteBuffer[] batch = new ByteBuffer[WRITE_BATCH];
+      while (!out.isEmpty()) {
+        int count = 0;
+        for (ByteBuffer buffer : out) {
+          batch[count++] = buffer;
+          if (count == batch.length)
+            break;
+        }
+        queuedBytes -= channel.write(batch, 0, count);
+        while (!out.isEmpty() && !out.peek().hasRemaining()) {
+          out.poll();
+        }
+        if (batch[count - 1].hasRemaining()) { // socket buffer is full
+          break;
+        }
+      }
+      updateInterest();
+    }
+
+    private void updateInterest() {
+      if (key.isValid()) {
+        key.interestOps((canRead() ? SelectionKey.OP_READ : 0) | (out.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+      }
+    }
+
+    @Override
+    public String getRemoteName() {
+      return remoteName;
+    }
+
+    /** Unsupported: requests are read by the server's selector thread. */
+    @Override
+    public List<ByteBuffer> readBuffers() throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported: responses are written by the server's selector thread. */
+    @Override
+    public void writeBuffers(List<ByteBuffer> buffers) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isConnected() {
+      return remote != null;
+    }
+
+    @Override
+    public void setRemote(Protocol remote) {
+      this.remote = remote;
+    }
+
+    @Override
+    public Protocol getRemote() {
+      return remote;
+    }
+
+    @Override
+    public void close() {
+      if (channel.isOpen()) {
+        LOG.info("closing to " + remoteName);
+        key.cancel();
+        try {
+          channel.close();
+        } catch (IOException e) {
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,396 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.avro.Protocol;
+
+/**
+ * A {@link Transceiver} that spreads requests over a pool of connections to a
+ * list of endpoints, such as the replicas of a service. Several connections are
+ * kept to each endpoint and are opened when first used.
+ * <p/>
+ * A {@link Requestor} sends each request, with its handshake if one is needed,
+ * over a single connection of the pool. The connection is chosen by comparing
+ * two at random and taking the one with fewer outstanding requests. Each
+ * connection performs its own handshake, but since the remote protocols that
+ * {@link Requestor} caches are keyed by remote name, only the first connection
+ * to an endpoint needs to exchange protocol text.
+ * <p/>
+ * A connection that fails a number of times in a row is closed and ejected
+ * from the pool for a while, after which a new connection is opened in its
+ * place. If every connection is ejected, requests are sent anyway.
+ */
+public class PooledTransceiver extends Transceiver {
+  private static final Logger LOG = LoggerFactory.getLogger(PooledTransceiver.class);
+
+  /** The default number of consecutive failures that eject a connection. */
+  public static final int DEFAULT_MAX_FAILURES = 3;
+
+  /** The default time in milliseconds an ejected connection is not used. */
+  public static final long DEFAULT_EJECTION_MILLIS = 10000;
+
+  /** Opens a connection to an endpoint. */
+  public interface Factory {
+    Transceiver open(SocketAddress endpoint) throws IOException;
+  }
+
+  private final List<SocketAddress> endpoints;
+  private final Factory factory;
+  private final int maxFailures;
+  private final long ejectionNanos;
+  private final AtomicReferenceArray<Member> members;
+  private volatile boolean closed;
+
+  /**
+   * Construct a pool of <i>connectionsPerEndpoint</i> connections to each of
+   * <i>endpoints</i>, opened with <i>factory</i>.
+   */
+  public PooledTransceiver(List<? extends SocketAddress> endpoints, int connectionsPerEndpoint, Factory factory) {
+    this(endpoints, connectionsPerEndpoint, factory, DEFAULT_MAX_FAILURES, DEFAULT_EJECTION_MILLIS);
+  }
+
+  /**
+   * Construct a pool of <i>connectionsPerEndpoint</i> connections to each of
+   * <i>endpoints</i>, opened with <i>factory</i>. A connection that fails
+   * <i>maxFailures</i> times in a row is not used for <i>ejectionMillis</i>.
+   */
+  public PooledTransceiver(List<? extends SocketAddress> endpoints, int connectionsPerEndpoint, Factory factory,
+      int maxFailures, long ejectionMillis) {
+    if (endpoints.isEmpty()) {
+      throw new IllegalArgumentException("No endpoints");
+    }
+    if (connectionsPerEndpoint < 1) {
+      throw new IllegalArgumentException("connectionsPerEndpoint must be positive: " + connectionsPerEndpoint);
+    }
+    if (maxFailures < 1) {
+      throw new IllegalArgumentException("maxFailures must be positive: " + maxFailures);
+    }
+    this.endpoints = new ArrayList<>(endpoints);
+    this.factory = factory;
+    this.maxFailures = maxFailures;
+    this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+    this.members = new AtomicReferenceArray<>(endpoints.size() * connectionsPerEndpoint);
+    for (int i = 0; i < members.length(); i++) {
+      members.set(i, new Member(i, this.endpoints.get(i % endpoints.size()), 0));
+    }
+  }
+
+  /**
+   * Choose the connection for a request. It is one of two connections picked at
+   * random, preferring one that is not ejected and then the one with fewer
+   * outstanding requests.
+   */
+  @Override
+  public Transceiver select() {
+    int n = members.length();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long now = System.nanoTime();
+    int i = random.nextInt(n);
+    Member a = members.get(i);
+    if (n == 1) {
+      return a;
+    }
+    Member b = members.get((i + 1 + random.nextInt(n - 1)) % n);
+    boolean aHealthy = a.isHealthy(now);
+    if (aHealthy != b.isHealthy(now)) {
+      return aHealthy ? a : b;
+    }
+    if (!aHealthy) { // look for any healthy connection
+      Member best = null;
+      for (int j = 0; j < n; j++) {
+        Member m = members.get(j);
+        if (m.isHealthy(now) && (best == null || m.outstanding.get() < best.outstanding.get())) {
+          best = m;
+        }
+      }
+      if (best != null) {
+        return best;
+      }
+    }
+    return a.outstanding.get() <= b.outstanding.get() ? a : b;
+  }
+
+  /** Return the number of requests currently outstanding over all connections. */
+  public int getOutstandingRequests() {
+    int count = 0;
+    for (int i = 0; i < members.length(); i++) {
+      count += members.get(i).outstanding.get();
+    }
+    return count;
+  }
+
+  /** Return the number of connections currently ejected from the pool. */
+  public int getEjectedConnections() {
+    long now = System.nanoTime();
+    int count = 0;
+    for (int i = 0; i < members.length(); i++) {
+      if (!members.get(i).isHealthy(now)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public String getRemoteName() {
+    return endpoints.toString();
+  }
+
+  @Override
+  public List<ByteBuffer> transceive(List<ByteBuffer> request) throws IOException {
+    return select().transceive(request);
+  }
+
+  @Override
+  public void transceive(List<ByteBuffer> request, Callback<List<ByteBuffer>> callback) throws IOException {
+    select().transceive(request, callback);
+  }
+
+  /** Unsupported: a pool has no single channel to read from. */
+  @Override
+  public List<ByteBuffer> readBuffers() throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Unsupported: a pool has no single channel to write to. */
+  @Override
+  public void writeBuffers(List<ByteBuffer> buffers) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    for (int i = 0; i < members.length(); i++) {
+      members.get(i).closeConnection();
+    }
+  }
+
+  /**
+   * A connection of the pool. When it is ejected it is replaced by a new member,
+   * so requests in flight never move to a connection that has not seen their
+   * handshake.
+   */
+  private class Member extends Transceiver {
+    private final int index;
+    private final SocketAddress endpoint;
+    /** Time before which this member is not used, or zero. */
+    private final long notBefore;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile Transceiver connection;
+    private boolean ejected;
+
+    Member(int index, SocketAddress endpoint, long notBefore) {
+      this.index = index;
+      this.endpoint = endpoint;
+      this.notBefore = notBefore;
+    }
+
+    boolean isHealthy(long now) {
+      return notBefore == 0 || now - notBefore >= 0;
+    }
+
+    private Transceiver connection() throws IOException {
+      Transceiver c = connection;
+      if (c != null) {
+        return c;
+      }
+      synchronized (this) {
+        if (ejected || closed) {
+          throw new IOException("Connection to " + endpoint + " is closed");
+        }
+        if (connection == null) {
+          try {
+            connection = factory.open(endpoint);
+          } catch (IOException e) {
+            failed(e);
+            throw e;
+          }
+        }
+        return connection;
+      }
+    }
+
+    private void succeeded() {
+      failures.set(0);
+    }
+
+    private void failed(Throwable error) {
+      if (failures.incrementAndGet() >= maxFailures) {
+        eject(error);
+      }
+    }
+
+    private void eject(Throwable error) {
+      synchronized (this) {
+        if (ejected) {
+          return;
+        }
+        ejected = true;
+      }
+      LOG.warn("ejecting connection to " + endpoint + ": " + error);
+      long notBefore = System.nanoTime() + ejectionNanos;
+      members.compareAndSet(index, this, new Member(index, endpoint, notBefore == 0 ? 1 : notBefore));
+      closeConnection();
+    }
+
+    void closeConnection() {
+      Transceiver c;
+      synchronized (this) {
+        c = connection;
+      }
+      if (c != null) {
+        try {
+          c.close();
+        } catch (IOException e) {
+          LOG.debug("error closing connection to " + endpoint, e);
+        }
+      }
+    }
+
+    @Override
+    public String getRemoteName() throws IOException {
+      return connection().getRemoteName();
+    }
+
+    @Override
+    public List<ByteBuffer> transceive(List<ByteBuffer> request) throws IOException {
+      outstanding.incrementAndGet();
+      try {
+        List<ByteBuffer> response = connection().transceive(request);
+        succeeded();
+        return response;
+      } catch (IOException e) {
+        failed(e);
+        throw e;
+      } finally {
+        outstanding.decrementAndGet();
+      }
+    }
+
+    @Override
+    public void transceive(List<ByteBuffer> request, Callback<List<ByteBuffer>> callback) throws IOException {
+      outstanding.incrementAndGet();
+      AtomicBoolean done = new AtomicBoolean();
+      try {
+        connection().transceive(request, new Callback<List<ByteBuffer>>() {
+          @Override
+          public void handleResult(List<ByteBuffer> result) {
+            if (done.compareAndSet(false, true)) {
+              outstanding.decrementAndGet();
+              succeeded();
+            }
+            callback.handleResult(result);
+          }
+
+          @Override
+          public void handleError(Throwable error) {
+            if (done.compareAndSet(false, true)) {
+              outstanding.decrementAndGet();
+              failed(error);
+            }
+            callback.handleError(error);
+          }
+        });
+      } catch (IOException | RuntimeException e) {
+        if (done.compareAndSet(false, true)) {
+          outstanding.decrementAndGet();
+          failed(e);
+        }
+        throw e;
+      }
+    }
+
+    @Override
+    public List<ByteBuffer> readBuffers() throws IOException {
+      return connection().readBuffers();
+    }
+
+    @Override
+    public void writeBuffers(List<ByteBuffer> buffers) throws IOException {
+      try {
+        connection().writeBuffers(buffers);
+      } catch (IOException e) {
+        failed(e);
+        throw e;
+      }
+    }
+
+    @Override
+    public void lockChannel() {
+      Transceiver c = connection;
+      if (c != null) {
+        c.lockChannel();
+      } else {
+        super.lockChannel();
+      }
+    }
+
+    @Override
+    public void unlockChannel() {
+      Transceiver c = connection;
+      if (c != null) {
+        c.unlockChannel();
+      }
+      super.unlockChannel();
+    }
+
+    @Override
+    public boolean isConnected() {
+      Transceiver c = connection;
+      return c != null && c.isConnected();
+    }
+
+    @Override
+    public void setRemote(Protocol protocol) {
+      Transceiver c = connection;
+      if (c != null) {
+        c.setRemote(protocol);
+      }
+    }
+
+    @Override
+    public Protocol getRemote() {
+      Transceiver c = connection;
+      if (c == null) {
+        throw new IllegalStateException("Not connected.");
+      }
+      return c.getRemote();
+    }
+
+    @Override
+    public void close() throws IOException {
+      closeConnection();
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.avro.ipc;
 
 import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -45,6 +46,10 @@ public class RPCContext {
   private Message message;
   List<ByteBuffer> requestPayload;
   List<ByteBuffer> responsePayload;
+  // start times set by owners, usually plugins; the first owner needs no map
+  private Object timer;
+  private long timerStart = Long.MIN_VALUE;
+  private Map<Object, Long> otherTimers;
 
   /** Set the handshake request of this RPC. */
   public void setHandshakeRequest(HandshakeRequest handshakeRequest) {
@@ -223,4 +228,37 @@ public class RPCContext {
   public void setResponsePayload(List<ByteBuffer> payload) {
     this.responsePayload = payload;
   }
+
+  /**
+   * Sets the time at which <i>owner</i>, usually a plugin, started this RPC, in
+   * nanoseconds. Each owner has a start time of its own, so plugins can time an
+   * RPC without keeping per-call state. The first owner's time is kept in a
+   * field, so timing by a single plugin allocates nothing. Set
+   * {@link Long#MIN_VALUE} to clear it.
+   */
+  public void setStartNanos(Object owner, long startNanos) {
+    if (timer == null || timer == owner) {
+      timer = owner;
+      timerStart = startNanos;
+    } else {
+      if (otherTimers == null) {
+        otherTimers = new IdentityHashMap<>();
+      }
+      otherTimers.put(owner, startNanos);
+    }
+  }
+
+  /**
+   * Returns the time set by {@link #setStartNanos(Object, long)} for
+   * <i>owner</i>, or {@link Long#MIN_VALUE} if it has not been set.
+   *
+   * @return the time at which <i>owner</i> started this RPC.
+   */
+  public long getStartNanos(Object owner) {
+    if (timer == owner) {
+      return timerStart;
+    }
+    Long start = otherTimers == null ? null : otherTimers.get(owner);
+    return start == null ? Long.MIN_VALUE : start;
+  }
 }
@@ -85,4 +85,14 @@ public class RPCPlugin {
   public void clientReceiveResponse(RPCContext context) {
   }
 
+  /**
+   * This method is invoked at the client when the call fails without a response
+   * being read, for example because the connection was lost. The error is set in
+   * the context.
+   * 
+   * @param context the per-call rpc context
+   */
+  public void clientRequestFailed(RPCContext context) {
+  }
+
 }
@@ -57,7 +57,7 @@ public abstract class Requestor {
   private static final GenericDatumWriter<Map<String, ByteBuffer>> META_WRITER = new GenericDatumWriter<>(META);
 
   private final Protocol local;
-  private volatile Protocol remote;
+  private volatile Protocol remote; // cache behind getRemote()
   private volatile boolean sendLocalText;
   private final Transceiver transceiver;
   private final ReentrantLock handshakeLock = new ReentrantLock();
@@ -137,7 +137,7 @@ public abstract class Requestor {
 
   /** Writes a request message and returns the result through a Callback. */
   <T> void request(Request request, Callback<T> callback) throws AvroRemoteException, IOException {
-    Transceiver t = getTransceiver();
+    Transceiver t = request.getTransceiver();
     if (!t.isConnected()) {
       // Acquire handshake lock so that only one thread is performing the
       // handshake and other threads block until the handshake is completed
@@ -149,7 +149,7 @@ public abstract class Requestor {
           handshakeLock.unlock();
         } else {
           CallFuture<T> callFuture = new CallFuture<>(callback);
-          t.transceive(request.getBytes(), new TransceiverCallback<>(request, callFuture));
+          transceive(request, new TransceiverCallback<>(request, callFuture));
           try {
             // Block until handshake complete
             callFuture.await();
@@ -191,11 +191,29 @@ public abstract class Requestor {
         t.unlockChannel();
       }
     } else {
-      t.transceive(request.getBytes(), new TransceiverCallback<>(request, callback));
+      transceive(request, new TransceiverCallback<>(request, callback));
     }
 
   }
 
+  private void transceive(Request request, TransceiverCallback<?> callback) throws IOException {
+    try {
+      request.getTransceiver().transceive(request.getBytes(), callback);
+    } catch (IOException | RuntimeException e) {
+      requestFailed(request, e);
+      throw e;
+    }
+  }
+
+  /** Tell plugins that a call failed without a response being read. */
+  private void requestFailed(Request request, Throwable error) {
+    RPCContext context = request.getContext();
+    context.setError(error instanceof Exception ? (Exception) error : new AvroRuntimeException(error));
+    for (RPCPlugin plugin : rpcMetaPlugins) {
+      plugin.clientRequestFailed(context);
+    }
+  }
+
   private static final ConcurrentMap<String, MD5> REMOTE_HASHES = new ConcurrentHashMap<>();
   private static final ConcurrentMap<MD5, Protocol> REMOTE_PROTOCOLS = new ConcurrentHashMap<>();
 
@@ -205,18 +223,23 @@ public abstract class Requestor {
   private static final SpecificDatumReader<HandshakeResponse> HANDSHAKE_READER = new SpecificDatumReader<>(
       HandshakeResponse.class);
 
-  private void writeHandshake(Encoder out) throws IOException {
-    if (getTransceiver().isConnected())
-      return;
+  /**
+   * Write a handshake unless the connection has already made one. Return the
+   * protocol guessed for the remote end, or null if no handshake was written.
+   */
+  private Protocol writeHandshake(Transceiver t, Encoder out) throws IOException {
+    if (t.isConnected())
+      return null;
     MD5 localHash = new MD5();
     localHash.bytes(local.getMD5());
-    String remoteName = transceiver.getRemoteName();
+    String remoteName = t.getRemoteName();
     MD5 remoteHash = REMOTE_HASHES.get(remoteName);
+    Protocol guessed;
     if (remoteHash == null) { // guess remote is local
       remoteHash = localHash;
-      remote = local;
+      guessed = local;
     } else {
-      remote = REMOTE_PROTOCOLS.get(remoteHash);
+      guessed = REMOTE_PROTOCOLS.get(remoteHash);
     }
     HandshakeRequest handshake = new HandshakeRequest();
     handshake.setClientHash(localHash);
@@ -232,27 +255,32 @@ public abstract class Requestor {
     handshake.setMeta(context.requestHandshakeMeta());
 
     HANDSHAKE_WRITER.write(handshake, out);
+    return guessed;
   }
 
-  private boolean readHandshake(Decoder in) throws IOException {
-    if (getTransceiver().isConnected())
-      return true;
-    boolean established = false;
+  /**
+   * Read the handshake answering one written on a connection, unless the
+   * connection had already made one. Return the protocol of the remote end of
+   * the connection, or null if the handshake must be sent again.
+   */
+  private Protocol readHandshake(Transceiver t, Decoder in, Protocol guessed) throws IOException {
+    if (t.isConnected())
+      return t.getRemote();
+    Protocol remote = null;
     HandshakeResponse handshake = HANDSHAKE_READER.read(null, in);
     switch (handshake.getMatch()) {
     case BOTH:
-      established = true;
+      remote = guessed;
       sendLocalText = false;
       break;
     case CLIENT:
       LOG.debug("Handshake match = CLIENT");
-      setRemote(handshake);
-      established = true;
+      remote = setRemote(t, handshake);
       sendLocalText = false;
       break;
     case NONE:
       LOG.debug("Handshake match = NONE");
-      setRemote(handshake);
+      setRemote(t, handshake);
       sendLocalText = true;
       break;
     default:
@@ -264,23 +292,25 @@ public abstract class Requestor {
     for (RPCPlugin plugin : rpcMetaPlugins) {
       plugin.clientFinishConnect(context);
     }
-    if (established)
-      getTransceiver().setRemote(remote);
-    return established;
+    if (remote != null)
+      t.setRemote(remote);
+    return remote;
   }
 
-  private void setRemote(HandshakeResponse handshake) throws IOException {
-    remote = Protocol.parse(handshake.getServerProtocol().toString());
+  private Protocol setRemote(Transceiver t, HandshakeResponse handshake) throws IOException {
+    Protocol remote = Protocol.parse(handshake.getServerProtocol().toString());
     MD5 remoteHash = handshake.getServerHash();
-    REMOTE_HASHES.put(transceiver.getRemoteName(), remoteHash);
+    REMOTE_HASHES.put(t.getRemoteName(), remoteHash);
     REMOTE_PROTOCOLS.putIfAbsent(remoteHash, remote);
+    return remote;
   }
 
   /** Return the remote protocol. Force a handshake if required. */
   public Protocol getRemote() throws IOException {
     if (remote != null)
       return remote; // already have it
-    MD5 remoteHash = REMOTE_HASHES.get(transceiver.getRemoteName());
+    Transceiver t = transceiver.select();
+    MD5 remoteHash = REMOTE_HASHES.get(t.getRemoteName());
     if (remoteHash != null) {
       remote = REMOTE_PROTOCOLS.get(remoteHash);
       if (remote != null)
@@ -292,14 +322,16 @@ public abstract class Requestor {
       ByteBufferOutputStream bbo = new ByteBufferOutputStream();
       // direct because the payload is tiny.
       Encoder out = ENCODER_FACTORY.directBinaryEncoder(bbo, null);
-      writeHandshake(out);
+      Protocol guessed = writeHandshake(t, out);
       out.writeInt(0); // empty metadata
       out.writeString(""); // bogus message name
-      List<ByteBuffer> response = getTransceiver().transceive(bbo.getBufferList());
+      List<ByteBuffer> response = t.transceive(bbo.getBufferList());
       ByteBufferInputStream bbi = new ByteBufferInputStream(response);
       BinaryDecoder in = DecoderFactory.get().binaryDecoder(bbi, null);
-      readHandshake(in);
-      return this.remote;
+      Protocol established = readHandshake(t, in, guessed);
+      // when not established the server still sent its protocol
+      remote = established != null ? established : REMOTE_PROTOCOLS.get(REMOTE_HASHES.get(t.getRemoteName()));
+      return remote;
     } finally {
       handshakeLock.unlock();
     }
@@ -348,10 +380,11 @@ public abstract class Requestor {
       ByteBufferInputStream bbi = new ByteBufferInputStream(responseBytes);
       BinaryDecoder in = DecoderFactory.get().binaryDecoder(bbi, null);
       try {
-        if (!readHandshake(in)) {
+        request.remote = readHandshake(request.getTransceiver(), in, request.remote);
+        if (request.remote == null) {
           // Resend the handshake and return
           Request handshake = new Request(request);
-          getTransceiver().transceive(handshake.getBytes(), new TransceiverCallback<>(handshake, callback));
+          transceive(handshake, new TransceiverCallback<>(handshake, callback));
           return;
         }
       } catch (Exception e) {
@@ -365,6 +398,9 @@ public abstract class Requestor {
         try {
           responseObject = response.getResponse();
         } catch (Exception e) {
+          if (e != request.getContext().error()) { // not passed to plugins yet
+            requestFailed(request, e);
+          }
           if (callback != null) {
             callback.handleError(e);
           }
@@ -380,6 +416,7 @@ public abstract class Requestor {
 
     @Override
     public void handleError(Throwable error) {
+      requestFailed(request, error);
       callback.handleError(error);
     }
   }
@@ -392,8 +429,10 @@ public abstract class Requestor {
     private final Object request;
     private final RPCContext context;
     private final BinaryEncoder encoder;
+    private final Transceiver transceiver;
     private Message message;
     private List<ByteBuffer> requestBytes;
+    private Protocol remote; // the protocol of the remote end of the transceiver
 
     /**
      * Creates a Request.
@@ -419,6 +458,7 @@ public abstract class Requestor {
       this.request = request;
       this.context = context;
       this.encoder = ENCODER_FACTORY.binaryEncoder(new ByteBufferOutputStream(), encoder);
+      this.transceiver = Requestor.this.transceiver.select();
     }
 
     /**
@@ -431,6 +471,7 @@ public abstract class Requestor {
       this.request = other.request;
       this.context = other.context;
       this.encoder = other.encoder;
+      this.transceiver = other.transceiver;
     }
 
     /**
@@ -442,6 +483,15 @@ public abstract class Requestor {
       return messageName;
     }
 
+    /**
+     * Gets the transceiver this request is sent with.
+     *
+     * @return the transceiver.
+     */
+    public Transceiver getTransceiver() {
+      return transceiver;
+    }
+
     /**
      * Gets the RPC context.
      *
@@ -486,7 +536,7 @@ public abstract class Requestor {
         out.flush();
         List<ByteBuffer> payload = bbo.getBufferList();
 
-        writeHandshake(out); // prepend handshake if needed
+        remote = writeHandshake(transceiver, out); // prepend handshake if needed
 
         context.setRequestPayload(payload);
         for (RPCPlugin plugin : rpcMetaPlugins) {
@@ -540,11 +590,14 @@ public abstract class Requestor {
      */
     public Object getResponse() throws Exception {
       Message lm = request.getMessage();
+      Transceiver t = request.getTransceiver();
+      // resolved by the handshake read for this request, as stateless
+      // transceivers do not keep it
+      Protocol remote = request.remote != null ? request.remote : t.getRemote();
       Message rm = remote.getMessages().get(request.getMessageName());
       if (rm == null)
         throw new AvroRuntimeException("Not a remote message: " + request.getMessageName());
 
-      Transceiver t = getTransceiver();
       if ((lm.isOneWay() != rm.isOneWay()) && t.isConnected())
         throw new AvroRuntimeException("Not both one-way messages: " + request.getMessageName());
 
@@ -22,9 +22,15 @@ import java.io.IOException;
 import java.io.EOFException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +43,13 @@ import org.apache.avro.ipc.generic.GenericResponder;
 /**
  * A socket-based server implementation. This uses a simple, non-standard wire
  * protocol and is not intended for production services.
+ * <p/>
+ * Each connection is served by its own thread. Requests from a
+ * {@link SocketTransceiver} that multiplexes are handled concurrently by a
+ * shared pool of workers, and their responses are written as they complete. A
+ * connection is not read while a maximum number of its requests are being
+ * handled, so a client that sends faster than it is served is slowed down by
+ * TCP flow control rather than given more threads.
  *
  * @deprecated use {@link SaslSocketServer} instead.
  */
@@ -44,16 +57,38 @@ import org.apache.avro.ipc.generic.GenericResponder;
 public class SocketServer extends Thread implements Server {
   private static final Logger LOG = LoggerFactory.getLogger(SocketServer.class);
 
+  /** The default maximum number of requests handled at once per connection. */
+  public static final int DEFAULT_MAX_PENDING = 16;
+
   private Responder responder;
   private ServerSocketChannel channel;
   private ThreadGroup group;
+  private ExecutorService workers;
+  private final int maxPending;
 
   public SocketServer(Responder responder, SocketAddress addr) throws IOException {
+    this(responder, addr, DEFAULT_MAX_PENDING);
+  }
+
+  /**
+   * Construct a server handling at most <i>maxPending</i> requests at once per
+   * multiplexed connection.
+   */
+  public SocketServer(Responder responder, SocketAddress addr, int maxPending) throws IOException {
+    if (maxPending < 1) {
+      throw new IllegalArgumentException("maxPending must be positive: " + maxPending);
+    }
     String name = "SocketServer on " + addr;
 
     this.responder = responder;
+    this.maxPending = maxPending;
     this.group = new ThreadGroup(name);
     this.channel = ServerSocketChannel.open();
+    this.workers = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(group, r, "Worker for " + name);
+      thread.setDaemon(true);
+      return thread;
+    });
 
     channel.socket().bind(addr);
 
@@ -93,6 +128,7 @@ public class SocketServer extends Thread implements Server {
   public void close() {
     this.interrupt();
     group.interrupt();
+    workers.shutdownNow();
   }
 
   /**
@@ -107,6 +143,7 @@ public class SocketServer extends Thread implements Server {
 
     SocketChannel channel;
     Transceiver xc;
+    final Semaphore pending = new Semaphore(maxPending);
 
     public Connection(SocketChannel channel) throws IOException {
       this.channel = channel;
@@ -123,9 +160,14 @@ public class SocketServer extends Thread implements Server {
         try {
           this.xc = getTransceiver(channel);
           while (true) {
-            xc.writeBuffers(responder.respond(xc.readBuffers(), xc));
+            List<ByteBuffer> request = xc.readBuffers();
+            if (xc instanceof SocketTransceiver && ((SocketTransceiver) xc).isMultiplexed()) {
+              respond((SocketTransceiver) xc, request);
+            } else {
+              xc.writeBuffers(responder.respond(request, xc));
+            }
           }
-        } catch (EOFException | ClosedChannelException e) {
+        } catch (EOFException | ClosedChannelException | InterruptedException e) {
         } finally {
           xc.close();
         }
@@ -134,6 +176,25 @@ public class SocketServer extends Thread implements Server {
       }
     }
 
+    private void respond(SocketTransceiver xc, List<ByteBuffer> request) throws InterruptedException {
+      int serial = xc.getReadSerial();
+      pending.acquire(); // the next request is not read until a permit is free
+      try {
+        workers.execute(() -> {
+          try {
+            xc.writeBuffers(responder.respond(request, xc), serial);
+          } catch (ClosedChannelException e) {
+          } catch (IOException e) {
+            LOG.warn("unexpected error", e);
+          } finally {
+            pending.release();
+          }
+        });
+      } catch (RejectedExecutionException e) { // closing
+        pending.release();
+      }
+    }
+
   }
 
   public static void main(String[] arg) throws Exception {
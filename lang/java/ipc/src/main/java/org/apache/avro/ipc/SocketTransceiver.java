@@ -26,6 +26,14 @@ import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,16 +43,50 @@ import org.apache.avro.Protocol;
 /**
  * A socket-based {@link Transceiver} implementation. This uses a simple,
  * non-standard wire protocol and is not intended for production services.
- * 
+ * <p/>
+ * By default one request is in flight at a time. A transceiver constructed
+ * with a maximum number of in-flight requests instead multiplexes requests over
+ * the connection: each frame is tagged with a serial number, requests are
+ * written as soon as they are made, and responses are dispatched to their
+ * callers by a reader thread in whatever order the server completes them. Only
+ * a {@link SocketServer} supports this mode; it is announced to the server by a
+ * preamble sent when the connection is opened.
+ * <p/>
+ * A multiplexing transceiver can also batch requests: see
+ * {@link #setBatching(int, long, TimeUnit)}.
+ *
  * @deprecated use {@link SaslSocketTransceiver} instead.
  */
 public class SocketTransceiver extends Transceiver {
   private static final Logger LOG = LoggerFactory.getLogger(SocketTransceiver.class);
 
+  /**
+   * Sent by a multiplexing client before its first frame. A length prefix is
+   * never negative, so a server can tell this apart from a plain request.
+   */
+  static final int MULTIPLEX_PREAMBLE = -1;
+
+  private static final int READ_BUFFER_SIZE = 8192;
+  /** How long closing waits for batched frames to be written. */
+  private static final long CLOSE_FLUSH_MILLIS = 1000;
+
   private SocketChannel channel;
-  private ByteBuffer header = ByteBuffer.allocate(4);
+  private final Object readLock = new Object();
+  private final Object writeLock = new Object();
+  /** Bytes read ahead of the frame being read, kept ready to be read. */
+  private final ByteBuffer in = (ByteBuffer) ((Buffer) ByteBuffer.allocate(READ_BUFFER_SIZE)).flip();
 
-  private Protocol remote;
+  private volatile Protocol remote;
+
+  private volatile boolean multiplexed;
+  private boolean first = true;
+  private int readSerial;
+  private final AtomicInteger serials = new AtomicInteger();
+  private final Map<Integer, Callback<List<ByteBuffer>>> requests = new ConcurrentHashMap<>();
+  private Semaphore inFlight;
+  private Thread reader;
+  private volatile IOException failure;
+  private volatile Batcher batcher;
 
   public SocketTransceiver(SocketAddress address) throws IOException {
     this(SocketChannel.open(address));
@@ -56,53 +98,379 @@ public class SocketTransceiver extends Transceiver {
     LOG.info("open to " + getRemoteName());
   }
 
+  /**
+   * Open a connection that multiplexes up to <i>maxInFlight</i> concurrent
+   * requests. The server must be a {@link SocketServer}.
+   */
+  public SocketTransceiver(SocketAddress address, int maxInFlight) throws IOException {
+    this(SocketChannel.open(address), maxInFlight);
+  }
+
+  /**
+   * Use a connected channel to multiplex up to <i>maxInFlight</i> concurrent
+   * requests. The server must be a {@link SocketServer}.
+   */
+  public SocketTransceiver(SocketChannel channel, int maxInFlight) throws IOException {
+    this(channel);
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+    }
+    this.multiplexed = true;
+    this.first = false;
+    this.inFlight = new Semaphore(maxInFlight);
+    synchronized (writeLock) {
+      write(new ByteBuffer[] { intBuffer(MULTIPLEX_PREAMBLE) });
+    }
+    this.reader = new Thread(this::readResponses, "Responses from " + getRemoteName());
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * Batch the requests of a multiplexing transceiver. Instead of each caller
+   * writing its own request, requests are queued and written by a single
+   * thread, which coalesces those queued within <i>window</i> of the first, up to
+   * <i>maxBytes</i>, into one write. A window of zero only coalesces requests
+   * queued while the previous batch was being written, adding no delay. One-way
+   * messages return once queued. Responses are unaffected; each call still
+   * completes through its own callback.
+   *
+   * @throws IllegalStateException if this transceiver does not multiplex, or
+   *                               already batches
+   */
+  public synchronized void setBatching(int maxBytes, long window, TimeUnit unit) {
+    if (reader == null) {
+      throw new IllegalStateException("Only a multiplexing transceiver batches requests");
+    }
+    if (batcher != null) {
+      throw new IllegalStateException("Already batching");
+    }
+    if (maxBytes < 1) {
+      throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+    }
+    batcher = new Batcher(maxBytes, unit.toNanos(window));
+  }
+
+  /**
+   * Whether requests on this connection are multiplexed, either because it was
+   * constructed to multiplex or, on the server side, because the client sent the
+   * multiplexing preamble.
+   */
+  public boolean isMultiplexed() {
+    return multiplexed;
+  }
+
+  /**
+   * Return the serial number of the last frame read from a multiplexed
+   * connection. A response to it must be written with
+   * {@link #writeBuffers(List, int)}.
+   */
+  public int getReadSerial() {
+    return readSerial;
+  }
+
+  @Override
+  public List<ByteBuffer> transceive(List<ByteBuffer> request) throws IOException {
+    if (!multiplexed) {
+      return super.transceive(request);
+    }
+    CallFuture<List<ByteBuffer>> future = new CallFuture<>();
+    transceive(request, future);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+  }
+
+  @Override
+  public void transceive(List<ByteBuffer> request, Callback<List<ByteBuffer>> callback) throws IOException {
+    if (!multiplexed) {
+      super.transceive(request, callback);
+      return;
+    }
+    // callbacks run on the reader thread and may send again, e.g. to repeat a
+    // handshake; waiting for a permit there could never be satisfied
+    boolean permit = Thread.currentThread() != reader;
+    if (permit) {
+      try {
+        inFlight.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+    }
+    int serial = serials.incrementAndGet();
+    requests.put(serial, new InFlightCallback(callback, permit));
+    try {
+      if (failure != null) { // the reader has stopped
+        throw failure;
+      }
+      writeBuffers(request, serial);
+    } catch (IOException e) {
+      if (requests.remove(serial) == null) {
+        return; // the reader failed and has already told the callback
+      }
+      if (permit) {
+        inFlight.release();
+      }
+      throw e;
+    }
+  }
+
+  /** Dispatch responses to the callbacks of their requests until closed. */
+  private void readResponses() {
+    IOException error = null;
+    try {
+      while (true) {
+        List<ByteBuffer> response = readBuffers();
+        Callback<List<ByteBuffer>> callback = requests.remove(readSerial);
+        if (callback == null) {
+          LOG.warn("response to unknown request " + readSerial + " from " + getRemoteName());
+          continue;
+        }
+        callback.handleResult(response);
+      }
+    } catch (IOException e) {
+      error = e;
+    } finally {
+      failure = error != null ? error : new ClosedChannelException();
+      try {
+        channel.close();
+      } catch (IOException e) {
+      }
+      for (Integer serial : requests.keySet()) {
+        Callback<List<ByteBuffer>> callback = requests.remove(serial);
+        if (callback != null) {
+          callback.handleError(failure);
+        }
+      }
+    }
+  }
+
+  /** Writes the frames queued by callers, several at a time. */
+  private class Batcher implements Runnable {
+    private final BlockingQueue<ByteBuffer[]> frames = new LinkedBlockingQueue<>();
+    /** Queued on close, after the last frame. */
+    private final ByteBuffer[] stop = new ByteBuffer[0];
+    private final int maxBytes;
+    private final long windowNanos;
+    private final Thread thread;
+
+    Batcher(int maxBytes, long windowNanos) {
+      this.maxBytes = maxBytes;
+      this.windowNanos = windowNanos;
+      this.thread = new Thread(this, "Requests to " + getRemoteName());
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    void add(ByteBuffer[] frame) throws IOException {
+      if (failure != null) {
+        throw failure;
+      }
+      if (!thread.isAlive()) {
+        throw new ClosedChannelException();
+      }
+      frames.add(frame);
+    }
+
+    @Override
+    public void run() {
+      List<ByteBuffer> batch = new ArrayList<>();
+      try {
+        boolean stopped = false;
+        while (!stopped) {
+          ByteBuffer[] frame = frames.take();
+          long bytes = 0;
+          long deadline = System.nanoTime() + windowNanos;
+          while (frame != null) {
+            if (frame == stop) {
+              stopped = true;
+              break;
+            }
+            for (ByteBuffer buffer : frame) {
+              batch.add(buffer);
+              bytes += buffer.remaining();
+            }
+            if (bytes >= maxBytes) {
+              break;
+            }
+            long wait = deadline - System.nanoTime();
+            frame = wait > 0 ? frames.poll(wait, TimeUnit.NANOSECONDS) : frames.poll();
+          }
+          if (!batch.isEmpty()) {
+            synchronized (writeLock) {
+              write(batch.toArray(new ByteBuffer[0]));
+            }
+            batch.clear();
+          }
+        }
+      } catch (InterruptedException e) {
+      } catch (IOException e) {
+        failure = e;
+        try {
+          channel.close(); // fails the requests in flight
+        } catch (IOException ignored) {
+        }
+      }
+    }
+
+    /** Write the frames queued so far, then stop. */
+    void close() {
+      frames.add(stop);
+      try {
+        thread.join(CLOSE_FLUSH_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Releases the in-flight permit of a request when it completes. */
+  private class InFlightCallback implements Callback<List<ByteBuffer>> {
+    private final Callback<List<ByteBuffer>> callback;
+    private final boolean permit;
+
+    InFlightCallback(Callback<List<ByteBuffer>> callback, boolean permit) {
+      this.callback = callback;
+      this.permit = permit;
+    }
+
+    @Override
+    public void handleResult(List<ByteBuffer> result) {
+      release();
+      callback.handleResult(result);
+    }
+
+    @Override
+    public void handleError(Throwable error) {
+      release();
+      callback.handleError(error);
+    }
+
+    private void release() {
+      if (permit) {
+        inFlight.release();
+      }
+    }
+  }
+
   @Override
   public String getRemoteName() {
     return channel.socket().getRemoteSocketAddress().toString();
   }
 
   @Override
-  public synchronized List<ByteBuffer> readBuffers() throws IOException {
+  public List<ByteBuffer> readBuffers() throws IOException {
+    synchronized (readLock) {
+      if (first) { // a server learns whether its client multiplexes
+        first = false;
+        int length = readLength();
+        if (length != MULTIPLEX_PREAMBLE) {
+          return readBuffers(length);
+        }
+        multiplexed = true;
+      }
+      if (multiplexed) {
+        readSerial = readLength();
+      }
+      return readBuffers(readLength());
+    }
+  }
+
+  private List<ByteBuffer> readBuffers(int length) throws IOException {
     List<ByteBuffer> buffers = new ArrayList<>();
     while (true) {
-      ((Buffer) header).clear();
-      while (header.hasRemaining()) {
-        if (channel.read(header) < 0)
-          throw new ClosedChannelException();
-      }
-      ((Buffer) header).flip();
-      int length = header.getInt();
       if (length == 0) { // end of buffers
         return buffers;
       }
       ByteBuffer buffer = ByteBuffer.allocate(length);
+      int buffered = Math.min(in.remaining(), length);
+      int limit = in.limit();
+      ((Buffer) in).limit(in.position() + buffered);
+      buffer.put(in);
+      ((Buffer) in).limit(limit);
       while (buffer.hasRemaining()) {
         if (channel.read(buffer) < 0)
           throw new ClosedChannelException();
       }
       ((Buffer) buffer).flip();
       buffers.add(buffer);
+      length = readLength();
     }
   }
 
+  private int readLength() throws IOException {
+    if (in.remaining() < 4) {
+      in.compact();
+      try {
+        while (in.position() < 4) {
+          if (channel.read(in) < 0)
+            throw new ClosedChannelException();
+        }
+      } finally {
+        ((Buffer) in).flip();
+      }
+    }
+    return in.getInt();
+  }
+
+  /**
+   * Write buffers. On a multiplexed connection, they are tagged with a new serial
+   * number, to which no response is expected.
+   */
   @Override
-  public synchronized void writeBuffers(List<ByteBuffer> buffers) throws IOException {
+  public void writeBuffers(List<ByteBuffer> buffers) throws IOException {
+    writeBuffers(buffers, multiplexed ? serials.incrementAndGet() : 0);
+  }
+
+  /**
+   * Write buffers tagged with a serial number. The serial number is only
+   * written on a multiplexed connection.
+   */
+  public void writeBuffers(List<ByteBuffer> buffers, int serial) throws IOException {
     if (buffers == null)
       return; // no data to write
+    List<ByteBuffer> frame = new ArrayList<>(2 * buffers.size() + 2);
+    if (multiplexed) {
+      frame.add(intBuffer(serial));
+    }
     for (ByteBuffer buffer : buffers) {
       if (buffer.limit() == 0)
         continue;
-      writeLength(buffer.limit()); // length-prefix
-      channel.write(buffer);
+      frame.add(intBuffer(buffer.limit())); // length-prefix
+      frame.add(buffer);
+    }
+    frame.add(intBuffer(0)); // null-terminate
+    ByteBuffer[] array = frame.toArray(new ByteBuffer[0]);
+    Batcher b = batcher;
+    if (b != null) {
+      b.add(array);
+      return;
+    }
+    synchronized (writeLock) {
+      write(array);
     }
-    writeLength(0); // null-terminate
   }
 
-  private void writeLength(int length) throws IOException {
-    ((Buffer) header).clear();
-    header.putInt(length);
-    ((Buffer) header).flip();
-    channel.write(header);
+  /** Write buffers with as few system calls as possible. */
+  private void write(ByteBuffer[] buffers) throws IOException {
+    ByteBuffer last = buffers[buffers.length - 1];
+    while (last.hasRemaining()) {
+      channel.write(buffers);
+    }
+  }
+
+  private static ByteBuffer intBuffer(int value) {
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    buffer.putInt(value);
+    ((Buffer) buffer).flip();
+    return buffer;
   }
 
   @Override
@@ -122,6 +490,10 @@ public class SocketTransceiver extends Transceiver {
 
   @Override
   public void close() throws IOException {
+    Batcher b = batcher;
+    if (b != null) {
+      b.close();
+    }
     if (channel.isOpen()) {
       LOG.info("closing to " + getRemoteName());
       channel.close();
@@ -82,6 +82,15 @@ public abstract class Transceiver implements Closeable {
   /** Called by {@link Requestor#request(String,Object)} for one-way messages. */
   public abstract void writeBuffers(List<ByteBuffer> buffers) throws IOException;
 
+  /**
+   * Returns the transceiver that {@link Requestor} sends its next request over.
+   * Returns this transceiver by default. Overridden by transceivers that spread
+   * requests over several connections, such as {@link PooledTransceiver}.
+   */
+  public Transceiver select() {
+    return this;
+  }
+
   /**
    * True if a handshake has been completed for this connection. Used to determine
    * whether a handshake need be completed prior to a one-way message. Requests
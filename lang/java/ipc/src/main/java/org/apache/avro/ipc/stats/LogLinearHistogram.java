@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative long values, such as latencies in nanoseconds or
+ * sizes in bytes, that can be updated concurrently without locks or allocation.
+ * <p/>
+ * Buckets are log-linear, as in HDR histograms: values below 32 have a bucket
+ * each, and every further power-of-two range is split into 16 equal buckets.
+ * A value is therefore known to within 1/16 of itself, at any magnitude, with
+ * 960 buckets covering every long. Buckets are striped over several arrays
+ * chosen by thread, so threads recording at once rarely update the same cache
+ * line.
+ */
+public class LogLinearHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int LINEAR = 2 * SUB_BUCKETS;
+  static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private static final int STRIPES = stripes();
+
+  private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+  private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+  public LogLinearHistogram() {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new AtomicLongArray(BUCKETS);
+    }
+  }
+
+  /** A power of two near the number of processors, at most 16. */
+  private static int stripes() {
+    int n = Math.min(Runtime.getRuntime().availableProcessors(), 16);
+    return Integer.highestOneBit(n);
+  }
+
+  /** Return the bucket holding a value. */
+  static int bucket(long value) {
+    if (value < LINEAR) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  /** Return the smallest value held by a bucket. */
+  static long lowestValue(int bucket) {
+    if (bucket < LINEAR) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    return (long) (bucket - shift * SUB_BUCKETS) << shift;
+  }
+
+  /** Return the largest value held by a bucket. */
+  static long highestValue(int bucket) {
+    return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowestValue(bucket + 1) - 1;
+  }
+
+  /** Record a value. Negative values are recorded as zero. */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+    stripes[stripe].incrementAndGet(bucket(value));
+    count.increment();
+    sum.add(value);
+    min.accumulate(value);
+    max.accumulate(value);
+  }
+
+  /** Return the number of values recorded. */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Return a copy of the recorded distribution. Values recorded while the copy
+   * is made may be partly included.
+   */
+  public Snapshot getSnapshot() {
+    long[] counts = new long[BUCKETS];
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] += stripe.get(i);
+      }
+    }
+    long total = 0;
+    for (long c : counts) {
+      total += c;
+    }
+    return new Snapshot(counts, total, sum.sum(), min.get(), max.get());
+  }
+
+  /** An immutable copy of a {@link LogLinearHistogram}. */
+  public static class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+
+    Snapshot(long[] counts, long count, long sum, long min, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.min = count == 0 ? 0 : min;
+      this.max = count == 0 ? 0 : max;
+    }
+
+    /** Return the number of values. */
+    public long getCount() {
+      return count;
+    }
+
+    /** Return the smallest value, or zero if there are none. */
+    public long getMin() {
+      return min;
+    }
+
+    /** Return the largest value, or zero if there are none. */
+    public long getMax() {
+      return max;
+    }
+
+    /** Return the mean value, or zero if there are none. */
+    public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /** Return the standard deviation, estimated from bucket midpoints. */
+    public double getStdDev() {
+      if (count < 2) {
+        return 0;
+      }
+      double mean = getMean();
+      double squares = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        if (counts[i] != 0) {
+          double d = midpoint(i) - mean;
+          squares += d * d * counts[i];
+        }
+      }
+      return Math.sqrt(squares / (count - 1));
+    }
+
+    /**
+     * Return the value at a percentile between 0 and 100, such as 99.9. It is the
+     * midpoint of the bucket holding the value, clamped to the recorded range,
+     * except that the largest value is exact.
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (percentile < 0 || percentile > 100) {
+        throw new IllegalArgumentException("Not a percentile: " + percentile);
+      }
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      if (rank >= count) {
+        return max;
+      }
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.max(min, Math.min(max, midpoint(i)));
+        }
+      }
+      return max;
+    }
+
+    /** Return the median. */
+    public long getP50() {
+      return getValueAtPercentile(50);
+    }
+
+    /** Return the 99th percentile. */
+    public long getP99() {
+      return getValueAtPercentile(99);
+    }
+
+    /** Return the 99.9th percentile. */
+    public long getP999() {
+      return getValueAtPercentile(99.9);
+    }
+
+    private static long midpoint(int bucket) {
+      long low = lowestValue(bucket);
+      return low + (highestValue(bucket) - low) / 2;
+    }
+  }
+}
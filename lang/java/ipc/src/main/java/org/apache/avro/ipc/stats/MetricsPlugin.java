@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc.stats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.avro.Protocol.Message;
+import org.apache.avro.ipc.RPCContext;
+import org.apache.avro.ipc.RPCPlugin;
+import org.apache.avro.ipc.stats.Stopwatch.Ticks;
+
+/**
+ * Collects count, error, latency and payload size statistics about RPC calls
+ * for every message. Can be added to a Requestor (client) or Responder
+ * (server).
+ * <p/>
+ * Unlike {@link StatsPlugin}, this takes no locks and allocates nothing per
+ * call: counters are {@link LongAdder}s, distributions are
+ * {@link LogLinearHistogram}s, and the start time of a call is kept in its
+ * {@link RPCContext}, under this plugin. Percentiles are read from snapshots,
+ * which can be shown by a {@link StatsServlet} or published with a
+ * {@link MetricsExporter}. Latencies are in nanoseconds and payload sizes in
+ * bytes. Calls that fail without a response, for example because the connection
+ * was lost, count as completed with an error. One-way messages get no response,
+ * so they are counted when sent or received and are not timed.
+ */
+public class MetricsPlugin extends RPCPlugin {
+  private static final Logger LOG = LoggerFactory.getLogger(MetricsPlugin.class);
+
+  /** Marks a call in its context as finished, so it is not finished twice. */
+  private static final long FINISHED = Long.MAX_VALUE;
+
+  private final Ticks ticks;
+  private final ConcurrentMap<String, MessageMetrics> messages = new ConcurrentHashMap<>();
+  private final long startupTime = System.currentTimeMillis();
+
+  /** Construct a plugin with custom Ticks. */
+  public MetricsPlugin(Ticks ticks) {
+    this.ticks = ticks;
+  }
+
+  /** Construct a plugin with default (system) ticks. */
+  public MetricsPlugin() {
+    this(Stopwatch.SYSTEM_TICKS);
+  }
+
+  /** Return when this plugin was created, in milliseconds since the epoch. */
+  public long getStartupTime() {
+    return startupTime;
+  }
+
+  @Override
+  public void clientSendRequest(RPCContext context) {
+    start(context);
+  }
+
+  @Override
+  public void clientReceiveResponse(RPCContext context) {
+    finish(context);
+  }
+
+  @Override
+  public void clientRequestFailed(RPCContext context) {
+    finish(context);
+  }
+
+  @Override
+  public void serverReceiveRequest(RPCContext context) {
+    start(context);
+  }
+
+  @Override
+  public void serverSendResponse(RPCContext context) {
+    finish(context);
+  }
+
+  private void start(RPCContext context) {
+    if (context.getStartNanos(this) != Long.MIN_VALUE) {
+      return; // resent after a handshake
+    }
+    context.setStartNanos(this, ticks.ticks());
+    Message message = context.getMessage();
+    MessageMetrics metrics = getMetrics(message);
+    List<ByteBuffer> payload = context.getRequestPayload();
+    if (payload != null) { // only known to clients
+      metrics.requestPayload.record(getPayloadSize(payload));
+    }
+    if (message.isOneWay()) { // not finished once the connection is established
+      metrics.oneWayCalls.increment();
+    } else {
+      metrics.inFlight.increment();
+    }
+  }
+
+  private void finish(RPCContext context) {
+    long start = context.getStartNanos(this);
+    if (start == Long.MIN_VALUE || start == FINISHED) {
+      return;
+    }
+    context.setStartNanos(this, FINISHED);
+    MessageMetrics metrics = getMetrics(context.getMessage());
+    if (context.isError()) {
+      metrics.errors.increment();
+    }
+    if (context.getMessage().isOneWay()) {
+      return; // already counted
+    }
+    metrics.latency.record(ticks.ticks() - start);
+    metrics.inFlight.decrement();
+    List<ByteBuffer> payload = context.getResponsePayload();
+    if (payload != null) { // only known to servers
+      metrics.responsePayload.record(getPayloadSize(payload));
+    }
+  }
+
+  private MessageMetrics getMetrics(Message message) {
+    if (message == null)
+      throw new IllegalArgumentException();
+    MessageMetrics metrics = messages.get(message.getName());
+    if (metrics == null) {
+      metrics = messages.computeIfAbsent(message.getName(), MessageMetrics::new);
+    }
+    return metrics;
+  }
+
+  /**
+   * Helper to get the size of an RPC payload.
+   */
+  private static long getPayloadSize(List<ByteBuffer> payload) {
+    long size = 0;
+    for (ByteBuffer bb : payload) {
+      size += bb.limit();
+    }
+    return size;
+  }
+
+  /** Return a snapshot of every message seen so far, sorted by name. */
+  public List<MessageSnapshot> getSnapshots() {
+    List<MessageSnapshot> snapshots = new ArrayList<>(messages.size());
+    for (MessageMetrics metrics : messages.values()) {
+      snapshots.add(new MessageSnapshot(metrics));
+    }
+    snapshots.sort(Comparator.comparing(MessageSnapshot::getName));
+    return snapshots;
+  }
+
+  /** Pass a snapshot of every message seen so far to an exporter. */
+  public void export(MetricsExporter exporter) throws IOException {
+    exporter.export(getSnapshots());
+  }
+
+  /**
+   * Pass snapshots to an exporter every <i>period</i>, on <i>executor</i>.
+   * Failures to export are logged. Cancel the returned future to stop.
+   */
+  public ScheduledFuture<?> exportEvery(MetricsExporter exporter, ScheduledExecutorService executor, long period,
+      TimeUnit unit) {
+    return executor.scheduleAtFixedRate(() -> {
+      try {
+        export(exporter);
+      } catch (IOException | RuntimeException e) {
+        LOG.warn("failed to export metrics", e);
+      }
+    }, period, period, unit);
+  }
+
+  /** The live statistics of one message. */
+  private static class MessageMetrics {
+    private final String name;
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder oneWayCalls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LogLinearHistogram latency = new LogLinearHistogram();
+    private final LogLinearHistogram requestPayload = new LogLinearHistogram();
+    private final LogLinearHistogram responsePayload = new LogLinearHistogram();
+
+    MessageMetrics(String name) {
+      this.name = name;
+    }
+  }
+
+  /** The statistics of one message at some point in time. */
+  public static class MessageSnapshot {
+    private final String name;
+    private final long inFlight;
+    private final long oneWayCalls;
+    private final long errors;
+    private final LogLinearHistogram.Snapshot latency;
+    private final LogLinearHistogram.Snapshot requestPayload;
+    private final LogLinearHistogram.Snapshot responsePayload;
+
+    MessageSnapshot(MessageMetrics metrics) {
+      this.name = metrics.name;
+      this.inFlight = metrics.inFlight.sum();
+      this.oneWayCalls = metrics.oneWayCalls.sum();
+      this.errors = metrics.errors.sum();
+      this.latency = metrics.latency.getSnapshot();
+      this.requestPayload = metrics.requestPayload.getSnapshot();
+      this.responsePayload = metrics.responsePayload.getSnapshot();
+    }
+
+    /** Return the name of the message. */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Return the number of calls completed. One-way calls are counted when sent
+     * or received, as nothing tells when they complete.
+     */
+    public long getCalls() {
+      return latency.getCount() + oneWayCalls;
+    }
+
+    /** Return the number of calls completed with an error. */
+    public long getErrors() {
+      return errors;
+    }
+
+    /** Return the number of calls started but not completed. */
+    public long getInFlight() {
+      return inFlight;
+    }
+
+    /**
+     * Return the latencies of completed calls, in nanoseconds. One-way calls are
+     * not timed.
+     */
+    public LogLinearHistogram.Snapshot getLatency() {
+      return latency;
+    }
+
+    /**
+     * Return the request payload sizes, in bytes. Only recorded by a Requestor
+     * (client).
+     */
+    public LogLinearHistogram.Snapshot getRequestPayload() {
+      return requestPayload;
+    }
+
+    /**
+     * Return the response payload sizes, in bytes. Only recorded by a Responder
+     * (server).
+     */
+    public LogLinearHistogram.Snapshot getResponsePayload() {
+      return responsePayload;
+    }
+  }
+}
@@ -41,18 +41,33 @@ import org.apache.avro.Protocol.Message;
 import org.apache.avro.ipc.RPCContext;
 
 /**
- * Exposes information provided by a StatsPlugin as a web page.
+ * Exposes information provided by a StatsPlugin or a MetricsPlugin as a web
+ * page.
  *
  * This class follows the same synchronization conventions as StatsPlugin, to
- * avoid requiring StatsPlugin to serve a copy of the data.
+ * avoid requiring StatsPlugin to serve a copy of the data. A MetricsPlugin is
+ * shown from snapshots, with latency and payload percentiles.
  */
 public class StatsServlet extends HttpServlet {
   private final StatsPlugin statsPlugin;
+  private final MetricsPlugin metricsPlugin;
   private VelocityEngine velocityEngine;
   private static final SimpleDateFormat FORMATTER = new SimpleDateFormat("dd-MMM-yyyy HH:mm:ss");
 
+  private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 100 };
+  private static final List<String> PERCENTILE_LABELS = Arrays.asList("p50", "p90", "p99", "p99.9", "max");
+
   public StatsServlet(StatsPlugin statsPlugin) throws UnavailableException {
+    this(statsPlugin, null);
+  }
+
+  public StatsServlet(MetricsPlugin metricsPlugin) throws UnavailableException {
+    this(null, metricsPlugin);
+  }
+
+  private StatsServlet(StatsPlugin statsPlugin, MetricsPlugin metricsPlugin) throws UnavailableException {
     this.statsPlugin = statsPlugin;
+    this.metricsPlugin = metricsPlugin;
     this.velocityEngine = new VelocityEngine();
 
     // These two properties tell Velocity to use its own classpath-based loader
@@ -126,25 +141,23 @@ public class StatsServlet extends HttpServlet {
 
     ArrayList<RenderableMessage> messages = new ArrayList<>();
 
-    for (Entry<RPCContext, Stopwatch> rpc : this.statsPlugin.activeRpcs.entrySet()) {
-      rpcs.add(renderActiveRpc(rpc.getKey(), rpc.getValue()));
-    }
-
-    // Get set of all seen messages
-    Set<Message> keys = null;
-    synchronized (this.statsPlugin.methodTimings) {
-      keys = this.statsPlugin.methodTimings.keySet();
-
-      for (Message m : keys) {
-        messages.add(renderMethod(m));
+    if (metricsPlugin != null) {
+      for (MetricsPlugin.MessageSnapshot snapshot : metricsPlugin.getSnapshots()) {
+        if (snapshot.getInFlight() > 0) {
+          rpcs.add(snapshot.getName() + ": " + snapshot.getInFlight() + " in flight");
+        }
+        messages.add(renderSnapshot(snapshot));
       }
+      context.put("startupTime", FORMATTER.format(new Date(metricsPlugin.getStartupTime())));
+    } else {
+      writePluginStats(rpcs, messages);
+      context.put("startupTime", FORMATTER.format(statsPlugin.startupTime));
     }
 
     context.put("inFlightRpcs", rpcs);
     context.put("messages", messages);
 
     context.put("currTime", FORMATTER.format(new Date()));
-    context.put("startupTime", FORMATTER.format(statsPlugin.startupTime));
 
     Template t;
     try {
@@ -155,6 +168,22 @@ public class StatsServlet extends HttpServlet {
     t.merge(context, w);
   }
 
+  private void writePluginStats(List<String> rpcs, List<RenderableMessage> messages) throws IOException {
+    for (Entry<RPCContext, Stopwatch> rpc : this.statsPlugin.activeRpcs.entrySet()) {
+      rpcs.add(renderActiveRpc(rpc.getKey(), rpc.getValue()));
+    }
+
+    // Get set of all seen messages
+    Set<Message> keys = null;
+    synchronized (this.statsPlugin.methodTimings) {
+      keys = this.statsPlugin.methodTimings.keySet();
+
+      for (Message m : keys) {
+        messages.add(renderMethod(m));
+      }
+    }
+  }
+
   private String renderActiveRpc(RPCContext rpc, Stopwatch stopwatch) throws IOException {
     String out = new String();
     out += rpc.getMessage().getName() + ": " + formatMillis(StatsPlugin.nanosToMillis(stopwatch.elapsedNanos()));
@@ -238,6 +267,41 @@ public class StatsServlet extends HttpServlet {
     return out;
   }
 
+  private RenderableMessage renderSnapshot(MetricsPlugin.MessageSnapshot snapshot) {
+    RenderableMessage out = new RenderableMessage(snapshot.getName());
+    out.numCalls = (int) Math.min(snapshot.getCalls(), Integer.MAX_VALUE);
+    out.charts.add(renderPercentiles("Latency", snapshot.getLatency(), 1e-6, "ms"));
+    if (snapshot.getRequestPayload().getCount() > 0) {
+      out.charts.add(renderPercentiles("Request Payload", snapshot.getRequestPayload(), 1, "B"));
+    }
+    if (snapshot.getResponsePayload().getCount() > 0) {
+      out.charts.add(renderPercentiles("Response Payload", snapshot.getResponsePayload(), 1, "B"));
+    }
+    return out;
+  }
+
+  private HashMap<String, String> renderPercentiles(String title, LogLinearHistogram.Snapshot hist, double scale,
+      String units) {
+    List<String> boundaries = new ArrayList<>();
+    double[] data = new double[PERCENTILES.length];
+    for (int i = 0; i < PERCENTILES.length; i++) {
+      data[i] = hist.getValueAtPercentile(PERCENTILES[i]) * scale;
+      boundaries.add(PERCENTILE_LABELS.get(i) + ": " + String.format("%.3f", data[i]) + units);
+    }
+    HashMap<String, String> bar = new HashMap<>();
+    // Fill in chart attributes for velocity
+    bar.put("type", "bar");
+    bar.put("title", title + " Percentiles");
+    bar.put("units", units);
+    bar.put("numCalls", Long.toString(hist.getCount()));
+    bar.put("avg", Double.toString(hist.getMean() * scale));
+    bar.put("stdDev", Double.toString(hist.getStdDev() * scale));
+    bar.put("labelStr", Arrays.toString(escapeStringArray(new ArrayList<>(PERCENTILE_LABELS)).toArray()));
+    bar.put("boundaryStr", Arrays.toString(escapeStringArray(boundaries).toArray()));
+    bar.put("dataStr", Arrays.toString(data));
+    return bar;
+  }
+
   private CharSequence formatMillis(float millis) {
     return String.format("%.0fms", millis);
   }
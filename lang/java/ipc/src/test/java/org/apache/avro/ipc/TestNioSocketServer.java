@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.AvroRemoteException;
+import org.apache.avro.Protocol;
+import org.apache.avro.Protocol.Message;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.ipc.generic.GenericRequestor;
+import org.apache.avro.ipc.generic.GenericResponder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Runs a simple protocol against a {@link NioSocketServer}. */
+public class TestNioSocketServer {
+
+  private static final Protocol PROTOCOL = Protocol.parse("{\"protocol\":\"Simple\",\"namespace\":\"org.apache.avro.test\","
+      + "\"types\":[{\"type\":\"record\",\"name\":\"TestRecord\",\"fields\":[{\"name\":\"name\",\"type\":\"string\"},"
+      + "{\"name\":\"hash\",\"type\":{\"type\":\"fixed\",\"name\":\"MD5\",\"size\":16}}]},"
+      + "{\"type\":\"error\",\"name\":\"TestError\",\"fields\":[{\"name\":\"message\",\"type\":\"string\"}]}],"
+      + "\"messages\":{\"hello\":{\"request\":[{\"name\":\"greeting\",\"type\":\"string\"}],\"response\":\"string\"},"
+      + "\"echo\":{\"request\":[{\"name\":\"record\",\"type\":\"TestRecord\"}],\"response\":\"TestRecord\"},"
+      + "\"add\":{\"request\":[{\"name\":\"arg1\",\"type\":\"int\"},{\"name\":\"arg2\",\"type\":\"int\"}],"
+      + "\"response\":\"int\"},"
+      + "\"echoBytes\":{\"request\":[{\"name\":\"data\",\"type\":\"bytes\"}],\"response\":\"bytes\"},"
+      + "\"error\":{\"request\":[],\"response\":\"null\",\"errors\":[\"TestError\"]},"
+      + "\"hold\":{\"request\":[],\"response\":\"null\"},"
+      + "\"ack\":{\"request\":[],\"response\":\"null\",\"one-way\":true}}}");
+
+  private final CountDownLatch acked = new CountDownLatch(1);
+  private CountDownLatch release; // lets "hold" requests respond
+  private final AtomicInteger holding = new AtomicInteger();
+  private final AtomicInteger maxHolding = new AtomicInteger();
+
+  private NioSocketServer server;
+  private final List<Transceiver> clients = new ArrayList<>();
+
+  private class SimpleResponder extends GenericResponder {
+    SimpleResponder() {
+      super(PROTOCOL);
+    }
+
+    @Override
+    public Object respond(Message message, Object request) throws Exception {
+      GenericRecord params = (GenericRecord) request;
+      switch (message.getName()) {
+      case "hello":
+        return "goodbye";
+      case "echo":
+        return params.get("record");
+      case "add":
+        return (Integer) params.get("arg1") + (Integer) params.get("arg2");
+      case "echoBytes":
+        return params.get("data");
+      case "error":
+        GenericRecord error = new GenericData.Record(PROTOCOL.getType("org.apache.avro.test.TestError"));
+        error.put("message", "an error");
+        throw new AvroRemoteException(error);
+      case "hold":
+        maxHolding.accumulateAndGet(holding.incrementAndGet(), Math::max);
+        try {
+          release.await();
+        } finally {
+          holding.decrementAndGet();
+        }
+        return null;
+      default:
+        acked.countDown();
+        return null;
+      }
+    }
+  }
+
+  private void start(int workerThreads, int maxPending) throws IOException {
+    release = new CountDownLatch(1);
+    server = new NioSocketServer(new SimpleResponder(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        workerThreads, maxPending);
+    server.start();
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    start(4, NioSocketServer.DEFAULT_MAX_PENDING);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    release.countDown();
+    for (Transceiver client : clients) {
+      client.close();
+    }
+    server.close();
+    try {
+      server.join(10000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private GenericRequestor connect(int maxInFlight) throws IOException {
+    InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+    SocketTransceiver client = maxInFlight == 0 ? new SocketTransceiver(address)
+        : new SocketTransceiver(address, maxInFlight);
+    clients.add(client);
+    return new GenericRequestor(PROTOCOL, client);
+  }
+
+  private static GenericRecord params(String message, Object... values) {
+    GenericRecord params = new GenericData.Record(PROTOCOL.getMessages().get(message).getRequest());
+    for (int i = 0; i < values.length; i++) {
+      params.put(i, values[i]);
+    }
+    return params;
+  }
+
+  private void checkCalls(GenericRequestor requestor) throws Exception {
+    assertEquals("goodbye", requestor.request("hello", params("hello", "bob")).toString());
+    assertEquals(3, requestor.request("add", params("add", 1, 2)));
+
+    Schema recordSchema = PROTOCOL.getType("org.apache.avro.test.TestRecord");
+    GenericRecord record = new GenericData.Record(recordSchema);
+    record.put("name", "foo");
+    byte[] hash = new byte[16];
+    new Random(0).nextBytes(hash);
+    record.put("hash", new GenericData.Fixed(recordSchema.getField("hash").schema(), hash));
+    assertEquals(record, requestor.request("echo", params("echo", record)));
+
+    try {
+      requestor.request("error", params("error"));
+      fail("Expected an error");
+    } catch (AvroRemoteException e) {
+      assertEquals("an error", ((GenericRecord) e.getValue()).get("message").toString());
+    }
+  }
+
+  @Test
+  public void serves() throws Exception {
+    checkCalls(connect(0));
+  }
+
+  @Test
+  public void servesMultiplexed() throws Exception {
+    checkCalls(connect(8));
+  }
+
+  @Test
+  public void servesLargeRequests() throws Exception {
+    GenericRequestor requestor = connect(0);
+    byte[] data = new byte[1 << 20];
+    new Random(1).nextBytes(data);
+    ByteBuffer echoed = (ByteBuffer) requestor.request("echoBytes", params("echoBytes", ByteBuffer.wrap(data)));
+    byte[] result = new byte[echoed.remaining()];
+    echoed.get(result);
+    assertArrayEquals(data, result);
+  }
+
+  @Test
+  public void deliversOneWayMessages() throws Exception {
+    GenericRequestor requestor = connect(8);
+    checkCalls(requestor); // handshake first
+    requestor.request("ack", params("ack"));
+    assertTrue(acked.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void servesManyConnectionsWithFewWorkers() throws Exception {
+    tearDown();
+    clients.clear();
+    start(1, NioSocketServer.DEFAULT_MAX_PENDING);
+    ExecutorService callers = Executors.newFixedThreadPool(6);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (int c = 0; c < 6; c++) {
+        GenericRequestor requestor = connect(c % 2 == 0 ? 0 : 4);
+        int arg = c;
+        results.add(callers.submit(() -> {
+          for (int i = 0; i < 50; i++) {
+            assertEquals(arg + i, requestor.request("add", params("add", arg, i)));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> result : results) {
+        result.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      callers.shutdownNow();
+    }
+  }
+
+  @Test
+  public void respondsOutOfOrder() throws Exception {
+    GenericRequestor requestor = connect(8);
+    checkCalls(requestor);
+    CallFuture<Object> held = new CallFuture<>();
+    requestor.request("hold", params("hold"), held);
+    assertEquals(5, requestor.request("add", params("add", 2, 3)));
+    assertFalse(held.isDone());
+    release.countDown();
+    held.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void capsPendingRequestsPerConnection() throws Exception {
+    tearDown();
+    clients.clear();
+    start(8, 2);
+    GenericRequestor requestor = connect(8);
+    checkCalls(requestor);
+    List<CallFuture<Object>> held = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      CallFuture<Object> future = new CallFuture<>();
+      requestor.request("hold", params("hold"), future);
+      held.add(future);
+    }
+    long deadline = System.currentTimeMillis() + 10000;
+    while (holding.get() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Thread.sleep(100); // give a third request the chance to start
+    assertEquals(2, maxHolding.get());
+
+    release.countDown();
+    for (CallFuture<Object> future : held) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+    assertEquals(2, maxHolding.get());
+  }
+
+  @Test
+  public void closeDisconnectsClients() throws Exception {
+    GenericRequestor requestor = connect(8);
+    checkCalls(requestor);
+    server.close();
+    server.join(10000);
+    assertThrows(IOException.class, () -> {
+      for (int i = 0; i < 100; i++) { // until the client sees the connection closed
+        requestor.request("hello", params("hello", "bob"));
+      }
+    });
+  }
+
+  @Test
+  public void rejectsInvalidArguments() {
+    InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+    assertThrows(IllegalArgumentException.class, () -> new NioSocketServer(new SimpleResponder(), address, 0, 1));
+    assertThrows(IllegalArgumentException.class, () -> new NioSocketServer(new SimpleResponder(), address, 1, 0));
+  }
+}
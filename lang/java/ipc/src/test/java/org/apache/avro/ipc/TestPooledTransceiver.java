@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.Protocol;
+import org.apache.avro.Protocol.Message;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.ipc.generic.GenericRequestor;
+import org.apache.avro.ipc.generic.GenericResponder;
+import org.junit.Test;
+
+public class TestPooledTransceiver {
+
+  private static final SocketAddress A = InetSocketAddress.createUnresolved("a", 1);
+  private static final SocketAddress B = InetSocketAddress.createUnresolved("b", 1);
+  private static final SocketAddress C = InetSocketAddress.createUnresolved("c", 1);
+  private static final List<ByteBuffer> REQUEST = Collections.singletonList(ByteBuffer.wrap(new byte[] { 1 }));
+
+  /** Endpoints whose connections fail every request. */
+  private final Map<SocketAddress, Boolean> failing = new ConcurrentHashMap<>();
+  private final Map<SocketAddress, AtomicInteger> opened = new ConcurrentHashMap<>();
+  private final Map<SocketAddress, AtomicInteger> calls = new ConcurrentHashMap<>();
+  private final List<FakeTransceiver> connections = Collections.synchronizedList(new ArrayList<>());
+
+  /** A connection that answers at once, or holds asynchronous requests. */
+  private class FakeTransceiver extends Transceiver {
+    private final SocketAddress endpoint;
+    private final List<Callback<List<ByteBuffer>>> held = new ArrayList<>();
+    private boolean hold;
+    private boolean closed;
+
+    FakeTransceiver(SocketAddress endpoint) {
+      this.endpoint = endpoint;
+    }
+
+    @Override
+    public String getRemoteName() {
+      return endpoint.toString();
+    }
+
+    @Override
+    public List<ByteBuffer> transceive(List<ByteBuffer> request) throws IOException {
+      calls.computeIfAbsent(endpoint, e -> new AtomicInteger()).incrementAndGet();
+      if (closed || failing.containsKey(endpoint)) {
+        throw new IOException("failed: " + endpoint);
+      }
+      return request;
+    }
+
+    @Override
+    public void transceive(List<ByteBuffer> request, Callback<List<ByteBuffer>> callback) throws IOException {
+      if (hold) {
+        held.add(callback);
+      } else {
+        callback.handleResult(transceive(request));
+      }
+    }
+
+    @Override
+    public List<ByteBuffer> readBuffers() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeBuffers(List<ByteBuffer> buffers) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private PooledTransceiver pool(int connectionsPerEndpoint, int maxFailures, long ejectionMillis,
+      SocketAddress... endpoints) {
+    return new PooledTransceiver(Arrays.asList(endpoints), connectionsPerEndpoint, endpoint -> {
+      opened.computeIfAbsent(endpoint, e -> new AtomicInteger()).incrementAndGet();
+      FakeTransceiver connection = new FakeTransceiver(endpoint);
+      connections.add(connection);
+      return connection;
+    }, maxFailures, ejectionMillis);
+  }
+
+  private static int count(Map<SocketAddress, AtomicInteger> counts, SocketAddress endpoint) {
+    AtomicInteger count = counts.get(endpoint);
+    return count == null ? 0 : count.get();
+  }
+
+  /** Send a request through the pool, returning false if it failed. */
+  private static boolean send(PooledTransceiver pool) {
+    try {
+      pool.select().transceive(REQUEST);
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  @Test
+  public void rejectsInvalidArguments() {
+    PooledTransceiver.Factory factory = FakeTransceiver::new;
+    assertThrows(IllegalArgumentException.class,
+        () -> new PooledTransceiver(Collections.<SocketAddress>emptyList(), 1, factory));
+    assertThrows(IllegalArgumentException.class, () -> new PooledTransceiver(Arrays.asList(A), 0, factory));
+    assertThrows(IllegalArgumentException.class, () -> new PooledTransceiver(Arrays.asList(A), 1, factory, 0, 1));
+  }
+
+  @Test
+  public void spreadsRequestsOverEndpoints() {
+    PooledTransceiver pool = pool(2, 3, 60000, A, B, C);
+    for (int i = 0; i < 300; i++) {
+      assertTrue(send(pool));
+    }
+    for (SocketAddress endpoint : Arrays.asList(A, B, C)) {
+      assertTrue(count(calls, endpoint) > 30);
+      assertTrue(count(opened, endpoint) <= 2); // connections are reused
+    }
+  }
+
+  @Test
+  public void prefersConnectionWithFewerOutstandingRequests() throws IOException {
+    PooledTransceiver pool = pool(2, 3, 60000, A);
+    Transceiver busy = pool.select();
+    busy.transceive(REQUEST); // open it
+    connections.get(0).hold = true;
+    for (int i = 0; i < 3; i++) {
+      busy.transceive(REQUEST, new CallFuture<>());
+    }
+    assertEquals(3, pool.getOutstandingRequests());
+    for (int i = 0; i < 20; i++) {
+      assertNotSame(busy, pool.select()); // both members are always compared
+    }
+
+    for (Callback<List<ByteBuffer>> callback : connections.get(0).held) {
+      callback.handleResult(REQUEST);
+    }
+    assertEquals(0, pool.getOutstandingRequests());
+  }
+
+  @Test
+  public void asynchronousErrorsAreCounted() throws IOException {
+    PooledTransceiver pool = pool(1, 1, 60000, A);
+    Transceiver member = pool.select();
+    member.transceive(REQUEST);
+    connections.get(0).hold = true;
+    CallFuture<List<ByteBuffer>> future = new CallFuture<>();
+    member.transceive(REQUEST, future);
+    assertEquals(1, pool.getOutstandingRequests());
+
+    connections.get(0).held.get(0).handleError(new IOException("lost"));
+    assertEquals(0, pool.getOutstandingRequests());
+    assertEquals(1, pool.getEjectedConnections());
+    assertTrue(future.isDone());
+  }
+
+  @Test
+  public void ejectsConnectionAfterConsecutiveFailures() {
+    failing.put(A, true);
+    PooledTransceiver pool = pool(1, 2, 60000, A, B);
+    int failures = 0;
+    for (int i = 0; i < 100; i++) {
+      if (!send(pool)) {
+        failures++;
+      }
+    }
+    assertEquals(2, failures); // then A is ejected
+    assertEquals(1, pool.getEjectedConnections());
+    assertEquals(2, count(calls, A));
+    assertTrue(connections.get(0).closed || connections.get(1).closed);
+  }
+
+  @Test
+  public void successResetsFailureCount() {
+    PooledTransceiver pool = pool(1, 3, 60000, A);
+    for (int round = 0; round < 3; round++) {
+      failing.put(A, true);
+      send(pool);
+      send(pool);
+      failing.remove(A);
+      assertTrue(send(pool));
+    }
+    assertEquals(0, pool.getEjectedConnections());
+    assertEquals(1, count(opened, A));
+  }
+
+  @Test
+  public void failureToConnectCountsAsFailure() {
+    PooledTransceiver pool = new PooledTransceiver(Arrays.asList(A, B), 1, endpoint -> {
+      if (endpoint == A) {
+        throw new IOException("refused");
+      }
+      return new FakeTransceiver(endpoint);
+    }, 1, 60000);
+    for (int i = 0; i < 50 && pool.getEjectedConnections() == 0; i++) {
+      send(pool);
+    }
+    assertEquals(1, pool.getEjectedConnections());
+    for (int i = 0; i < 20; i++) {
+      assertTrue(send(pool));
+    }
+  }
+
+  @Test
+  public void ejectedConnectionIsReopenedLater() throws InterruptedException {
+    failing.put(A, true);
+    PooledTransceiver pool = pool(1, 1, 50, A, B);
+    while (pool.getEjectedConnections() == 0) {
+      send(pool);
+    }
+    failing.remove(A);
+    Thread.sleep(100);
+    assertEquals(0, pool.getEjectedConnections());
+    for (int i = 0; i < 100; i++) {
+      assertTrue(send(pool));
+    }
+    assertEquals(2, count(opened, A));
+  }
+
+  @Test
+  public void sendsWhenEveryConnectionIsEjected() {
+    failing.put(A, true);
+    PooledTransceiver pool = pool(1, 1, 60000, A);
+    send(pool);
+    assertEquals(1, pool.getEjectedConnections());
+    failing.remove(A);
+    assertTrue(send(pool)); // on a new connection
+    assertEquals(2, count(opened, A));
+  }
+
+  @Test
+  public void closeClosesConnections() throws IOException {
+    PooledTransceiver pool = pool(1, 3, 60000, A, B);
+    Transceiver a = pool.select();
+    a.transceive(REQUEST);
+    pool.close();
+    for (FakeTransceiver connection : connections) {
+      assertTrue(connection.closed);
+    }
+    assertThrows(IOException.class, () -> pool.select().transceive(REQUEST));
+  }
+
+  private static final Protocol PROTOCOL = Protocol.parse("{\"protocol\":\"Echo\",\"namespace\":\"org.apache.avro.test\","
+      + "\"messages\":{\"echo\":{\"request\":[{\"name\":\"text\",\"type\":\"string\"}],\"response\":\"string\"}}}");
+
+  @Test
+  public void balancesRequestorOverServers() throws Exception {
+    Map<Integer, AtomicInteger> served = new ConcurrentHashMap<>();
+    List<SocketServer> servers = new ArrayList<>();
+    List<InetSocketAddress> endpoints = new ArrayList<>();
+    for (int s = 0; s < 2; s++) {
+      int id = s;
+      SocketServer server = new SocketServer(new GenericResponder(PROTOCOL) {
+        @Override
+        public Object respond(Message message, Object request) {
+          served.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet();
+          return ((GenericRecord) request).get("text");
+        }
+      }, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+      server.start();
+      servers.add(server);
+      endpoints.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    }
+    try (PooledTransceiver pool = new PooledTransceiver(endpoints, 2, SocketTransceiver::new, 1, 60000)) {
+      GenericRequestor requestor = new GenericRequestor(PROTOCOL, pool);
+      GenericRecord request = new GenericData.Record(PROTOCOL.getMessages().get("echo").getRequest());
+      for (int i = 0; i < 100; i++) {
+        request.put("text", "text " + i);
+        assertEquals("text " + i, requestor.request("echo", request).toString());
+      }
+      assertTrue(served.get(0).get() > 10);
+      assertTrue(served.get(1).get() > 10);
+
+      // once the failing connections are ejected, requests go to the other server
+      servers.get(0).close();
+      int failures = 0;
+      for (int i = 0; i < 100; i++) {
+        request.put("text", "after " + i);
+        try {
+          assertEquals("after " + i, requestor.request("echo", request).toString());
+        } catch (IOException e) {
+          failures++;
+        }
+      }
+      assertTrue(failures <= 2);
+      assertEquals(2, pool.getEjectedConnections());
+    } finally {
+      for (SocketServer server : servers) {
+        server.close();
+      }
+    }
+  }
+}
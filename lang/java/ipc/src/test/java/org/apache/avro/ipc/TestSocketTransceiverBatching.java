@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.Protocol;
+import org.apache.avro.Protocol.Message;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.ipc.generic.GenericRequestor;
+import org.apache.avro.ipc.generic.GenericResponder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSocketTransceiverBatching {
+
+  private static final Protocol PROTOCOL = Protocol.parse("{\"protocol\":\"Echo\",\"namespace\":\"org.apache.avro.test\","
+      + "\"messages\":{\"echo\":{\"request\":[{\"name\":\"text\",\"type\":\"string\"}],\"response\":\"string\"},"
+      + "\"tell\":{\"request\":[{\"name\":\"text\",\"type\":\"string\"}],\"response\":\"null\",\"one-way\":true}}}");
+
+  private static final int CALLERS = 8;
+  private static final int CALLS_PER_CALLER = 50;
+
+  private final List<String> told = new ArrayList<>();
+  /** The number of gathering writes made by the client. */
+  private final AtomicInteger writes = new AtomicInteger();
+  private SocketServer server;
+  private SocketTransceiver client;
+  private GenericRequestor requestor;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new SocketServer(new GenericResponder(PROTOCOL) {
+      @Override
+      public Object respond(Message message, Object request) {
+        Object text = ((GenericRecord) request).get("text");
+        if (message.isOneWay()) {
+          synchronized (told) {
+            told.add(text.toString());
+            told.notifyAll();
+          }
+          return null;
+        }
+        return text;
+      }
+    }, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    server.start();
+    client = new SocketTransceiver(new CountingChannel(SocketChannel.open(address())), CALLERS);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+    server.close();
+  }
+
+  private InetSocketAddress address() {
+    return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+  }
+
+  private Object call(String name, String text) throws Exception {
+    Message message = PROTOCOL.getMessages().get(name);
+    GenericRecord request = new GenericData.Record(message.getRequest());
+    request.put("text", text);
+    Object response = requestor.request(name, request);
+    return response == null ? null : response.toString();
+  }
+
+  private void waitForTold(int count) throws InterruptedException {
+    synchronized (told) {
+      long deadline = System.currentTimeMillis() + 10000;
+      while (told.size() < count && System.currentTimeMillis() < deadline) {
+        told.wait(100);
+      }
+    }
+  }
+
+  @Test
+  public void onlyMultiplexingTransceiversBatch() throws Exception {
+    try (SocketTransceiver plain = new SocketTransceiver(address())) {
+      assertThrows(IllegalStateException.class, () -> plain.setBatching(1024, 0, TimeUnit.MILLISECONDS));
+    }
+    assertThrows(IllegalArgumentException.class, () -> client.setBatching(0, 0, TimeUnit.MILLISECONDS));
+    client.setBatching(1024, 0, TimeUnit.MILLISECONDS);
+    assertThrows(IllegalStateException.class, () -> client.setBatching(1024, 0, TimeUnit.MILLISECONDS));
+  }
+
+  /** Make concurrent calls, returning how many were made. */
+  private int callConcurrently() throws Exception {
+    requestor = new GenericRequestor(PROTOCOL, client);
+    ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (int t = 0; t < CALLERS; t++) {
+        String prefix = "caller " + t + ": ";
+        results.add(callers.submit(() -> {
+          for (int i = 0; i < CALLS_PER_CALLER; i++) {
+            assertEquals(prefix + i, call("echo", prefix + i));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> result : results) {
+        result.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      callers.shutdownNow();
+    }
+    return CALLERS * CALLS_PER_CALLER;
+  }
+
+  @Test
+  public void writesOneFramePerCallWithoutBatching() throws Exception {
+    int calls = callConcurrently();
+    assertTrue(writes.get() + " writes", writes.get() >= calls);
+  }
+
+  @Test
+  public void batchesWithoutWindow() throws Exception {
+    client.setBatching(64 * 1024, 0, TimeUnit.MILLISECONDS);
+    int calls = callConcurrently();
+    assertTrue(writes.get() + " writes", writes.get() < calls);
+  }
+
+  @Test
+  public void batchesWithinWindow() throws Exception {
+    client.setBatching(64 * 1024, 2, TimeUnit.MILLISECONDS);
+    int calls = callConcurrently();
+    // most calls wait for all callers' requests to be written at once
+    assertTrue(writes.get() + " writes", writes.get() < calls / 2);
+  }
+
+  @Test
+  public void fullBatchIsWrittenBeforeWindowEnds() throws Exception {
+    client.setBatching(1, 1, TimeUnit.HOURS);
+    requestor = new GenericRequestor(PROTOCOL, client);
+    for (String text : new String[] { "now", "again" }) {
+      GenericRecord request = new GenericData.Record(PROTOCOL.getMessages().get("echo").getRequest());
+      request.put("text", text);
+      CallFuture<Object> response = new CallFuture<>();
+      requestor.request("echo", request, response);
+      assertEquals(text, response.get(10, TimeUnit.SECONDS).toString());
+    }
+  }
+
+  @Test
+  public void oneWayMessagesAreDelivered() throws Exception {
+    client.setBatching(64 * 1024, 0, TimeUnit.MILLISECONDS);
+    requestor = new GenericRequestor(PROTOCOL, client);
+    for (int i = 0; i < 10; i++) {
+      call("tell", "news " + i);
+    }
+    waitForTold(10);
+    synchronized (told) {
+      assertEquals(10, told.size());
+    }
+  }
+
+  @Test
+  public void closeWritesQueuedRequests() throws Exception {
+    requestor = new GenericRequestor(PROTOCOL, client);
+    assertEquals("hello", call("echo", "hello")); // handshake before batching
+    client.setBatching(64 * 1024, 1, TimeUnit.HOURS);
+    call("tell", "last words"); // queued until the window ends
+    client.close();
+    waitForTold(1);
+    synchronized (told) {
+      assertEquals("[last words]", told.toString());
+    }
+  }
+
+  /** A channel that counts gathering writes. */
+  private class CountingChannel extends SocketChannel {
+    private final SocketChannel channel;
+
+    CountingChannel(SocketChannel channel) {
+      super(channel.provider());
+      this.channel = channel;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+      writes.incrementAndGet();
+      return channel.write(srcs, offset, length);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      writes.incrementAndGet();
+      return channel.write(src);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      return channel.read(dst);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+      return channel.read(dsts, offset, length);
+    }
+
+    @Override
+    public SocketChannel bind(SocketAddress local) throws IOException {
+      channel.bind(local);
+      return this;
+    }
+
+    @Override
+    public <T> SocketChannel setOption(SocketOption<T> name, T value) throws IOException {
+      channel.setOption(name, value);
+      return this;
+    }
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) throws IOException {
+      return channel.getOption(name);
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+      return channel.supportedOptions();
+    }
+
+    @Override
+    public SocketChannel shutdownInput() throws IOException {
+      channel.shutdownInput();
+      return this;
+    }
+
+    @Override
+    public SocketChannel shutdownOutput() throws IOException {
+      channel.shutdownOutput();
+      return this;
+    }
+
+    @Override
+    public Socket socket() {
+      return channel.socket();
+    }
+
+    @Override
+    public boolean isConnected() {
+      return channel.isConnected();
+    }
+
+    @Override
+    public boolean isConnectionPending() {
+      return channel.isConnectionPending();
+    }
+
+    @Override
+    public boolean connect(SocketAddress remote) throws IOException {
+      return channel.connect(remote);
+    }
+
+    @Override
+    public boolean finishConnect() throws IOException {
+      return channel.finishConnect();
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() throws IOException {
+      return channel.getRemoteAddress();
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() throws IOException {
+      return channel.getLocalAddress();
+    }
+
+    @Override
+    protected void implCloseSelectableChannel() throws IOException {
+      channel.close();
+    }
+
+    @Override
+    protected void implConfigureBlocking(boolean block) throws IOException {
+      channel.configureBlocking(block);
+    }
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.AvroRemoteException;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Protocol;
+import org.apache.avro.Protocol.Message;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.ipc.generic.GenericRequestor;
+import org.apache.avro.ipc.generic.GenericResponder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSocketTransceiverMultiplexing {
+
+  private static final Protocol PROTOCOL = Protocol.parse("{\"protocol\":\"Echo\",\"namespace\":\"org.apache.avro.test\","
+      + "\"messages\":{\"echo\":{\"request\":[{\"name\":\"text\",\"type\":\"string\"}],\"response\":\"string\"},"
+      + "\"hold\":{\"request\":[{\"name\":\"text\",\"type\":\"string\"}],\"response\":\"string\"},"
+      + "\"fail\":{\"request\":[],\"response\":\"null\"},"
+      + "\"tell\":{\"request\":[{\"name\":\"text\",\"type\":\"string\"}],\"response\":\"null\",\"one-way\":true}}}");
+
+  /** Released to let "hold" requests respond. */
+  private CountDownLatch release;
+  private final AtomicInteger holding = new AtomicInteger();
+  private final AtomicInteger maxHolding = new AtomicInteger();
+  private final List<String> told = new ArrayList<>();
+
+  private SocketServer server;
+  private SocketTransceiver client;
+  private GenericRequestor requestor;
+
+  private class EchoResponder extends GenericResponder {
+    EchoResponder() {
+      super(PROTOCOL);
+    }
+
+    @Override
+    public Object respond(Message message, Object request) throws Exception {
+      switch (message.getName()) {
+      case "echo":
+        return ((GenericRecord) request).get("text");
+      case "hold":
+        maxHolding.accumulateAndGet(holding.incrementAndGet(), Math::max);
+        try {
+          release.await();
+        } finally {
+          holding.decrementAndGet();
+        }
+        return ((GenericRecord) request).get("text");
+      case "fail":
+        throw new AvroRemoteException("failed");
+      default:
+        synchronized (told) {
+          told.add(((GenericRecord) request).get("text").toString());
+          told.notifyAll();
+        }
+        return null;
+      }
+    }
+  }
+
+  private void start(int maxPending, int maxInFlight) throws Exception {
+    release = new CountDownLatch(1);
+    server = new SocketServer(new EchoResponder(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        maxPending);
+    server.start();
+    client = new SocketTransceiver(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()),
+        maxInFlight);
+    requestor = new GenericRequestor(PROTOCOL, client);
+    assertEquals("hello", call("echo", "hello")); // handshake
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    start(SocketServer.DEFAULT_MAX_PENDING, 8);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    release.countDown();
+    client.close();
+    server.close();
+  }
+
+  private static GenericRecord request(Message message, String text) {
+    GenericRecord request = new GenericData.Record(message.getRequest());
+    if (text != null) {
+      request.put("text", text);
+    }
+    return request;
+  }
+
+  private String call(String name, String text) throws Exception {
+    Object response = requestor.request(name, request(PROTOCOL.getMessages().get(name), text));
+    return response == null ? null : response.toString();
+  }
+
+  private CallFuture<Object> callAsync(String name, String text) throws Exception {
+    CallFuture<Object> future = new CallFuture<>();
+    requestor.request(name, request(PROTOCOL.getMessages().get(name), text), future);
+    return future;
+  }
+
+  @Test
+  public void connectionIsMultiplexed() {
+    assertTrue(client.isMultiplexed());
+  }
+
+  @Test
+  public void responsesArriveOutOfOrder() throws Exception {
+    CallFuture<Object> held = callAsync("hold", "first");
+    // a later request completes while the first is still being handled
+    assertEquals("second", call("echo", "second"));
+    assertFalse(held.isDone());
+    release.countDown();
+    assertEquals("first", held.get(10, TimeUnit.SECONDS).toString());
+  }
+
+  @Test
+  public void concurrentCallersGetTheirOwnResponses() throws Exception {
+    ExecutorService callers = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        String prefix = "caller " + t + ": ";
+        results.add(callers.submit(() -> {
+          for (int i = 0; i < 50; i++) {
+            assertEquals(prefix + i, call("echo", prefix + i));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> result : results) {
+        result.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      callers.shutdownNow();
+    }
+  }
+
+  @Test
+  public void remoteErrorsReachTheirCaller() throws Exception {
+    // an undeclared error is reported as a runtime exception
+    AvroRuntimeException e = assertThrows(AvroRuntimeException.class, () -> call("fail", null));
+    assertEquals("failed", e.getMessage());
+    assertEquals("after", call("echo", "after"));
+  }
+
+  @Test
+  public void oneWayMessagesAreDelivered() throws Exception {
+    assertEquals(null, call("tell", "news"));
+    synchronized (told) {
+      long deadline = System.currentTimeMillis() + 10000;
+      while (told.isEmpty() && System.currentTimeMillis() < deadline) {
+        told.wait(100);
+      }
+      assertEquals("[news]", told.toString());
+    }
+  }
+
+  @Test
+  public void serverCapsPendingRequestsPerConnection() throws Exception {
+    tearDown();
+    start(2, 8);
+    List<CallFuture<Object>> held = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      held.add(callAsync("hold", "held " + i));
+    }
+    long deadline = System.currentTimeMillis() + 10000;
+    while (holding.get() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Thread.sleep(100); // give a third request the chance to start
+    assertEquals(2, maxHolding.get());
+
+    release.countDown();
+    for (int i = 0; i < held.size(); i++) {
+      assertEquals("held " + i, held.get(i).get(10, TimeUnit.SECONDS).toString());
+    }
+    assertEquals(2, maxHolding.get());
+  }
+
+  @Test
+  public void failureIsReportedOncePerRequest() throws Exception {
+    List<AtomicInteger> reports = new ArrayList<>();
+    Thread closer = new Thread(server::close);
+    for (int i = 0; i < 200; i++) {
+      if (i == 100) { // close the connection while requests are being made
+        closer.start();
+      }
+      AtomicInteger count = new AtomicInteger();
+      reports.add(count);
+      try {
+        requestor.request("echo", request(PROTOCOL.getMessages().get("echo"), "text"), new Callback<Object>() {
+          @Override
+          public void handleResult(Object result) {
+            count.incrementAndGet();
+          }
+
+          @Override
+          public void handleError(Throwable error) {
+            count.incrementAndGet();
+          }
+        });
+      } catch (IOException e) {
+        count.incrementAndGet();
+      }
+    }
+    closer.join();
+    long deadline = System.currentTimeMillis() + 10000;
+    for (AtomicInteger count : reports) {
+      while (count.get() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+    }
+    Thread.sleep(100); // let any second report arrive
+    for (AtomicInteger count : reports) {
+      assertEquals(1, count.get());
+    }
+  }
+}
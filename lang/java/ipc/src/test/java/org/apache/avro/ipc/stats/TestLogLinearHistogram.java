@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestLogLinearHistogram {
+
+  @Test
+  public void bucketsHoldTheirValues() {
+    for (int shift = 0; shift < 63; shift++) {
+      for (long value : new long[] { (1L << shift) - 1, 1L << shift, (1L << shift) + 1, 3L << shift >>> 1 }) {
+        if (value < 0) {
+          continue;
+        }
+        int bucket = LogLinearHistogram.bucket(value);
+        assertTrue(LogLinearHistogram.lowestValue(bucket) <= value);
+        assertTrue(value <= LogLinearHistogram.highestValue(bucket));
+      }
+    }
+    assertEquals(LogLinearHistogram.BUCKETS - 1, LogLinearHistogram.bucket(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void bucketsAreWithinOneSixteenth() {
+    for (int bucket = 0; bucket < LogLinearHistogram.BUCKETS; bucket++) {
+      long low = LogLinearHistogram.lowestValue(bucket);
+      long high = LogLinearHistogram.highestValue(bucket);
+      assertTrue(low <= high);
+      assertTrue("bucket " + bucket, high - low <= low / 16);
+      if (bucket > 0) {
+        assertEquals(LogLinearHistogram.highestValue(bucket - 1) + 1, low);
+      }
+    }
+  }
+
+  @Test
+  public void emptySnapshot() {
+    LogLinearHistogram.Snapshot snapshot = new LogLinearHistogram().getSnapshot();
+    assertEquals(0, snapshot.getCount());
+    assertEquals(0, snapshot.getMin());
+    assertEquals(0, snapshot.getMax());
+    assertEquals(0, snapshot.getP99());
+    assertEquals(0, snapshot.getMean(), 0);
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    for (int i = 1; i <= 20; i++) {
+      histogram.record(i);
+    }
+    histogram.record(-5); // recorded as zero
+    LogLinearHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertEquals(21, snapshot.getCount());
+    assertEquals(0, snapshot.getMin());
+    assertEquals(20, snapshot.getMax());
+    assertEquals(10, snapshot.getP50());
+    assertEquals(0, snapshot.getValueAtPercentile(0));
+    assertEquals(20, snapshot.getValueAtPercentile(100));
+    assertEquals(210.0 / 21, snapshot.getMean(), 1e-9);
+  }
+
+  @Test
+  public void percentilesAreWithinBucketPrecision() {
+    Random random = new Random(42);
+    long[] values = new long[100000];
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    for (int i = 0; i < values.length; i++) {
+      // log-normal, like latencies: mostly around a millisecond, with a long tail
+      values[i] = (long) Math.exp(14 + 1.5 * random.nextGaussian());
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+    LogLinearHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertEquals(values[0], snapshot.getMin());
+    assertEquals(values[values.length - 1], snapshot.getMax());
+    for (double percentile : new double[] { 1, 10, 25, 50, 75, 90, 99, 99.9, 99.99, 100 }) {
+      long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+      long estimate = snapshot.getValueAtPercentile(percentile);
+      // the midpoint of the bucket holding the exact value
+      assertTrue(percentile + ": " + estimate + " vs " + exact, Math.abs(estimate - exact) <= exact / 32 + 1);
+    }
+    assertEquals(snapshot.getValueAtPercentile(50), snapshot.getP50());
+    assertEquals(snapshot.getValueAtPercentile(99), snapshot.getP99());
+    assertEquals(snapshot.getValueAtPercentile(99.9), snapshot.getP999());
+  }
+
+  @Test
+  public void largeValues() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    histogram.record(Long.MAX_VALUE);
+    histogram.record(1L << 62);
+    LogLinearHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertTrue(Math.abs(snapshot.getValueAtPercentile(50) - (1L << 62)) <= (1L << 62) / 32);
+    assertEquals(Long.MAX_VALUE, snapshot.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void concurrentRecording() throws InterruptedException {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          histogram.record(i);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    LogLinearHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertEquals(80000, snapshot.getCount());
+    assertEquals(9999, snapshot.getMax());
+    assertEquals(4999.5, snapshot.getMean(), 1e-9);
+    assertTrue(Math.abs(snapshot.getP50() - 5000) <= 5000 / 32 + 1);
+  }
+
+  @Test
+  public void rejectsInvalidPercentile() {
+    LogLinearHistogram.Snapshot snapshot = new LogLinearHistogram().getSnapshot();
+    assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(-1));
+    assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(100.5));
+  }
+}
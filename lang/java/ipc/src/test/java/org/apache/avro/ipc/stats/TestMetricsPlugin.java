@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Protocol;
+import org.apache.avro.Protocol.Message;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.ipc.RPCContext;
+import org.apache.avro.ipc.SocketServer;
+import org.apache.avro.ipc.SocketTransceiver;
+import org.apache.avro.ipc.generic.GenericRequestor;
+import org.apache.avro.ipc.generic.GenericResponder;
+import org.apache.avro.ipc.stats.Stopwatch.Ticks;
+import org.junit.Test;
+
+public class TestMetricsPlugin {
+
+  private static final Protocol PROTOCOL = Protocol.parse("{\"protocol\":\"Echo\",\"namespace\":\"org.apache.avro.test\","
+      + "\"messages\":{\"echo\":{\"request\":[{\"name\":\"text\",\"type\":\"string\"}],\"response\":\"string\"},"
+      + "\"tell\":{\"request\":[{\"name\":\"text\",\"type\":\"string\"}],\"response\":\"null\",\"one-way\":true}}}");
+  private static final Message ECHO = PROTOCOL.getMessages().get("echo");
+  private static final Message TELL = PROTOCOL.getMessages().get("tell");
+
+  /** Ticks that only move when told to. */
+  private static class FakeTicks implements Ticks {
+    private long now;
+
+    @Override
+    public long ticks() {
+      return now;
+    }
+  }
+
+  private final FakeTicks ticks = new FakeTicks();
+
+  /** A context for a call, failed with <i>failure</i> if not null. */
+  private static RPCContext context(Message message, Exception failure) {
+    RPCContext context = new RPCContext() {
+      {
+        this.error = failure;
+      }
+    };
+    context.setMessage(message);
+    return context;
+  }
+
+  private static MetricsPlugin.MessageSnapshot snapshot(MetricsPlugin plugin, String name) {
+    for (MetricsPlugin.MessageSnapshot snapshot : plugin.getSnapshots()) {
+      if (snapshot.getName().equals(name)) {
+        return snapshot;
+      }
+    }
+    throw new AssertionError("no snapshot of " + name);
+  }
+
+  @Test
+  public void timesClientCalls() {
+    MetricsPlugin plugin = new MetricsPlugin(ticks);
+    RPCContext context = context(ECHO, null);
+    context.setRequestPayload(Collections.singletonList(ByteBuffer.allocate(100)));
+    plugin.clientSendRequest(context);
+    plugin.clientSendRequest(context); // resent after a handshake
+    assertEquals(1, snapshot(plugin, "echo").getInFlight());
+    assertEquals(0, snapshot(plugin, "echo").getCalls());
+
+    ticks.now += 5000;
+    plugin.clientReceiveResponse(context);
+    MetricsPlugin.MessageSnapshot snapshot = snapshot(plugin, "echo");
+    assertEquals(1, snapshot.getCalls());
+    assertEquals(0, snapshot.getInFlight());
+    assertEquals(0, snapshot.getErrors());
+    assertEquals(5000, snapshot.getLatency().getMax());
+    assertEquals(1, snapshot.getRequestPayload().getCount());
+    assertEquals(100, snapshot.getRequestPayload().getMax());
+    assertEquals(0, snapshot.getResponsePayload().getCount());
+  }
+
+  @Test
+  public void timesServerCalls() {
+    MetricsPlugin plugin = new MetricsPlugin(ticks);
+    RPCContext context = context(ECHO, null);
+    plugin.serverReceiveRequest(context);
+    ticks.now += 700;
+    context.setResponsePayload(Collections.singletonList(ByteBuffer.allocate(30)));
+    plugin.serverSendResponse(context);
+    MetricsPlugin.MessageSnapshot snapshot = snapshot(plugin, "echo");
+    assertEquals(1, snapshot.getCalls());
+    assertEquals(700, snapshot.getLatency().getMax());
+    assertEquals(30, snapshot.getResponsePayload().getMax());
+    assertEquals(0, snapshot.getRequestPayload().getCount());
+  }
+
+  @Test
+  public void countsFailedCallsOnce() {
+    MetricsPlugin plugin = new MetricsPlugin(ticks);
+    RPCContext context = context(ECHO, new IOException("lost"));
+    plugin.clientSendRequest(context);
+    plugin.clientRequestFailed(context);
+    plugin.clientRequestFailed(context);
+    plugin.clientReceiveResponse(context);
+    MetricsPlugin.MessageSnapshot snapshot = snapshot(plugin, "echo");
+    assertEquals(1, snapshot.getCalls());
+    assertEquals(1, snapshot.getErrors());
+    assertEquals(0, snapshot.getInFlight());
+  }
+
+  @Test
+  public void countsOneWayCallsWhenSent() {
+    MetricsPlugin plugin = new MetricsPlugin(ticks);
+    for (int i = 0; i < 3; i++) {
+      RPCContext context = context(TELL, null);
+      context.setRequestPayload(Collections.singletonList(ByteBuffer.allocate(10)));
+      plugin.clientSendRequest(context);
+    }
+    RPCContext failed = context(TELL, new IOException("lost"));
+    plugin.clientSendRequest(failed);
+    plugin.clientRequestFailed(failed);
+
+    MetricsPlugin.MessageSnapshot snapshot = snapshot(plugin, "tell");
+    assertEquals(4, snapshot.getCalls());
+    assertEquals(1, snapshot.getErrors());
+    assertEquals(0, snapshot.getInFlight());
+    assertEquals(0, snapshot.getLatency().getCount());
+    assertEquals(3, snapshot.getRequestPayload().getCount());
+  }
+
+  @Test
+  public void pluginsTimeCallsIndependently() {
+    MetricsPlugin first = new MetricsPlugin(ticks);
+    MetricsPlugin second = new MetricsPlugin(ticks);
+    MetricsPlugin third = new MetricsPlugin(ticks);
+    RPCContext context = context(ECHO, null);
+    first.clientSendRequest(context);
+    ticks.now += 10;
+    second.clientSendRequest(context);
+    ticks.now += 10;
+    third.clientSendRequest(context);
+    ticks.now += 10;
+    for (MetricsPlugin plugin : new MetricsPlugin[] { first, second, third }) {
+      assertEquals(1, snapshot(plugin, "echo").getInFlight());
+      plugin.clientReceiveResponse(context);
+    }
+    assertEquals(30, snapshot(first, "echo").getLatency().getMax());
+    assertEquals(20, snapshot(second, "echo").getLatency().getMax());
+    assertEquals(10, snapshot(third, "echo").getLatency().getMax());
+    assertEquals(0, snapshot(second, "echo").getInFlight());
+  }
+
+  @Test
+  public void ignoresCallsNotStarted() {
+    MetricsPlugin plugin = new MetricsPlugin(ticks);
+    plugin.serverSendResponse(context(ECHO, new AvroRuntimeException("bad handshake")));
+    assertTrue(plugin.getSnapshots().isEmpty());
+  }
+
+  @Test
+  public void snapshotsAreSortedByName() {
+    MetricsPlugin plugin = new MetricsPlugin(ticks);
+    plugin.clientSendRequest(context(TELL, null));
+    plugin.clientSendRequest(context(ECHO, null));
+    List<String> names = new ArrayList<>();
+    for (MetricsPlugin.MessageSnapshot snapshot : plugin.getSnapshots()) {
+      names.add(snapshot.getName());
+    }
+    assertEquals(Arrays.asList("echo", "tell"), names);
+    assertThrows(IllegalArgumentException.class, () -> plugin.clientSendRequest(new RPCContext()));
+  }
+
+  @Test
+  public void exportsSnapshots() throws Exception {
+    MetricsPlugin plugin = new MetricsPlugin(ticks);
+    plugin.clientSendRequest(context(TELL, null));
+    List<List<MetricsPlugin.MessageSnapshot>> exported = new ArrayList<>();
+    plugin.export(exported::add);
+    assertEquals(1, exported.size());
+    assertEquals("tell", exported.get(0).get(0).getName());
+  }
+
+  @Test
+  public void recordsCallsOverSocket() throws Exception {
+    MetricsPlugin serverMetrics = new MetricsPlugin();
+    MetricsPlugin clientMetrics = new MetricsPlugin();
+    CountDownLatch told = new CountDownLatch(5);
+    GenericResponder responder = new GenericResponder(PROTOCOL) {
+      @Override
+      public Object respond(Message message, Object request) {
+        if (message.getName().equals("tell")) {
+          told.countDown();
+          return null;
+        }
+        return ((GenericRecord) request).get("text");
+      }
+    };
+    responder.addRPCPlugin(serverMetrics);
+    SocketServer server = new SocketServer(responder, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    server.start();
+    try (SocketTransceiver client = new SocketTransceiver(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))) {
+      GenericRequestor requestor = new GenericRequestor(PROTOCOL, client);
+      requestor.addRPCPlugin(clientMetrics);
+      GenericRecord request = new GenericData.Record(ECHO.getRequest());
+      request.put("text", "hello");
+      for (int i = 0; i < 10; i++) {
+        assertEquals("hello", requestor.request("echo", request).toString());
+      }
+      for (int i = 0; i < 5; i++) {
+        requestor.request("tell", request);
+      }
+      assertTrue(told.await(10, TimeUnit.SECONDS));
+    } finally {
+      server.close();
+    }
+
+    for (MetricsPlugin plugin : new MetricsPlugin[] { clientMetrics, serverMetrics }) {
+      MetricsPlugin.MessageSnapshot echo = snapshot(plugin, "echo");
+      assertEquals(10, echo.getCalls());
+      assertEquals(0, echo.getInFlight());
+      assertEquals(0, echo.getErrors());
+      assertTrue(echo.getLatency().getMin() > 0);
+      assertEquals(5, snapshot(plugin, "tell").getCalls());
+    }
+    assertEquals(15, snapshot(clientMetrics, "echo").getRequestPayload().getCount()
+        + snapshot(clientMetrics, "tell").getRequestPayload().getCount());
+    assertEquals(10, snapshot(serverMetrics, "echo").getResponsePayload().getCount());
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.perf.test.generic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.ColumnBatch;
+import org.apache.avro.io.ColumnarReader;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.perf.test.BasicState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decodes records of primitive and nullable fields one record at a time with
+ * {@link GenericDatumReader} and as a batch with {@link ColumnarReader}.
+ */
+public class GenericColumnarTest {
+
+  private static final Schema SCHEMA = SchemaBuilder.record("R").fields() //
+      .requiredInt("id") //
+      .requiredLong("timestamp") //
+      .requiredDouble("price") //
+      .requiredFloat("ratio") //
+      .requiredBoolean("flag") //
+      .requiredString("name") //
+      .optionalLong("count") //
+      .optionalString("tag") //
+      .endRecord();
+
+  @Benchmark
+  @OperationsPerInvocation(BasicState.BATCH_SIZE)
+  public void decodeRows(final Blackhole blackhole, final TestStateDecode state) throws Exception {
+    final Decoder d = state.decoder;
+    final GenericDatumReader<GenericRecord> reader = state.reader;
+    GenericRecord reuse = null;
+    for (int i = 0; i < state.getBatchSize(); i++) {
+      reuse = reader.read(reuse, d);
+      blackhole.consume(reuse);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BasicState.BATCH_SIZE)
+  public void decodeColumns(final Blackhole blackhole, final TestStateDecode state) throws Exception {
+    final ColumnBatch batch = state.batch;
+    batch.reset();
+    state.columnarReader.read(state.decoder, state.getBatchSize(), batch);
+    blackhole.consume(batch);
+  }
+
+  @State(Scope.Thread)
+  public static class TestStateDecode extends BasicState {
+
+    private GenericDatumReader<GenericRecord> reader;
+    private ColumnarReader columnarReader;
+    private ColumnBatch batch;
+    private byte[] testData;
+    private Decoder decoder;
+
+    public TestStateDecode() {
+      super();
+    }
+
+    /**
+     * Generate test data.
+     *
+     * @throws IOException Could not setup test data
+     */
+    @Setup(Level.Trial)
+    public void doSetupTrial() throws IOException {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      Encoder encoder = super.newEncoder(true, baos);
+
+      final GenericDatumWriter<Object> writer = new GenericDatumWriter<>(SCHEMA);
+
+      final Random r = super.getRandom();
+      for (int i = 0; i < getBatchSize(); i++) {
+        final GenericRecord rec = new GenericData.Record(SCHEMA);
+        rec.put(0, r.nextInt());
+        rec.put(1, r.nextLong());
+        rec.put(2, r.nextDouble());
+        rec.put(3, r.nextFloat());
+        rec.put(4, r.nextBoolean());
+        rec.put(5, "name" + r.nextInt(1000));
+        rec.put(6, r.nextBoolean() ? null : r.nextLong());
+        rec.put(7, r.nextBoolean() ? null : "tag" + r.nextInt(10));
+        writer.write(rec, encoder);
+      }
+
+      encoder.flush();
+
+      this.testData = baos.toByteArray();
+      this.reader = new GenericDatumReader<>(SCHEMA);
+      this.columnarReader = new ColumnarReader(SCHEMA, SCHEMA);
+      this.batch = columnarReader.newBatch();
+    }
+
+    @Setup(Level.Invocation)
+    public void doSetupInvocation() throws Exception {
+      this.decoder = super.newDecoder(this.testData);
+    }
+  }
+}
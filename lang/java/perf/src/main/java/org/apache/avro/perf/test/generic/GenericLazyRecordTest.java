@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.perf.test.generic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.LazyRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.perf.test.BasicState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reads two fields of a 200 field record, decoding the whole record with
+ * {@link GenericDatumReader} and decoding only those fields with
+ * {@link LazyRecord}.
+ */
+public class GenericLazyRecordTest {
+
+  private static final int FIELD_COUNT = 200;
+  private static final Schema SCHEMA;
+  static {
+    SchemaBuilder.FieldAssembler<Schema> fields = SchemaBuilder.record("R").fields();
+    for (int i = 0; i < FIELD_COUNT; i++) {
+      String name = "f" + i;
+      switch (i % 4) {
+      case 0:
+        fields = fields.requiredDouble(name);
+        break;
+      case 1:
+        fields = fields.requiredInt(name);
+        break;
+      case 2:
+        fields = fields.requiredString(name);
+        break;
+      default:
+        fields = fields.requiredLong(name);
+        break;
+      }
+    }
+    SCHEMA = fields.endRecord();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BasicState.BATCH_SIZE)
+  public void decodeEager(final Blackhole blackhole, final TestStateDecode state) throws Exception {
+    final GenericDatumReader<GenericRecord> reader = state.reader;
+    BinaryDecoder d = null;
+    for (byte[] bytes : state.testData) {
+      d = DecoderFactory.get().binaryDecoder(bytes, d);
+      final GenericRecord record = reader.read(null, d);
+      blackhole.consume(record.get(1));
+      blackhole.consume(record.get(150));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BasicState.BATCH_SIZE)
+  public void decodeLazy(final Blackhole blackhole, final TestStateDecode state) throws Exception {
+    for (byte[] bytes : state.testData) {
+      final LazyRecord record = new LazyRecord(SCHEMA, bytes);
+      blackhole.consume(record.get(1));
+      blackhole.consume(record.get(150));
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class TestStateDecode extends BasicState {
+
+    private final GenericDatumReader<GenericRecord> reader = new GenericDatumReader<>(SCHEMA);
+    private byte[][] testData;
+
+    public TestStateDecode() {
+      super();
+    }
+
+    /**
+     * Generate test data, one array per record.
+     *
+     * @throws IOException Could not setup test data
+     */
+    @Setup(Level.Trial)
+    public void doSetupTrial() throws IOException {
+      final GenericDatumWriter<Object> writer = new GenericDatumWriter<>(SCHEMA);
+      final Random r = super.getRandom();
+      this.testData = new byte[getBatchSize()][];
+      for (int i = 0; i < getBatchSize(); i++) {
+        final GenericRecord rec = new GenericData.Record(SCHEMA);
+        for (int f = 0; f < FIELD_COUNT; f++) {
+          switch (f % 4) {
+          case 0:
+            rec.put(f, r.nextDouble());
+            break;
+          case 1:
+            rec.put(f, r.nextInt());
+            break;
+          case 2:
+            rec.put(f, "value" + r.nextInt(1000));
+            break;
+          default:
+            rec.put(f, r.nextLong());
+            break;
+          }
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Encoder encoder = super.newEncoder(true, baos);
+        writer.write(rec, encoder);
+        encoder.flush();
+        testData[i] = baos.toByteArray();
+      }
+    }
+  }
+}
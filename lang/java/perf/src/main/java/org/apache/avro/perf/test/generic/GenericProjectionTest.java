@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.perf.test.generic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.perf.test.BasicState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reads a projection of 10 fields out of a 200 field record, with the fast
+ * reader and with the default reader.
+ */
+public class GenericProjectionTest {
+
+  private static final int FIELD_COUNT = 200;
+  private static final int PROJECTED_EVERY = 20;
+
+  @Benchmark
+  @OperationsPerInvocation(BasicState.BATCH_SIZE)
+  public void decode(final Blackhole blackhole, final TestStateDecode state) throws Exception {
+    final Decoder d = state.decoder;
+    final GenericDatumReader<Object> reader = state.reader;
+    for (int i = 0; i < state.getBatchSize(); i++) {
+      blackhole.consume(reader.read(null, d));
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class TestStateDecode extends BasicState {
+
+    @Param({ "true", "false" })
+    public boolean fastReader;
+
+    private final Schema readerSchema;
+    private final Schema writerSchema;
+
+    private GenericDatumReader<Object> reader;
+    private byte[] testData;
+    private Decoder decoder;
+
+    public TestStateDecode() {
+      super();
+      this.writerSchema = buildSchema(1);
+      this.readerSchema = buildSchema(PROJECTED_EVERY);
+    }
+
+    /**
+     * Build a record using every <i>step</i>th field of the writer's fields, which
+     * cycle through double, int, string and long.
+     */
+    private static Schema buildSchema(int step) {
+      SchemaBuilder.FieldAssembler<Schema> fields = SchemaBuilder.record("R").fields();
+      for (int i = 0; i < FIELD_COUNT; i += step) {
+        String name = "f" + i;
+        switch (i % 4) {
+        case 0:
+          fields = fields.requiredDouble(name);
+          break;
+        case 1:
+          fields = fields.requiredInt(name);
+          break;
+        case 2:
+          fields = fields.requiredString(name);
+          break;
+        default:
+          fields = fields.requiredLong(name);
+          break;
+        }
+      }
+      return fields.endRecord();
+    }
+
+    /**
+     * Generate test data.
+     *
+     * @throws IOException Could not setup test data
+     */
+    @Setup(Level.Trial)
+    public void doSetupTrial() throws IOException {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      Encoder encoder = super.newEncoder(true, baos);
+
+      final GenericDatumWriter<Object> writer = new GenericDatumWriter<>(this.writerSchema);
+
+      final Random r = super.getRandom();
+      for (int i = 0; i < getBatchSize(); i++) {
+        final GenericRecord rec = new GenericData.Record(writerSchema);
+        for (int f = 0; f < FIELD_COUNT; f++) {
+          switch (f % 4) {
+          case 0:
+            rec.put(f, r.nextDouble());
+            break;
+          case 1:
+            rec.put(f, r.nextInt());
+            break;
+          case 2:
+            rec.put(f, "value" + r.nextInt(1000));
+            break;
+          default:
+            rec.put(f, r.nextLong());
+            break;
+          }
+        }
+        writer.write(rec, encoder);
+      }
+
+      encoder.flush();
+
+      this.testData = baos.toByteArray();
+
+      GenericData data = new GenericData();
+      data.setFastReaderEnabled(fastReader);
+      this.reader = new GenericDatumReader<>(writerSchema, readerSchema, data);
+    }
+
+    @Setup(Level.Invocation)
+    public void doSetupInvocation() throws Exception {
+      this.decoder = super.newDecoder(this.testData);
+    }
+  }
+}
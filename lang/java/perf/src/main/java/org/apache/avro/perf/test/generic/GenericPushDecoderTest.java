@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.perf.test.generic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.io.PushDatumDecoder;
+import org.apache.avro.perf.test.BasicState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decodes records from a blocking decoder and from a {@link PushDatumDecoder}
+ * fed in chunks of various sizes, as from a non-blocking socket.
+ */
+public class GenericPushDecoderTest {
+
+  private static final Schema SCHEMA = SchemaBuilder.record("R").fields() //
+      .requiredLong("timestamp") //
+      .requiredString("name") //
+      .optionalString("tag") //
+      .name("values").type().array().items().doubleType().noDefault() //
+      .name("attrs").type().map().values().intType().noDefault() //
+      .endRecord();
+
+  @Benchmark
+  @OperationsPerInvocation(BasicState.BATCH_SIZE)
+  public void decodeBlocking(final Blackhole blackhole, final TestStateDecode state) throws Exception {
+    final Decoder d = state.decoder;
+    final GenericDatumReader<GenericRecord> reader = state.reader;
+    GenericRecord reuse = null;
+    for (int i = 0; i < state.getBatchSize(); i++) {
+      reuse = reader.read(reuse, d);
+      blackhole.consume(reuse);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BasicState.BATCH_SIZE)
+  public void decodePush(final Blackhole blackhole, final TestStateDecode state) throws Exception {
+    final PushDatumDecoder<GenericRecord> push = new PushDatumDecoder<>(SCHEMA, state.reader);
+    final byte[] data = state.testData;
+    GenericRecord reuse = null;
+    for (int offset = 0; offset < data.length; offset += state.chunkSize) {
+      push.feed(ByteBuffer.wrap(data, offset, Math.min(state.chunkSize, data.length - offset)));
+      GenericRecord datum;
+      while ((datum = push.pollDatum(reuse)) != null) {
+        reuse = datum;
+        blackhole.consume(datum);
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class TestStateDecode extends BasicState {
+
+    @Param({ "64", "1024", "65536" })
+    private int chunkSize;
+
+    private GenericDatumReader<GenericRecord> reader;
+    private byte[] testData;
+    private Decoder decoder;
+
+    public TestStateDecode() {
+      super();
+    }
+
+    /**
+     * Generate test data.
+     *
+     * @throws IOException Could not setup test data
+     */
+    @Setup(Level.Trial)
+    public void doSetupTrial() throws IOException {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      Encoder encoder = super.newEncoder(true, baos);
+
+      final GenericDatumWriter<Object> writer = new GenericDatumWriter<>(SCHEMA);
+
+      final Random r = super.getRandom();
+      for (int i = 0; i < getBatchSize(); i++) {
+        final GenericRecord rec = new GenericData.Record(SCHEMA);
+        rec.put(0, r.nextLong());
+        rec.put(1, "name" + r.nextInt(1000));
+        rec.put(2, r.nextBoolean() ? null : "tag" + r.nextInt(10));
+        final List<Double> values = new ArrayList<>();
+        for (int j = r.nextInt(10); j > 0; j--) {
+          values.add(r.nextDouble());
+        }
+        rec.put(3, values);
+        final Map<String, Integer> attrs = new HashMap<>();
+        for (int j = r.nextInt(5); j > 0; j--) {
+          attrs.put("k" + j, r.nextInt());
+        }
+        rec.put(4, attrs);
+        writer.write(rec, encoder);
+      }
+
+      encoder.flush();
+
+      this.testData = baos.toByteArray();
+      this.reader = new GenericDatumReader<>(SCHEMA);
+    }
+
+    @Setup(Level.Invocation)
+    public void doSetupInvocation() throws Exception {
+      this.decoder = super.newDecoder(this.testData);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.avro.perf.test.generic;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryData;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.util.PoolingStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decodes and compares a record once on each of many short-lived threads, the
+ * pattern of a service that starts a thread per request. Run with
+ * {@code -prof gc} to compare the allocation rate of the pooling strategies.
+ * Virtual threads need Java 21 or later; on older runtimes use
+ * {@code -p threadKind=platform}.
+ */
+public class GenericShortLivedThreadTest {
+
+  private static final String RECORD_SCHEMA = "{ \"type\": \"record\", \"name\": \"R\", \"fields\": [\n"
+      + "{ \"name\": \"f1\", \"type\": \"long\" },\n" + "{ \"name\": \"f2\", \"type\": \"string\" },\n"
+      + "{ \"name\": \"f3\", \"type\": \"double\" }\n" + "] }";
+
+  private static final int THREADS = 100000;
+
+  @Benchmark
+  @OperationsPerInvocation(THREADS)
+  public void decodeAndCompare(final Blackhole blackhole, final TestState state) throws Exception {
+    final AtomicLong sink = new AtomicLong();
+    final Runnable task = () -> {
+      try {
+        Object datum = state.reader.read(null, DecoderFactory.get().binaryDecoder(state.encoded, null));
+        sink.addAndGet(datum.hashCode() + BinaryData.compare(state.encoded, 0, state.encoded, 0, state.schema));
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    };
+    Thread[] threads = new Thread[THREADS];
+    for (int i = 0; i < THREADS; i++) {
+      threads[i] = state.newThread(task);
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    blackhole.consume(sink.get());
+  }
+
+  @State(Scope.Benchmark)
+  public static class TestState {
+
+    @Param({ "threadlocal", "striped" })
+    public String pooling;
+
+    @Param({ "virtual", "platform" })
+    public String threadKind;
+
+    private Schema schema;
+    private byte[] encoded;
+    private GenericDatumReader<Object> reader;
+    private Method unstarted;
+    private Object virtualBuilder;
+
+    /**
+     * Choose the pooling strategy before any pool is created, then encode the
+     * test record.
+     *
+     * @throws Exception Could not setup test data
+     */
+    @Setup(Level.Trial)
+    public void doSetupTrial() throws Exception {
+      PoolingStrategy.set("striped".equals(pooling) ? PoolingStrategy.striped() : PoolingStrategy.threadLocal());
+      if ("virtual".equals(threadKind)) {
+        virtualBuilder = Thread.class.getMethod("ofVirtual").invoke(null);
+        unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+      }
+
+      schema = new Schema.Parser().parse(RECORD_SCHEMA);
+      GenericRecord rec = new GenericData.Record(schema);
+      rec.put(0, 42L);
+      rec.put(1, "value");
+      rec.put(2, 1.5);
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(baos, null);
+      new GenericDatumWriter<Object>(schema).write(rec, encoder);
+      encoder.flush();
+      encoded = baos.toByteArray();
+
+      // the resolving path is the one that keeps per-thread state
+      GenericData data = new GenericData();
+      data.setFastReaderEnabled(false);
+      reader = new GenericDatumReader<>(schema, schema, data);
+    }
+
+    Thread newThread(Runnable task) throws Exception {
+      if (unstarted == null) {
+        return new Thread(task);
+      }
+      return (Thread) unstarted.invoke(virtualBuilder, task);
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.perf.test.ipc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Protocol;
+import org.apache.avro.Protocol.Message;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.ipc.NioSocketServer;
+import org.apache.avro.ipc.Server;
+import org.apache.avro.ipc.SocketServer;
+import org.apache.avro.ipc.SocketTransceiver;
+import org.apache.avro.ipc.generic.GenericRequestor;
+import org.apache.avro.ipc.generic.GenericResponder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Makes concurrent calls over a multiplexed connection to a
+ * {@link SocketServer}, which runs a thread per connection, and to a
+ * {@link NioSocketServer}, which runs a selector thread and a worker pool,
+ * while many other clients hold idle connections to the same server. Requests
+ * are written by their callers, or batched within a window.
+ */
+@SuppressWarnings("deprecation")
+public class SocketServerTest {
+
+  private static final Protocol PROTOCOL = Protocol.parse("{\"protocol\": \"Echo\", \"namespace\": \"perf\","
+      + " \"messages\": {\"echo\": {\"request\": [{\"name\": \"data\", \"type\": \"bytes\"}],"
+      + " \"response\": \"bytes\"}}}");
+
+  @Benchmark
+  @Threads(8)
+  public Object echo(final Connections state) throws Exception {
+    return state.requestor.request("echo", state.request);
+  }
+
+  /** A server, a connection to it, and idle connections. */
+  @State(Scope.Benchmark)
+  public static class Connections {
+    @Param({ "thread", "selector" })
+    private String server;
+
+    @Param({ "0", "1000" })
+    private int idleConnections;
+
+    /** Microseconds to wait for requests to batch, or negative to not batch. */
+    @Param({ "-1", "0", "100" })
+    private long batchWindowMicros;
+
+    private Server instance;
+    private SocketTransceiver transceiver;
+    private GenericRequestor requestor;
+    private GenericRecord request;
+    private final List<SocketChannel> idle = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void doSetupTrial() throws IOException {
+      GenericResponder responder = new GenericResponder(PROTOCOL) {
+        @Override
+        public Object respond(Message message, Object request) {
+          return ((GenericRecord) request).get("data");
+        }
+      };
+      InetSocketAddress any = new InetSocketAddress(0);
+      instance = "thread".equals(server) ? new SocketServer(responder, any) : new NioSocketServer(responder, any);
+      instance.start();
+      InetSocketAddress address = new InetSocketAddress("localhost", instance.getPort());
+      for (int i = 0; i < idleConnections; i++) {
+        idle.add(SocketChannel.open(address));
+      }
+      transceiver = new SocketTransceiver(address, 16);
+      if (batchWindowMicros >= 0) {
+        transceiver.setBatching(65536, batchWindowMicros, TimeUnit.MICROSECONDS);
+      }
+      requestor = new GenericRequestor(PROTOCOL, transceiver);
+      request = new GenericData.Record(PROTOCOL.getMessages().get("echo").getRequest());
+      request.put("data", ByteBuffer.wrap(new byte[256]));
+    }
+
+    @TearDown(Level.Trial)
+    public void doTearDownTrial() throws IOException {
+      transceiver.close();
+      for (SocketChannel channel : idle) {
+        channel.close();
+      }
+      instance.close();
+    }
+  }
+}
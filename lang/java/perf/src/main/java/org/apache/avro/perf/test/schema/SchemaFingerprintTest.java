@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.perf.test.schema;
+
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaNormalization;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Computes the fingerprints of a large nested schema, on schema instances that
+ * have not been fingerprinted yet and repeatedly on the same instance.
+ */
+public class SchemaFingerprintTest {
+
+  private static final int COPIES = 100;
+  private static final String SCHEMA_JSON = buildSchema().toString();
+
+  /** Build a record of 50 records of 10 fields each, with arrays and maps. */
+  private static Schema buildSchema() {
+    SchemaBuilder.FieldAssembler<Schema> outer = SchemaBuilder.record("Outer").namespace("perf").fields();
+    for (int i = 0; i < 50; i++) {
+      SchemaBuilder.FieldAssembler<Schema> inner = SchemaBuilder.record("Inner" + i).fields();
+      for (int j = 0; j < 10; j++) {
+        switch (j % 5) {
+        case 0:
+          inner = inner.requiredLong("l" + j);
+          break;
+        case 1:
+          inner = inner.optionalString("s" + j);
+          break;
+        case 2:
+          inner = inner.name("a" + j).type().array().items().doubleType().noDefault();
+          break;
+        case 3:
+          inner = inner.name("m" + j).type().map().values().intType().noDefault();
+          break;
+        default:
+          inner = inner.name("e" + j).type().enumeration("E" + i + "_" + j).symbols("A", "B", "C").noDefault();
+          break;
+        }
+      }
+      outer = outer.name("f" + i).type(inner.endRecord()).noDefault();
+    }
+    return outer.endRecord();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COPIES)
+  public void firstFingerprint64(final Blackhole blackhole, final FreshSchemas state) {
+    for (Schema schema : state.schemas) {
+      blackhole.consume(SchemaNormalization.parsingFingerprint64(schema));
+    }
+  }
+
+  @Benchmark
+  public long repeatedFingerprint64(final SameSchema state) {
+    return SchemaNormalization.parsingFingerprint64(state.schema);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COPIES)
+  public void firstSha256(final Blackhole blackhole, final FreshSchemas state) throws NoSuchAlgorithmException {
+    for (Schema schema : state.schemas) {
+      blackhole.consume(SchemaNormalization.parsingFingerprint("SHA-256", schema));
+    }
+  }
+
+  @Benchmark
+  public byte[] repeatedSha256(final SameSchema state) throws NoSuchAlgorithmException {
+    return SchemaNormalization.parsingFingerprint("SHA-256", state.schema);
+  }
+
+  /** Schema instances parsed before each invocation. */
+  @State(Scope.Thread)
+  public static class FreshSchemas {
+    private final Schema[] schemas = new Schema[COPIES];
+
+    @Setup(Level.Invocation)
+    public void doSetupInvocation() {
+      for (int i = 0; i < COPIES; i++) {
+        schemas[i] = new Schema.Parser().parse(SCHEMA_JSON);
+      }
+    }
+  }
+
+  /** A single schema instance. */
+  @State(Scope.Thread)
+  public static class SameSchema {
+    private Schema schema;
+
+    @Setup(Level.Trial)
+    public void doSetupTrial() {
+      this.schema = new Schema.Parser().parse(SCHEMA_JSON);
+    }
+  }
+}
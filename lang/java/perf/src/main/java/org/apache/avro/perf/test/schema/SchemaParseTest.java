@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.perf.test.schema;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses a catalog of schema files, one at a time and with
+ * {@link Schema.Parser#parseAll(List)}.
+ */
+public class SchemaParseTest {
+
+  private static final int FILES = 500;
+
+  /** Build a record with nested records, enums, arrays, maps and defaults. */
+  private static Schema buildSchema(int n, int fields) {
+    String namespace = "perf.catalog.v" + n;
+    SchemaBuilder.FieldAssembler<Schema> outer = SchemaBuilder.record("Record" + n).namespace(namespace)
+        .doc("Record number " + n).fields();
+    for (int i = 0; i < fields; i++) {
+      switch (i % 6) {
+      case 0:
+        outer = outer.name("id" + i).doc("identifier").type().longType().longDefault(0);
+        break;
+      case 1:
+        outer = outer.optionalString("name" + i);
+        break;
+      case 2:
+        outer = outer.name("kind" + i).type().enumeration("Kind" + i).symbols("A", "B", "C", "D").enumDefault("A");
+        break;
+      case 3:
+        outer = outer.name("tags" + i).type().array().items().stringType().noDefault();
+        break;
+      case 4:
+        outer = outer.name("attrs" + i).type().map().values().doubleType().noDefault();
+        break;
+      default:
+        outer = outer.name("nested" + i).type(SchemaBuilder.record("Nested" + i).namespace(namespace).fields()
+            .requiredInt("x").requiredInt("y").optionalBytes("payload").endRecord()).noDefault();
+        break;
+      }
+    }
+    return outer.endRecord();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(FILES)
+  public void sequential(final Blackhole blackhole, final Catalog state) throws IOException {
+    Schema.Parser parser = new Schema.Parser();
+    for (File file : state.files) {
+      blackhole.consume(parser.parse(file));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(FILES)
+  public List<Schema> parallel(final Catalog state) throws IOException {
+    return new Schema.Parser().parseAll(state.files);
+  }
+
+  /** Schema files written to a temporary directory. */
+  @State(Scope.Benchmark)
+  public static class Catalog {
+    @Param({ "10", "100" })
+    private int fields;
+
+    private File dir;
+    private final List<File> files = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void doSetupTrial() throws IOException {
+      dir = Files.createTempDirectory("avro-schemas").toFile();
+      for (int i = 0; i < FILES; i++) {
+        File file = new File(dir, "schema" + i + ".avsc");
+        Files.write(file.toPath(), buildSchema(i, fields).toString(true).getBytes(StandardCharsets.UTF_8));
+        files.add(file);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void doTearDownTrial() {
+      for (File file : files) {
+        file.delete();
+      }
+      dir.delete();
+    }
+  }
+}
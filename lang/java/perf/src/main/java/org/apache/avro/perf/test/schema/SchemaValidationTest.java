@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.perf.test.schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaCompatibility;
+import org.apache.avro.SchemaCompatibilityCache;
+import org.apache.avro.SchemaValidationException;
+import org.apache.avro.SchemaValidator;
+import org.apache.avro.SchemaValidatorBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Validates a new version of a schema against all its previous versions, as a
+ * schema registry does, with and without a {@link SchemaCompatibilityCache}.
+ * The cache also lets a check of a new version skip the nested records that are
+ * unchanged since previous checks.
+ */
+public class SchemaValidationTest {
+
+  private static final int VERSIONS = 100;
+
+  /**
+   * Build a version of a record of 20 nested records, each version adding an
+   * optional field to one of them.
+   */
+  private static Schema buildVersion(int version) {
+    SchemaBuilder.FieldAssembler<Schema> outer = SchemaBuilder.record("Outer").namespace("perf").fields();
+    for (int i = 0; i < 20; i++) {
+      SchemaBuilder.FieldAssembler<Schema> inner = SchemaBuilder.record("Inner" + i).namespace("perf").fields()
+          .requiredLong("id").optionalString("name").name("values").type().array().items().doubleType().noDefault();
+      for (int v = i; v < version; v += 20) {
+        inner = inner.optionalInt("added" + v);
+      }
+      outer = outer.name("f" + i).type(inner.endRecord()).noDefault();
+    }
+    return outer.endRecord();
+  }
+
+  @Benchmark
+  public void uncached(final History state) throws SchemaValidationException {
+    state.uncached.validate(state.next, state.history);
+  }
+
+  @Benchmark
+  public void cached(final History state) throws SchemaValidationException {
+    state.cached.validate(state.next, state.history);
+  }
+
+  @Benchmark
+  public void checkNextVersion(final Blackhole blackhole, final NextVersion state) {
+    for (Schema previous : state.history) {
+      blackhole.consume(SchemaCompatibility.checkReaderWriterCompatibility(state.next, previous));
+    }
+  }
+
+  @Benchmark
+  public void checkNextVersionIncremental(final Blackhole blackhole, final NextVersion state) {
+    for (Schema previous : state.history) {
+      blackhole.consume(state.cache.checkReaderWriterCompatibility(state.next, previous));
+    }
+  }
+
+  /** The versions of a schema, and validators that check them. */
+  @State(Scope.Thread)
+  public static class History {
+    final List<Schema> history = new ArrayList<>();
+    final Schema next = buildVersion(VERSIONS);
+    final SchemaValidator uncached = new SchemaValidatorBuilder().mutualReadStrategy().validateAll();
+    final SchemaValidator cached = new SchemaValidatorBuilder().mutualReadStrategy()
+        .cache(new SchemaCompatibilityCache()).validateAll();
+
+    @Setup(Level.Trial)
+    public void doSetupTrial() {
+      for (int v = VERSIONS - 1; v >= 0; v--) {
+        history.add(buildVersion(v));
+      }
+    }
+  }
+
+  /**
+   * A history already checked with a cache, and a new version whose changes are
+   * confined to one nested record.
+   */
+  @State(Scope.Thread)
+  public static class NextVersion {
+    final List<Schema> history = new ArrayList<>();
+    SchemaCompatibilityCache cache;
+    Schema next;
+
+    @Setup(Level.Invocation)
+    public void doSetupInvocation() {
+      history.clear();
+      for (int v = VERSIONS - 1; v >= 0; v--) {
+        history.add(buildVersion(v));
+      }
+      cache = new SchemaCompatibilityCache();
+      for (Schema previous : history) {
+        cache.checkReaderWriterCompatibility(history.get(0), previous);
+      }
+      next = buildVersion(VERSIONS);
+    }
+  }
+}